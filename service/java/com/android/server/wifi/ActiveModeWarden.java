@@ -114,6 +114,10 @@ public class ActiveModeWarden {
 
     // Holder for active mode managers
     private final Set<ConcreteClientModeManager> mClientModeManagers = new ArraySet<>();
+    // Copy of |mClientModeManagers| published whenever it changes, so that the client mode
+    // managers in a given role can be looked up from any thread.
+    private volatile List<ConcreteClientModeManager> mClientModeManagersSnapshot =
+            Collections.emptyList();
     private final Set<SoftApManager> mSoftApManagers = new ArraySet<>();
 
     private final Set<ModeChangeCallback> mCallbacks = new ArraySet<>();
@@ -996,7 +1000,7 @@ public class ActiveModeWarden {
     /**
      * Returns primary client mode manager if any, else returns null
      * This mode manager can be the default route on the device & will handle all external API
-     * calls.
+     * calls. Can be called from any thread.
      * @return Instance of {@link ConcreteClientModeManager} or null.
      */
     @Nullable
@@ -1008,7 +1012,7 @@ public class ActiveModeWarden {
      * Returns primary client mode manager if any, else returns an instance of
      * {@link ClientModeManager}.
      * This mode manager can be the default route on the device & will handle all external API
-     * calls.
+     * calls. Can be called from any thread.
      * @return Instance of {@link ClientModeManager}.
      */
     @NonNull
@@ -1110,10 +1114,25 @@ public class ActiveModeWarden {
         return true;
     }
 
-    /** Get any client mode manager in the given role, or null if none was found. */
+    private void addClientModeManager(@NonNull ConcreteClientModeManager manager) {
+        mClientModeManagers.add(manager);
+        mClientModeManagersSnapshot =
+                Collections.unmodifiableList(new ArrayList<>(mClientModeManagers));
+    }
+
+    private void removeClientModeManager(@NonNull ConcreteClientModeManager manager) {
+        mClientModeManagers.remove(manager);
+        mClientModeManagersSnapshot =
+                Collections.unmodifiableList(new ArrayList<>(mClientModeManagers));
+    }
+
+    /**
+     * Get any client mode manager in the given role, or null if none was found.
+     * Can be called from any thread.
+     */
     @Nullable
     public ConcreteClientModeManager getClientModeManagerInRole(ClientRole role) {
-        for (ConcreteClientModeManager manager : mClientModeManagers) {
+        for (ConcreteClientModeManager manager : mClientModeManagersSnapshot) {
             if (manager.getRole() == role) return manager;
         }
         return null;
@@ -1128,12 +1147,12 @@ public class ActiveModeWarden {
         return null;
     }
 
-    /** Get all client mode managers in the specified roles. */
+    /** Get all client mode managers in the specified roles. Can be called from any thread. */
     @NonNull
     public List<ConcreteClientModeManager> getClientModeManagersInRoles(ClientRole... roles) {
         Set<ClientRole> rolesSet = Set.of(roles);
         List<ConcreteClientModeManager> result = new ArrayList<>();
-        for (ConcreteClientModeManager manager : mClientModeManagers) {
+        for (ConcreteClientModeManager manager : mClientModeManagersSnapshot) {
             ClientRole role = manager.getRole();
             if (role != null && rolesSet.contains(role)) {
                 result.add(manager);
@@ -1231,7 +1250,7 @@ public class ActiveModeWarden {
         Log.d(TAG, "Starting primary ClientModeManager in scan only mode");
         ConcreteClientModeManager manager = mWifiInjector.makeClientModeManager(
                 new ClientListener(), requestorWs, ROLE_CLIENT_SCAN_ONLY, mVerboseLoggingEnabled);
-        mClientModeManagers.add(manager);
+        addClientModeManager(manager);
         mLastScanOnlyClientModeManagerRequestorWs = requestorWs;
         return true;
     }
@@ -1253,7 +1272,7 @@ public class ActiveModeWarden {
         Log.d(TAG, "Starting primary ClientModeManager in connect mode");
         ConcreteClientModeManager manager = mWifiInjector.makeClientModeManager(
                 new ClientListener(), requestorWs, ROLE_CLIENT_PRIMARY, mVerboseLoggingEnabled);
-        mClientModeManagers.add(manager);
+        addClientModeManager(manager);
         mLastPrimaryClientModeManagerRequestorWs = requestorWs;
         return true;
     }
@@ -1360,7 +1379,7 @@ public class ActiveModeWarden {
         ClientListener listener = new ClientListener(externalRequestListener);
         ConcreteClientModeManager manager = mWifiInjector.makeClientModeManager(
                 listener, requestorWs, role, mVerboseLoggingEnabled);
-        mClientModeManagers.add(manager);
+        addClientModeManager(manager);
         return true;
     }
 
@@ -1623,7 +1642,7 @@ public class ActiveModeWarden {
         }
 
         private void onStoppedOrStartFailure(ConcreteClientModeManager clientModeManager) {
-            mClientModeManagers.remove(clientModeManager);
+            removeClientModeManager(clientModeManager);
             mGraveyard.inter(clientModeManager);
             updateClientScanMode();
             updateBatteryStats();
@@ -122,6 +122,7 @@ public class AvailableNetworkNotifier {
 
     /** List of SSIDs blocklisted from recommendation. */
     private final Set<String> mBlocklistedSsids = new ArraySet<>();
+    private boolean mHasNewDataToSerialize = false;
 
     private final WifiContext mContext;
     private final Handler mHandler;
@@ -481,8 +482,9 @@ public class AvailableNetworkNotifier {
 
     private void addNetworkToBlocklist(String ssid) {
         mBlocklistedSsids.add(ssid);
+        mHasNewDataToSerialize = true;
         mWifiMetrics.setNetworkRecommenderBlocklistSize(mTag, mBlocklistedSsids.size());
-        mConfigManager.saveToStore(false /* forceWrite */);
+        mConfigManager.saveModuleDataToStore(false /* forceWrite */);
         Log.d(mTag, "Network is added to the network notification blocklist: "
                 + "\"" + ssid + "\"");
     }
@@ -494,8 +496,9 @@ public class AvailableNetworkNotifier {
         if (!mBlocklistedSsids.remove(ssid)) {
             return;
         }
+        mHasNewDataToSerialize = true;
         mWifiMetrics.setNetworkRecommenderBlocklistSize(mTag, mBlocklistedSsids.size());
-        mConfigManager.saveToStore(false /* forceWrite */);
+        mConfigManager.saveModuleDataToStore(false /* forceWrite */);
         Log.d(mTag, "Network is removed from the network notification blocklist: "
                 + "\"" + ssid + "\"");
     }
@@ -562,6 +565,7 @@ public class AvailableNetworkNotifier {
     private class AvailableNetworkNotifierStoreData implements SsidSetStoreData.DataSource {
         @Override
         public Set<String> getSsids() {
+            mHasNewDataToSerialize = false;
             return new ArraySet<>(mBlocklistedSsids);
         }
 
@@ -570,6 +574,11 @@ public class AvailableNetworkNotifier {
             mBlocklistedSsids.addAll(ssidList);
             mWifiMetrics.setNetworkRecommenderBlocklistSize(mTag, mBlocklistedSsids.size());
         }
+
+        @Override
+        public boolean hasNewDataToSerialize() {
+            return mHasNewDataToSerialize;
+        }
     }
 
     private class NotificationEnabledSettingObserver extends ContentObserver {
@@ -120,6 +120,13 @@ public interface ClientMode {
      */
     WifiInfo getConnectionInfo();
 
+    /**
+     * Get the Wifi connection information as of the last event processed on the Wifi thread.
+     * Unlike {@link #getConnectionInfo()}, this can be called from any thread.
+     * @return Wifi info, which may be shared with other callers and must not be modified
+     */
+    WifiInfo getConnectionInfoSnapshot();
+
     boolean syncQueryPasspointIcon(long bssid, String fileName);
 
     /**
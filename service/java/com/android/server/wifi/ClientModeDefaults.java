@@ -98,6 +98,10 @@ public interface ClientModeDefaults extends ClientMode {
         return new WifiInfo();
     }
 
+    default WifiInfo getConnectionInfoSnapshot() {
+        return new WifiInfo();
+    }
+
     default boolean syncQueryPasspointIcon(long bssid, String fileName) {
         return false;
     }
@@ -318,6 +318,9 @@ public class ClientModeImpl extends StateMachine implements ClientMode {
 
     // NOTE: Do not return to clients - see getConnectionInfo()
     private final ExtendedWifiInfo mWifiInfo;
+    // Copy of |mWifiInfo| published after each processed message - see
+    // getConnectionInfoSnapshot()
+    private volatile WifiInfo mWifiInfoSnapshot = new WifiInfo();
     // TODO : remove this member. It should be possible to only call sendNetworkChangeBroadcast when
     // the state actually changed, and to deduce the state of the agent from the state of the
     // machine when generating the NetworkInfo for the broadcast.
@@ -1740,6 +1743,24 @@ public class ClientModeImpl extends StateMachine implements ClientMode {
         return new WifiInfo(mWifiInfo);
     }
 
+    /**
+     * Get status information for the current connection as of the last message processed by
+     * this state machine. Unlike {@link #getConnectionInfo()}, this does not need to run on the
+     * Wifi thread, so binder threads do not have to wait for it.
+     *
+     * @return a {@link WifiInfo} object shared by all callers until the next message is
+     * processed, which must not be modified.
+     */
+    @Override
+    public WifiInfo getConnectionInfoSnapshot() {
+        return mWifiInfoSnapshot;
+    }
+
+    @Override
+    protected void onPostHandleMessage(Message msg) {
+        mWifiInfoSnapshot = new WifiInfo(mWifiInfo);
+    }
+
     /**
      * Blocking call to get the current DHCP results
      *
@@ -122,13 +122,14 @@ public class ConcreteClientModeManager implements ClientModeManager {
     private boolean mIfaceIsUp = false;
     private boolean mShouldReduceNetworkScore = false;
     private final DeferStopHandler mDeferStopHandler;
+    // Volatile, so that the mode managers in a given role can be looked up from any thread.
     @Nullable
-    private ClientRole mRole = null;
+    private volatile ClientRole mRole = null;
     @Nullable
     private ClientRole mPreviousRole = null;
     private long mLastRoleChangeSinceBootMs = 0;
     @Nullable
-    private WorkSource mRequestorWs = null;
+    private volatile WorkSource mRequestorWs = null;
     @NonNull
     private Listener<ConcreteClientModeManager> mModeListener;
     /** Caches the latest role change request. This is needed for the IMS dereg delay */
@@ -141,10 +142,10 @@ public class ConcreteClientModeManager implements ClientModeManager {
     private boolean mIsDbs = false;
     /**
      * mClientModeImpl is only non-null when in {@link ClientModeStateMachine.ConnectModeState} -
-     * it will be null in all other states
+     * it will be null in all other states. Volatile for {@link #getConnectionInfoSnapshot()}.
      */
     @Nullable
-    private ClientModeImpl mClientModeImpl = null;
+    private volatile ClientModeImpl mClientModeImpl = null;
 
     @Nullable
     private ScanOnlyModeImpl mScanOnlyModeImpl = null;
@@ -1450,6 +1451,16 @@ public class ConcreteClientModeManager implements ClientModeManager {
         return getClientMode().getConnectionInfo();
     }
 
+    @Override
+    public WifiInfo getConnectionInfoSnapshot() {
+        // Not using getClientMode(), which could race with the Wifi thread.
+        ClientModeImpl clientModeImpl = mClientModeImpl;
+        if (clientModeImpl == null) {
+            return new WifiInfo();
+        }
+        return clientModeImpl.getConnectionInfoSnapshot();
+    }
+
     @Override
     public boolean syncQueryPasspointIcon(long bssid, String fileName) {
         return getClientMode().syncQueryPasspointIcon(bssid, fileName);
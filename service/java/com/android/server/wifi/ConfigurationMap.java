@@ -27,21 +27,38 @@ import com.android.server.wifi.util.WifiPermissionsUtil;
 
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Map of the network configurations, indexed by network ID, profile key and SSID.
+ *
+ * The profile key and SSID indexes only cover the networks visible to the current user. They are
+ * updated on {@link #put(WifiConfiguration)}, so a network whose SSID or security parameters are
+ * modified in place must be put again to be re-indexed.
+ */
 public class ConfigurationMap {
     private final Map<Integer, WifiConfiguration> mPerID = new HashMap<>();
 
     private final Map<Integer, WifiConfiguration> mPerIDForCurrentUser = new HashMap<>();
     private final Map<ScanResultMatchInfo, WifiConfiguration>
             mScanResultMatchInfoMapForCurrentUser = new HashMap<>();
+    private final Map<String, List<WifiConfiguration>> mPerProfileKeyForCurrentUser =
+            new HashMap<>();
+    private final Map<String, List<WifiConfiguration>> mPerSsidForCurrentUser = new HashMap<>();
+    // Profile key and SSID each network was indexed under when it was last put.
+    private final Map<Integer, String> mIndexedProfileKeys = new HashMap<>();
+    private final Map<Integer, String> mIndexedSsids = new HashMap<>();
 
     @NonNull private final WifiPermissionsUtil mWifiPermissionsUtil;
 
     private int mCurrentUserId = UserHandle.SYSTEM.getIdentifier();
+    // Incremented on every change to the set of networks, see getVersion().
+    private int mVersion = 0;
 
     ConfigurationMap(@NonNull WifiPermissionsUtil wifiPermissionsUtil) {
         mWifiPermissionsUtil = wifiPermissionsUtil;
@@ -53,15 +70,20 @@ public class ConfigurationMap {
         pw.println("mPerIDForCurrentUser=" + mPerIDForCurrentUser);
         pw.println("mScanResultMatchInfoMapForCurrentUser="
                 + mScanResultMatchInfoMapForCurrentUser);
+        pw.println("mPerProfileKeyForCurrentUser size=" + mPerProfileKeyForCurrentUser.size());
+        pw.println("mPerSsidForCurrentUser size=" + mPerSsidForCurrentUser.size());
         pw.println("mCurrentUserId=" + mCurrentUserId);
     }
 
     // RW methods:
     public WifiConfiguration put(WifiConfiguration config) {
         final WifiConfiguration current = mPerID.put(config.networkId, config);
+        mVersion++;
         if (config.shared || mWifiPermissionsUtil
                 .doesUidBelongToCurrentUserOrDeviceOwner(config.creatorUid)) {
             mPerIDForCurrentUser.put(config.networkId, config);
+            removeFromIndexes(config.networkId);
+            addToIndexes(config);
             // TODO (b/142035508): Add a more generic fix. This cache should only hold saved
             // networks.
             if (!config.fromWifiNetworkSpecifier && !config.fromWifiNetworkSuggestion
@@ -79,7 +101,9 @@ public class ConfigurationMap {
             return null;
         }
 
+        mVersion++;
         mPerIDForCurrentUser.remove(netID);
+        removeFromIndexes(netID);
 
         Iterator<Map.Entry<ScanResultMatchInfo, WifiConfiguration>> scanResultMatchInfoEntries =
                 mScanResultMatchInfoMapForCurrentUser.entrySet().iterator();
@@ -93,9 +117,49 @@ public class ConfigurationMap {
     }
 
     public void clear() {
+        mVersion++;
         mPerID.clear();
         mPerIDForCurrentUser.clear();
         mScanResultMatchInfoMapForCurrentUser.clear();
+        mPerProfileKeyForCurrentUser.clear();
+        mPerSsidForCurrentUser.clear();
+        mIndexedProfileKeys.clear();
+        mIndexedSsids.clear();
+    }
+
+    private void addToIndexes(WifiConfiguration config) {
+        final String profileKey = config.getProfileKey();
+        addToIndex(mPerProfileKeyForCurrentUser, profileKey, config);
+        mIndexedProfileKeys.put(config.networkId, profileKey);
+        if (config.SSID != null) {
+            addToIndex(mPerSsidForCurrentUser, config.SSID, config);
+            mIndexedSsids.put(config.networkId, config.SSID);
+        }
+    }
+
+    private void removeFromIndexes(int netID) {
+        removeFromIndex(mPerProfileKeyForCurrentUser, mIndexedProfileKeys.remove(netID), netID);
+        removeFromIndex(mPerSsidForCurrentUser, mIndexedSsids.remove(netID), netID);
+    }
+
+    private static void addToIndex(Map<String, List<WifiConfiguration>> index, String key,
+            WifiConfiguration config) {
+        index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(config);
+    }
+
+    private static void removeFromIndex(Map<String, List<WifiConfiguration>> index, String key,
+            int netID) {
+        if (key == null) {
+            return;
+        }
+        List<WifiConfiguration> configs = index.get(key);
+        if (configs == null) {
+            return;
+        }
+        configs.removeIf(config -> config.networkId == netID);
+        if (configs.isEmpty()) {
+            index.remove(key);
+        }
     }
 
     /**
@@ -105,6 +169,16 @@ public class ConfigurationMap {
      */
     public void setNewUser(int userId) {
         mCurrentUserId = userId;
+        mVersion++;
+    }
+
+    /**
+     * Returns a number which changes whenever a network is put or removed, or when the map is
+     * cleared or switched to a new user. Callers can compare it to tell whether state derived
+     * from the map is stale. Networks modified in place are not tracked.
+     */
+    public int getVersion() {
+        return mVersion;
     }
 
     // RO methods:
@@ -128,7 +202,12 @@ public class ConfigurationMap {
         if (key == null) {
             return null;
         }
-        for (WifiConfiguration config : mPerIDForCurrentUser.values()) {
+        List<WifiConfiguration> configs = mPerProfileKeyForCurrentUser.get(key);
+        if (configs == null) {
+            return null;
+        }
+        for (WifiConfiguration config : configs) {
+            // Skip networks which were modified in place since they were indexed.
             if (TextUtils.equals(config.getProfileKey(), key)) {
                 return config;
             }
@@ -136,6 +215,29 @@ public class ConfigurationMap {
         return null;
     }
 
+    /**
+     * Retrieves the networks of the current user with the provided SSID.
+     *
+     * @param ssid SSID of the networks, in the same format as {@link WifiConfiguration#SSID}.
+     * @return list of matching networks, empty if none match.
+     */
+    public @NonNull List<WifiConfiguration> getBySsidForCurrentUser(String ssid) {
+        List<WifiConfiguration> matches = new ArrayList<>();
+        if (ssid == null) {
+            return matches;
+        }
+        List<WifiConfiguration> configs = mPerSsidForCurrentUser.get(ssid);
+        if (configs == null) {
+            return matches;
+        }
+        for (WifiConfiguration config : configs) {
+            if (TextUtils.equals(config.SSID, ssid)) {
+                matches.add(config);
+            }
+        }
+        return matches;
+    }
+
     /**
      * Retrieves the |WifiConfiguration| object matching the provided |scanResult| from the internal
      * map.
@@ -20,6 +20,9 @@ import android.text.TextUtils;
 
 import com.android.internal.annotations.VisibleForTesting;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Class for storing an IMSI (International Mobile Subscriber Identity) parameter.  The IMSI
  * contains number (up to 15) of numerical digits.  When an IMSI ends with a '*', the specified
@@ -122,6 +125,22 @@ public class IMSIParameter {
         return mImsi.startsWith(mccMnc);
     }
 
+    /**
+     * Return all the MCC-MNC combinations for which {@link #matchesMccMnc(String)} returns true.
+     *
+     * @return list of MCC-MNC strings
+     */
+    public List<String> getMatchingMccMncs() {
+        List<String> mccMncs = new ArrayList<>();
+        for (int length : new int[] {MCC_MNC_LENGTH_5, MCC_MNC_LENGTH_6}) {
+            if (mImsi.length() < length || (mPrefix && mImsi.length() != length)) {
+                continue;
+            }
+            mccMncs.add(mImsi.substring(0, length));
+        }
+        return mccMncs;
+    }
+
     /**
      * If the IMSI is full length.
      *
@@ -17,17 +17,17 @@
 package com.android.server.wifi;
 
 
+import android.os.SystemClock;
 import android.util.ArrayMap;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.util.FileTailReader;
 import com.android.server.wifi.util.FileUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.Map;
 
 /**
@@ -53,6 +53,10 @@ public class LastMileLogger {
 
     /**
      * Informs LastMileLogger that a connection event has occurred.
+     *
+     * The trace is only read when a connection fails or times out, and on dump. Connection
+     * attempts which succeed do not read it, so their trace lines are picked up by the next read,
+     * ahead of the mark of the failure which triggered it.
      * @param event an event defined in WifiDiagnostics
      */
     public void reportConnectionEvent(String ifaceName, byte event) {
@@ -68,9 +72,20 @@ public class LastMileLogger {
             disableTracing();
         }
 
-        if (event == WifiDiagnostics.CONNECTION_EVENT_FAILED
+        if (event == WifiDiagnostics.CONNECTION_EVENT_STARTED) {
+            mIfaceToConnectionStartTimeMs.put(ifaceName, SystemClock.elapsedRealtime());
+        } else if (event == WifiDiagnostics.CONNECTION_EVENT_FAILED
                 || event == WifiDiagnostics.CONNECTION_EVENT_TIMEOUT) {
-            mLastMileLogForLastFailure = readTrace();
+            pollTrace();
+            Long startTimeMs = mIfaceToConnectionStartTimeMs.remove(ifaceName);
+            mTraceReader.mark("--- " + ifaceName + " connection "
+                    + (event == WifiDiagnostics.CONNECTION_EVENT_FAILED ? "failed" : "timed out")
+                    + " at elapsedRealtime=" + SystemClock.elapsedRealtime()
+                    + (startTimeMs == null ? "" : ", started at elapsedRealtime=" + startTimeMs)
+                    + " ---");
+            mLastMileLogForLastFailure = mTraceReader.snapshot();
+        } else {
+            mIfaceToConnectionStartTimeMs.remove(ifaceName);
         }
     }
 
@@ -89,7 +104,8 @@ public class LastMileLogger {
      */
     public void dump(PrintWriter pw) {
         dumpInternal(pw, "Last failed last-mile log", mLastMileLogForLastFailure);
-        dumpInternal(pw, "Latest last-mile log", readTrace());
+        pollTrace();
+        dumpInternal(pw, "Latest last-mile log", mTraceReader.snapshot());
     }
 
     private static final String TAG = "LastMileLogger";
@@ -105,25 +121,33 @@ public class LastMileLogger {
             "/sys/kernel/debug/tracing/instances/wifi/tracing_on";
     private static final String WIFI_EVENT_RELEASE_PATH_DEBUGFS =
             "/sys/kernel/debug/tracing/instances/wifi/free_buffer";
+    // The kernel keeps 1 KB per CPU of binary trace data (see wifi.rc), this is enough to hold
+    // all of it once formatted.
+    private static final int TRACE_WINDOW_SIZE_BYTES = 64 * 1024;
 
-    private String mEventBufferPath;
     private String mEventEnablePath;
     private String mEventReleasePath;
     private WifiLog mLog;
     private byte[] mLastMileLogForLastFailure;
+    private FileTailReader mTraceReader;
     private FileInputStream mLastMileTraceHandle;
     /**
      * String key: iface name
      * byte value: Connection status, one of WifiDiagnostics.CONNECTION_EVENT_*
      */
     private final Map<String, Byte> mIfaceToConnectionStatus = new ArrayMap<>();
+    /**
+     * String key: iface name
+     * long value: elapsedRealtime of the pending connection attempt on that iface
+     */
+    private final Map<String, Long> mIfaceToConnectionStartTimeMs = new ArrayMap<>();
 
     private void initLastMileLogger(WifiInjector injector, String bufferPath, String enablePath,
                           String releasePath) {
         mLog = injector.makeLog(TAG);
-        mEventBufferPath = bufferPath;
         mEventEnablePath = enablePath;
         mEventReleasePath = releasePath;
+        mTraceReader = new FileTailReader(bufferPath, TRACE_WINDOW_SIZE_BYTES);
     }
 
     private void enableTracing() {
@@ -147,12 +171,11 @@ public class LastMileLogger {
         }
     }
 
-    private byte[] readTrace() {
+    private void pollTrace() {
         try {
-            return Files.readAllBytes(Paths.get(mEventBufferPath));
+            mTraceReader.poll();
         } catch (IOException e) {
             mLog.warn("Failed to read event trace: %").r(e.getMessage()).flush();
-            return new byte[0];
         }
     }
 
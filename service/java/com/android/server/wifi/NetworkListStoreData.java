@@ -68,6 +68,11 @@ public abstract class NetworkListStoreData implements WifiConfigStore.StoreData
      */
     private List<WifiConfiguration> mConfigurations;
 
+    /**
+     * Whether the network list was set since it was last serialized.
+     */
+    private boolean mHasNewDataToSerialize = false;
+
     NetworkListStoreData(Context context) {
         mContext = context;
     }
@@ -77,6 +82,30 @@ public abstract class NetworkListStoreData implements WifiConfigStore.StoreData
             @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
             throws XmlPullParserException, IOException {
         serializeNetworkList(out, mConfigurations, encryptionUtil);
+        mHasNewDataToSerialize = false;
+    }
+
+    /**
+     * The networks are copied, so that they can be serialized and their credentials encrypted
+     * on the write handler while they are being updated.
+     */
+    @Override
+    public @Nullable WifiConfigStore.DataSnapshot snapshotData() {
+        final List<WifiConfiguration> configurations;
+        if (mConfigurations == null) {
+            configurations = null;
+        } else {
+            configurations = new ArrayList<>(mConfigurations.size());
+            for (WifiConfiguration config : mConfigurations) {
+                WifiConfiguration copy = new WifiConfiguration(config);
+                // Not copied, but persisted.
+                copy.isMostRecentlyConnected = config.isMostRecentlyConnected;
+                configurations.add(copy);
+            }
+        }
+        mHasNewDataToSerialize = false;
+        return (out, encryptionUtil) ->
+                serializeNetworkList(out, configurations, encryptionUtil);
     }
 
     @Override
@@ -94,12 +123,12 @@ public abstract class NetworkListStoreData implements WifiConfigStore.StoreData
     @Override
     public void resetData() {
         mConfigurations = null;
+        mHasNewDataToSerialize = false;
     }
 
     @Override
     public boolean hasNewDataToSerialize() {
-        // always persist.
-        return true;
+        return mHasNewDataToSerialize;
     }
 
     @Override
@@ -107,8 +136,14 @@ public abstract class NetworkListStoreData implements WifiConfigStore.StoreData
         return XML_TAG_SECTION_HEADER_NETWORK_LIST;
     }
 
+    /**
+     * Set the list of networks to be persisted with the next write.
+     *
+     * @param configs List of {@link WifiConfiguration}
+     */
     public void setConfigurations(List<WifiConfiguration> configs) {
         mConfigurations = configs;
+        mHasNewDataToSerialize = true;
     }
 
     /**
@@ -29,7 +29,9 @@ import android.util.LocalLog;
 import com.android.modules.utils.HandlerExecutor;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RunnerHandler tracks all the Runnable jobs posted to the handler for the running time and
@@ -47,6 +49,9 @@ public class RunnerHandler extends Handler {
     private final WifiMetrics mWifiMetrics;
     private Set<String> mIgnoredClasses = new HashSet<>();
     private Set<String> mIgnoredMethods = new HashSet<>();
+    // Signatures of the Runnable classes which are only instantiated at one call site, such as
+    // lambdas, so that the stack is only walked the first time one of them is posted.
+    private final Map<Class<?>, String> mSignatureByCallbackClass = new ConcurrentHashMap<>();
 
     // TODO: b/246623192 Add Wifi metric for Runner state overruns.
     private final LocalLog mLocalLog;
@@ -73,50 +78,122 @@ public class RunnerHandler extends Handler {
         mIgnoredMethods.add("handleMessage");
     }
 
-    private String getSignature(StackTraceElement[] elements, Runnable callback) {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Returns the signature of the code posting |callback|, either from the cache, or by walking
+     * the stack of the current thread.
+     */
+    private String getSignature(Runnable callback) {
+        Class<?> callbackClass = callback != null ? callback.getClass() : null;
+        if (callbackClass != null) {
+            String signature = mSignatureByCallbackClass.get(callbackClass);
+            if (signature != null) {
+                return signature;
+            }
+        }
+        StackTraceElement caller = findCaller(new Throwable("RunnerHandler:").getStackTrace());
+        if (caller == null) {
+            // The callback is the lambada function posted as Runnable#run function.
+            // If we can't identify the caller from the stack trace, then we will use the symbol
+            // of the lambada function as the signature of the caller.
+            return callbackClass != null ? callbackClass.getName() : "<UNKNOWN>";
+        }
+        String signature = getShortClassName(caller.getClassName()) + "#"
+                + caller.getMethodName();
+        // Only cache the signature if the callback class is only instantiated at the call site
+        // that was found, so that it is the same for all instances of the class.
+        if (callbackClass != null
+                && caller.getClassName().equals(getCallSiteClassName(callbackClass))) {
+            mSignatureByCallbackClass.put(callbackClass, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the stack frame of the caller who scheduled the job, or null if it cannot be
+     * identified.
+     */
+    private StackTraceElement findCaller(StackTraceElement[] elements) {
         for (StackTraceElement e : elements) {
             // Go through the stack elements to find out the caller who schedule the job.
             // Ignore the stack frames generated with ignored classes and methods, until the stack
             // frame where the runnable job is posted to the handler.
             if (!mIgnoredClasses.contains(e.getClassName()) && !mIgnoredMethods.contains(
                     e.getMethodName())) {
-                String[] nameArr = e.getClassName().split("\\.", 5);
-                final int len = nameArr.length;
-                if (len > 0) {
-                    sb.append(nameArr[len - 1]).append("#").append(e.getMethodName());
-                    break;
-                }
+                return e;
             }
-            // The callback is the lambada function posted as Runnable#run function.
-            // If we can't identify the caller from the stack trace, then we will use the symbol
-            // of the lambada function as the signature of the caller.
             if (HandlerThread.class.getName().equals(e.getClassName())) {
-                sb.append(callback);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the class name without its first 4 package components, e.g. "ClientModeImpl" for
+     * "com.android.server.wifi.ClientModeImpl" and "hotspot2.PasspointManager" for
+     * "com.android.server.wifi.hotspot2.PasspointManager".
+     */
+    private static String getShortClassName(String className) {
+        int start = 0;
+        for (int i = 0; i < 4; i++) {
+            int dot = className.indexOf('.', start);
+            if (dot < 0) {
                 break;
             }
+            start = dot + 1;
         }
-        return sb.length() == 0 ? "<UNKNOWN>" : sb.toString();
+        return className.substring(start);
+    }
+
+    /**
+     * Returns the name of the class containing the single call site where instances of
+     * |callbackClass| are created, or null if they may be created at several call sites.
+     */
+    private static String getCallSiteClassName(Class<?> callbackClass) {
+        if (callbackClass.isAnonymousClass()) {
+            return callbackClass.getEnclosingClass().getName();
+        }
+        if (callbackClass.isSynthetic()) {
+            // Lambdas and method references are named <host class>$$<suffix>.
+            String name = callbackClass.getName();
+            int separator = name.indexOf("$$");
+            return separator > 0 ? name.substring(0, separator) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the signature in the message, unless it can be found in the cache at dispatch time.
+     */
+    private void putSignature(Message msg) {
+        Runnable callback = msg.getCallback();
+        if (callback != null && mSignatureByCallbackClass.containsKey(callback.getClass())) {
+            return;
+        }
+        msg.getData().putString(KEY_SIGNATURE, getSignature(callback));
     }
 
     @Override
     public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
-        String signature = getSignature(new Throwable("RunnerHandler:").getStackTrace(),
-                msg.getCallback());
-        Bundle bundle = msg.getData();
-        bundle.putString(KEY_SIGNATURE, signature);
+        putSignature(msg);
         return super.sendMessageAtTime(msg, uptimeMillis);
     }
 
     @Override
     public void dispatchMessage(@NonNull Message msg) {
-        final Bundle bundle = msg.getData();
-        final String signature = bundle.getString(KEY_SIGNATURE);
+        // Only look at the data if there is some, since getData() allocates it otherwise.
+        final Bundle bundle = msg.peekData();
+        final Runnable callback = msg.getCallback();
+        String signature = bundle != null ? bundle.getString(KEY_SIGNATURE) : null;
+        if (signature == null && callback != null) {
+            signature = mSignatureByCallbackClass.get(callback.getClass());
+        }
         if (signature != null) {
             Trace.traceBegin(Trace.TRACE_TAG_NETWORK, signature);
         }
         // The message sent to front of the queue has when=0, get from the bundle in that case.
-        final long when = msg.getWhen() != 0 ? msg.getWhen() : bundle.getLong(KEY_WHEN);
+        final long when = msg.getWhen() != 0 || bundle == null
+                ? msg.getWhen() : bundle.getLong(KEY_WHEN);
         final long start = SystemClock.uptimeMillis();
         final long scheduleLatency = start - when;
         super.dispatchMessage(msg);
@@ -146,11 +223,8 @@ public class RunnerHandler extends Handler {
      */
     public final boolean postToFront(@NonNull Runnable r) {
         Message msg = Message.obtain(this, r);
-        String signature = getSignature(new Throwable("RunnerHandler:").getStackTrace(),
-                msg.getCallback());
-        Bundle bundle = msg.getData();
-        bundle.putString(KEY_SIGNATURE, signature);
-        bundle.putLong(KEY_WHEN, SystemClock.uptimeMillis());
+        putSignature(msg);
+        msg.getData().putLong(KEY_WHEN, SystemClock.uptimeMillis());
         return sendMessageAtFrontOfQueue(msg);
     }
 }
@@ -25,11 +25,15 @@ import com.android.server.wifi.hotspot2.NetworkDetail;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 /**
  * Maps BSSIDs to their individual ScanDetails for a given WifiConfiguration.
+ *
+ * Entries are kept in the order in which they were last put into the cache, so that trimming
+ * only needs to drop entries from the head of the map. The most recent entry is tracked
+ * incrementally and only recomputed when it is removed or replaced.
  */
 public class ScanDetailCache {
 
@@ -39,14 +43,16 @@ public class ScanDetailCache {
     private final WifiConfiguration mConfig;
     private final int mMaxSize;
     private final int mTrimSize;
-    private final HashMap<String, ScanDetail> mMap;
+    private final LinkedHashMap<String, ScanDetail> mMap;
+    // Most recent entry as defined by |compareRecency|, or null if it needs to be recomputed.
+    private ScanDetail mMostRecent;
 
     /**
      * Scan Detail cache associated with each configured network.
      *
-     * The cache size is trimmed down to |trimSize| once it crosses the provided |maxSize|.
-     * Since this operation is relatively expensive, ensure that |maxSize| and |trimSize| are not
-     * too close to each other. |trimSize| should always be <= |maxSize|.
+     * The cache size is trimmed down to |trimSize| once it crosses the provided |maxSize|, by
+     * removing the entries which were least recently put into the cache. |trimSize| should
+     * always be <= |maxSize|.
      *
      * @param config   WifiConfiguration object corresponding to the network.
      * @param maxSize  Max size desired for the cache.
@@ -56,16 +62,32 @@ public class ScanDetailCache {
         mConfig = config;
         mMaxSize = maxSize;
         mTrimSize = trimSize;
-        mMap = new HashMap(16, 0.75f);
+        mMap = new LinkedHashMap<>(16, 0.75f);
     }
 
+    /**
+     * Add or refresh the provided ScanDetail. The entry is moved to the tail of the cache, so it
+     * will be the last one to be trimmed.
+     * This should also be invoked after updating the seen time or RSSI of a ScanDetail which is
+     * already in the cache.
+     */
     void put(ScanDetail scanDetail) {
-        // First check if we have reached |maxSize|. if yes, trim it down to |trimSize|.
-        if (mMap.size() >= mMaxSize) {
+        String bssid = scanDetail.getBSSIDString();
+        ScanDetail previous = mMap.remove(bssid);
+        if (previous == null && mMap.size() >= mMaxSize) {
+            // We have reached |maxSize|, trim it down to |trimSize|.
             trim();
         }
-
-        mMap.put(scanDetail.getBSSIDString(), scanDetail);
+        mMap.put(bssid, scanDetail);
+
+        if (previous != null && previous == mMostRecent) {
+            // The replaced entry may have been the most recent one, recompute lazily.
+            mMostRecent = null;
+        } else if (mMostRecent != null && compareRecency(scanDetail, mMostRecent) < 0) {
+            mMostRecent = scanDetail;
+        } else if (mMap.size() == 1) {
+            mMostRecent = scanDetail;
+        }
     }
 
     /**
@@ -90,7 +112,10 @@ public class ScanDetailCache {
     }
 
     void remove(@NonNull String bssid) {
-        mMap.remove(bssid);
+        ScanDetail removed = mMap.remove(bssid);
+        if (removed != null && removed == mMostRecent) {
+            mMostRecent = null;
+        }
     }
 
     int size() {
@@ -110,35 +135,21 @@ public class ScanDetailCache {
     }
 
     /**
-     * Method to reduce the cache to |mTrimSize| size by removing the oldest entries.
-     * TODO: Investigate if this method can be further optimized.
+     * Method to reduce the cache to |mTrimSize| size by removing the entries least recently put
+     * into the cache.
      */
     private void trim() {
-        int currentSize = mMap.size();
-        if (currentSize < mTrimSize) {
+        int numToRemove = mMap.size() - mTrimSize;
+        if (numToRemove <= 0) {
             return; // Nothing to trim
         }
-        ArrayList<ScanDetail> list = new ArrayList<ScanDetail>(mMap.values());
-        if (list.size() != 0) {
-            // Sort by ascending timestamp (oldest scan results first)
-            Collections.sort(list, new Comparator() {
-                public int compare(Object o1, Object o2) {
-                    ScanDetail a = (ScanDetail) o1;
-                    ScanDetail b = (ScanDetail) o2;
-                    if (a.getSeen() > b.getSeen()) {
-                        return 1;
-                    }
-                    if (a.getSeen() < b.getSeen()) {
-                        return -1;
-                    }
-                    return a.getBSSIDString().compareTo(b.getBSSIDString());
-                }
-            });
-        }
-        for (int i = 0; i < currentSize - mTrimSize; i++) {
-            // Remove oldest results from scan cache
-            ScanDetail result = list.get(i);
-            mMap.remove(result.getBSSIDString());
+        Iterator<ScanDetail> iter = mMap.values().iterator();
+        while (numToRemove-- > 0 && iter.hasNext()) {
+            ScanDetail removed = iter.next();
+            iter.remove();
+            if (removed == mMostRecent) {
+                mMostRecent = null;
+            }
         }
     }
 
@@ -146,11 +157,35 @@ public class ScanDetailCache {
      * Return the most recent ScanResult for this network, or null if non exists.
      */
     public ScanResult getMostRecentScanResult() {
-        ArrayList<ScanDetail> list = sort();
-        if (list.size() == 0) {
-            return null;
+        if (mMostRecent == null) {
+            for (ScanDetail scanDetail : mMap.values()) {
+                if (mMostRecent == null || compareRecency(scanDetail, mMostRecent) < 0) {
+                    mMostRecent = scanDetail;
+                }
+            }
         }
-        return list.get(0).getScanResult();
+        return mMostRecent == null ? null : mMostRecent.getScanResult();
+    }
+
+    /**
+     * Orders ScanDetails in descending order of timestamp, followed by descending order of RSSI.
+     */
+    private static int compareRecency(ScanDetail o1, ScanDetail o2) {
+        ScanResult a = o1.getScanResult();
+        ScanResult b = o2.getScanResult();
+        if (a.seen > b.seen) {
+            return -1;
+        }
+        if (a.seen < b.seen) {
+            return 1;
+        }
+        if (a.level > b.level) {
+            return -1;
+        }
+        if (a.level < b.level) {
+            return 1;
+        }
+        return a.BSSID.compareTo(b.BSSID);
     }
 
     /**
@@ -160,27 +195,7 @@ public class ScanDetailCache {
      **/
     private ArrayList<ScanDetail> sort() {
         ArrayList<ScanDetail> list = new ArrayList<ScanDetail>(mMap.values());
-        if (list.size() != 0) {
-            Collections.sort(list, new Comparator() {
-                public int compare(Object o1, Object o2) {
-                    ScanResult a = ((ScanDetail) o1).getScanResult();
-                    ScanResult b = ((ScanDetail) o2).getScanResult();
-                    if (a.seen > b.seen) {
-                        return -1;
-                    }
-                    if (a.seen < b.seen) {
-                        return 1;
-                    }
-                    if (a.level > b.level) {
-                        return -1;
-                    }
-                    if (a.level < b.level) {
-                        return 1;
-                    }
-                    return a.BSSID.compareTo(b.BSSID);
-                }
-            });
-        }
+        Collections.sort(list, ScanDetailCache::compareRecency);
         return list;
     }
 
@@ -50,6 +50,7 @@ import com.android.wifi.resources.R;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -77,7 +78,8 @@ import javax.annotation.concurrent.NotThreadSafe;
  *   {@link #SCAN_REQUEST_THROTTLE_TIME_WINDOW_FG_APPS_MS}.
  *  b) Background apps combined can request 1 scan every
  *   {@link #SCAN_REQUEST_THROTTLE_INTERVAL_BG_APPS_MS}.
- * Note: This class is not thread-safe. It needs to be invoked from the main Wifi thread only.
+ * Note: This class is not thread-safe. It needs to be invoked from the main Wifi thread only,
+ * except for {@link #getScanResultsSnapshot()}.
  */
 @NotThreadSafe
 public class ScanRequestProxy {
@@ -122,6 +124,19 @@ public class ScanRequestProxy {
     // Stored as a map of bssid -> ScanResult to allow other clients to perform ScanResult lookup
     // for bssid more efficiently.
     private final Map<String, ScanResult> mLastScanResultsMap = new HashMap<>();
+    // Immutable copy of the values of |mLastScanResultsMap|, published whenever they change so
+    // that it can be read from any thread. The same list is shared until the next change.
+    private volatile List<ScanResult> mScanResultsSnapshot = Collections.emptyList();
+    // Security types observed in |mLastScanResultsMap|, indexed by quoted SSID. Each value is a
+    // bitmask of the SECURITY_IN_RANGE_* flags below. Rebuilt whenever the scan results change.
+    private final Map<String, Integer> mLastScanResultsSecurityIndex = new HashMap<>();
+    private static final int SECURITY_IN_RANGE_PSK_ONLY = 1 << 0;
+    private static final int SECURITY_IN_RANGE_SAE_ONLY = 1 << 1;
+    private static final int SECURITY_IN_RANGE_PSK_SAE_TRANSITION = 1 << 2;
+    private static final int SECURITY_IN_RANGE_OPEN_ONLY = 1 << 3;
+    private static final int SECURITY_IN_RANGE_OWE_ONLY = 1 << 4;
+    private static final int SECURITY_IN_RANGE_WPA2_ENTERPRISE_ONLY = 1 << 5;
+    private static final int SECURITY_IN_RANGE_WPA3_ENTERPRISE_ONLY = 1 << 6;
     // external ScanResultCallback tracker
     private final RemoteCallbackList<IScanResultsCallback> mRegisteredScanResultsCallbacks;
     private class GlobalScanListener implements WifiScanner.ScanListener {
@@ -165,6 +180,9 @@ public class ScanRequestProxy {
                         mLastScanResultsMap.put(s.BSSID, s);
                     }
                 });
+                updateScanResultsSecurityIndex();
+                mScanResultsSnapshot =
+                        Collections.unmodifiableList(new ArrayList<>(mLastScanResultsMap.values()));
                 sendScanResultBroadcast(true);
                 sendScanResultsAvailableToCallbacks();
             }
@@ -548,7 +566,19 @@ public class ScanRequestProxy {
      */
     public List<ScanResult> getScanResults() {
         // return a copy to prevent external modification
-        return new ArrayList<>(mLastScanResultsMap.values());
+        return new ArrayList<>(mScanResultsSnapshot);
+    }
+
+    /**
+     * Return the results of the most recent access point scan as an unmodifiable list, which is
+     * shared by all callers until the scan results change.
+     *
+     * Unlike the other methods of this class, this can be called from any thread, so that binder
+     * threads do not need to wait for the main Wifi thread to read the scan results.
+     * @return the list of results
+     */
+    public @NonNull List<ScanResult> getScanResultsSnapshot() {
+        return mScanResultsSnapshot;
     }
 
     /**
@@ -571,6 +601,8 @@ public class ScanRequestProxy {
     private void clearScanResults() {
         synchronized (mThrottleEnabledLock) {
             mLastScanResultsMap.clear();
+            mLastScanResultsSecurityIndex.clear();
+            mScanResultsSnapshot = Collections.emptyList();
             mLastScanTimestampForBgApps = 0;
             mLastScanTimestampsForFgApps.clear();
         }
@@ -647,52 +679,92 @@ public class ScanRequestProxy {
         }
     }
 
+    /**
+     * Rebuild |mLastScanResultsSecurityIndex| from |mLastScanResultsMap|, so that the
+     * "network in range" queries below don't need to walk every scan result.
+     */
+    private void updateScanResultsSecurityIndex() {
+        mLastScanResultsSecurityIndex.clear();
+        for (ScanResult r : mLastScanResultsMap.values()) {
+            if (r.getWifiSsid() != null) {
+                addToScanResultsSecurityIndex(r.getWifiSsid().toString(), getSecurityFlags(r));
+            }
+            // Transition mode networks have historically been matched against the quoted
+            // ScanResult#SSID, which differs from the WifiSsid string for non-UTF-8 SSIDs.
+            if (ScanResultUtil.isScanResultForPskSaeTransitionNetwork(r)) {
+                addToScanResultsSecurityIndex(ScanResultUtil.createQuotedSsid(r.SSID),
+                        SECURITY_IN_RANGE_PSK_SAE_TRANSITION);
+            }
+        }
+    }
+
+    private void addToScanResultsSecurityIndex(String ssid, int flags) {
+        if (flags == 0) return;
+        Integer existingFlags = mLastScanResultsSecurityIndex.get(ssid);
+        mLastScanResultsSecurityIndex.put(ssid,
+                existingFlags == null ? flags : existingFlags | flags);
+    }
+
+    private static int getSecurityFlags(ScanResult r) {
+        int flags = 0;
+        if (ScanResultUtil.isScanResultForPskOnlyNetwork(r)) {
+            flags |= SECURITY_IN_RANGE_PSK_ONLY;
+        }
+        if (ScanResultUtil.isScanResultForSaeOnlyNetwork(r)) {
+            flags |= SECURITY_IN_RANGE_SAE_ONLY;
+        }
+        if (ScanResultUtil.isScanResultForOpenOnlyNetwork(r)) {
+            flags |= SECURITY_IN_RANGE_OPEN_ONLY;
+        }
+        if (ScanResultUtil.isScanResultForOweOnlyNetwork(r)) {
+            flags |= SECURITY_IN_RANGE_OWE_ONLY;
+        }
+        if (ScanResultUtil.isScanResultForWpa2EnterpriseOnlyNetwork(r)) {
+            flags |= SECURITY_IN_RANGE_WPA2_ENTERPRISE_ONLY;
+        }
+        if (ScanResultUtil.isScanResultForWpa3EnterpriseOnlyNetwork(r)) {
+            flags |= SECURITY_IN_RANGE_WPA3_ENTERPRISE_ONLY;
+        }
+        return flags;
+    }
+
+    private boolean isSecurityTypeInRange(String ssid, int flag) {
+        Integer flags = mLastScanResultsSecurityIndex.get(ssid);
+        return flags != null && (flags & flag) != 0;
+    }
+
     /** Indicate whether there are WPA2 personal only networks. */
     public boolean isWpa2PersonalOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForPskOnlyNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_PSK_ONLY);
     }
 
     /** Indicate whether there are WPA3 only networks. */
     public boolean isWpa3PersonalOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForSaeOnlyNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_SAE_ONLY);
     }
 
     /** Indicate whether there are WPA2/WPA3 transition mode networks. */
     public boolean isWpa2Wpa3PersonalTransitionNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, ScanResultUtil.createQuotedSsid(r.SSID))
-                        && ScanResultUtil.isScanResultForPskSaeTransitionNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_PSK_SAE_TRANSITION);
     }
 
     /** Indicate whether there are OPEN only networks. */
     public boolean isOpenOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForOpenOnlyNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_OPEN_ONLY);
     }
 
     /** Indicate whether there are OWE only networks. */
     public boolean isOweOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForOweOnlyNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_OWE_ONLY);
     }
 
     /** Indicate whether there are WPA2 Enterprise only networks. */
     public boolean isWpa2EnterpriseOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForWpa2EnterpriseOnlyNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_WPA2_ENTERPRISE_ONLY);
     }
 
     /** Indicate whether there are WPA3 Enterprise only networks. */
     public boolean isWpa3EnterpriseOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForWpa3EnterpriseOnlyNetwork(r));
+        return isSecurityTypeInRange(ssid, SECURITY_IN_RANGE_WPA3_ENTERPRISE_ONLY);
     }
 }
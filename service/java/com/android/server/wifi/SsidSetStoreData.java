@@ -64,6 +64,13 @@ public class SsidSetStoreData implements WifiConfigStore.StoreData {
          * @param ssidSet The set of SSIDs
          */
         void setSsids(Set<String> ssidSet);
+
+        /**
+         * Whether the SSID set has changed since it was last retrieved with {@link #getSsids()}.
+         *
+         * @return true if the SSID set has changed, false otherwise.
+         */
+        boolean hasNewDataToSerialize();
     }
 
     /**
@@ -83,7 +90,7 @@ public class SsidSetStoreData implements WifiConfigStore.StoreData {
             throws XmlPullParserException, IOException {
         Set<String> ssidSet = mDataSource.getSsids();
         if (ssidSet != null && !ssidSet.isEmpty()) {
-            XmlUtil.writeNextValue(out, XML_TAG_SSID_SET, mDataSource.getSsids());
+            XmlUtil.writeNextValue(out, XML_TAG_SSID_SET, ssidSet);
         }
     }
 
@@ -120,8 +127,7 @@ public class SsidSetStoreData implements WifiConfigStore.StoreData {
 
     @Override
     public boolean hasNewDataToSerialize() {
-        // always persist.
-        return true;
+        return mDataSource.hasNewDataToSerialize();
     }
 
     @Override
@@ -35,6 +35,7 @@ public class VelocityBasedConnectedScore extends ConnectedScore {
     private int mFrequency = ScanResult.BAND_5_GHZ_START_FREQ_MHZ;
     private double mThresholdAdjustment;
     private final KalmanFilter mFilter;
+    private final Matrix mObservation = new Matrix(1, 1);
     private long mLastMillis;
 
     public VelocityBasedConnectedScore(ScoringParams scoringParams, Clock clock) {
@@ -43,6 +44,8 @@ public class VelocityBasedConnectedScore extends ConnectedScore {
         mFilter = new KalmanFilter();
         mFilter.mH = new Matrix(2, new double[]{1.0, 0.0});
         mFilter.mR = new Matrix(1, new double[]{1.0});
+        mFilter.mF = new Matrix(2, 2);
+        mFilter.mQ = new Matrix(2, 2);
     }
 
     /**
@@ -52,12 +55,18 @@ public class VelocityBasedConnectedScore extends ConnectedScore {
      * @param dt delta time, in seconds
      */
     private void setDeltaTimeSeconds(double dt) {
-        mFilter.mF = new Matrix(2, new double[]{1.0, dt, 0.0, 1.0});
-        Matrix tG = new Matrix(1, new double[]{0.5 * dt * dt, dt});
+        mFilter.mF.put(0, 0, 1.0);
+        mFilter.mF.put(0, 1, dt);
+        mFilter.mF.put(1, 0, 0.0);
+        mFilter.mF.put(1, 1, 1.0);
+        // Q = G G' stda^2, with G = [dt^2 / 2, dt]'
+        double[] tG = {0.5 * dt * dt, dt};
         double stda = 0.02; // standard deviation of modelled acceleration
-        mFilter.mQ = tG.dotTranspose(tG).dot(new Matrix(2, new double[]{
-                stda * stda, 0.0,
-                0.0, stda * stda}));
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                mFilter.mQ.put(i, j, tG[i] * tG[j] * (stda * stda));
+            }
+        }
     }
     /**
      * Reset the filter state.
@@ -92,7 +101,8 @@ public class VelocityBasedConnectedScore extends ConnectedScore {
                 mFilter.mR.put(0, 0, standardDeviation * standardDeviation);
                 setDeltaTimeSeconds(dt);
                 mFilter.predict();
-                mFilter.update(new Matrix(1, new double[]{rssi}));
+                mObservation.put(0, 0, rssi);
+                mFilter.update(mObservation);
             }
             mLastMillis = millis;
             mFilteredRssi = mFilter.mx.get(0, 0);
@@ -181,11 +191,9 @@ public class VelocityBasedConnectedScore extends ConnectedScore {
         if (mFilter.mx == null) return transitionScore + 1;
         double badRssi = getAdjustedRssiThreshold();
         double horizonSeconds = mScoringParams.getHorizonSeconds();
-        Matrix x = new Matrix(mFilter.mx);
-        double filteredRssi = x.get(0, 0);
-        setDeltaTimeSeconds(horizonSeconds);
-        x = mFilter.mF.dot(x);
-        double forecastRssi = x.get(0, 0);
+        double filteredRssi = mFilter.mx.get(0, 0);
+        // First row of the state transition for the horizon, without touching the filter.
+        double forecastRssi = filteredRssi + horizonSeconds * mFilter.mx.get(1, 0);
         if (forecastRssi > filteredRssi) {
             forecastRssi = filteredRssi; // Be pessimistic about predicting an actual increase
         }
@@ -59,6 +59,12 @@ public class WakeupConfigStoreData implements StoreData {
     private final DataSource<Set<ScanResultMatchInfo>> mNetworkDataSource;
     private boolean mHasBeenRead = false;
 
+    // State of the data sources when last serialized or read, null if it is not in the store.
+    private Boolean mStoredIsActive;
+    private Boolean mStoredIsOnboarded;
+    private Integer mStoredNotificationsShown;
+    private Set<ScanResultMatchInfo> mStoredNetworks;
+
     /**
      * Interface defining a data source for the store data.
      *
@@ -111,6 +117,17 @@ public class WakeupConfigStoreData implements StoreData {
         for (ScanResultMatchInfo scanResultMatchInfo : mNetworkDataSource.getData()) {
             writeNetwork(out, scanResultMatchInfo);
         }
+        updateStoredState();
+    }
+
+    /**
+     * Records the current state of the data sources as the state in the store.
+     */
+    private void updateStoredState() {
+        mStoredIsActive = mIsActiveDataSource.getData();
+        mStoredIsOnboarded = mIsOnboardedDataSource.getData();
+        mStoredNotificationsShown = mNotificationsDataSource.getData();
+        mStoredNetworks = new ArraySet<>(mNetworkDataSource.getData());
     }
 
     /**
@@ -202,6 +219,7 @@ public class WakeupConfigStoreData implements StoreData {
         }
 
         mNetworkDataSource.setData(networks);
+        updateStoredState();
     }
 
     /**
@@ -353,12 +371,19 @@ public class WakeupConfigStoreData implements StoreData {
         mIsActiveDataSource.setData(false);
         mIsOnboardedDataSource.setData(false);
         mNotificationsDataSource.setData(0);
+        mStoredIsActive = null;
+        mStoredIsOnboarded = null;
+        mStoredNotificationsShown = null;
+        mStoredNetworks = null;
     }
 
     @Override
     public boolean hasNewDataToSerialize() {
-        // always persist.
-        return true;
+        return mStoredNetworks == null
+                || !mStoredIsActive.equals(mIsActiveDataSource.getData())
+                || !mStoredIsOnboarded.equals(mIsOnboardedDataSource.getData())
+                || !mStoredNotificationsShown.equals(mNotificationsDataSource.getData())
+                || !mStoredNetworks.equals(mNetworkDataSource.getData());
     }
 
     @Override
@@ -369,7 +369,7 @@ public class WifiApConfigStore {
             mLastConfiguredPassphrase = config.getPassphrase();
         }
         mHasNewDataToSerialize = true;
-        mWifiConfigManager.saveToStore(true);
+        mWifiConfigManager.saveModuleDataToStore(true);
         mBackupManagerProxy.notifyDataChanged();
     }
 
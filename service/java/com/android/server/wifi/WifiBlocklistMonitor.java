@@ -20,6 +20,7 @@ import static android.net.wifi.WifiConfiguration.NetworkSelectionStatus.DISABLE_
 
 import android.annotation.IntDef;
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.content.Context;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiConfiguration;
@@ -45,15 +46,15 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * This class manages the addition and removal of BSSIDs to the BSSID blocklist, which is used
@@ -138,6 +139,13 @@ public class WifiBlocklistMonitor {
 
     // Map of bssid to BssidStatus
     private Map<String, BssidStatus> mBssidStatusMap = new ArrayMap<>();
+    // Indexes of the entries of |mBssidStatusMap|, kept in sync by putBssidStatus() and
+    // removeBssidStatus(): all entries per SSID, and the blocked entries by expiry time.
+    private final Map<String, Set<BssidStatus>> mBssidStatusesBySsid = new ArrayMap<>();
+    private final PriorityQueue<BssidStatus> mBlocklistExpiryQueue = new PriorityQueue<>(
+            Comparator.comparingLong(status -> status.blocklistEndTimeMs));
+    private final Set<String> mBlockedBssids = new ArraySet<>();
+    private final Set<String> mBlockedBssidsView = Collections.unmodifiableSet(mBlockedBssids);
     private Set<String> mDisabledSsids = new ArraySet<>();
 
     // Internal logger to make sure imporatant logs do not get lost.
@@ -303,7 +311,13 @@ public class WifiBlocklistMonitor {
 
     private void addToBlocklist(@NonNull BssidStatus entry, long durationMs,
             @FailureReason int reason, int rssi) {
+        // The expiry time is about to change, so take the entry out of the queue first.
+        if (entry.isInBlocklist) {
+            mBlocklistExpiryQueue.remove(entry);
+        }
         entry.setAsBlocked(durationMs, reason, rssi);
+        mBlocklistExpiryQueue.add(entry);
+        mBlockedBssids.add(entry.bssid);
         localLog(TAG + " addToBlocklist: bssid=" + entry.bssid + ", ssid=" + entry.ssid
                 + ", durationMs=" + durationMs + ", reason=" + getFailureReasonString(reason)
                 + ", rssi=" + rssi);
@@ -333,11 +347,49 @@ public class WifiBlocklistMonitor {
                         + status.ssid + " to " + ssid);
             }
             status = new BssidStatus(bssid, ssid);
-            mBssidStatusMap.put(bssid, status);
+            putBssidStatus(status);
         }
         return status;
     }
 
+    /**
+     * Adds the entry to |mBssidStatusMap| and its indexes, replacing any entry for the same BSSID.
+     */
+    private void putBssidStatus(@NonNull BssidStatus status) {
+        BssidStatus old = mBssidStatusMap.put(status.bssid, status);
+        if (old != null) {
+            removeFromIndexes(old);
+        }
+        mBssidStatusesBySsid.computeIfAbsent(status.ssid, k -> new ArraySet<>()).add(status);
+    }
+
+    /**
+     * Removes the entry from |mBssidStatusMap| and its indexes.
+     */
+    private void removeBssidStatus(@NonNull BssidStatus status) {
+        mBssidStatusMap.remove(status.bssid);
+        removeFromIndexes(status);
+    }
+
+    private void removeFromIndexes(@NonNull BssidStatus status) {
+        Set<BssidStatus> statusesForSsid = mBssidStatusesBySsid.get(status.ssid);
+        if (statusesForSsid != null) {
+            statusesForSsid.remove(status);
+            if (statusesForSsid.isEmpty()) {
+                mBssidStatusesBySsid.remove(status.ssid);
+            }
+        }
+        if (status.isInBlocklist) {
+            mBlocklistExpiryQueue.remove(status);
+            mBlockedBssids.remove(status.bssid);
+        }
+    }
+
+    private @NonNull Set<BssidStatus> getBssidStatusesForSsid(@Nullable String ssid) {
+        Set<BssidStatus> statuses = mBssidStatusesBySsid.get(ssid);
+        return statuses == null ? Collections.emptySet() : statuses;
+    }
+
     /**
      * Set a list of SSIDs that will always be enabled for network selection.
      */
@@ -686,7 +738,7 @@ public class WifiBlocklistMonitor {
 
         if (status.isInBlocklist) {
             mBssidBlocklistMonitorLogger.logBssidUnblocked(status, reasonString);
-            mBssidStatusMap.remove(bssid);
+            removeBssidStatus(status);
         }
     }
 
@@ -728,18 +780,10 @@ public class WifiBlocklistMonitor {
      */
     public void clearBssidBlocklistForSsid(@NonNull String ssid) {
         int prevSize = mBssidStatusMap.size();
-        mBssidStatusMap.entrySet().removeIf(e -> {
-            BssidStatus status = e.getValue();
-            if (status.ssid == null) {
-                return false;
-            }
-            if (status.ssid.equals(ssid)) {
-                mBssidBlocklistMonitorLogger.logBssidUnblocked(
-                        status, "clearBssidBlocklistForSsid");
-                return true;
-            }
-            return false;
-        });
+        for (BssidStatus status : new ArrayList<>(getBssidStatusesForSsid(ssid))) {
+            mBssidBlocklistMonitorLogger.logBssidUnblocked(status, "clearBssidBlocklistForSsid");
+            removeBssidStatus(status);
+        }
         int diff = prevSize - mBssidStatusMap.size();
         if (diff > 0) {
             localLog(TAG + " clearBssidBlocklistForSsid: SSID=" + ssid
@@ -757,6 +801,9 @@ public class WifiBlocklistMonitor {
                 mBssidBlocklistMonitorLogger.logBssidUnblocked(status, "clearBssidBlocklist");
             }
             mBssidStatusMap.clear();
+            mBssidStatusesBySsid.clear();
+            mBlocklistExpiryQueue.clear();
+            mBlockedBssids.clear();
             localLog(TAG + " clearBssidBlocklist: num BSSIDs cleared="
                     + (prevSize - mBssidStatusMap.size()));
         }
@@ -768,17 +815,26 @@ public class WifiBlocklistMonitor {
      * @return the number of BSSIDs currently in the blocklist for the |ssid|.
      */
     public int updateAndGetNumBlockedBssidsForSsid(@NonNull String ssid) {
-        return (int) updateAndGetBssidBlocklistInternal()
-                .filter(entry -> ssid.equals(entry.ssid)).count();
+        removeExpiredBlocklistEntries();
+        return getNumBlockedBssidsForSsid(ssid);
+    }
+
+    private int getNumBlockedBssidsForSsid(@Nullable String ssid) {
+        int count = 0;
+        for (BssidStatus status : getBssidStatusesForSsid(ssid)) {
+            if (status.isInBlocklist) {
+                count++;
+            }
+        }
+        return count;
     }
 
     private int getNumBlockedBssidsForSsids(@NonNull Set<String> ssids) {
-        if (ssids.isEmpty()) {
-            return 0;
+        int count = 0;
+        for (String ssid : ssids) {
+            count += getNumBlockedBssidsForSsid(ssid);
         }
-        return (int) mBssidStatusMap.values().stream()
-                .filter(entry -> entry.isInBlocklist && ssids.contains(entry.ssid))
-                .count();
+        return count;
     }
 
     /**
@@ -799,12 +855,12 @@ public class WifiBlocklistMonitor {
 
     /**
      * Gets the BSSIDs that are currently in the blocklist.
-     * @return Set of BSSIDs currently in the blocklist
+     * @return Set of BSSIDs currently in the blocklist. This is a read-only view which changes
+     * with the blocklist, copy it to keep the current contents.
      */
     public Set<String> updateAndGetBssidBlocklist() {
-        return updateAndGetBssidBlocklistInternal()
-                .map(entry -> entry.bssid)
-                .collect(Collectors.toSet());
+        removeExpiredBlocklistEntries();
+        return mBlockedBssidsView;
     }
 
     /**
@@ -815,10 +871,13 @@ public class WifiBlocklistMonitor {
         if (ssid == null) {
             return Collections.emptySet();
         }
-        return mBssidStatusMap.values().stream()
-                .filter(entry -> entry.isInBlocklist && ssid.equals(entry.ssid))
-                .map(entry -> entry.blockReason)
-                .collect(Collectors.toSet());
+        Set<Integer> reasons = new ArraySet<>();
+        for (BssidStatus status : getBssidStatusesForSsid(ssid)) {
+            if (status.isInBlocklist) {
+                reasons.add(status.blockReason);
+            }
+        }
+        return reasons;
     }
 
     /**
@@ -865,25 +924,18 @@ public class WifiBlocklistMonitor {
     }
 
     /**
-     * Removes expired BssidStatus entries and then return remaining entries in the blocklist.
-     * @return Stream of BssidStatus for BSSIDs that are in the blocklist.
+     * Removes the BssidStatus entries whose blocklist duration has expired. Only the expired
+     * entries are visited.
      */
-    private Stream<BssidStatus> updateAndGetBssidBlocklistInternal() {
-        Stream.Builder<BssidStatus> builder = Stream.builder();
+    private void removeExpiredBlocklistEntries() {
         long curTime = mClock.getWallClockMillis();
-        mBssidStatusMap.entrySet().removeIf(e -> {
-            BssidStatus status = e.getValue();
-            if (status.isInBlocklist) {
-                if (status.blocklistEndTimeMs < curTime) {
-                    mBssidBlocklistMonitorLogger.logBssidUnblocked(
-                            status, "updateAndGetBssidBlocklistInternal");
-                    return true;
-                }
-                builder.accept(status);
-            }
-            return false;
-        });
-        return builder.build();
+        BssidStatus status;
+        while ((status = mBlocklistExpiryQueue.peek()) != null
+                && status.blocklistEndTimeMs < curTime) {
+            mBssidBlocklistMonitorLogger.logBssidUnblocked(
+                    status, "updateAndGetBssidBlocklistInternal");
+            removeBssidStatus(status);
+        }
     }
 
     /**
@@ -895,11 +947,21 @@ public class WifiBlocklistMonitor {
         if (!mConnectivityHelper.isFirmwareRoamingSupported()) {
             return;
         }
-        ArrayList<String> bssidBlocklist = updateAndGetBssidBlocklistInternal()
-                .filter(entry -> ssids.contains(entry.ssid))
-                .sorted((o1, o2) -> (int) (o2.blocklistEndTimeMs - o1.blocklistEndTimeMs))
-                .map(entry -> entry.bssid)
-                .collect(Collectors.toCollection(ArrayList::new));
+        removeExpiredBlocklistEntries();
+        List<BssidStatus> blockedStatuses = new ArrayList<>();
+        for (String ssid : ssids) {
+            for (BssidStatus status : getBssidStatusesForSsid(ssid)) {
+                if (status.isInBlocklist) {
+                    blockedStatuses.add(status);
+                }
+            }
+        }
+        blockedStatuses.sort((o1, o2) -> Long.compare(o2.blocklistEndTimeMs,
+                o1.blocklistEndTimeMs));
+        ArrayList<String> bssidBlocklist = new ArrayList<>(blockedStatuses.size());
+        for (BssidStatus status : blockedStatuses) {
+            bssidBlocklist.add(status.bssid);
+        }
         int fwMaxBlocklistSize = mConnectivityHelper.getMaxNumBlocklistBssid();
         if (fwMaxBlocklistSize <= 0) {
             Log.e(TAG, "Invalid max BSSID blocklist size:  " + fwMaxBlocklistSize);
@@ -177,6 +177,11 @@ public class WifiConfigManager {
          */
         default void onSecurityParamsUpdate(@NonNull WifiConfiguration oldConfig,
                 List<SecurityParams> securityParams) { }
+
+        /**
+         * Invoked when the order of the most recently connected networks changed.
+         */
+        default void onNetworkConnectionOrderChanged() { }
     }
     /**
      * Max size of scan details to cache in {@link #mScanDetailCaches}.
@@ -297,6 +302,31 @@ public class WifiConfigManager {
      * Map of configured networks with network id as the key.
      */
     private final ConfigurationMap mConfiguredNetworks;
+    /**
+     * Shared read-only copy of the configured networks, see
+     * {@link #getConfiguredNetworksSnapshot()}. Null when it needs to be rebuilt.
+     */
+    private List<WifiConfiguration> mConfiguredNetworksSnapshot;
+    /**
+     * Version of {@link #mConfiguredNetworks} that {@link #mConfiguredNetworksSnapshot} was built
+     * from.
+     */
+    private int mConfiguredNetworksSnapshotVersion;
+    /**
+     * Saved networks published for readers on other threads, see
+     * {@link #getSavedNetworksSnapshot(int)}.
+     */
+    private volatile List<WifiConfiguration> mSavedNetworksSnapshot = Collections.emptyList();
+    /**
+     * Version of {@link #mConfiguredNetworks} that the network lists were last handed to the
+     * config store from, see {@link #saveToStore(boolean, boolean)}.
+     */
+    private int mStoredConfiguredNetworksVersion = -1;
+    /**
+     * Whether saved networks were changed in place by a module that may only save its own data
+     * with {@link #saveModuleDataToStore(boolean)}.
+     */
+    private boolean mHasNetworkChangesToSave = false;
     /**
      * Stores a map of NetworkId to ScanDetailCache.
      */
@@ -553,6 +583,7 @@ public class WifiConfigManager {
             } catch (IllegalArgumentException e) {
                 Log.e(TAG, "Error creating randomized MAC address from stored value.");
                 mRandomizedMacAddressMapping.remove(config.getNetworkKey());
+                mRandomizedMacStoreData.setMacMapping(mRandomizedMacAddressMapping);
             }
         }
         MacAddress result = mMacAddressUtil.calculatePersistentMacForSta(config.getNetworkKey(),
@@ -762,6 +793,80 @@ public class WifiConfigManager {
         return getConfiguredNetworks(false, true, Process.WIFI_UID);
     }
 
+    /**
+     * Retrieves a shared, read-only list of all configured networks with passwords masked.
+     *
+     * Unlike {@link #getConfiguredNetworks()}, the configurations are only copied again after a
+     * network is added, updated or removed, or its status changes. This is meant for internal
+     * readers which scan the configured networks on every scan or periodic check. Callers must
+     * not modify the returned configurations, nor hand them out to external apps without
+     * copying them.
+     *
+     * Fields which are updated in place without persisting the network, like the candidate scan
+     * result, may be stale. Use {@link #getConfiguredNetwork(int)} for those.
+     *
+     * @return Unmodifiable list of WifiConfiguration objects representing the networks.
+     */
+    public @NonNull List<WifiConfiguration> getConfiguredNetworksSnapshot() {
+        if (mConfiguredNetworksSnapshot == null
+                || mConfiguredNetworksSnapshotVersion != mConfiguredNetworks.getVersion()) {
+            mConfiguredNetworksSnapshotVersion = mConfiguredNetworks.getVersion();
+            mConfiguredNetworksSnapshot = Collections.unmodifiableList(
+                    getConfiguredNetworks(false, true, Process.WIFI_UID));
+        }
+        return mConfiguredNetworksSnapshot;
+    }
+
+    /**
+     * Drops the snapshot returned by {@link #getConfiguredNetworksSnapshot()} after a network
+     * was modified in place, so that it is rebuilt on the next read.
+     */
+    private void invalidateConfiguredNetworksSnapshot() {
+        mConfiguredNetworksSnapshot = null;
+    }
+
+    /**
+     * Retrieves the list of saved networks with the passwords masked, as of the last
+     * {@link WifiManager#CONFIGURED_NETWORKS_CHANGED_ACTION} broadcast or user switch.
+     *
+     * Unlike {@link #getSavedNetworks(int)}, this can be called from any thread, so that binder
+     * threads do not need to wait for the main Wifi thread to read the saved networks. Callers
+     * must not modify the returned configurations.
+     *
+     * @param targetUid Target UID for MAC address reading, see {@link #getSavedNetworks(int)}.
+     * @return List of WifiConfiguration objects representing the networks.
+     */
+    public @NonNull List<WifiConfiguration> getSavedNetworksSnapshot(int targetUid) {
+        List<WifiConfiguration> networks = mSavedNetworksSnapshot;
+        if (targetUid == Process.WIFI_UID || targetUid == Process.SYSTEM_UID) {
+            return networks;
+        }
+        List<WifiConfiguration> maskedNetworks = new ArrayList<>(networks.size());
+        for (WifiConfiguration network : networks) {
+            if (targetUid != network.creatorUid) {
+                network = new WifiConfiguration(network);
+                maskRandomizedMacAddressInWifiConfiguration(network);
+            }
+            maskedNetworks.add(network);
+        }
+        return maskedNetworks;
+    }
+
+    /**
+     * Publishes the saved networks returned by {@link #getSavedNetworksSnapshot(int)}, sharing
+     * the configurations of {@link #getConfiguredNetworksSnapshot()}.
+     */
+    private void publishSavedNetworksSnapshot() {
+        List<WifiConfiguration> savedNetworks = new ArrayList<>();
+        for (WifiConfiguration config : getConfiguredNetworksSnapshot()) {
+            if (config.ephemeral || config.isPasspoint()) {
+                continue;
+            }
+            savedNetworks.add(config);
+        }
+        mSavedNetworksSnapshot = Collections.unmodifiableList(savedNetworks);
+    }
+
     /**
      * Retrieves the list of all configured networks with the passwords in plaintext.
      *
@@ -968,6 +1073,8 @@ public class WifiConfigManager {
      */
     private void sendConfiguredNetworkChangedBroadcast(int reason,
             @Nullable WifiConfiguration config) {
+        invalidateConfiguredNetworksSnapshot();
+        publishSavedNetworksSnapshot();
         Intent intent = new Intent(WifiManager.CONFIGURED_NETWORKS_CHANGED_ACTION);
         intent.addFlags(Intent.FLAG_RECEIVER_REGISTERED_ONLY_BEFORE_BOOT);
         intent.putExtra(WifiManager.EXTRA_MULTIPLE_NETWORKS_CHANGED, true);
@@ -1854,6 +1961,9 @@ public class WifiConfigManager {
         }
         if (!config.ephemeral && !config.isPasspoint()) {
             mLruConnectionTracker.removeNetwork(config);
+            for (OnNetworkUpdateListener listener : mListeners) {
+                listener.onNetworkConnectionOrderChanged();
+            }
         }
         sendConfiguredNetworkChangedBroadcast(WifiManager.CHANGE_REASON_REMOVED, config);
         // Unless the removed network is ephemeral or Passpoint, persist the network removal.
@@ -2304,6 +2414,9 @@ public class WifiConfigManager {
         // Only record connection order for non-passpoint from user saved or suggestion.
         if (!config.isPasspoint() && (config.fromWifiNetworkSuggestion || !config.ephemeral)) {
             mLruConnectionTracker.addNetwork(config);
+            for (OnNetworkUpdateListener listener : mListeners) {
+                listener.onNetworkConnectionOrderChanged();
+            }
         }
         if (shouldSetUserConnectChoice) {
             setUserConnectChoice(config.networkId, rssi);
@@ -2481,6 +2594,7 @@ public class WifiConfigManager {
                 Log.d(TAG, "remove connect choice:" + connectChoice + " from " + config.SSID
                         + " : " + config.networkId);
                 clearConnectChoiceInternal(config);
+                mHasNetworkChangesToSave = true;
             }
         }
         for (OnNetworkUpdateListener listener : mListeners) {
@@ -2768,6 +2882,8 @@ public class WifiConfigManager {
                     result.level = (int) ((double) result.level * (1 - alpha)
                                         + (double) previousRssi * alpha);
                 }
+                // Refresh the entry's position in the cache.
+                scanDetailCache.put(scanDetail);
                 if (mVerboseLoggingEnabled) {
                     Log.v(TAG, "Updating scan detail cache freq=" + result.frequency
                             + " BSSID=" + result.BSSID
@@ -3111,15 +3227,22 @@ public class WifiConfigManager {
 
     private void removeUserChoiceFromDisabledNetwork(
             @NonNull String network, int uid) {
-        for (WifiConfiguration config : getInternalConfiguredNetworks()) {
-            if (TextUtils.equals(config.SSID, network) || TextUtils.equals(config.FQDN, network)) {
-                if (mWifiPermissionsUtil.checkNetworkSettingsPermission(uid)) {
-                    mWifiMetrics.logUserActionEvent(
-                            UserActionEvent.EVENT_DISCONNECT_WIFI, config.networkId);
+        List<WifiConfiguration> configs = mConfiguredNetworks.getBySsidForCurrentUser(network);
+        // Quoted SSIDs can never match an FQDN, so only search Passpoint networks otherwise.
+        if (!network.startsWith("\"")) {
+            for (WifiConfiguration config : getInternalConfiguredNetworks()) {
+                if (TextUtils.equals(config.FQDN, network) && !configs.contains(config)) {
+                    configs.add(config);
                 }
-                removeConnectChoiceFromAllNetworks(config.getProfileKey());
             }
         }
+        for (WifiConfiguration config : configs) {
+            if (mWifiPermissionsUtil.checkNetworkSettingsPermission(uid)) {
+                mWifiMetrics.logUserActionEvent(
+                        UserActionEvent.EVENT_DISCONNECT_WIFI, config.networkId);
+            }
+            removeConnectChoiceFromAllNetworks(config.getProfileKey());
+        }
     }
 
     /**
@@ -3257,6 +3380,7 @@ public class WifiConfigManager {
             Log.w(TAG, "User switch before store is read!");
             mConfiguredNetworks.setNewUser(userId);
             mCurrentUserId = userId;
+            publishSavedNetworksSnapshot();
             // Reset any state from previous user unlock.
             mDeferredUserUnlockRead = false;
             // Cannot read data from new user's CE store file before they log-in.
@@ -3270,6 +3394,7 @@ public class WifiConfigManager {
         Set<Integer> removedNetworkIds = clearInternalDataForUser(mCurrentUserId);
         mConfiguredNetworks.setNewUser(userId);
         mCurrentUserId = userId;
+        publishSavedNetworksSnapshot();
 
         if (mUserManager.isUserUnlockingOrUnlocked(UserHandle.of(mCurrentUserId))) {
             handleUserUnlockOrSwitch(mCurrentUserId);
@@ -3323,6 +3448,8 @@ public class WifiConfigManager {
         }
         if (userId == mCurrentUserId
                 && mUserManager.isUserUnlockingOrUnlocked(UserHandle.of(mCurrentUserId))) {
+            // A forced write also writes out any buffered or queued data, before the user's CE
+            // storage becomes unavailable.
             saveToStore(true);
             clearInternalDataForUser(mCurrentUserId);
         }
@@ -3409,6 +3536,8 @@ public class WifiConfigManager {
                 Log.d(TAG, "Merging network from shared store "
                         + configuration.getProfileKey());
                 mergeWithInternalWifiConfiguration(existingConfiguration, configuration);
+                // Re-index the network, the merge may have changed its SSID or profile key.
+                mConfiguredNetworks.put(existingConfiguration);
                 continue;
             }
 
@@ -3448,6 +3577,8 @@ public class WifiConfigManager {
                 Log.d(TAG, "Merging network from user store "
                         + configuration.getProfileKey());
                 mergeWithInternalWifiConfiguration(existingConfiguration, configuration);
+                // Re-index the network, the merge may have changed its SSID or profile key.
+                mConfiguredNetworks.put(existingConfiguration);
                 continue;
             }
 
@@ -3516,6 +3647,7 @@ public class WifiConfigManager {
         clearInternalData();
         loadInternalDataFromSharedStore(sharedConfigurations, macAddressMapping);
         loadInternalDataFromUserStore(userConfigurations);
+        mRandomizedMacStoreData.setMacMapping(mRandomizedMacAddressMapping);
         generateRandomizedMacAddresses();
         if (mConfiguredNetworks.sizeForAllUsers() == 0) {
             Log.w(TAG, "No stored networks found.");
@@ -3628,10 +3760,56 @@ public class WifiConfigManager {
      * @return Whether the write was successful or not, this is applicable only for force writes.
      */
     public synchronized boolean saveToStore(boolean forceWrite) {
+        return saveToStore(forceWrite, true);
+    }
+
+    /**
+     * Save the data of the other config store modules without serializing the configured
+     * networks again, unless networks were added or removed, or had their connect choice removed
+     * with {@link #removeConnectChoiceFromAllNetworks(String)}, since they were last saved.
+     *
+     * Modules should use this instead of {@link #saveToStore(boolean)} when they only changed
+     * their own store data. Changes made to existing networks are only persisted by
+     * {@link #saveToStore(boolean)}.
+     *
+     * @param forceWrite Whether the write needs to be forced or not.
+     * @return Whether the write was successful or not, this is applicable only for force writes.
+     */
+    public synchronized boolean saveModuleDataToStore(boolean forceWrite) {
+        return saveToStore(forceWrite, false);
+    }
+
+    private boolean saveToStore(boolean forceWrite, boolean networksChanged) {
+        if (networksChanged) {
+            // Existing networks may have been changed in place.
+            invalidateConfiguredNetworksSnapshot();
+        }
         if (mPendingStoreRead) {
             Log.e(TAG, "Cannot save to store before store is read!");
             return false;
         }
+        if (networksChanged || mHasNetworkChangesToSave
+                || mConfiguredNetworks.getVersion() != mStoredConfiguredNetworksVersion) {
+            setNetworkListsForStore();
+        }
+        try {
+            long start = mClock.getElapsedSinceBootMillis();
+            mWifiConfigStore.write(forceWrite);
+            mWifiMetrics.wifiConfigStored((int) (mClock.getElapsedSinceBootMillis() - start));
+        } catch (IOException | IllegalStateException e) {
+            Log.wtf(TAG, "Writing to store failed. Saved networks maybe lost!", e);
+            return false;
+        } catch (XmlPullParserException e) {
+            Log.wtf(TAG, "XML serialization for store failed. Saved networks maybe lost!", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hand the current snapshot of the saved networks to the network list store data.
+     */
+    private void setNetworkListsForStore() {
         ArrayList<WifiConfiguration> sharedConfigurations = new ArrayList<>();
         ArrayList<WifiConfiguration> userConfigurations = new ArrayList<>();
         // List of network IDs for legacy Passpoint configuration to be removed.
@@ -3681,20 +3859,8 @@ public class WifiConfigManager {
         // Setup store data for write.
         mNetworkListSharedStoreData.setConfigurations(sharedConfigurations);
         mNetworkListUserStoreData.setConfigurations(userConfigurations);
-        mRandomizedMacStoreData.setMacMapping(mRandomizedMacAddressMapping);
-
-        try {
-            long start = mClock.getElapsedSinceBootMillis();
-            mWifiConfigStore.write(forceWrite);
-            mWifiMetrics.wifiConfigStored((int) (mClock.getElapsedSinceBootMillis() - start));
-        } catch (IOException | IllegalStateException e) {
-            Log.wtf(TAG, "Writing to store failed. Saved networks maybe lost!", e);
-            return false;
-        } catch (XmlPullParserException e) {
-            Log.wtf(TAG, "XML serialization for store failed. Saved networks maybe lost!", e);
-            return false;
-        }
-        return true;
+        mStoredConfiguredNetworksVersion = mConfiguredNetworks.getVersion();
+        mHasNetworkChangesToSave = false;
     }
 
     /**
@@ -35,6 +35,8 @@ import android.util.Xml;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.FastXmlSerializer;
 import com.android.internal.util.Preconditions;
+import com.android.modules.utils.BinaryXmlPullParser;
+import com.android.modules.utils.BinaryXmlSerializer;
 import com.android.server.wifi.util.EncryptedData;
 import com.android.server.wifi.util.FileUtils;
 import com.android.server.wifi.util.WifiConfigStoreEncryptionUtil;
@@ -46,6 +48,8 @@ import org.xmlpull.v1.XmlSerializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
@@ -59,10 +63,15 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -77,7 +86,8 @@ import java.util.stream.Stream;
  * use {@link WifiConfigManager#saveToStore(boolean)} for any writes.</li>
  * <li>{@link WifiConfigManager} controls {@link WifiConfigStore} and initiates read at bootup and
  * store file changes on user switch.</li>
- * <li>Not thread safe!</li>
+ * <li>Not thread safe! Only the buffered file writes may be performed off the calling thread, on
+ * the write handler provided at construction.</li>
  */
 public class WifiConfigStore {
     /**
@@ -109,6 +119,17 @@ public class WifiConfigStore {
     private static final String XML_TAG_DOCUMENT_HEADER = "WifiConfigStoreData";
     private static final String XML_TAG_VERSION = "Version";
     private static final String XML_TAG_HEADER_INTEGRITY = "Integrity";
+    /**
+     * Magic bytes ("WCSB") at the start of a store file written in the binary format.
+     *
+     * A binary store file contains, in order:
+     *  - The magic bytes.
+     *  - The config store data version.
+     *  - The number of sections.
+     *  - For each section, the section name, the section length and the section data encoded
+     *    as a binary XML document.
+     */
+    private static final byte[] BINARY_FORMAT_MAGIC = new byte[] {0x57, 0x43, 0x53, 0x42};
     /**
      * Current config store data version. This will be incremented for any additions.
      */
@@ -193,6 +214,31 @@ public class WifiConfigStore {
      */
     private final Clock mClock;
     private final WifiMetrics mWifiMetrics;
+    /**
+     * Handler instance to perform the store file writes on, or null to perform them on the
+     * calling thread.
+     */
+    private final Handler mWriteHandler;
+    /**
+     * Store files with serialized data waiting to be written on |mWriteHandler|. Guarded by
+     * itself.
+     */
+    private final Set<StoreFile> mStoreFilesPendingWrite = new LinkedHashSet<>();
+    /**
+     * Flag to indicate if a write of |mStoreFilesPendingWrite| is queued on |mWriteHandler|.
+     * Guarded by |mStoreFilesPendingWrite|.
+     */
+    private boolean mAsyncWriteQueued = false;
+    /**
+     * Time at which the write of |mStoreFilesPendingWrite| was queued on |mWriteHandler|.
+     * Guarded by |mStoreFilesPendingWrite|.
+     */
+    private long mAsyncWriteQueuedTimeMs = 0;
+    /**
+     * Lock held while writing to the store files, to order writes from |mWriteHandler| and the
+     * calling thread.
+     */
+    private final Object mWriteLock = new Object();
     /**
      * Shared config store file instance. There are 2 shared store files:
      * {@link #STORE_FILE_NAME_SHARED_GENERAL} & {@link #STORE_FILE_NAME_SHARED_SOFTAP}.
@@ -207,6 +253,10 @@ public class WifiConfigStore {
      * Verbose logging flag.
      */
     private boolean mVerboseLoggingEnabled = false;
+    /**
+     * Whether the store files are written in the binary format instead of XML.
+     */
+    private boolean mBinaryFormatEnabled = false;
     /**
      * Flag to indicate if there is a buffered write pending.
      */
@@ -218,7 +268,7 @@ public class WifiConfigStore {
             new AlarmManager.OnAlarmListener() {
                 public void onAlarm() {
                     try {
-                        writeBufferedData();
+                        writeBufferedData(false);
                     } catch (IOException e) {
                         Log.wtf(TAG, "Buffered write failed", e);
                     }
@@ -241,14 +291,17 @@ public class WifiConfigStore {
      * @param sharedStores List of {@link StoreFile} instances pointing to the shared store files.
      *                     This should be retrieved using {@link #createSharedFiles(boolean)}
      *                     method.
+     * @param writeHandler handler instance to write the store files on, off the calling thread. If
+     *                     null, the store files are written on the calling thread.
      */
     public WifiConfigStore(Context context, Handler handler, Clock clock, WifiMetrics wifiMetrics,
-            List<StoreFile> sharedStores) {
+            List<StoreFile> sharedStores, @Nullable Handler writeHandler) {
 
         mAlarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         mEventHandler = handler;
         mClock = clock;
         mWifiMetrics = wifiMetrics;
+        mWriteHandler = writeHandler;
         mStoreDataList = new ArrayList<>();
 
         // Initialize the store files.
@@ -373,6 +426,22 @@ public class WifiConfigStore {
         mVerboseLoggingEnabled = verbose;
     }
 
+    /**
+     * Set whether the store files are written in the binary format instead of XML.
+     *
+     * Store files are always read in the format they were written in, so files written in the
+     * other format are converted on their next write.
+     */
+    public void setBinaryFormatEnabled(boolean enabled) {
+        if (mBinaryFormatEnabled == enabled) return;
+        mBinaryFormatEnabled = enabled;
+        // The cached sections are encoded in the previous format.
+        Stream.of(mSharedStores, mUserStores)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .forEach(StoreFile::clearSerializedSections);
+    }
+
     /**
      * Retrieve the list of {@link StoreData} instances registered for the provided
      * {@link StoreFile}.
@@ -398,26 +467,31 @@ public class WifiConfigStore {
      * The method writes the user specific configurations to user specific config store and the
      * shared configurations to shared config store.
      *
+     * The data is snapshotted on the calling thread, see {@link StoreData#snapshotData()}, and
+     * serialized when the store files are written. Forced writes are written to the files on the
+     * calling thread, so that any write error is reported to the caller. If a write handler was
+     * provided, buffered writes are serialized and written to the files on that handler instead,
+     * and writes queued while a previous one is still pending are coalesced into a single write
+     * of the latest data.
+     *
      * @param forceSync boolean to force write the config stores now. if false, the writes are
      *                  buffered and written after the configured interval.
      */
     public void write(boolean forceSync)
             throws XmlPullParserException, IOException {
         boolean hasAnyNewData = false;
-        // Serialize the provided data and send it to the respective stores. The actual write will
-        // be performed later depending on the |forceSync| flag .
+        // Snapshot the provided data and send it to the respective stores. The serialization and
+        // the actual write will be performed later depending on the |forceSync| flag .
         for (StoreFile sharedStoreFile : mSharedStores) {
             if (hasNewDataToSerialize(sharedStoreFile)) {
-                byte[] sharedDataBytes = serializeData(sharedStoreFile);
-                sharedStoreFile.storeRawDataToWrite(sharedDataBytes);
+                sharedStoreFile.storeSnapshotToWrite(snapshotData(sharedStoreFile));
                 hasAnyNewData = true;
             }
         }
         if (mUserStores != null) {
             for (StoreFile userStoreFile : mUserStores) {
                 if (hasNewDataToSerialize(userStoreFile)) {
-                    byte[] userDataBytes = serializeData(userStoreFile);
-                    userStoreFile.storeRawDataToWrite(userDataBytes);
+                    userStoreFile.storeSnapshotToWrite(snapshotData(userStoreFile));
                     hasAnyNewData = true;
                 }
             }
@@ -427,33 +501,57 @@ public class WifiConfigStore {
             // Every write provides a new snapshot to be persisted, so |forceSync| flag overrides
             // any pending buffer writes.
             if (forceSync) {
-                writeBufferedData();
+                writeBufferedData(true);
             } else {
                 startBufferedWriteAlarm();
             }
-        } else if (forceSync && mBufferedWritePending) {
+        } else if (forceSync && (mBufferedWritePending || hasStoreFilesPendingWrite())) {
             // no new data to write, but there is a pending buffered write. So, |forceSync| should
             // flush that out.
-            writeBufferedData();
+            writeBufferedData(true);
         }
     }
 
     /**
-     * Serialize all the data from all the {@link StoreData} clients registered for the provided
+     * Snapshot all the data from all the {@link StoreData} clients registered for the provided
      * {@link StoreFile}.
      *
-     * This method also computes the integrity of the data being written and serializes the computed
-     * {@link EncryptedData} to the output.
+     * Each {@link StoreData} section is snapshotted separately and cached in the
+     * {@link StoreFile}. Only the sections whose {@link StoreData} has new data to serialize (or
+     * which have not been serialized yet) are snapshotted again, the document is then assembled
+     * from the cached and new sections when it is serialized.
      *
      * @param storeFile StoreFile that we want to write to.
-     * @return byte[] of serialized bytes
+     * @return the snapshot of the store file document.
      * @throws XmlPullParserException
      * @throws IOException
      */
-    private byte[] serializeData(@NonNull StoreFile storeFile)
+    private DocumentSnapshot snapshotData(@NonNull StoreFile storeFile)
             throws XmlPullParserException, IOException {
         List<StoreData> storeDataList = retrieveStoreDataListForStoreFile(storeFile);
+        List<Section> sections = new ArrayList<>(storeDataList.size());
+        for (StoreData storeData : storeDataList) {
+            Section section = storeFile.getSerializedSection(storeData);
+            if (section == null || storeData.hasNewDataToSerialize()) {
+                DataSnapshot dataSnapshot = storeData.snapshotData();
+                section = new Section(storeData.getName(), mBinaryFormatEnabled,
+                        dataSnapshot != null ? dataSnapshot : storeData::serializeData);
+                if (dataSnapshot == null) {
+                    // The data can only be serialized on the calling thread.
+                    section.serialize(storeFile.getEncryptionUtil());
+                }
+                storeFile.putSerializedSection(storeData, section);
+            }
+            sections.add(section);
+        }
+        return new DocumentSnapshot(mBinaryFormatEnabled, sections);
+    }
 
+    /**
+     * Assemble the XML document from the provided serialized sections.
+     */
+    private static byte[] assembleXmlDocument(@NonNull List<byte[]> sections)
+            throws IOException {
         final XmlSerializer out = new FastXmlSerializer();
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         out.setOutput(outputStream, StandardCharsets.UTF_8.name());
@@ -462,16 +560,127 @@ public class WifiConfigStore {
         XmlUtil.writeDocumentStart(out, XML_TAG_DOCUMENT_HEADER);
         // Next version.
         XmlUtil.writeNextValue(out, XML_TAG_VERSION, CURRENT_CONFIG_STORE_DATA_VERSION);
-        for (StoreData storeData : storeDataList) {
-            String tag = storeData.getName();
-            XmlUtil.writeNextSectionStart(out, tag);
-            storeData.serializeData(out, storeFile.getEncryptionUtil());
-            XmlUtil.writeNextSectionEnd(out, tag);
+        out.flush();
+        for (byte[] sectionBytes : sections) {
+            outputStream.write(sectionBytes);
         }
         XmlUtil.writeDocumentEnd(out, XML_TAG_DOCUMENT_HEADER);
         return outputStream.toByteArray();
     }
 
+    /**
+     * Assemble the binary document from the provided serialized sections.
+     * See {@link #BINARY_FORMAT_MAGIC} for the layout.
+     */
+    private static byte[] assembleBinaryDocument(@NonNull List<String> sectionNames,
+            @NonNull List<byte[]> sections) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(outputStream);
+        out.write(BINARY_FORMAT_MAGIC);
+        out.writeInt(CURRENT_CONFIG_STORE_DATA_VERSION);
+        out.writeInt(sections.size());
+        for (int i = 0; i < sections.size(); i++) {
+            byte[] sectionBytes = sections.get(i);
+            out.writeUTF(sectionNames.get(i));
+            out.writeInt(sectionBytes.length);
+            out.write(sectionBytes);
+        }
+        out.flush();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Serialize the provided data enclosed under the provided section tag.
+     * In the binary format, each section is a complete binary XML document.
+     */
+    private static byte[] serializeSection(@NonNull String tag, boolean binaryFormat,
+            @NonNull DataSnapshot data, @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
+            throws XmlPullParserException, IOException {
+        final XmlSerializer out =
+                binaryFormat ? new BinaryXmlSerializer() : new FastXmlSerializer();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        out.setOutput(outputStream, StandardCharsets.UTF_8.name());
+
+        if (binaryFormat) {
+            out.startDocument(null, true);
+        }
+        XmlUtil.writeNextSectionStart(out, tag);
+        data.serializeData(out, encryptionUtil);
+        XmlUtil.writeNextSectionEnd(out, tag);
+        if (binaryFormat) {
+            out.endDocument();
+        }
+        out.flush();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Section of a {@link StoreData} cached in a {@link StoreFile}. The section is serialized the
+     * first time its bytes are needed, which may be on the write handler, and the bytes are then
+     * reused until the {@link StoreData} has new data to serialize.
+     */
+    private static class Section {
+        private final String mName;
+        private final boolean mBinaryFormat;
+        /** Data to serialize, or null once serialized. Guarded by |this|. */
+        private DataSnapshot mDataSnapshot;
+        /** Serialized section, or null until serialized. Guarded by |this|. */
+        private byte[] mBytes;
+
+        Section(@NonNull String name, boolean binaryFormat, @NonNull DataSnapshot dataSnapshot) {
+            mName = name;
+            mBinaryFormat = binaryFormat;
+            mDataSnapshot = dataSnapshot;
+        }
+
+        public @NonNull String getName() {
+            return mName;
+        }
+
+        /**
+         * @return the serialized section, serializing it first if needed.
+         */
+        public synchronized byte[] serialize(
+                @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
+                throws XmlPullParserException, IOException {
+            if (mBytes == null) {
+                mBytes = serializeSection(mName, mBinaryFormat, mDataSnapshot, encryptionUtil);
+                mDataSnapshot = null;
+            }
+            return mBytes;
+        }
+    }
+
+    /**
+     * Snapshot of the document to be written to a {@link StoreFile}.
+     */
+    private static class DocumentSnapshot {
+        private final boolean mBinaryFormat;
+        private final List<Section> mSections;
+
+        DocumentSnapshot(boolean binaryFormat, @NonNull List<Section> sections) {
+            mBinaryFormat = binaryFormat;
+            mSections = sections;
+        }
+
+        /**
+         * Serialize the sections which have not been serialized yet and assemble the document.
+         */
+        public byte[] serialize(@Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
+                throws XmlPullParserException, IOException {
+            List<byte[]> sections = new ArrayList<>(mSections.size());
+            for (Section section : mSections) {
+                sections.add(section.serialize(encryptionUtil));
+            }
+            if (mBinaryFormat) {
+                return assembleBinaryDocument(mSections.stream()
+                        .map(Section::getName)
+                        .collect(Collectors.toList()), sections);
+            }
+            return assembleXmlDocument(sections);
+        }
+    }
+
     /**
      * Helper method to start a buffered write alarm if one doesn't already exist.
      */
@@ -497,18 +706,119 @@ public class WifiConfigStore {
     /**
      * Helper method to actually perform the writes to the file. This flushes out any write data
      * being buffered in the respective stores and cancels any pending buffer write alarms.
+     *
+     * @param sync boolean to write the store files on the calling thread. If false and a write
+     *             handler was provided, the files are written on that handler instead.
      */
-    private void writeBufferedData() throws IOException {
+    private void writeBufferedData(boolean sync) throws IOException {
         stopBufferedWriteAlarm();
 
-        long writeStartTime = mClock.getElapsedSinceBootMillis();
-        for (StoreFile sharedStoreFile : mSharedStores) {
-            sharedStoreFile.writeBufferedRawData();
-        }
+        Set<StoreFile> storeFiles = new LinkedHashSet<>(mSharedStores);
         if (mUserStores != null) {
-            for (StoreFile userStoreFile : mUserStores) {
-                userStoreFile.writeBufferedRawData();
+            storeFiles.addAll(mUserStores);
+        }
+        if (sync || mWriteHandler == null) {
+            synchronized (mWriteLock) {
+                synchronized (mStoreFilesPendingWrite) {
+                    // Files still queued on the write handler (e.g. a previous user's) are
+                    // written now too, the handler will find nothing left to write.
+                    storeFiles.addAll(mStoreFilesPendingWrite);
+                    mStoreFilesPendingWrite.clear();
+                }
+                writeStoreFiles(storeFiles);
+            }
+            return;
+        }
+        synchronized (mStoreFilesPendingWrite) {
+            mStoreFilesPendingWrite.addAll(storeFiles);
+            mWifiMetrics.noteWifiConfigStoreWriteQueueDepth(mStoreFilesPendingWrite.size());
+            if (mAsyncWriteQueued) {
+                // The queued write has not started yet and will pick up the latest data.
+                mWifiMetrics.incrementNumWifiConfigStoreCoalescedWrites();
+                return;
             }
+            mAsyncWriteQueued = true;
+            mAsyncWriteQueuedTimeMs = mClock.getElapsedSinceBootMillis();
+        }
+        mWriteHandler.post(() -> {
+            try {
+                writePendingStoreFiles();
+            } catch (IOException e) {
+                Log.wtf(TAG, "Buffered write failed", e);
+            }
+        });
+    }
+
+    /**
+     * Write out any data still waiting to be written to the store files, including any buffered
+     * data and any data queued on the write handler. This blocks until the data is persisted,
+     * and should be invoked before the store files may become inaccessible (e.g. user stop or
+     * shutdown).
+     */
+    public void flush() throws IOException {
+        writeBufferedData(true);
+    }
+
+    /**
+     * Check if any store files are queued to be written on the write handler.
+     */
+    private boolean hasStoreFilesPendingWrite() {
+        synchronized (mStoreFilesPendingWrite) {
+            return !mStoreFilesPendingWrite.isEmpty();
+        }
+    }
+
+    /**
+     * Write the store files queued on the write handler, on the calling thread.
+     */
+    private void writePendingStoreFiles() throws IOException {
+        synchronized (mWriteLock) {
+            List<StoreFile> storeFiles;
+            long queuedTimeMs;
+            synchronized (mStoreFilesPendingWrite) {
+                mAsyncWriteQueued = false;
+                if (mStoreFilesPendingWrite.isEmpty()) {
+                    return;
+                }
+                storeFiles = new ArrayList<>(mStoreFilesPendingWrite);
+                mStoreFilesPendingWrite.clear();
+                queuedTimeMs = mAsyncWriteQueuedTimeMs;
+            }
+            writeStoreFiles(storeFiles);
+            long writeLatency = mClock.getElapsedSinceBootMillis() - queuedTimeMs;
+            try {
+                mWifiMetrics.noteWifiConfigStoreWriteLatency(toIntExact(writeLatency));
+            } catch (ArithmeticException e) {
+                // Silently ignore on any overflow errors.
+            }
+        }
+    }
+
+    /**
+     * Serialize and write the buffered data of the provided store files. Must be invoked with
+     * |mWriteLock| held. A failure to write one file does not prevent writing the others. The
+     * files which failed are queued again, so that their data is written by the next write.
+     *
+     * @throws IOException the first error encountered, once all the files have been written.
+     */
+    private void writeStoreFiles(Collection<StoreFile> storeFiles) throws IOException {
+        long writeStartTime = mClock.getElapsedSinceBootMillis();
+        IOException writeException = null;
+        for (StoreFile storeFile : storeFiles) {
+            try {
+                serializeSnapshotToWrite(storeFile);
+                storeFile.writeBufferedRawData();
+            } catch (IOException e) {
+                synchronized (mStoreFilesPendingWrite) {
+                    mStoreFilesPendingWrite.add(storeFile);
+                }
+                if (writeException == null) {
+                    writeException = e;
+                }
+            }
+        }
+        if (writeException != null) {
+            throw writeException;
         }
         long writeTime = mClock.getElapsedSinceBootMillis() - writeStartTime;
         try {
@@ -519,6 +829,22 @@ public class WifiConfigStore {
         Log.d(TAG, "Writing to stores completed in " + writeTime + " ms.");
     }
 
+    /**
+     * Serialize the snapshot stored in the provided store file, if any, into the raw data to be
+     * written. The snapshot is kept for the next write if serialization fails.
+     */
+    private static void serializeSnapshotToWrite(@NonNull StoreFile storeFile)
+            throws IOException {
+        DocumentSnapshot snapshot = storeFile.takeSnapshotToWrite();
+        if (snapshot == null) return;
+        try {
+            storeFile.storeRawDataToWrite(snapshot.serialize(storeFile.getEncryptionUtil()));
+        } catch (XmlPullParserException | IOException e) {
+            storeFile.restoreSnapshotToWrite(snapshot);
+            throw new IOException("Failed to serialize " + storeFile.getName(), e);
+        }
+    }
+
     /**
      * Note: This is a copy of {@link AtomicFile#readFully()} modified to use the passed in
      * {@link InputStream} which was returned using {@link AtomicFile#openRead()}.
@@ -585,18 +911,113 @@ public class WifiConfigStore {
         return readAtomicFileFully(migrationIs);
     }
 
+    /**
+     * Retrieve the data to migrate for each of the shared store files.
+     *
+     * @return data to migrate for each shared store file, or null for the files with nothing to
+     *         migrate.
+     */
+    private List<byte[]> readMigrationDataForSharedStoreFiles() throws IOException {
+        List<byte[]> migrationData = new ArrayList<>(mSharedStores.size());
+        for (StoreFile sharedStoreFile : mSharedStores) {
+            migrationData.add(readDataFromMigrationSharedStoreFile(sharedStoreFile.getFileId()));
+        }
+        return migrationData;
+    }
+
+    /**
+     * Retrieve the data to migrate for each of the user store files.
+     *
+     * @return data to migrate for each user store file, or null for the files with nothing to
+     *         migrate.
+     */
+    private List<byte[]> readMigrationDataForUserStoreFiles() throws IOException {
+        List<byte[]> migrationData = new ArrayList<>(mUserStores.size());
+        for (StoreFile userStoreFile : mUserStores) {
+            migrationData.add(readDataFromMigrationUserStoreFile(
+                    userStoreFile.getFileId(), userStoreFile.mUserHandle));
+        }
+        return migrationData;
+    }
+
+    /**
+     * Read the raw data of the provided store files which have nothing to migrate.
+     *
+     * If a write handler was provided, the calling thread reads the first of these files while
+     * the others are read on the write handler, after any write already queued there, so that
+     * the file I/O overlaps without creating threads. The calling thread waits for all the reads
+     * to complete.
+     *
+     * @param migrationData data to migrate for each store file, or null to read the file.
+     * @return raw data of each store file in the order of |storeFiles|, or null for the files with
+     *         data to migrate.
+     * @throws IOException if any of the reads failed.
+     */
+    private List<byte[]> readRawData(@NonNull List<StoreFile> storeFiles,
+            @NonNull List<byte[]> migrationData) throws IOException {
+        List<StoreFile> filesToRead = new ArrayList<>(storeFiles.size());
+        for (int i = 0; i < storeFiles.size(); i++) {
+            if (migrationData.get(i) == null) {
+                filesToRead.add(storeFiles.get(i));
+            }
+        }
+        FutureTask<List<byte[]>> writeHandlerRead = null;
+        if (filesToRead.size() > 1 && mWriteHandler != null
+                && !mWriteHandler.getLooper().isCurrentThread()) {
+            List<StoreFile> writeHandlerFiles = filesToRead.subList(1, filesToRead.size());
+            writeHandlerRead = new FutureTask<>(() -> readRawData(writeHandlerFiles));
+            if (mWriteHandler.post(writeHandlerRead)) {
+                filesToRead = filesToRead.subList(0, 1);
+            } else {
+                writeHandlerRead = null;
+            }
+        }
+        List<byte[]> readData = readRawData(filesToRead);
+        if (writeHandlerRead != null) {
+            try {
+                readData.addAll(writeHandlerRead.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Reading store file failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading store files", e);
+            }
+        }
+        List<byte[]> rawData = new ArrayList<>(storeFiles.size());
+        int readIndex = 0;
+        for (int i = 0; i < storeFiles.size(); i++) {
+            rawData.add(migrationData.get(i) == null ? readData.get(readIndex++) : null);
+        }
+        return rawData;
+    }
+
+    private static List<byte[]> readRawData(@NonNull List<StoreFile> storeFiles)
+            throws IOException {
+        List<byte[]> rawData = new ArrayList<>(storeFiles.size());
+        for (StoreFile storeFile : storeFiles) {
+            rawData.add(storeFile.readRawData());
+        }
+        return rawData;
+    }
+
     /**
      * Helper method to read from the shared store files.
+     * @param migrationData data to migrate for each of the shared store files, or null.
+     * @param rawData raw data read from each of the shared store files without data to migrate.
      * @throws XmlPullParserException
      * @throws IOException
      */
-    private void readFromSharedStoreFiles() throws XmlPullParserException, IOException {
-        for (StoreFile sharedStoreFile : mSharedStores) {
-            byte[] sharedDataBytes =
-                    readDataFromMigrationSharedStoreFile(sharedStoreFile.getFileId());
+    private void readFromSharedStoreFiles(@NonNull List<byte[]> migrationData,
+            @NonNull List<byte[]> rawData) throws XmlPullParserException, IOException {
+        for (int i = 0; i < mSharedStores.size(); i++) {
+            StoreFile sharedStoreFile = mSharedStores.get(i);
+            byte[] sharedDataBytes = migrationData.get(i);
             if (sharedDataBytes == null) {
                 // nothing to migrate, do normal read.
-                sharedDataBytes = sharedStoreFile.readRawData();
+                sharedDataBytes = rawData.get(i);
             } else {
                 Log.i(TAG, "Read data out of shared migration store file: "
                         + sharedStoreFile.getName());
@@ -615,16 +1036,19 @@ public class WifiConfigStore {
 
     /**
      * Helper method to read from the user store files.
+     * @param migrationData data to migrate for each of the user store files, or null.
+     * @param rawData raw data read from each of the user store files without data to migrate.
      * @throws XmlPullParserException
      * @throws IOException
      */
-    private void readFromUserStoreFiles() throws XmlPullParserException, IOException {
-        for (StoreFile userStoreFile : mUserStores) {
-            byte[] userDataBytes = readDataFromMigrationUserStoreFile(
-                    userStoreFile.getFileId(), userStoreFile.mUserHandle);
+    private void readFromUserStoreFiles(@NonNull List<byte[]> migrationData,
+            @NonNull List<byte[]> rawData) throws XmlPullParserException, IOException {
+        for (int i = 0; i < mUserStores.size(); i++) {
+            StoreFile userStoreFile = mUserStores.get(i);
+            byte[] userDataBytes = migrationData.get(i);
             if (userDataBytes == null) {
                 // nothing to migrate, do normal read.
-                userDataBytes = userStoreFile.readRawData();
+                userDataBytes = rawData.get(i);
             } else {
                 Log.i(TAG, "Read data out of user migration store file: "
                         + userStoreFile.getName());
@@ -658,9 +1082,20 @@ public class WifiConfigStore {
             }
         }
         long readStartTime = mClock.getElapsedSinceBootMillis();
-        readFromSharedStoreFiles();
+        List<StoreFile> storeFiles = new ArrayList<>(mSharedStores);
+        List<byte[]> migrationData = readMigrationDataForSharedStoreFiles();
+        if (mUserStores != null) {
+            storeFiles.addAll(mUserStores);
+            migrationData.addAll(readMigrationDataForUserStoreFiles());
+        }
+        List<byte[]> rawData = readRawData(storeFiles, migrationData);
+        // Deserialize on the calling thread, in a deterministic order.
+        int numSharedStores = mSharedStores.size();
+        readFromSharedStoreFiles(migrationData.subList(0, numSharedStores),
+                rawData.subList(0, numSharedStores));
         if (mUserStores != null) {
-            readFromUserStoreFiles();
+            readFromUserStoreFiles(migrationData.subList(numSharedStores, migrationData.size()),
+                    rawData.subList(numSharedStores, rawData.size()));
         }
         long readTime = mClock.getElapsedSinceBootMillis() - readStartTime;
         try {
@@ -689,11 +1124,14 @@ public class WifiConfigStore {
 
         // Stop any pending buffered writes, if any.
         stopBufferedWriteAlarm();
+        // Make sure the old user's data queued for write is persisted before switching.
+        writePendingStoreFiles();
         mUserStores = userStores;
 
         // Now read from the user store files.
         long readStartTime = mClock.getElapsedSinceBootMillis();
-        readFromUserStoreFiles();
+        List<byte[]> migrationData = readMigrationDataForUserStoreFiles();
+        readFromUserStoreFiles(migrationData, readRawData(mUserStores, migrationData));
         long readTime = mClock.getElapsedSinceBootMillis() - readStartTime;
         mWifiMetrics.noteWifiConfigStoreReadDuration(toIntExact(readTime));
         Log.d(TAG, "Reading from user stores completed in " + readTime + " ms.");
@@ -703,6 +1141,8 @@ public class WifiConfigStore {
      * Reset data for all {@link StoreData} instances registered for this {@link StoreFile}.
      */
     private void resetStoreData(@NonNull StoreFile storeFile) {
+        // The cached sections no longer match the data which is about to be read.
+        storeFile.clearSerializedSections();
         for (StoreData storeData: retrieveStoreDataListForStoreFile(storeFile)) {
             storeData.resetData();
         }
@@ -739,6 +1179,10 @@ public class WifiConfigStore {
                     storeFile.getEncryptionUtil());
             return;
         }
+        if (isBinaryFormat(dataBytes)) {
+            deserializeBinaryData(dataBytes, storeFile, storeDataList);
+            return;
+        }
         final XmlPullParser in = Xml.newPullParser();
         final ByteArrayInputStream inputStream = new ByteArrayInputStream(dataBytes);
         in.setInput(inputStream, StandardCharsets.UTF_8.name());
@@ -756,15 +1200,8 @@ public class WifiConfigStore {
         String[] headerName = new String[1];
         Set<StoreData> storeDatasInvoked = new HashSet<>();
         while (XmlUtil.gotoNextSectionOrEnd(in, headerName, rootTagDepth)) {
-            // There can only be 1 store data matching the tag, O indicates a previous StoreData
-            // module that no longer exists (ignore this XML section).
-            StoreData storeData = storeDataList.stream()
-                    .filter(s -> s.getSectionsToParse().contains(headerName[0]))
-                    .findAny()
-                    .orElse(null);
+            StoreData storeData = findStoreDataForSection(storeDataList, headerName[0]);
             if (storeData == null) {
-                Log.e(TAG, "Unknown store data: " + headerName[0] + ". List of store data: "
-                        + storeDataList);
                 continue;
             }
             storeData.deserializeDataForSection(in, rootTagDepth + 1, version,
@@ -778,6 +1215,80 @@ public class WifiConfigStore {
         indicateNoDataForStoreDatas(storeDatasNotInvoked, version, storeFile.getEncryptionUtil());
     }
 
+    /**
+     * Deserialize data written in the binary format, see {@link #BINARY_FORMAT_MAGIC}.
+     */
+    private void deserializeBinaryData(@NonNull byte[] dataBytes, @NonNull StoreFile storeFile,
+            @NonNull List<StoreData> storeDataList) throws XmlPullParserException, IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(dataBytes,
+                BINARY_FORMAT_MAGIC.length, dataBytes.length - BINARY_FORMAT_MAGIC.length));
+        @Version int version = validateVersion(in.readInt());
+        int numSections = in.readInt();
+
+        Set<StoreData> storeDatasInvoked = new HashSet<>();
+        for (int i = 0; i < numSections; i++) {
+            String sectionName = in.readUTF();
+            int sectionLength = in.readInt();
+            if (sectionLength < 0 || sectionLength > in.available()) {
+                throw new XmlPullParserException("Invalid length " + sectionLength
+                        + " for section " + sectionName);
+            }
+            byte[] sectionBytes = new byte[sectionLength];
+            in.readFully(sectionBytes);
+            StoreData storeData = findStoreDataForSection(storeDataList, sectionName);
+            if (storeData == null) {
+                continue;
+            }
+            final XmlPullParser sectionIn = new BinaryXmlPullParser();
+            sectionIn.setInput(new ByteArrayInputStream(sectionBytes),
+                    StandardCharsets.UTF_8.name());
+            XmlUtil.gotoDocumentStart(sectionIn, sectionName);
+            storeData.deserializeDataForSection(sectionIn, sectionIn.getDepth(), version,
+                    storeFile.getEncryptionUtil(), sectionName);
+            storeDatasInvoked.add(storeData);
+        }
+        // Inform all the other registered store data clients that there is nothing in the store
+        // for them.
+        Set<StoreData> storeDatasNotInvoked = new HashSet<>(storeDataList);
+        storeDatasNotInvoked.removeAll(storeDatasInvoked);
+        indicateNoDataForStoreDatas(storeDatasNotInvoked, version, storeFile.getEncryptionUtil());
+    }
+
+    /**
+     * Find the {@link StoreData} which parses the provided section.
+     *
+     * @return the matching StoreData, or null if none (e.g. a section of a previous StoreData
+     * module that no longer exists).
+     */
+    private static @Nullable StoreData findStoreDataForSection(
+            @NonNull List<StoreData> storeDataList, @NonNull String sectionName) {
+        // There can only be 1 store data matching the tag.
+        StoreData storeData = storeDataList.stream()
+                .filter(s -> s.getSectionsToParse().contains(sectionName))
+                .findAny()
+                .orElse(null);
+        if (storeData == null) {
+            Log.e(TAG, "Unknown store data: " + sectionName + ". List of store data: "
+                    + storeDataList);
+        }
+        return storeData;
+    }
+
+    /**
+     * @return true if the provided store file data was written in the binary format.
+     */
+    private static boolean isBinaryFormat(@NonNull byte[] dataBytes) {
+        if (dataBytes.length < BINARY_FORMAT_MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < BINARY_FORMAT_MAGIC.length; i++) {
+            if (dataBytes[i] != BINARY_FORMAT_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Parse the version from the XML stream.
      * This is used for both the shared and user config store data.
@@ -787,7 +1298,17 @@ public class WifiConfigStore {
      */
     private static @Version int parseVersionFromXml(XmlPullParser in)
             throws XmlPullParserException, IOException {
-        int version = (int) XmlUtil.readNextValueWithName(in, XML_TAG_VERSION);
+        return validateVersion((int) XmlUtil.readNextValueWithName(in, XML_TAG_VERSION));
+    }
+
+    /**
+     * Check that the version read from a store file is one that we know how to parse.
+     *
+     * @param version version number read from the store file.
+     * @return the version number.
+     * @throws XmlPullParserException if the version is out of range.
+     */
+    private static @Version int validateVersion(int version) throws XmlPullParserException {
         if (version < INITIAL_CONFIG_STORE_DATA_VERSION
                 || version > CURRENT_CONFIG_STORE_DATA_VERSION) {
             throw new XmlPullParserException("Invalid version of data: " + version);
@@ -812,6 +1333,10 @@ public class WifiConfigStore {
      */
     public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
         pw.println("Dump of WifiConfigStore");
+        pw.println("Binary format enabled: " + mBinaryFormatEnabled);
+        synchronized (mStoreFilesPendingWrite) {
+            pw.println("Store files pending write: " + mStoreFilesPendingWrite.size());
+        }
         pw.println("WifiConfigStore - Store File Begin ----");
         Stream.of(mSharedStores, mUserStores)
                 .filter(Objects::nonNull)
@@ -852,7 +1377,8 @@ public class WifiConfigStore {
          */
         private final AtomicFile mAtomicFile;
         /**
-         * This is an intermediate buffer to store the data to be written.
+         * This is an intermediate buffer to store the data to be written. Guarded by |this|, as
+         * the data may be written to the file on a different thread than it is stored on.
          */
         private byte[] mWriteData;
         /**
@@ -871,6 +1397,16 @@ public class WifiConfigStore {
          * Integrity checking for the store file.
          */
         private final WifiConfigStoreEncryptionUtil mEncryptionUtil;
+        /**
+         * Snapshot of the data to be serialized into |mWriteData| before it is written. Guarded
+         * by |this|.
+         */
+        private DocumentSnapshot mSnapshotToWrite;
+        /**
+         * Last section of each {@link StoreData} registered for this file. Only accessed on the
+         * thread taking the snapshots.
+         */
+        private final Map<StoreData, Section> mSerializedSections = new HashMap<>();
 
         public StoreFile(File file, @StoreFileId int fileId,
                 @NonNull UserHandle userHandle,
@@ -897,6 +1433,47 @@ public class WifiConfigStore {
             return mEncryptionUtil;
         }
 
+        /**
+         * @return the last section of the provided {@link StoreData}, or null if it has not been
+         * snapshotted since the file was last read.
+         */
+        private @Nullable Section getSerializedSection(@NonNull StoreData storeData) {
+            return mSerializedSections.get(storeData);
+        }
+
+        private void putSerializedSection(@NonNull StoreData storeData,
+                @NonNull Section section) {
+            mSerializedSections.put(storeData, section);
+        }
+
+        /**
+         * Store the provided snapshot to be serialized and written when
+         * {@link #writeBufferedRawData()} is next invoked by the config store.
+         */
+        private synchronized void storeSnapshotToWrite(@NonNull DocumentSnapshot snapshot) {
+            mSnapshotToWrite = snapshot;
+        }
+
+        private synchronized @Nullable DocumentSnapshot takeSnapshotToWrite() {
+            DocumentSnapshot snapshot = mSnapshotToWrite;
+            mSnapshotToWrite = null;
+            return snapshot;
+        }
+
+        /**
+         * Keep the provided snapshot for the next write, unless it was superseded in the
+         * meantime.
+         */
+        private synchronized void restoreSnapshotToWrite(@NonNull DocumentSnapshot snapshot) {
+            if (mSnapshotToWrite == null) {
+                mSnapshotToWrite = snapshot;
+            }
+        }
+
+        private void clearSerializedSections() {
+            mSerializedSections.clear();
+        }
+
         /**
          * Read the entire raw data from the store file and return in a byte array.
          *
@@ -922,38 +1499,61 @@ public class WifiConfigStore {
          *
          * @param data raw data to be written to the file.
          */
-        public void storeRawDataToWrite(byte[] data) {
+        public synchronized void storeRawDataToWrite(byte[] data) {
             mWriteData = data;
         }
 
         /**
          * Write the stored raw data to the store file.
-         * After the write to file, the mWriteData member is reset.
+         * After the write to file, the mWriteData member is reset, unless new data was stored
+         * while writing.
          * @throws IOException if an error occurs. The output stream is always closed by the method
          * even when an exception is encountered.
          */
         public void writeBufferedRawData() throws IOException {
-            if (mWriteData == null) return; // No data to write for this file.
+            byte[] writeData;
+            synchronized (this) {
+                writeData = mWriteData;
+                mWriteData = null;
+            }
+            if (writeData == null) return; // No data to write for this file.
             // Write the data to the atomic file.
             FileOutputStream out = null;
             try {
                 out = mAtomicFile.startWrite();
                 FileUtils.chmod(mFileName, FILE_MODE);
-                out.write(mWriteData);
+                out.write(writeData);
                 mAtomicFile.finishWrite(out);
             } catch (IOException e) {
                 if (out != null) {
                     mAtomicFile.failWrite(out);
                 }
+                // Keep the data for the next write, unless it was superseded in the meantime.
+                synchronized (this) {
+                    if (mWriteData == null) {
+                        mWriteData = writeData;
+                    }
+                }
                 throw e;
-            } catch (NullPointerException e) {
-                Log.wtf(TAG, "Possible concurrent modify on mWriteData", e);
             }
-            // Reset the pending write data after write.
-            mWriteData = null;
         }
     }
 
+    /**
+     * Snapshot of the data of a {@link StoreData}, which can be serialized on any thread.
+     */
+    public interface DataSnapshot {
+        /**
+         * Serialize the snapshotted data to the output stream.
+         *
+         * @param out The output stream to serialize the data to
+         * @param encryptionUtil Utility to help encrypt any credential data.
+         */
+        void serializeData(XmlSerializer out,
+                @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
+                throws XmlPullParserException, IOException;
+    }
+
     /**
      * Interface to be implemented by a module that contained data in the config store file.
      *
@@ -977,6 +1577,22 @@ public class WifiConfigStore {
                 @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
                 throws XmlPullParserException, IOException;
 
+        /**
+         * Take a snapshot of the data to persist, to be serialized later, possibly on another
+         * thread. This is invoked on the thread performing the write instead of
+         * {@link #serializeData(XmlSerializer, WifiConfigStoreEncryptionUtil)}, so the module
+         * must consider its data serialized once the snapshot is taken.
+         *
+         * By default, modules do not support snapshots and their data is serialized on the thread
+         * performing the write. Modules with expensive serialization (e.g. credentials to
+         * encrypt) should override this method.
+         *
+         * @return the snapshot, or null if the data must be serialized on the calling thread.
+         */
+        default @Nullable DataSnapshot snapshotData() {
+            return null;
+        }
+
         /**
          * Deserialize a XML data block from the input stream.
          *
@@ -1011,6 +1627,11 @@ public class WifiConfigStore {
         /**
          * Check if there is any new data to persist from the last write.
          *
+         * Note: If this returns false, the data serialized by the last write may be written
+         * again without invoking {@link #serializeData(XmlSerializer,
+         * WifiConfigStoreEncryptionUtil)}. So this must return true after any change to the
+         * serialized data, including data only computed during serialization.
+         *
          * @return true if the module has new data to persist, false otherwise.
          */
         boolean hasNewDataToSerialize();
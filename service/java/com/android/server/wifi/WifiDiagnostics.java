@@ -463,25 +463,35 @@ public class WifiDiagnostics {
     }
 
     static class LimitedCircularArray<E> {
-        private ArrayList<E> mArrayList;
-        private int mMax;
+        private final Object[] mItems;
+        // Index in |mItems| of the oldest element.
+        private int mHead;
+        private int mSize;
         LimitedCircularArray(int max) {
-            mArrayList = new ArrayList<E>(max);
-            mMax = max;
+            mItems = new Object[max];
         }
 
         public final void addLast(E e) {
-            if (mArrayList.size() >= mMax)
-                mArrayList.remove(0);
-            mArrayList.add(e);
+            if (mSize < mItems.length) {
+                mItems[(mHead + mSize) % mItems.length] = e;
+                mSize++;
+            } else {
+                // Overwrite the oldest element.
+                mItems[mHead] = e;
+                mHead = (mHead + 1) % mItems.length;
+            }
         }
 
         public final int size() {
-            return mArrayList.size();
+            return mSize;
         }
 
+        @SuppressWarnings("unchecked")
         public final E get(int i) {
-            return mArrayList.get(i);
+            if (i < 0 || i >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + mSize);
+            }
+            return (E) mItems[(mHead + i) % mItems.length];
         }
     }
 
@@ -691,7 +701,7 @@ public class WifiDiagnostics {
                     ByteArrayRingBuffer data = mRingBufferData.get(buffer.name);
                     byte[][] buffers = new byte[data.getNumBuffers()][];
                     for (int i = 0; i < data.getNumBuffers(); i++) {
-                        buffers[i] = data.getBuffer(i).clone();
+                        buffers[i] = data.getBuffer(i);
                     }
                     report.ringBuffers.put(buffer.name, buffers);
                 }
@@ -150,6 +150,7 @@ public class WifiInjector {
     private final HandlerThread mWifiP2pServiceHandlerThread;
     private final HandlerThread mPasspointProvisionerHandlerThread;
     private final HandlerThread mWifiDiagnosticsHandlerThread;
+    private final HandlerThread mWifiConfigStoreWriterHandlerThread;
     private final WifiTrafficPoller mWifiTrafficPoller;
     private final WifiCountryCode mCountryCode;
     private final BackupManagerProxy mBackupManagerProxy = new BackupManagerProxy();
@@ -314,6 +315,8 @@ public class WifiInjector {
         mPasspointProvisionerHandlerThread =
                 new HandlerThread("PasspointProvisionerHandlerThread");
         mPasspointProvisionerHandlerThread.start();
+        mWifiConfigStoreWriterHandlerThread = new HandlerThread("WifiConfigStoreWriter");
+        mWifiConfigStoreWriterHandlerThread.start();
         mDeviceConfigFacade = new DeviceConfigFacade(mContext, wifiHandler, mWifiMetrics);
         mAdaptiveConnectivityEnabledSettingObserver =
                 new AdaptiveConnectivityEnabledSettingObserver(wifiHandler, mWifiMetrics,
@@ -362,7 +365,10 @@ public class WifiInjector {
         mWifiKeyStore = new WifiKeyStore(mContext, mKeyStore, mFrameworkFacade);
         // New config store
         mWifiConfigStore = new WifiConfigStore(mContext, wifiHandler, mClock, mWifiMetrics,
-                WifiConfigStore.createSharedFiles(mFrameworkFacade.isNiapModeOn(mContext)));
+                WifiConfigStore.createSharedFiles(mFrameworkFacade.isNiapModeOn(mContext)),
+                new Handler(mWifiConfigStoreWriterHandlerThread.getLooper()));
+        mWifiConfigStore.setBinaryFormatEnabled(mContext.getResources().getBoolean(
+                R.bool.config_wifiConfigStoreBinaryFormatEnabled));
         mWifiPseudonymManager = new WifiPseudonymManager(
                 mContext, this, mClock, wifiLooper);
         mWifiCarrierInfoManager = new WifiCarrierInfoManager(makeTelephonyManager(),
@@ -726,6 +732,10 @@ public class WifiInjector {
         return mWifiConfigManager;
     }
 
+    public WifiConfigStore getWifiConfigStore() {
+        return mWifiConfigStore;
+    }
+
     public PasspointManager getPasspointManager() {
         return mPasspointManager;
     }
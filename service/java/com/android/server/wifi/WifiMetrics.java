@@ -103,6 +103,7 @@ import com.android.server.wifi.proto.nano.WifiMetricsProto.LinkSpeedCount;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.MeteredNetworkStats;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.NetworkDisableReason;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.NetworkSelectionExperimentDecisions;
+import com.android.server.wifi.proto.nano.WifiMetricsProto.NetworkSelectionStageStats;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.PasspointProfileTypeCount;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.PasspointProvisionStats;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.PasspointProvisionStats.ProvisionFailureCount;
@@ -129,6 +130,8 @@ import com.android.server.wifi.proto.nano.WifiMetricsProto.WifiUsabilityStats;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.WifiUsabilityStatsEntry;
 import com.android.server.wifi.rtt.RttMetrics;
 import com.android.server.wifi.scanner.KnownBandsChannelHelper;
+import com.android.server.wifi.util.ConcurrentIntCounter;
+import com.android.server.wifi.util.ConcurrentIntHistogram;
 import com.android.server.wifi.util.InformationElementUtil;
 import com.android.server.wifi.util.IntCounter;
 import com.android.server.wifi.util.IntHistogram;
@@ -329,21 +332,22 @@ public class WifiMetrics {
     /** Mapping of link speed values to LinkSpeedCount objects. */
     private final SparseArray<LinkSpeedCount> mLinkSpeedCounts = new SparseArray<>();
 
-    private final IntCounter mTxLinkSpeedCount2g = new IntCounter();
-    private final IntCounter mTxLinkSpeedCount5gLow = new IntCounter();
-    private final IntCounter mTxLinkSpeedCount5gMid = new IntCounter();
-    private final IntCounter mTxLinkSpeedCount5gHigh = new IntCounter();
-    private final IntCounter mTxLinkSpeedCount6gLow = new IntCounter();
-    private final IntCounter mTxLinkSpeedCount6gMid = new IntCounter();
-    private final IntCounter mTxLinkSpeedCount6gHigh = new IntCounter();
-
-    private final IntCounter mRxLinkSpeedCount2g = new IntCounter();
-    private final IntCounter mRxLinkSpeedCount5gLow = new IntCounter();
-    private final IntCounter mRxLinkSpeedCount5gMid = new IntCounter();
-    private final IntCounter mRxLinkSpeedCount5gHigh = new IntCounter();
-    private final IntCounter mRxLinkSpeedCount6gLow = new IntCounter();
-    private final IntCounter mRxLinkSpeedCount6gMid = new IntCounter();
-    private final IntCounter mRxLinkSpeedCount6gHigh = new IntCounter();
+    // Recorded on every RSSI poll without holding mLock, merged when the proto is consolidated.
+    private final ConcurrentIntCounter mTxLinkSpeedCount2g = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mTxLinkSpeedCount5gLow = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mTxLinkSpeedCount5gMid = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mTxLinkSpeedCount5gHigh = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mTxLinkSpeedCount6gLow = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mTxLinkSpeedCount6gMid = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mTxLinkSpeedCount6gHigh = new ConcurrentIntCounter();
+
+    private final ConcurrentIntCounter mRxLinkSpeedCount2g = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mRxLinkSpeedCount5gLow = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mRxLinkSpeedCount5gMid = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mRxLinkSpeedCount5gHigh = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mRxLinkSpeedCount6gLow = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mRxLinkSpeedCount6gMid = new ConcurrentIntCounter();
+    private final ConcurrentIntCounter mRxLinkSpeedCount6gHigh = new ConcurrentIntCounter();
 
     private final IntCounter mMakeBeforeBreakLingeringDurationSeconds = new IntCounter();
 
@@ -478,6 +482,17 @@ public class WifiMetrics {
     /** WifiConfigStore write duration histogram. */
     private SparseIntArray mWifiConfigStoreWriteDurationHistogram = new SparseIntArray();
 
+    /** WifiConfigStore write latency histogram, from queuing to writing the store files. */
+    private SparseIntArray mWifiConfigStoreWriteLatencyHistogram = new SparseIntArray();
+
+    /** Number of WifiConfigStore files pending write, each time a write is queued. */
+    private static final int MAX_WIFI_CONFIG_STORE_WRITE_QUEUE_DEPTH = 10;
+    private final IntCounter mWifiConfigStoreWriteQueueDepth =
+            new IntCounter(0, MAX_WIFI_CONFIG_STORE_WRITE_QUEUE_DEPTH);
+
+    /** Number of WifiConfigStore writes coalesced into an already queued write. */
+    private int mNumWifiConfigStoreCoalescedWrites = 0;
+
     /** New  API surface metrics */
     private final WifiNetworkRequestApiLog mWifiNetworkRequestApiLog =
             new WifiNetworkRequestApiLog();
@@ -558,22 +573,22 @@ public class WifiMetrics {
     private static final int[] CHANNEL_UTILIZATION_BUCKETS =
             {25, 50, 75, 100, 125, 150, 175, 200, 225};
 
-    private final IntHistogram mChannelUtilizationHistogram2G =
-            new IntHistogram(CHANNEL_UTILIZATION_BUCKETS);
+    private final ConcurrentIntHistogram mChannelUtilizationHistogram2G =
+            new ConcurrentIntHistogram(CHANNEL_UTILIZATION_BUCKETS);
 
-    private final IntHistogram mChannelUtilizationHistogramAbove2G =
-            new IntHistogram(CHANNEL_UTILIZATION_BUCKETS);
+    private final ConcurrentIntHistogram mChannelUtilizationHistogramAbove2G =
+            new ConcurrentIntHistogram(CHANNEL_UTILIZATION_BUCKETS);
 
     private static final int[] THROUGHPUT_MBPS_BUCKETS =
             {1, 5, 10, 15, 25, 50, 100, 150, 200, 300, 450, 600, 800, 1200, 1600};
-    private final IntHistogram mTxThroughputMbpsHistogram2G =
-            new IntHistogram(THROUGHPUT_MBPS_BUCKETS);
-    private final IntHistogram mRxThroughputMbpsHistogram2G =
-            new IntHistogram(THROUGHPUT_MBPS_BUCKETS);
-    private final IntHistogram mTxThroughputMbpsHistogramAbove2G =
-            new IntHistogram(THROUGHPUT_MBPS_BUCKETS);
-    private final IntHistogram mRxThroughputMbpsHistogramAbove2G =
-            new IntHistogram(THROUGHPUT_MBPS_BUCKETS);
+    private final ConcurrentIntHistogram mTxThroughputMbpsHistogram2G =
+            new ConcurrentIntHistogram(THROUGHPUT_MBPS_BUCKETS);
+    private final ConcurrentIntHistogram mRxThroughputMbpsHistogram2G =
+            new ConcurrentIntHistogram(THROUGHPUT_MBPS_BUCKETS);
+    private final ConcurrentIntHistogram mTxThroughputMbpsHistogramAbove2G =
+            new ConcurrentIntHistogram(THROUGHPUT_MBPS_BUCKETS);
+    private final ConcurrentIntHistogram mRxThroughputMbpsHistogramAbove2G =
+            new ConcurrentIntHistogram(THROUGHPUT_MBPS_BUCKETS);
 
     // Init partial scan metrics
     private int mInitPartialScanTotalCount;
@@ -586,6 +601,32 @@ public class WifiMetrics {
     private final IntHistogram mInitPartialScanFailureHistogram =
             new IntHistogram(INIT_PARTIAL_SCAN_HISTOGRAM_BUCKETS);
 
+    // Network selection stage duration metrics
+    public static final int NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS = 0;
+    public static final int NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT = 1;
+    public static final int NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS = 2;
+    public static final int NETWORK_SELECTION_STAGE_SCORE_CANDIDATES = 3;
+    @IntDef(prefix = { "NETWORK_SELECTION_STAGE_" }, value = {
+            NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS,
+            NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT,
+            NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS,
+            NETWORK_SELECTION_STAGE_SCORE_CANDIDATES,
+    })
+    public @interface NetworkSelectionStage {}
+    private static final int[] NETWORK_SELECTION_STAGE_DURATION_MICROS_BUCKETS =
+            {100, 500, 1000, 5000, 10000, 50000, 100000, 500000};
+    private final IntHistogram mNetworkSelectionFilterScanResultsMicrosHistogram =
+            new IntHistogram(NETWORK_SELECTION_STAGE_DURATION_MICROS_BUCKETS);
+    private final IntHistogram mNetworkSelectionPredictThroughputMicrosHistogram =
+            new IntHistogram(NETWORK_SELECTION_STAGE_DURATION_MICROS_BUCKETS);
+    private final IntHistogram mNetworkSelectionUpdateSecurityParamsMicrosHistogram =
+            new IntHistogram(NETWORK_SELECTION_STAGE_DURATION_MICROS_BUCKETS);
+    private final IntHistogram mNetworkSelectionScoreCandidatesMicrosHistogram =
+            new IntHistogram(NETWORK_SELECTION_STAGE_DURATION_MICROS_BUCKETS);
+    // Keyed by WifiNetworkSelector.NetworkNominator.NominatorId
+    private final SparseArray<IntHistogram> mNetworkSelectionNominatorMicrosHistograms =
+            new SparseArray<>();
+
     // Wi-Fi off metrics
     private final WifiOffMetrics mWifiOffMetrics = new WifiOffMetrics();
 
@@ -2756,22 +2797,20 @@ public class WifiMetrics {
                 && txLinkSpeed >= MIN_LINK_SPEED_MBPS)) {
             return;
         }
-        synchronized (mLock) {
-            if (ScanResult.is24GHz(frequency)) {
-                mTxLinkSpeedCount2g.increment(txLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_LOW_END_FREQ) {
-                mTxLinkSpeedCount5gLow.increment(txLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_MID_END_FREQ) {
-                mTxLinkSpeedCount5gMid.increment(txLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_HIGH_END_FREQ) {
-                mTxLinkSpeedCount5gHigh.increment(txLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_LOW_END_FREQ) {
-                mTxLinkSpeedCount6gLow.increment(txLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_MID_END_FREQ) {
-                mTxLinkSpeedCount6gMid.increment(txLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_HIGH_END_FREQ) {
-                mTxLinkSpeedCount6gHigh.increment(txLinkSpeed);
-            }
+        if (ScanResult.is24GHz(frequency)) {
+            mTxLinkSpeedCount2g.increment(txLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_LOW_END_FREQ) {
+            mTxLinkSpeedCount5gLow.increment(txLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_MID_END_FREQ) {
+            mTxLinkSpeedCount5gMid.increment(txLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_HIGH_END_FREQ) {
+            mTxLinkSpeedCount5gHigh.increment(txLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_LOW_END_FREQ) {
+            mTxLinkSpeedCount6gLow.increment(txLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_MID_END_FREQ) {
+            mTxLinkSpeedCount6gMid.increment(txLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_HIGH_END_FREQ) {
+            mTxLinkSpeedCount6gHigh.increment(txLinkSpeed);
         }
     }
 
@@ -2787,22 +2826,20 @@ public class WifiMetrics {
                 && rxLinkSpeed >= MIN_LINK_SPEED_MBPS)) {
             return;
         }
-        synchronized (mLock) {
-            if (ScanResult.is24GHz(frequency)) {
-                mRxLinkSpeedCount2g.increment(rxLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_LOW_END_FREQ) {
-                mRxLinkSpeedCount5gLow.increment(rxLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_MID_END_FREQ) {
-                mRxLinkSpeedCount5gMid.increment(rxLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_HIGH_END_FREQ) {
-                mRxLinkSpeedCount5gHigh.increment(rxLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_LOW_END_FREQ) {
-                mRxLinkSpeedCount6gLow.increment(rxLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_MID_END_FREQ) {
-                mRxLinkSpeedCount6gMid.increment(rxLinkSpeed);
-            } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_HIGH_END_FREQ) {
-                mRxLinkSpeedCount6gHigh.increment(rxLinkSpeed);
-            }
+        if (ScanResult.is24GHz(frequency)) {
+            mRxLinkSpeedCount2g.increment(rxLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_LOW_END_FREQ) {
+            mRxLinkSpeedCount5gLow.increment(rxLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_MID_END_FREQ) {
+            mRxLinkSpeedCount5gMid.increment(rxLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_5_GHZ_HIGH_END_FREQ) {
+            mRxLinkSpeedCount5gHigh.increment(rxLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_LOW_END_FREQ) {
+            mRxLinkSpeedCount6gLow.increment(rxLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_MID_END_FREQ) {
+            mRxLinkSpeedCount6gMid.increment(rxLinkSpeed);
+        } else if (frequency <= KnownBandsChannelHelper.BAND_6_GHZ_HIGH_END_FREQ) {
+            mRxLinkSpeedCount6gHigh.increment(rxLinkSpeed);
         }
     }
 
@@ -2817,12 +2854,10 @@ public class WifiMetrics {
                 || channelUtilization > InformationElementUtil.BssLoad.MAX_CHANNEL_UTILIZATION) {
             return;
         }
-        synchronized (mLock) {
-            if (ScanResult.is24GHz(frequency)) {
-                mChannelUtilizationHistogram2G.increment(channelUtilization);
-            } else {
-                mChannelUtilizationHistogramAbove2G.increment(channelUtilization);
-            }
+        if (ScanResult.is24GHz(frequency)) {
+            mChannelUtilizationHistogram2G.increment(channelUtilization);
+        } else {
+            mChannelUtilizationHistogramAbove2G.increment(channelUtilization);
         }
     }
 
@@ -2835,22 +2870,22 @@ public class WifiMetrics {
     @VisibleForTesting
     public void incrementThroughputKbpsCount(int txThroughputKbps, int rxThroughputKbps,
             int frequency) {
-        synchronized (mLock) {
-            if (ScanResult.is24GHz(frequency)) {
-                if (txThroughputKbps >= 0) {
-                    mTxThroughputMbpsHistogram2G.increment(txThroughputKbps / 1000);
-                }
-                if (rxThroughputKbps >= 0) {
-                    mRxThroughputMbpsHistogram2G.increment(rxThroughputKbps / 1000);
-                }
-            } else {
-                if (txThroughputKbps >= 0) {
-                    mTxThroughputMbpsHistogramAbove2G.increment(txThroughputKbps / 1000);
-                }
-                if (rxThroughputKbps >= 0) {
-                    mRxThroughputMbpsHistogramAbove2G.increment(rxThroughputKbps / 1000);
-                }
+        if (ScanResult.is24GHz(frequency)) {
+            if (txThroughputKbps >= 0) {
+                mTxThroughputMbpsHistogram2G.increment(txThroughputKbps / 1000);
+            }
+            if (rxThroughputKbps >= 0) {
+                mRxThroughputMbpsHistogram2G.increment(rxThroughputKbps / 1000);
             }
+        } else {
+            if (txThroughputKbps >= 0) {
+                mTxThroughputMbpsHistogramAbove2G.increment(txThroughputKbps / 1000);
+            }
+            if (rxThroughputKbps >= 0) {
+                mRxThroughputMbpsHistogramAbove2G.increment(rxThroughputKbps / 1000);
+            }
+        }
+        synchronized (mLock) {
             mWifiStatusBuilder.setEstimatedTxKbps(txThroughputKbps);
             mWifiStatusBuilder.setEstimatedRxKbps(rxThroughputKbps);
         }
@@ -4074,6 +4109,12 @@ public class WifiMetrics {
                         + mWifiLogProto.numPasspointProviderUninstallSuccess);
                 pw.println("mWifiLogProto.numPasspointProvidersSuccessfullyConnected="
                         + mWifiLogProto.numPasspointProvidersSuccessfullyConnected);
+                pw.println("mWifiLogProto.passpointAnqpCacheHitCount="
+                        + mWifiLogProto.passpointAnqpCacheHitCount);
+                pw.println("mWifiLogProto.passpointAnqpCacheMissCount="
+                        + mWifiLogProto.passpointAnqpCacheMissCount);
+                pw.println("mWifiLogProto.passpointAnqpCacheEvictionCount="
+                        + mWifiLogProto.passpointAnqpCacheEvictionCount);
 
                 pw.println("mWifiLogProto.installedPasspointProfileTypeForR1:"
                         + mInstalledPasspointProfileTypeForR1);
@@ -4337,6 +4378,11 @@ public class WifiMetrics {
                         + mWifiConfigStoreReadDurationHistogram.toString());
                 pw.println("mWifiConfigStoreWriteDurationHistogram:"
                         + mWifiConfigStoreWriteDurationHistogram.toString());
+                pw.println("mWifiConfigStoreWriteLatencyHistogram:"
+                        + mWifiConfigStoreWriteLatencyHistogram.toString());
+                pw.println("mWifiConfigStoreWriteQueueDepth:" + mWifiConfigStoreWriteQueueDepth);
+                pw.println("mNumWifiConfigStoreCoalescedWrites:"
+                        + mNumWifiConfigStoreCoalescedWrites);
 
                 pw.println("mLinkProbeSuccessRssiCounts:" + mLinkProbeSuccessRssiCounts);
                 pw.println("mLinkProbeFailureRssiCounts:" + mLinkProbeFailureRssiCounts);
@@ -4435,10 +4481,27 @@ public class WifiMetrics {
                 pw.println(wifiToWifiSwitchStatsToString(mWifiToWifiSwitchStats));
 
                 dumpInitPartialScanMetrics(pw);
+                dumpNetworkSelectionStageMetrics(pw);
             }
         }
     }
 
+    private void dumpNetworkSelectionStageMetrics(PrintWriter pw) {
+        pw.println("mNetworkSelectionFilterScanResultsMicrosHistogram:\n"
+                + mNetworkSelectionFilterScanResultsMicrosHistogram);
+        for (int i = 0; i < mNetworkSelectionNominatorMicrosHistograms.size(); i++) {
+            pw.println("mNetworkSelectionNominatorMicrosHistogram (nominator "
+                    + mNetworkSelectionNominatorMicrosHistograms.keyAt(i) + "):\n"
+                    + mNetworkSelectionNominatorMicrosHistograms.valueAt(i));
+        }
+        pw.println("mNetworkSelectionPredictThroughputMicrosHistogram:\n"
+                + mNetworkSelectionPredictThroughputMicrosHistogram);
+        pw.println("mNetworkSelectionUpdateSecurityParamsMicrosHistogram:\n"
+                + mNetworkSelectionUpdateSecurityParamsMicrosHistogram);
+        pw.println("mNetworkSelectionScoreCandidatesMicrosHistogram:\n"
+                + mNetworkSelectionScoreCandidatesMicrosHistogram);
+    }
+
     private void dumpInitPartialScanMetrics(PrintWriter pw) {
         pw.println("mInitPartialScanTotalCount:\n" + mInitPartialScanTotalCount);
         pw.println("mInitPartialScanSuccessCount:\n" + mInitPartialScanSuccessCount);
@@ -4624,6 +4687,25 @@ public class WifiMetrics {
         }
     }
 
+    /**
+     * Add to the Passpoint ANQP cache statistics, which are reset along with the rest of the
+     * metrics when they are cleared.
+     *
+     * @param hitCount Number of lookups which found an entry in the cache since the last call.
+     * @param missCount Number of lookups which did not find an entry in the cache since the last
+     *                  call.
+     * @param evictionCount Number of entries evicted because the cache was full since the last
+     *                      call.
+     */
+    public void incrementPasspointAnqpCacheStats(long hitCount, long missCount,
+            long evictionCount) {
+        synchronized (mLock) {
+            mWifiLogProto.passpointAnqpCacheHitCount += hitCount;
+            mWifiLogProto.passpointAnqpCacheMissCount += missCount;
+            mWifiLogProto.passpointAnqpCacheEvictionCount += evictionCount;
+        }
+    }
+
     /**
      * Update number of times for type of saved Passpoint profile.
      *
@@ -4704,6 +4786,54 @@ public class WifiMetrics {
         }
     }
 
+    /**
+     * Log the time spent in a stage of network selection.
+     *
+     * @param stage the network selection stage
+     * @param durationMicros the time spent in the stage, in microseconds
+     */
+    public void logNetworkSelectionStageDuration(@NetworkSelectionStage int stage,
+            long durationMicros) {
+        int duration = (int) Math.min(durationMicros, Integer.MAX_VALUE);
+        synchronized (mLock) {
+            switch (stage) {
+                case NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS:
+                    mNetworkSelectionFilterScanResultsMicrosHistogram.increment(duration);
+                    break;
+                case NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT:
+                    mNetworkSelectionPredictThroughputMicrosHistogram.increment(duration);
+                    break;
+                case NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS:
+                    mNetworkSelectionUpdateSecurityParamsMicrosHistogram.increment(duration);
+                    break;
+                case NETWORK_SELECTION_STAGE_SCORE_CANDIDATES:
+                    mNetworkSelectionScoreCandidatesMicrosHistogram.increment(duration);
+                    break;
+                default:
+                    Log.e(TAG, "Unknown network selection stage: " + stage);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Log the time spent by a network nominator during network selection.
+     *
+     * @param nominatorId the nominator ID, see WifiNetworkSelector.NetworkNominator.NominatorId
+     * @param durationMicros the time spent nominating networks, in microseconds
+     */
+    public void logNetworkSelectionNominatorDuration(int nominatorId, long durationMicros) {
+        int duration = (int) Math.min(durationMicros, Integer.MAX_VALUE);
+        synchronized (mLock) {
+            IntHistogram histogram = mNetworkSelectionNominatorMicrosHistograms.get(nominatorId);
+            if (histogram == null) {
+                histogram = new IntHistogram(NETWORK_SELECTION_STAGE_DURATION_MICROS_BUCKETS);
+                mNetworkSelectionNominatorMicrosHistograms.put(nominatorId, histogram);
+            }
+            histogram.increment(duration);
+        }
+    }
+
     /**
      * Put all metrics that were being tracked separately into mWifiLogProto
      */
@@ -5026,6 +5156,13 @@ public class WifiMetrics {
             mWifiLogProto.wifiConfigStoreIo.writeDurations =
                     makeWifiConfigStoreIODurationBucketArray(
                             mWifiConfigStoreWriteDurationHistogram);
+            mWifiLogProto.wifiConfigStoreIo.writeLatencies =
+                    makeWifiConfigStoreIODurationBucketArray(
+                            mWifiConfigStoreWriteLatencyHistogram);
+            mWifiLogProto.wifiConfigStoreIo.writeQueueDepth =
+                    mWifiConfigStoreWriteQueueDepth.toProto();
+            mWifiLogProto.wifiConfigStoreIo.numCoalescedWrites =
+                    mNumWifiConfigStoreCoalescedWrites;
 
             LinkProbeStats linkProbeStats = new LinkProbeStats();
             linkProbeStats.successRssiCounts = mLinkProbeSuccessRssiCounts.toProto();
@@ -5122,21 +5259,21 @@ public class WifiMetrics {
                                 return entry;
                             });
             // 'G' is due to that 1st Letter after _ becomes capital during protobuff compilation
-            mWifiLogProto.txLinkSpeedCount2G = mTxLinkSpeedCount2g.toProto();
-            mWifiLogProto.txLinkSpeedCount5GLow = mTxLinkSpeedCount5gLow.toProto();
-            mWifiLogProto.txLinkSpeedCount5GMid = mTxLinkSpeedCount5gMid.toProto();
-            mWifiLogProto.txLinkSpeedCount5GHigh = mTxLinkSpeedCount5gHigh.toProto();
-            mWifiLogProto.txLinkSpeedCount6GLow = mTxLinkSpeedCount6gLow.toProto();
-            mWifiLogProto.txLinkSpeedCount6GMid = mTxLinkSpeedCount6gMid.toProto();
-            mWifiLogProto.txLinkSpeedCount6GHigh = mTxLinkSpeedCount6gHigh.toProto();
-
-            mWifiLogProto.rxLinkSpeedCount2G = mRxLinkSpeedCount2g.toProto();
-            mWifiLogProto.rxLinkSpeedCount5GLow = mRxLinkSpeedCount5gLow.toProto();
-            mWifiLogProto.rxLinkSpeedCount5GMid = mRxLinkSpeedCount5gMid.toProto();
-            mWifiLogProto.rxLinkSpeedCount5GHigh = mRxLinkSpeedCount5gHigh.toProto();
-            mWifiLogProto.rxLinkSpeedCount6GLow = mRxLinkSpeedCount6gLow.toProto();
-            mWifiLogProto.rxLinkSpeedCount6GMid = mRxLinkSpeedCount6gMid.toProto();
-            mWifiLogProto.rxLinkSpeedCount6GHigh = mRxLinkSpeedCount6gHigh.toProto();
+            mWifiLogProto.txLinkSpeedCount2G = mTxLinkSpeedCount2g.getAndReset().toProto();
+            mWifiLogProto.txLinkSpeedCount5GLow = mTxLinkSpeedCount5gLow.getAndReset().toProto();
+            mWifiLogProto.txLinkSpeedCount5GMid = mTxLinkSpeedCount5gMid.getAndReset().toProto();
+            mWifiLogProto.txLinkSpeedCount5GHigh = mTxLinkSpeedCount5gHigh.getAndReset().toProto();
+            mWifiLogProto.txLinkSpeedCount6GLow = mTxLinkSpeedCount6gLow.getAndReset().toProto();
+            mWifiLogProto.txLinkSpeedCount6GMid = mTxLinkSpeedCount6gMid.getAndReset().toProto();
+            mWifiLogProto.txLinkSpeedCount6GHigh = mTxLinkSpeedCount6gHigh.getAndReset().toProto();
+
+            mWifiLogProto.rxLinkSpeedCount2G = mRxLinkSpeedCount2g.getAndReset().toProto();
+            mWifiLogProto.rxLinkSpeedCount5GLow = mRxLinkSpeedCount5gLow.getAndReset().toProto();
+            mWifiLogProto.rxLinkSpeedCount5GMid = mRxLinkSpeedCount5gMid.getAndReset().toProto();
+            mWifiLogProto.rxLinkSpeedCount5GHigh = mRxLinkSpeedCount5gHigh.getAndReset().toProto();
+            mWifiLogProto.rxLinkSpeedCount6GLow = mRxLinkSpeedCount6gLow.getAndReset().toProto();
+            mWifiLogProto.rxLinkSpeedCount6GMid = mRxLinkSpeedCount6gMid.getAndReset().toProto();
+            mWifiLogProto.rxLinkSpeedCount6GHigh = mRxLinkSpeedCount6gHigh.getAndReset().toProto();
 
             HealthMonitorMetrics healthMonitorMetrics = mWifiHealthMonitor.buildProto();
             if (healthMonitorMetrics != null) {
@@ -5149,19 +5286,19 @@ public class WifiMetrics {
             mWifiLogProto.channelUtilizationHistogram =
                     new WifiMetricsProto.ChannelUtilizationHistogram();
             mWifiLogProto.channelUtilizationHistogram.utilization2G =
-                    mChannelUtilizationHistogram2G.toProto();
+                    mChannelUtilizationHistogram2G.getAndReset().toProto();
             mWifiLogProto.channelUtilizationHistogram.utilizationAbove2G =
-                    mChannelUtilizationHistogramAbove2G.toProto();
+                    mChannelUtilizationHistogramAbove2G.getAndReset().toProto();
             mWifiLogProto.throughputMbpsHistogram =
                     new WifiMetricsProto.ThroughputMbpsHistogram();
             mWifiLogProto.throughputMbpsHistogram.tx2G =
-                    mTxThroughputMbpsHistogram2G.toProto();
+                    mTxThroughputMbpsHistogram2G.getAndReset().toProto();
             mWifiLogProto.throughputMbpsHistogram.txAbove2G =
-                    mTxThroughputMbpsHistogramAbove2G.toProto();
+                    mTxThroughputMbpsHistogramAbove2G.getAndReset().toProto();
             mWifiLogProto.throughputMbpsHistogram.rx2G =
-                    mRxThroughputMbpsHistogram2G.toProto();
+                    mRxThroughputMbpsHistogram2G.getAndReset().toProto();
             mWifiLogProto.throughputMbpsHistogram.rxAbove2G =
-                    mRxThroughputMbpsHistogramAbove2G.toProto();
+                    mRxThroughputMbpsHistogramAbove2G.getAndReset().toProto();
             mWifiLogProto.meteredNetworkStatsSaved = mMeteredNetworkStatsBuilder.toProto(false);
             mWifiLogProto.meteredNetworkStatsSuggestion = mMeteredNetworkStatsBuilder.toProto(true);
 
@@ -5174,6 +5311,31 @@ public class WifiMetrics {
             initialPartialScanStats.failedScanChannelCountHistogram =
                     mInitPartialScanFailureHistogram.toProto();
             mWifiLogProto.initPartialScanStats = initialPartialScanStats;
+
+            NetworkSelectionStageStats networkSelectionStageStats =
+                    new NetworkSelectionStageStats();
+            networkSelectionStageStats.filterScanResultsMicrosHistogram =
+                    mNetworkSelectionFilterScanResultsMicrosHistogram.toProto();
+            networkSelectionStageStats.nominateNetworksMicrosHistograms =
+                    new NetworkSelectionStageStats.NominatorDurationHistogram[
+                            mNetworkSelectionNominatorMicrosHistograms.size()];
+            for (int i = 0; i < mNetworkSelectionNominatorMicrosHistograms.size(); i++) {
+                NetworkSelectionStageStats.NominatorDurationHistogram nominatorHistogram =
+                        new NetworkSelectionStageStats.NominatorDurationHistogram();
+                nominatorHistogram.nominatorId =
+                        mNetworkSelectionNominatorMicrosHistograms.keyAt(i);
+                nominatorHistogram.durationMicrosHistogram =
+                        mNetworkSelectionNominatorMicrosHistograms.valueAt(i).toProto();
+                networkSelectionStageStats.nominateNetworksMicrosHistograms[i] =
+                        nominatorHistogram;
+            }
+            networkSelectionStageStats.predictThroughputMicrosHistogram =
+                    mNetworkSelectionPredictThroughputMicrosHistogram.toProto();
+            networkSelectionStageStats.updateSecurityParamsMicrosHistogram =
+                    mNetworkSelectionUpdateSecurityParamsMicrosHistogram.toProto();
+            networkSelectionStageStats.scoreCandidatesMicrosHistogram =
+                    mNetworkSelectionScoreCandidatesMicrosHistogram.toProto();
+            mWifiLogProto.networkSelectionStageStats = networkSelectionStageStats;
             mWifiLogProto.carrierWifiMetrics = mCarrierWifiMetrics.toProto();
             mWifiLogProto.mainlineModuleVersion = mWifiHealthMonitor.getWifiStackVersion();
             mWifiLogProto.firstConnectAfterBootStats = mFirstConnectAfterBootStats;
@@ -5290,20 +5452,8 @@ public class WifiMetrics {
             mRssiPollCountsMap.clear();
             mRssiDeltaCounts.clear();
             mLinkSpeedCounts.clear();
-            mTxLinkSpeedCount2g.clear();
-            mTxLinkSpeedCount5gLow.clear();
-            mTxLinkSpeedCount5gMid.clear();
-            mTxLinkSpeedCount5gHigh.clear();
-            mTxLinkSpeedCount6gLow.clear();
-            mTxLinkSpeedCount6gMid.clear();
-            mTxLinkSpeedCount6gHigh.clear();
-            mRxLinkSpeedCount2g.clear();
-            mRxLinkSpeedCount5gLow.clear();
-            mRxLinkSpeedCount5gMid.clear();
-            mRxLinkSpeedCount5gHigh.clear();
-            mRxLinkSpeedCount6gLow.clear();
-            mRxLinkSpeedCount6gMid.clear();
-            mRxLinkSpeedCount6gHigh.clear();
+            // The lock-free link speed counts, channel utilization and throughput histograms are
+            // reset by consolidateProto(), so that samples recorded since then are kept.
             mWifiAlertReasonCounts.clear();
             mMakeBeforeBreakLingeringDurationSeconds.clear();
             mWifiScoreCounts.clear();
@@ -5371,6 +5521,9 @@ public class WifiMetrics {
             mMeteredNetworkStatsBuilder.clear();
             mWifiConfigStoreReadDurationHistogram.clear();
             mWifiConfigStoreWriteDurationHistogram.clear();
+            mWifiConfigStoreWriteLatencyHistogram.clear();
+            mWifiConfigStoreWriteQueueDepth.clear();
+            mNumWifiConfigStoreCoalescedWrites = 0;
             mLinkProbeSuccessRssiCounts.clear();
             mLinkProbeFailureRssiCounts.clear();
             mLinkProbeSuccessLinkSpeedCounts.clear();
@@ -5397,12 +5550,6 @@ public class WifiMetrics {
             mWifiLockLowLatencyActiveSessionDurationSecHistogram.clear();
             mWifiLockStats.clear();
             mWifiToggleStats.clear();
-            mChannelUtilizationHistogram2G.clear();
-            mChannelUtilizationHistogramAbove2G.clear();
-            mTxThroughputMbpsHistogram2G.clear();
-            mRxThroughputMbpsHistogram2G.clear();
-            mTxThroughputMbpsHistogramAbove2G.clear();
-            mRxThroughputMbpsHistogramAbove2G.clear();
             mPasspointProvisionFailureCounts.clear();
             mNumProvisionSuccess = 0;
             mBssidBlocklistStats = new BssidBlocklistStats();
@@ -5415,6 +5562,11 @@ public class WifiMetrics {
             mInitPartialScanFailureCount = 0;
             mInitPartialScanSuccessHistogram.clear();
             mInitPartialScanFailureHistogram.clear();
+            mNetworkSelectionFilterScanResultsMicrosHistogram.clear();
+            mNetworkSelectionNominatorMicrosHistograms.clear();
+            mNetworkSelectionPredictThroughputMicrosHistogram.clear();
+            mNetworkSelectionUpdateSecurityParamsMicrosHistogram.clear();
+            mNetworkSelectionScoreCandidatesMicrosHistogram.clear();
             mCarrierWifiMetrics.clear();
             mFirstConnectAfterBootStats = null;
             mWifiToWifiSwitchStats.clear();
@@ -7304,6 +7456,38 @@ public class WifiMetrics {
         }
     }
 
+    /**
+     * Update wifi config store write latency.
+     *
+     * @param timeMs Time from queuing the write to completing it, in milliseconds
+     */
+    public void noteWifiConfigStoreWriteLatency(int timeMs) {
+        synchronized (mLock) {
+            MetricsUtils.addValueToLinearHistogram(timeMs, mWifiConfigStoreWriteLatencyHistogram,
+                    WIFI_CONFIG_STORE_IO_DURATION_BUCKET_RANGES_MS);
+        }
+    }
+
+    /**
+     * Update wifi config store write queue depth.
+     *
+     * @param depth Number of store files pending write, including the ones just queued.
+     */
+    public void noteWifiConfigStoreWriteQueueDepth(int depth) {
+        synchronized (mLock) {
+            mWifiConfigStoreWriteQueueDepth.increment(depth);
+        }
+    }
+
+    /**
+     * Increment number of wifi config store writes coalesced into an already queued write.
+     */
+    public void incrementNumWifiConfigStoreCoalescedWrites() {
+        synchronized (mLock) {
+            mNumWifiConfigStoreCoalescedWrites++;
+        }
+    }
+
     /**
      * Logs the decision of a network selection algorithm when compared against another network
      * selection algorithm.
@@ -22,9 +22,9 @@ import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiEnterpriseConfig;
 import android.net.wifi.WifiManager;
 import android.net.wifi.WifiSsid;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -37,15 +37,18 @@ import com.android.server.wifi.WifiCarrierInfoManager.SimAuthRequestData;
 import com.android.server.wifi.hotspot2.AnqpEvent;
 import com.android.server.wifi.hotspot2.IconEvent;
 import com.android.server.wifi.hotspot2.WnmData;
+import com.android.server.wifi.util.ArrayUtils;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Listen for events from the wpa_supplicant & wificond and broadcast them on
@@ -168,6 +171,8 @@ public class WifiMonitor {
      * <code>
      * message.getData().getString(KEY_IFACE)
      * </code>
+     * The data Bundle is shared by all the messages sent for the interface, and must not be
+     * modified by the receiver.
      */
     public static final String KEY_IFACE = "com.android.server.wifi.WifiMonitor.KEY_IFACE";
 
@@ -177,19 +182,59 @@ public class WifiMonitor {
         mVerboseLoggingEnabled = verbose;
     }
 
-    private final Map<String, SparseArray<Set<Handler>>> mHandlerMap = new HashMap<>();
+    /**
+     * Handlers registered for an iface, along with the data attached to every message delivered
+     * for this iface.
+     *
+     * Instances are immutable once published in |mHandlerMap|: registrations replace them.
+     */
+    private static final class IfaceHandlers {
+        /**
+         * Data containing {@link #KEY_IFACE}, shared by all the messages delivered for this
+         * iface. Must not be modified.
+         */
+        public final Bundle data;
+        /** Handlers registered for each message what. */
+        public final SparseArray<Handler[]> handlers;
+
+        IfaceHandlers(Bundle data, SparseArray<Handler[]> handlers) {
+            this.data = data;
+            this.handlers = handlers;
+        }
+    }
+
+    /**
+     * Dispatch table of the registered handlers. It is replaced (copy-on-write) on every
+     * registration change, so that events can be dispatched from any thread without locking.
+     */
+    private volatile Map<String, IfaceHandlers> mHandlerMap = Collections.emptyMap();
+
+    /**
+     * Register the given |handler| for the messages with |what| on |iface|.
+     */
     public synchronized void registerHandler(String iface, int what, Handler handler) {
-        SparseArray<Set<Handler>> ifaceHandlers = mHandlerMap.get(iface);
+        IfaceHandlers ifaceHandlers = mHandlerMap.get(iface);
+        Bundle data;
+        SparseArray<Handler[]> handlers;
         if (ifaceHandlers == null) {
-            ifaceHandlers = new SparseArray<>();
-            mHandlerMap.put(iface, ifaceHandlers);
+            data = new Bundle();
+            data.putString(KEY_IFACE, iface);
+            handlers = new SparseArray<>();
+        } else {
+            data = ifaceHandlers.data;
+            handlers = ifaceHandlers.handlers.clone();
         }
-        Set<Handler> ifaceWhatHandlers = ifaceHandlers.get(what);
+        Handler[] ifaceWhatHandlers = handlers.get(what);
         if (ifaceWhatHandlers == null) {
-            ifaceWhatHandlers = new ArraySet<>();
-            ifaceHandlers.put(what, ifaceWhatHandlers);
+            ifaceWhatHandlers = new Handler[] {handler};
+        } else if (ArrayUtils.contains(ifaceWhatHandlers, handler)) {
+            return;
+        } else {
+            ifaceWhatHandlers = Arrays.copyOf(ifaceWhatHandlers, ifaceWhatHandlers.length + 1);
+            ifaceWhatHandlers[ifaceWhatHandlers.length - 1] = handler;
         }
-        ifaceWhatHandlers.add(handler);
+        handlers.put(what, ifaceWhatHandlers);
+        publishIfaceHandlers(iface, new IfaceHandlers(data, handlers));
     }
 
     /**
@@ -199,18 +244,34 @@ public class WifiMonitor {
      * @param handler
      */
     public synchronized void deregisterHandler(String iface, int what, Handler handler) {
-        SparseArray<Set<Handler>> ifaceHandlers = mHandlerMap.get(iface);
+        IfaceHandlers ifaceHandlers = mHandlerMap.get(iface);
         if (ifaceHandlers == null) {
             return;
         }
-        Set<Handler> ifaceWhatHandlers = ifaceHandlers.get(what);
-        if (ifaceWhatHandlers == null) {
+        Handler[] ifaceWhatHandlers = ifaceHandlers.handlers.get(what);
+        if (!ArrayUtils.contains(ifaceWhatHandlers, handler)) {
             return;
         }
-        ifaceWhatHandlers.remove(handler);
+        SparseArray<Handler[]> handlers = ifaceHandlers.handlers.clone();
+        if (ifaceWhatHandlers.length == 1) {
+            handlers.remove(what);
+        } else {
+            handlers.put(what, Arrays.stream(ifaceWhatHandlers)
+                    .filter(h -> h != handler)
+                    .toArray(Handler[]::new));
+        }
+        // The iface is kept even without any handler, so that its events are not broadcast to
+        // the handlers of the other ifaces.
+        publishIfaceHandlers(iface, new IfaceHandlers(ifaceHandlers.data, handlers));
     }
 
-    private final Map<String, Boolean> mMonitoringMap = new HashMap<>();
+    private void publishIfaceHandlers(String iface, IfaceHandlers ifaceHandlers) {
+        Map<String, IfaceHandlers> handlerMap = new HashMap<>(mHandlerMap);
+        handlerMap.put(iface, ifaceHandlers);
+        mHandlerMap = Collections.unmodifiableMap(handlerMap);
+    }
+
+    private final Map<String, Boolean> mMonitoringMap = new ConcurrentHashMap<>();
     private boolean isMonitoring(String iface) {
         Boolean val = mMonitoringMap.get(iface);
         if (val == null) {
@@ -268,7 +329,7 @@ public class WifiMonitor {
     /**
      * Similar functions to Handler#sendMessage that send the message to the registered handler
      * for the given interface and message what.
-     * All of these should be called with the WifiMonitor class lock
+     * These may be called from any thread, they do not lock the registered handlers.
      */
     private void sendMessage(String iface, int what) {
         sendMessage(iface, Message.obtain(null, what));
@@ -291,17 +352,11 @@ public class WifiMonitor {
     }
 
     private void sendMessage(String iface, Message message) {
-        SparseArray<Set<Handler>> ifaceHandlers = mHandlerMap.get(iface);
-        if (iface != null && ifaceHandlers != null) {
+        Map<String, IfaceHandlers> handlerMap = mHandlerMap;
+        IfaceHandlers ifaceHandlers = iface == null ? null : handlerMap.get(iface);
+        if (ifaceHandlers != null) {
             if (isMonitoring(iface)) {
-                Set<Handler> ifaceWhatHandlers = ifaceHandlers.get(message.what);
-                if (ifaceWhatHandlers != null) {
-                    for (Handler handler : ifaceWhatHandlers) {
-                        if (handler != null) {
-                            sendMessage(iface, handler, Message.obtain(message));
-                        }
-                    }
-                }
+                sendMessage(ifaceHandlers, message);
             } else {
                 if (mVerboseLoggingEnabled) {
                     Log.d(TAG, "Dropping event because (" + iface + ") is stopped");
@@ -311,16 +366,9 @@ public class WifiMonitor {
             if (mVerboseLoggingEnabled) {
                 Log.d(TAG, "Sending to all monitors because there's no matching iface");
             }
-            for (Map.Entry<String, SparseArray<Set<Handler>>> entry : mHandlerMap.entrySet()) {
-                iface = entry.getKey();
-                if (isMonitoring(iface)) {
-                    Set<Handler> ifaceWhatHandlers = entry.getValue().get(message.what);
-                    if (ifaceWhatHandlers == null) continue;
-                    for (Handler handler : ifaceWhatHandlers) {
-                        if (handler != null) {
-                            sendMessage(iface, handler, Message.obtain(message));
-                        }
-                    }
+            for (Map.Entry<String, IfaceHandlers> entry : handlerMap.entrySet()) {
+                if (isMonitoring(entry.getKey())) {
+                    sendMessage(entry.getValue(), message);
                 }
             }
         }
@@ -328,12 +376,22 @@ public class WifiMonitor {
         message.recycle();
     }
 
-    private void sendMessage(String iface, Handler handler, Message message) {
-        message.setTarget(handler);
-        // getData() will return the existing Bundle if it exists, or create a new one
-        // This prevents clearing the existing data.
-        message.getData().putString(KEY_IFACE, iface);
-        message.sendToTarget();
+    /**
+     * Send a copy of |message| to each of the handlers registered for its what on the iface.
+     * The copies share the iface data Bundle instead of each allocating one.
+     */
+    private void sendMessage(IfaceHandlers ifaceHandlers, Message message) {
+        Handler[] ifaceWhatHandlers = ifaceHandlers.handlers.get(message.what);
+        if (ifaceWhatHandlers == null) {
+            return;
+        }
+        for (Handler handler : ifaceWhatHandlers) {
+            if (handler == null) continue;
+            Message copy = Message.obtain(message);
+            copy.setData(ifaceHandlers.data);
+            copy.setTarget(handler);
+            copy.sendToTarget();
+        }
     }
 
     /**
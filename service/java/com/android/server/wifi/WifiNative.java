@@ -71,6 +71,7 @@ import com.android.server.wifi.util.InformationElementUtil;
 import com.android.server.wifi.util.NativeUtil;
 import com.android.server.wifi.util.NetdWrapper;
 import com.android.server.wifi.util.NetdWrapper.NetdEventObserver;
+import com.android.server.wifi.util.ParsedInformationElements;
 import com.android.wifi.resources.R;
 
 import java.io.PrintWriter;
@@ -1839,16 +1840,19 @@ public class WifiNative {
                 continue;
             }
             String bssid = bssidMac.toString();
-            ScanResult.InformationElement[] ies =
-                    InformationElementUtil.parseInformationElements(result.getInformationElements());
+            // Parse the raw IEs once, and share the view with all the consumers below.
+            ParsedInformationElements parsedIes =
+                    ParsedInformationElements.parse(result.getInformationElements());
+            ScanResult.InformationElement[] ies = parsedIes.getElements();
             InformationElementUtil.Capabilities capabilities =
                     new InformationElementUtil.Capabilities();
-            capabilities.from(ies, result.getCapabilities(), mIsEnhancedOpenSupported,
+            capabilities.from(parsedIes, result.getCapabilities(), mIsEnhancedOpenSupported,
                               result.getFrequencyMhz());
             String flags = capabilities.generateCapabilitiesString();
             NetworkDetail networkDetail;
             try {
-                networkDetail = new NetworkDetail(bssid, ies, null, result.getFrequencyMhz());
+                networkDetail = new NetworkDetail(bssid, parsedIes, null,
+                        result.getFrequencyMhz());
             } catch (IllegalArgumentException e) {
                 Log.e(TAG, "Illegal argument for scan result with bssid: " + bssid, e);
                 continue;
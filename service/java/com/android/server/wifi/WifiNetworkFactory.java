@@ -622,7 +622,7 @@ public class WifiNetworkFactory extends NetworkFactory {
     private void saveToStore() {
         // Set the flag to let WifiConfigStore that we have new data to write.
         mHasNewDataToSerialize = true;
-        if (!mWifiConfigManager.saveToStore(true)) {
+        if (!mWifiConfigManager.saveModuleDataToStore(true)) {
             Log.w(TAG, "Failed to save to store");
         }
     }
@@ -1801,6 +1801,8 @@ public class WifiNetworkFactory extends NetworkFactory {
             // keep the most recently used AP in the end
             approvedAccessPoints.remove(accessPoint);
             approvedAccessPoints.add(accessPoint);
+            // Persist the new order with the next write of the store.
+            mHasNewDataToSerialize = true;
             if (mVerboseLoggingEnabled) {
                 Log.v(TAG, "Found " + bssid
                         + " in internal user approved access point for " + requestorPackageName);
@@ -118,6 +118,8 @@ public class WifiNetworkSelector {
     private final List<Pair<ScanDetail, WifiConfiguration>> mConnectableNetworks =
             new ArrayList<>();
     private List<ScanDetail> mFilteredNetworks = new ArrayList<>();
+    // Time spent predicting throughput during the current network selection.
+    private long mPredictThroughputNanos;
     private final WifiScoreCard mWifiScoreCard;
     private final ScoringParams mScoringParams;
     private final WifiInjector mWifiInjector;
@@ -737,7 +739,8 @@ public class WifiNetworkSelector {
      * c) Log any disabled networks.
      */
     private void updateConfiguredNetworks() {
-        List<WifiConfiguration> configuredNetworks = mWifiConfigManager.getConfiguredNetworks();
+        List<WifiConfiguration> configuredNetworks =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
         if (configuredNetworks.size() == 0) {
             localLog("No configured networks.");
             return;
@@ -1064,10 +1067,14 @@ public class WifiNetworkSelector {
         }
 
         // Filter out unwanted networks.
+        long stageStartNanos = mClock.getElapsedSinceBootNanos();
         mFilteredNetworks = filterScanResults(scanDetails, bssidBlocklist, cmmStates);
+        logStageDuration(WifiMetrics.NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS,
+                stageStartNanos);
         if (mFilteredNetworks.size() == 0) {
             return null;
         }
+        mPredictThroughputNanos = 0;
 
         WifiCandidates wifiCandidates = new WifiCandidates(mWifiScoreCard, mContext);
         for (ClientModeManagerState cmmState : cmmStates) {
@@ -1114,6 +1121,8 @@ public class WifiNetworkSelector {
 
         for (NetworkNominator registeredNominator : mNominators) {
             localLog("About to run " + registeredNominator.getName() + " :");
+            long nominatorStartNanos = mClock.getElapsedSinceBootNanos();
+            long predictThroughputStartNanos = mPredictThroughputNanos;
             registeredNominator.nominateNetworks(
                     new ArrayList<>(mFilteredNetworks),
                     untrustedNetworkAllowed, oemPaidNetworkAllowed, oemPrivateNetworkAllowed,
@@ -1148,6 +1157,12 @@ public class WifiNetworkSelector {
                             }
                         }
                     });
+            // Throughput prediction of the nominated candidates is only accounted for in its own
+            // stage.
+            long nominatorNanos = mClock.getElapsedSinceBootNanos() - nominatorStartNanos
+                    - (mPredictThroughputNanos - predictThroughputStartNanos);
+            mWifiMetrics.logNetworkSelectionNominatorDuration(registeredNominator.getId(),
+                    nanosToMicros(nominatorNanos));
         }
         if (mConnectableNetworks.size() != wifiCandidates.size()) {
             localLog("Connectable: " + mConnectableNetworks.size()
@@ -1156,6 +1171,9 @@ public class WifiNetworkSelector {
 
         // Update multi link candidate throughput before network selection.
         updateMultiLinkCandidatesThroughput(wifiCandidates);
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT,
+                nanosToMicros(mPredictThroughputNanos));
 
         return wifiCandidates.getCandidates();
     }
@@ -1449,16 +1467,25 @@ public class WifiNetworkSelector {
         // This is needed for the legacy user connect choice, at least
         Collection<Collection<WifiCandidates.Candidate>> groupedCandidates =
                 wifiCandidates.getGroupedCandidates();
+        long scoreCandidatesNanos = 0;
+        long updateSecurityParamsNanos = 0;
         for (Collection<WifiCandidates.Candidate> group : groupedCandidates) {
+            long stageStartNanos = mClock.getElapsedSinceBootNanos();
             WifiCandidates.ScoredCandidate choice = activeScorer.scoreCandidates(group);
+            scoreCandidatesNanos += mClock.getElapsedSinceBootNanos() - stageStartNanos;
             if (choice == null) continue;
             ScanDetail scanDetail = getScanDetailForCandidateKey(choice.candidateKey);
             if (scanDetail == null) continue;
             WifiConfiguration config = mWifiConfigManager
                     .getConfiguredNetwork(choice.candidateKey.networkId);
             if (config == null) continue;
+            stageStartNanos = mClock.getElapsedSinceBootNanos();
             updateNetworkCandidateSecurityParams(config, scanDetail);
+            updateSecurityParamsNanos += mClock.getElapsedSinceBootNanos() - stageStartNanos;
         }
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS,
+                nanosToMicros(updateSecurityParamsNanos));
 
         for (Collection<WifiCandidates.Candidate> group : groupedCandidates) {
             for (WifiCandidates.Candidate candidate : group.stream()
@@ -1473,6 +1500,7 @@ public class WifiNetworkSelector {
         int selectedNetworkId = WifiConfiguration.INVALID_NETWORK_ID;
 
         // Run all the CandidateScorers
+        long stageStartNanos = mClock.getElapsedSinceBootNanos();
         boolean legacyOverrideWanted = true;
         for (WifiCandidates.CandidateScorer candidateScorer : mCandidateScorers.values()) {
             WifiCandidates.ScoredCandidate choice;
@@ -1499,6 +1527,11 @@ public class WifiNetworkSelector {
                     + " expid " + expid);
             experimentNetworkSelections.put(expid, networkId);
         }
+        // Also account for the grouped candidates scored by the active scorer above.
+        scoreCandidatesNanos += mClock.getElapsedSinceBootNanos() - stageStartNanos;
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_SCORE_CANDIDATES,
+                nanosToMicros(scoreCandidatesNanos));
 
         // Update metrics about differences in the selections made by various methods
         final int activeExperimentId = experimentIdFromIdentifier(activeScorer.getIdentifier());
@@ -1615,7 +1648,24 @@ public class WifiNetworkSelector {
         return ans;
     }
 
+    private void logStageDuration(@WifiMetrics.NetworkSelectionStage int stage,
+            long stageStartNanos) {
+        mWifiMetrics.logNetworkSelectionStageDuration(stage,
+                nanosToMicros(mClock.getElapsedSinceBootNanos() - stageStartNanos));
+    }
+
+    private static long nanosToMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
     private int predictThroughput(@NonNull ScanDetail scanDetail) {
+        long startNanos = mClock.getElapsedSinceBootNanos();
+        int throughput = predictThroughputInternal(scanDetail);
+        mPredictThroughputNanos += mClock.getElapsedSinceBootNanos() - startNanos;
+        return throughput;
+    }
+
+    private int predictThroughputInternal(@NonNull ScanDetail scanDetail) {
         if (scanDetail.getScanResult() == null || scanDetail.getNetworkDetail() == null) {
             return 0;
         }
@@ -75,6 +75,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -202,6 +203,15 @@ public class WifiNetworkSuggestionsManager {
             }
             onSecurityParamsUpdateForSuggestion(configuration, securityParams);
         }
+
+        @Override
+        public void onNetworkConnectionOrderChanged() {
+            // The most recently connected state of the suggestions is only computed when they
+            // are serialized, so it needs to be written again.
+            if (!mActiveNetworkSuggestionsPerApp.isEmpty()) {
+                mHasNewDataToSerialize = true;
+            }
+        }
     }
 
     /**
@@ -467,6 +477,12 @@ public class WifiNetworkSuggestionsManager {
 
     private boolean mUserDataLoaded = false;
 
+    /**
+     * Suggestions of each app published for readers on other threads, see
+     * {@link #getSnapshot(String, int)}. Null until the user data is loaded.
+     */
+    private volatile Map<String, List<WifiNetworkSuggestion>> mSuggestionsSnapshot = null;
+
     /**
      * Keep a set of packageNames which is treated as carrier provider.
      */
@@ -522,9 +538,8 @@ public class WifiNetworkSuggestionsManager {
                     if (ewns.wns.passpointConfiguration != null) {
                         continue;
                     }
-                    ewns.wns.wifiConfiguration.isMostRecentlyConnected = mLruConnectionTracker
-                            .isMostRecentlyConnected(ewns.createInternalWifiConfiguration(
-                                    mWifiCarrierInfoManager));
+                    ewns.wns.wifiConfiguration.isMostRecentlyConnected =
+                            isMostRecentlyConnected(ewns);
                 }
             }
             // Clear the flag after writing to disk.
@@ -558,12 +573,14 @@ public class WifiNetworkSuggestionsManager {
                 }
             }
             mUserDataLoaded = true;
+            publishSuggestionsSnapshot();
         }
 
         @Override
         public void reset() {
             mUserDataLoaded = false;
             mActiveNetworkSuggestionsPerApp.clear();
+            mSuggestionsSnapshot = null;
             mActiveScanResultMatchInfoWithBssid.clear();
             mActiveScanResultMatchInfoWithNoBssid.clear();
             mPasspointInfo.clear();
@@ -573,6 +590,11 @@ public class WifiNetworkSuggestionsManager {
         public boolean hasNewDataToSerialize() {
             return mHasNewDataToSerialize;
         }
+
+        private boolean isMostRecentlyConnected(ExtendedWifiNetworkSuggestion ewns) {
+            return mLruConnectionTracker.isMostRecentlyConnected(
+                    ewns.createInternalWifiConfiguration(mWifiCarrierInfoManager));
+        }
     }
 
     private void handleUserAllowAction(int uid, String packageName) {
@@ -706,9 +728,11 @@ public class WifiNetworkSuggestionsManager {
     }
 
     private void saveToStore() {
+        // Every change to the suggestions is saved, publish them for the readers as well.
+        publishSuggestionsSnapshot();
         // Set the flag to let WifiConfigStore that we have new data to write.
         mHasNewDataToSerialize = true;
-        if (!mWifiConfigManager.saveToStore(true)) {
+        if (!mWifiConfigManager.saveModuleDataToStore(true)) {
             Log.w(TAG, "Failed to save to store");
         }
     }
@@ -1451,6 +1475,49 @@ public class WifiNetworkSuggestionsManager {
         Log.i(TAG, "Removed " + packageName);
     }
 
+    /**
+     * Publishes the suggestions returned by {@link #getSnapshot(String, int)}.
+     */
+    private void publishSuggestionsSnapshot() {
+        if (!mUserDataLoaded) {
+            return;
+        }
+        Map<String, List<WifiNetworkSuggestion>> snapshot = new HashMap<>();
+        for (Map.Entry<String, PerAppInfo> entry : mActiveNetworkSuggestionsPerApp.entrySet()) {
+            List<WifiNetworkSuggestion> networkSuggestionList = new ArrayList<>();
+            for (ExtendedWifiNetworkSuggestion extendedSuggestion
+                    : entry.getValue().extNetworkSuggestions.values()) {
+                networkSuggestionList.add(extendedSuggestion.wns);
+            }
+            snapshot.put(entry.getKey(), Collections.unmodifiableList(networkSuggestionList));
+        }
+        mSuggestionsSnapshot = snapshot;
+    }
+
+    /**
+     * Get all network suggestion for target App, as of the last change to the suggestions.
+     *
+     * Unlike {@link #get(String, int)}, this can be called from any thread, so that binder
+     * threads do not need to wait for the main Wifi thread to read the suggestions.
+     * @return List of WifiNetworkSuggestions
+     */
+    public @NonNull List<WifiNetworkSuggestion> getSnapshot(@NonNull String packageName,
+            int uid) {
+        if (!mWifiPermissionsUtil.doesUidBelongToCurrentUserOrDeviceOwner(uid)) {
+            Log.e(TAG, "UID " + uid + " not visible to the current user");
+            return new ArrayList<>();
+        }
+        Map<String, List<WifiNetworkSuggestion>> snapshot = mSuggestionsSnapshot;
+        if (snapshot == null) {
+            Log.e(TAG, "Get Network suggestion before boot complete is not allowed.");
+            return new ArrayList<>();
+        }
+        List<WifiNetworkSuggestion> networkSuggestionList = snapshot.get(packageName);
+        // if App never suggested return empty list.
+        if (networkSuggestionList == null) return new ArrayList<>();
+        return new ArrayList<>(networkSuggestionList);
+    }
+
     /**
      * Get all network suggestion for target App
      * @return List of WifiNetworkSuggestions
@@ -1939,7 +2006,7 @@ public class WifiNetworkSuggestionsManager {
         // As they are all single type configurations, they should have unique keys.
         Map<String, WifiConfiguration> wifiConfigMap = new HashMap<>();
         WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(
-                mWifiConfigManager.getConfiguredNetworks(), true)
+                mWifiConfigManager.getConfiguredNetworksSnapshot(), true)
                         .forEach(c -> wifiConfigMap.put(c.getProfileKey(), c));
 
         // Create a HashSet to avoid return multiple result for duplicate ScanResult.
@@ -2516,8 +2583,24 @@ public class WifiNetworkSuggestionsManager {
         return true;
     }
 
+    /**
+     * Check if any of the provided suggestions is a Passpoint suggestion.
+     */
+    public static boolean hasPasspointSuggestion(
+            @NonNull List<WifiNetworkSuggestion> wifiNetworkSuggestions) {
+        if (wifiNetworkSuggestions == null) return false;
+        for (WifiNetworkSuggestion suggestion : wifiNetworkSuggestions) {
+            if (suggestion != null && suggestion.passpointConfiguration != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get the filtered ScanResults which may be authenticated by the suggested configurations.
+     * If none of the suggestions is a Passpoint suggestion, see
+     * {@link #hasPasspointSuggestion(List)}, this can be called from any thread.
      * @param wifiNetworkSuggestions The list of {@link WifiNetworkSuggestion}
      * @param scanResults The list of {@link ScanResult}
      * @return The filtered ScanResults
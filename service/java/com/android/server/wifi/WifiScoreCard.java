@@ -67,6 +67,7 @@ import com.android.server.wifi.proto.WifiScoreCardProto.Signal;
 import com.android.server.wifi.proto.WifiScoreCardProto.UnivariateStatistic;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.BandwidthEstimatorStats;
 import com.android.server.wifi.util.IntHistogram;
+import com.android.server.wifi.util.LongKeyedTable;
 import com.android.server.wifi.util.LruList;
 import com.android.server.wifi.util.NativeUtil;
 import com.android.server.wifi.util.RssiUtil;
@@ -82,7 +83,6 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -651,9 +651,7 @@ public class WifiScoreCard {
      * Clear the blocklist streak count for all APs that belong to this SSID.
      */
     public void resetBssidBlocklistStreakForSsid(@NonNull String ssid) {
-        Iterator<Map.Entry<MacAddress, PerBssid>> it = mApForBssid.entrySet().iterator();
-        while (it.hasNext()) {
-            PerBssid perBssid = it.next().getValue();
+        for (PerBssid perBssid : mApForBssid.values()) {
             if (!ssid.equals(perBssid.ssid)) {
                 continue;
             }
@@ -770,7 +768,6 @@ public class WifiScoreCard {
         // The wall clock time in milliseconds for the last successful l2 connection.
         public long lastConnectionTimestampMs;
         public boolean changed;
-        public boolean referenced;
 
         private SecurityType mSecurityType = null;
         private int mNetworkAgentId = Integer.MIN_VALUE;
@@ -784,7 +781,6 @@ public class WifiScoreCard {
             this.bssid = bssid;
             this.id = idFromLong();
             this.changed = false;
-            this.referenced = false;
         }
         void updateEventStats(Event event, int frequency, int rssi, int linkspeed,
                 String ifaceName) {
@@ -2112,37 +2108,31 @@ public class WifiScoreCard {
     // for instance when we are not associated.
     private final PerBssid mPlaceholderPerBssid;
 
-    private final Map<MacAddress, PerBssid> mApForBssid = new ArrayMap<>();
+    // Keyed by the BSSID encoded as a 48-bit long, so that lookups do not allocate.
+    private final LongKeyedTable<PerBssid> mApForBssid = new LongKeyedTable<>();
+    private final long mPlaceholderBssidLong =
+            NativeUtil.macAddressStringToLong(DEFAULT_MAC_ADDRESS);
     private int mApForBssidTargetSize = TARGET_IN_MEMORY_ENTRIES;
-    private int mApForBssidReferenced = 0;
 
     // TODO should be private, but WifiCandidates needs it
     @NonNull PerBssid lookupBssid(String ssid, String bssid) {
-        MacAddress mac;
         if (ssid == null || WifiManager.UNKNOWN_SSID.equals(ssid) || bssid == null) {
             return mPlaceholderPerBssid;
         }
-        try {
-            mac = MacAddress.fromString(bssid);
-        } catch (IllegalArgumentException e) {
-            return mPlaceholderPerBssid;
-        }
-        if (mac.equals(mPlaceholderPerBssid.bssid)) {
+        long mac = NativeUtil.macAddressStringToLong(bssid);
+        if (mac < 0 || mac == mPlaceholderBssidLong) {
             return mPlaceholderPerBssid;
         }
         PerBssid ans = mApForBssid.get(mac);
         if (ans == null || !ans.ssid.equals(ssid)) {
-            ans = new PerBssid(ssid, mac);
+            ans = new PerBssid(ssid, MacAddress.fromString(bssid));
             PerBssid old = mApForBssid.put(mac, ans);
             if (old != null) {
                 Log.i(TAG, "Discarding stats for score card (ssid changed) ID: " + old.id);
-                if (old.referenced) mApForBssidReferenced--;
             }
             requestReadBssid(ans);
         }
-        if (!ans.referenced) {
-            ans.referenced = true;
-            mApForBssidReferenced++;
+        if (mApForBssid.markReferenced(mac)) {
             clean();
         }
         return ans;
@@ -2190,7 +2180,7 @@ public class WifiScoreCard {
             return;
         }
         mApForNetwork.remove(ssid);
-        mApForBssid.entrySet().removeIf(entry -> ssid.equals(entry.getValue().ssid));
+        mApForBssid.removeIf(perBssid -> ssid.equals(perBssid.ssid));
         if (mMemoryStore == null) return;
         mMemoryStore.removeCluster(groupHintFromSsid(ssid));
     }
@@ -2269,20 +2259,12 @@ public class WifiScoreCard {
      */
     private void clean() {
         if (mMemoryStore == null) return;
-        if (mApForBssidReferenced >= mApForBssidTargetSize) {
+        if (mApForBssid.referencedCount() >= mApForBssidTargetSize) {
             doWritesBssid(); // Do not want to evict changed items
             // Evict the unreferenced ones, and clear all the referenced bits for the next round.
-            Iterator<Map.Entry<MacAddress, PerBssid>> it = mApForBssid.entrySet().iterator();
-            while (it.hasNext()) {
-                PerBssid perBssid = it.next().getValue();
-                if (perBssid.referenced) {
-                    perBssid.referenced = false;
-                } else {
-                    it.remove();
-                    if (mVerboseLoggingEnabled) Log.v(TAG, "Evict " + perBssid.id);
-                }
-            }
-            mApForBssidReferenced = 0;
+            mApForBssid.evictUnreferenced(perBssid -> {
+                if (mVerboseLoggingEnabled) Log.v(TAG, "Evict " + perBssid.id);
+            });
         }
     }
 
@@ -2341,7 +2323,7 @@ public class WifiScoreCard {
 
     @VisibleForTesting
     PerBssid fetchByBssid(MacAddress mac) {
-        return mApForBssid.get(mac);
+        return mApForBssid.get(NativeUtil.macAddressToLong(mac.toByteArray()));
     }
 
     @VisibleForTesting
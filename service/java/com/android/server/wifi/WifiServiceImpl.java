@@ -355,6 +355,7 @@ public class WifiServiceImpl extends BaseWifiService {
     private final WifiThreadRunner mWifiThreadRunner;
     private final HandlerThread mWifiHandlerThread;
     private final MemoryStoreImpl mMemoryStoreImpl;
+    private final WifiConfigStore mWifiConfigStore;
     private final WifiScoreCard mWifiScoreCard;
     private final WifiHealthMonitor mWifiHealthMonitor;
     private final WifiDataStall mWifiDataStall;
@@ -524,6 +525,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiThreadRunner = mWifiInjector.getWifiThreadRunner();
         mWifiHandlerThread = mWifiInjector.getWifiHandlerThread();
         mWifiConfigManager = mWifiInjector.getWifiConfigManager();
+        mWifiConfigStore = mWifiInjector.getWifiConfigStore();
         mHalDeviceManager = mWifiInjector.getHalDeviceManager();
         mWifiBlocklistMonitor = mWifiInjector.getWifiBlocklistMonitor();
         mPasspointManager = mWifiInjector.getPasspointManager();
@@ -990,6 +992,13 @@ public class WifiServiceImpl extends BaseWifiService {
         // before memory store write triggered by mMemoryStoreImpl.stop().
         mWifiScoreCard.resetAllConnectionStates();
         mMemoryStoreImpl.stop();
+
+        // Persist any buffered or queued config store writes before the device goes down.
+        try {
+            mWifiConfigStore.flush();
+        } catch (IOException e) {
+            Log.wtf(TAG, "Writing to store failed. Saved networks maybe lost!", e);
+        }
     }
 
     private boolean checkNetworkSettingsPermission(int pid, int uid) {
@@ -3163,9 +3172,9 @@ public class WifiServiceImpl extends BaseWifiService {
             targetConfigUid = callingUid; // expose only those configs created by the calling App
         }
         int finalTargetConfigUid = targetConfigUid;
-        List<WifiConfiguration> configs = mWifiThreadRunner.call(
-                () -> mWifiConfigManager.getSavedNetworks(finalTargetConfigUid),
-                Collections.emptyList());
+        // The saved networks are published by the Wifi thread, no need to wait for it.
+        List<WifiConfiguration> configs =
+                mWifiConfigManager.getSavedNetworksSnapshot(finalTargetConfigUid);
         if (isTargetSdkLessThanQOrPrivileged && !callerNetworksOnly) {
             return new ParceledListSlice<>(
                     WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(configs, false));
@@ -3228,6 +3237,7 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("getPrivilegedConfiguredNetworks uid=%").c(callingUid).flush();
         }
         List<WifiConfiguration> configs = mWifiThreadRunner.call(
+                "getPrivilegedConfiguredNetworks",
                 () -> mWifiConfigManager.getConfiguredNetworksWithPasswords(),
                 Collections.emptyList());
         return new ParceledListSlice<>(
@@ -3495,7 +3505,7 @@ public class WifiServiceImpl extends BaseWifiService {
             Log.e(TAG, "Attempt to retrieve passpoint with invalid scanResult List");
             return Collections.emptyMap();
         }
-        return mWifiThreadRunner.call(
+        return mWifiThreadRunner.call("getAllMatchingPasspointProfilesForScanResults",
             () -> mPasspointManager.getAllMatchingPasspointProfilesForScanResults(scanResults),
                 Collections.emptyMap());
     }
@@ -3566,7 +3576,7 @@ public class WifiServiceImpl extends BaseWifiService {
             Log.w(TAG, "Attempt to retrieve OsuProviders with invalid scanResult List");
             return Collections.emptyMap();
         }
-        return mWifiThreadRunner.call(
+        return mWifiThreadRunner.call("getMatchingOsuProviders",
             () -> mPasspointManager.getMatchingOsuProviders(scanResults), Collections.emptyMap());
     }
 
@@ -3590,7 +3600,7 @@ public class WifiServiceImpl extends BaseWifiService {
             Log.e(TAG, "Attempt to retrieve Passpoint configuration with null osuProviders");
             return new HashMap<>();
         }
-        return mWifiThreadRunner.call(
+        return mWifiThreadRunner.call("getMatchingPasspointConfigsForOsuProviders",
             () -> mPasspointManager.getMatchingPasspointConfigsForOsuProviders(osuProviders),
                 Collections.emptyMap());
     }
@@ -3617,7 +3627,7 @@ public class WifiServiceImpl extends BaseWifiService {
             Log.e(TAG, "Attempt to retrieve WifiConfiguration with null fqdn List");
             return new ArrayList<>();
         }
-        return mWifiThreadRunner.call(
+        return mWifiThreadRunner.call("getWifiConfigsForPasspointProfiles",
             () -> mPasspointManager.getWifiConfigsForPasspointProfiles(fqdnList),
                 Collections.emptyList());
     }
@@ -4237,6 +4247,7 @@ public class WifiServiceImpl extends BaseWifiService {
      * {@link WifiManager#getConnectionInfo()}, {@link WifiManager#getDhcpInfo()} when a
      * secondary STA is created as a result of a request from their app (peer to peer
      * WifiNetworkSpecifier request or oem paid/private suggestion).
+     * Can be called from any thread.
      */
     private ClientModeManager getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
             int callingUid, @NonNull String callingPackageName) {
@@ -4289,10 +4300,10 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiPermissionsUtil.checkPackage(uid, callingPackage);
         long ident = Binder.clearCallingIdentity();
         try {
-            WifiInfo wifiInfo = mWifiThreadRunner.call(
-                    () -> getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
-                            uid, callingPackage)
-                            .getConnectionInfo(), new WifiInfo());
+            // The mode managers and their connection info are published by the Wifi thread, no
+            // need to wait for it.
+            WifiInfo wifiInfo = getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
+                    uid, callingPackage).getConnectionInfoSnapshot();
             long redactions = wifiInfo.getApplicableRedactions();
             if (mWifiPermissionsUtil.checkLocalMacAddressPermission(uid)) {
                 if (mVerboseLoggingEnabled) {
@@ -4344,9 +4355,8 @@ public class WifiServiceImpl extends BaseWifiService {
         try {
             mWifiPermissionsUtil.enforceCanAccessScanResults(callingPackage, callingFeatureId,
                     uid, null);
-            List<ScanResult> scanResults = mWifiThreadRunner.call(
-                    mScanRequestProxy::getScanResults, Collections.emptyList());
-            return scanResults;
+            // The snapshot is published by the Wifi thread, no need to wait for it.
+            return mScanRequestProxy.getScanResultsSnapshot();
         } catch (SecurityException e) {
             Log.w(TAG, "Permission violation - getScanResults not allowed for uid="
                     + uid + ", packageName=" + callingPackage + ", reason=" + e);
@@ -4422,16 +4432,17 @@ public class WifiServiceImpl extends BaseWifiService {
             mWifiPermissionsUtil.enforceCanAccessScanResults(callingPackage, callingFeatureId,
                     uid, null);
 
-            return mWifiThreadRunner.call(
-                    () -> {
-                        if (!ScanResultUtil.validateScanResultList(scanResults)) {
-                            return mWifiNetworkSuggestionsManager.getMatchingScanResults(
-                                    networkSuggestions, mScanRequestProxy.getScanResults());
-                        } else {
-                            return mWifiNetworkSuggestionsManager.getMatchingScanResults(
-                                    networkSuggestions, scanResults);
-                        }
-                    },
+            List<ScanResult> scanResultsToMatch =
+                    ScanResultUtil.validateScanResultList(scanResults)
+                            ? scanResults : mScanRequestProxy.getScanResultsSnapshot();
+            if (!WifiNetworkSuggestionsManager.hasPasspointSuggestion(networkSuggestions)) {
+                // Only the Passpoint matching needs the state of the Wifi thread.
+                return mWifiNetworkSuggestionsManager.getMatchingScanResults(
+                        networkSuggestions, scanResultsToMatch);
+            }
+            return mWifiThreadRunner.call("getMatchingScanResults",
+                    () -> mWifiNetworkSuggestionsManager.getMatchingScanResults(
+                            networkSuggestions, scanResultsToMatch),
                     Collections.emptyMap());
         } catch (SecurityException e) {
             Log.w(TAG, "Permission violation - getMatchingScanResults not allowed for uid="
@@ -5313,6 +5324,8 @@ public class WifiServiceImpl extends BaseWifiService {
                 pw.println();
                 mLastCallerInfoManager.dump(pw);
                 pw.println();
+                mWifiThreadRunner.dump(pw);
+                pw.println();
                 mWifiInjector.getLinkProbeManager().dump(fd, pw, args);
                 pw.println();
                 mWifiNative.dump(pw);
@@ -5959,9 +5972,13 @@ public class WifiServiceImpl extends BaseWifiService {
         if (mVerboseLoggingEnabled) {
             mLog.info("getNetworkSuggestionList uid=%").c(Binder.getCallingUid()).flush();
         }
-        return mWifiThreadRunner.call(() ->
-                mWifiNetworkSuggestionsManager.get(callingPackageName, callingUid),
-                Collections.emptyList());
+        long ident = Binder.clearCallingIdentity();
+        try {
+            // The suggestions are published by the Wifi thread, no need to wait for it.
+            return mWifiNetworkSuggestionsManager.getSnapshot(callingPackageName, callingUid);
+        } finally {
+            Binder.restoreCallingIdentity(ident);
+        }
     }
 
     /**
@@ -250,7 +250,7 @@ public class WifiSettingsConfigStore {
     private void triggerSaveToStoreAndInvokeAllListeners() {
         mHandler.post(() -> {
             mHasNewDataToSerialize = true;
-            mWifiConfigManager.saveToStore(true);
+            mWifiConfigManager.saveModuleDataToStore(true);
 
             invokeAllListeners();
         });
@@ -262,7 +262,7 @@ public class WifiSettingsConfigStore {
     private <T> void triggerSaveToStoreAndInvokeListeners(@NonNull Key<T> key) {
         mHandler.post(() -> {
             mHasNewDataToSerialize = true;
-            mWifiConfigManager.saveToStore(true);
+            mWifiConfigManager.saveModuleDataToStore(true);
 
             invokeListeners(key);
         });
@@ -421,6 +421,7 @@ public class WifiSettingsConfigStore {
             synchronized (mLock) {
                 XmlUtil.writeNextValue(out, XML_TAG_VALUES, mSettings);
             }
+            mHasNewDataToSerialize = false;
         }
 
         @Override
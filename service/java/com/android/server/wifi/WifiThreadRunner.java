@@ -24,8 +24,19 @@ import android.os.SystemClock;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.util.ConcurrentIntHistogram;
 import com.android.server.wifi.util.GeneralUtil.Mutable;
 
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import javax.annotation.concurrent.ThreadSafe;
@@ -47,7 +58,21 @@ public class WifiThreadRunner {
     private boolean mTimeoutsAreErrors = false;
     private volatile Thread mDispatchThread = null;
 
+    /** Buckets of the queue wait and execution time histograms, in milliseconds. */
+    private static final int[] CALL_DURATION_MS_BUCKETS = {1, 5, 10, 50, 100, 500, 1000, 4000};
+
+    /** Statistics of the calls made with {@link #callAsync} from one call site. */
+    private static class CallSiteStats {
+        public final ConcurrentIntHistogram queueWaitMs =
+                new ConcurrentIntHistogram(CALL_DURATION_MS_BUCKETS);
+        public final ConcurrentIntHistogram executionMs =
+                new ConcurrentIntHistogram(CALL_DURATION_MS_BUCKETS);
+        // Calls which were skipped because their deadline passed or their caller gave up.
+        public final AtomicInteger abandonedCount = new AtomicInteger();
+    }
+
     private final Handler mHandler;
+    private final Map<String, CallSiteStats> mCallSiteStats = new ConcurrentHashMap<>();
 
     public WifiThreadRunner(Handler handler) {
         mHandler = handler;
@@ -94,6 +119,113 @@ public class WifiThreadRunner {
         }
     }
 
+    /**
+     * Asynchronously runs code on the main Wifi thread and returns a future for its value. Does
+     * not block the calling thread.
+     *
+     * The call is skipped if the main Wifi thread could not start it before the deadline, or if
+     * the future was already completed by the caller, e.g. because it stopped waiting. Calls
+     * which nobody waits for anymore are then dropped instead of adding to the backlog of the
+     * main Wifi thread.
+     *
+     * The queue wait and execution times are aggregated per call site, see {@link #dump}.
+     * Exceptions thrown by the lambda are logged with {@link Log#wtf} on the main Wifi thread, so
+     * that they surface in the system server like exceptions thrown by {@link #post}ed lambdas.
+     *
+     * @param callSite name of the call site, e.g. the name of the binder API
+     * @param supplier the lambda that should be run on the main Wifi thread
+     * @param deadlineUptimeMillis the time by which the lambda must have started, in the
+     *                             {@link SystemClock#uptimeMillis()} time base
+     * @return a future which completes with the value returned by the lambda, or exceptionally
+     *         with the exception thrown by the lambda, or with a {@link TimeoutException} if the
+     *         deadline passed. The future is cancelled if the lambda could not be posted.
+     */
+    @NonNull
+    public <T> CompletableFuture<T> callAsync(@NonNull String callSite,
+            @NonNull Supplier<T> supplier, long deadlineUptimeMillis) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CallSiteStats stats = mCallSiteStats.computeIfAbsent(callSite, k -> new CallSiteStats());
+        long postTime = SystemClock.uptimeMillis();
+        Runnable task = () -> {
+            long startTime = SystemClock.uptimeMillis();
+            if (future.isDone()) {
+                stats.abandonedCount.incrementAndGet();
+                return;
+            }
+            if (startTime > deadlineUptimeMillis) {
+                stats.abandonedCount.incrementAndGet();
+                future.completeExceptionally(new TimeoutException(callSite + " missed deadline"));
+                return;
+            }
+            stats.queueWaitMs.increment((int) (startTime - postTime));
+            try {
+                future.complete(supplier.get());
+            } catch (RuntimeException e) {
+                Log.wtf(TAG, callSite + " threw an exception", e);
+                future.completeExceptionally(e);
+            } finally {
+                stats.executionMs.increment((int) (SystemClock.uptimeMillis() - startTime));
+            }
+        };
+        if (Looper.myLooper() == mHandler.getLooper()
+                || Thread.currentThread() == mDispatchThread) {
+            task.run();
+        } else if (!mHandler.post(task)) {
+            future.cancel(false);
+        }
+        return future;
+    }
+
+    /**
+     * Synchronously runs code on the main Wifi thread and return a value, like
+     * {@link #call(Supplier, Object)}. <b>Blocks</b> the calling thread until the lambda completes
+     * execution on the main Wifi thread.
+     *
+     * Unlike {@link #call(Supplier, Object)}, the lambda is skipped instead of being run later if
+     * it could not be started within the timeout. See {@link #callAsync(String, Supplier, long)}.
+     * Exceptions thrown by the lambda are not rethrown to the calling thread, which is usually a
+     * binder thread of an app. They are logged on the main Wifi thread instead, and the call
+     * returns |valueToReturnOnTimeout|.
+     *
+     * @param callSite name of the call site, e.g. the name of the binder API
+     * @param supplier the lambda that should be run on the main Wifi thread
+     * @param valueToReturnOnTimeout value to return if the lambda could not be run within the
+     *                               timeout ({@link #RUN_WITH_SCISSORS_TIMEOUT_MILLIS}), or threw
+     *                               an exception.
+     * @return value retrieved from Wifi thread, or |valueToReturnOnTimeout| if the call failed.
+     */
+    @Nullable
+    public <T> T call(@NonNull String callSite, @NonNull Supplier<T> supplier,
+            T valueToReturnOnTimeout) {
+        long deadline = SystemClock.uptimeMillis() + RUN_WITH_SCISSORS_TIMEOUT_MILLIS;
+        CompletableFuture<T> future = callAsync(callSite, supplier, deadline);
+        try {
+            return future.get(Math.max(0, deadline - SystemClock.uptimeMillis()),
+                    TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TimeoutException)) {
+                // The lambda threw, which was already logged on the main Wifi thread.
+                return valueToReturnOnTimeout;
+            }
+            // The deadline passed before the main Wifi thread got to the lambda.
+        } catch (CancellationException e) {
+            // The lambda could not be posted.
+        } catch (TimeoutException e) {
+            // Stop the lambda from running if it was not started yet.
+            future.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            future.completeExceptionally(e);
+            Thread.currentThread().interrupt();
+        }
+        Throwable wifiThreadThrowable = new Throwable("Wifi thread Stack trace:");
+        wifiThreadThrowable.setStackTrace(mHandler.getLooper().getThread().getStackTrace());
+        Log.e(TAG, "WifiThreadRunner.call() timed out for " + callSite, wifiThreadThrowable);
+        if (mTimeoutsAreErrors) {
+            throw new RuntimeException("WifiThreadRunner.call() timed out for " + callSite);
+        }
+        return valueToReturnOnTimeout;
+    }
+
     /**
      * Runs a Runnable on the main Wifi thread and <b>blocks</b> the calling thread until the
      * Runnable completes execution on the main Wifi thread.
@@ -213,6 +345,18 @@ public class WifiThreadRunner {
         return mHandler.hasCallbacks(r);
     }
 
+    /**
+     * Dump the queue wait and execution times of the calls made with a call site name.
+     */
+    public void dump(PrintWriter pw) {
+        pw.println("Dump of WifiThreadRunner");
+        for (Map.Entry<String, CallSiteStats> entry : new TreeMap<>(mCallSiteStats).entrySet()) {
+            CallSiteStats stats = entry.getValue();
+            pw.println("  " + entry.getKey() + ": abandoned=" + stats.abandonedCount.get()
+                    + " queueWaitMs=" + stats.queueWaitMs + " executionMs=" + stats.executionMs);
+        }
+    }
+
     /**
      * Package private
      * @return Scissors timeout threshold
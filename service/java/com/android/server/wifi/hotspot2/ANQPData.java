@@ -85,6 +85,13 @@ public class ANQPData {
         return Collections.unmodifiableMap(mANQPElements);
     }
 
+    /**
+     * Return the time at which this entry expires, in milliseconds since boot.
+     */
+    public long getExpiryTime() {
+        return mExpiryTime;
+    }
+
     /**
      * Check if this entry is expired at the specified time.
      *
@@ -22,14 +22,17 @@ import com.android.server.wifi.hotspot2.anqp.ANQPElement;
 import com.android.server.wifi.hotspot2.anqp.Constants;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * Cache for storing ANQP data.  This is simply a data cache, all the logic related to
  * ANQP data query will be handled elsewhere (e.g. the consumer of the cache).
+ *
+ * The cache is bounded to a maximum number of entries, and evicts the least recently used entry
+ * once that limit is reached. Entries are also tracked in order of their expiry time, so that a
+ * sweep only needs to look at the entries which are due.
  */
 public class AnqpCache {
     @VisibleForTesting
@@ -37,12 +40,52 @@ public class AnqpCache {
 
     private long mLastSweep;
     private Clock mClock;
+    private final int mMaxCacheSize;
+
+    private long mCacheHitCount;
+    private long mCacheMissCount;
+    private long mCacheEvictionCount;
+
+    // Access ordered, so that the eldest entry is the least recently used one.
+    private final LinkedHashMap<ANQPNetworkKey, ANQPData> mANQPCache;
+    // Pending expiries ordered by expiry time. An expiry is stale (and ignored once it is due) if
+    // its entry was refreshed, replaced or removed since it was queued.
+    private final PriorityQueue<PendingExpiry> mPendingExpiries = new PriorityQueue<>();
+
+    private static class PendingExpiry implements Comparable<PendingExpiry> {
+        public final long expiryTime;
+        public final ANQPNetworkKey key;
+        public final ANQPData data;
 
-    private final Map<ANQPNetworkKey, ANQPData> mANQPCache;
+        PendingExpiry(ANQPNetworkKey key, ANQPData data) {
+            this.expiryTime = data.getExpiryTime();
+            this.key = key;
+            this.data = data;
+        }
+
+        @Override
+        public int compareTo(PendingExpiry other) {
+            return Long.compare(expiryTime, other.expiryTime);
+        }
+    }
 
-    public AnqpCache(Clock clock) {
+    /**
+     * @param clock Instance of {@link Clock}
+     * @param maxCacheSize Maximum number of entries to keep in the cache.
+     */
+    public AnqpCache(Clock clock, int maxCacheSize) {
         mClock = clock;
-        mANQPCache = new HashMap<>();
+        mMaxCacheSize = maxCacheSize;
+        mANQPCache = new LinkedHashMap<ANQPNetworkKey, ANQPData>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ANQPNetworkKey, ANQPData> eldest) {
+                if (size() <= mMaxCacheSize) {
+                    return false;
+                }
+                mCacheEvictionCount++;
+                return true;
+            }
+        };
         mLastSweep = mClock.getElapsedSinceBootMillis();
     }
 
@@ -56,6 +99,7 @@ public class AnqpCache {
             Map<Constants.ANQPElementType, ANQPElement> anqpElements) {
         ANQPData data = new ANQPData(mClock, anqpElements);
         mANQPCache.put(key, data);
+        addPendingExpiry(key, data);
     }
 
     /**
@@ -68,12 +112,14 @@ public class AnqpCache {
      */
     public void addOrUpdateEntry(ANQPNetworkKey key,
             Map<Constants.ANQPElementType, ANQPElement> anqpElements) {
-        if (!mANQPCache.containsKey(key)) {
+        ANQPData data = mANQPCache.get(key);
+        if (data == null) {
             // Create a new entry
             addEntry(key, anqpElements);
             return;
         }
-        mANQPCache.get(key).update(anqpElements);
+        data.update(anqpElements);
+        addPendingExpiry(key, data);
     }
 
     /**
@@ -83,7 +129,13 @@ public class AnqpCache {
      * @return {@link ANQPData}
      */
     public ANQPData getEntry(ANQPNetworkKey key) {
-        return mANQPCache.get(key);
+        ANQPData data = mANQPCache.get(key);
+        if (data == null) {
+            mCacheMissCount++;
+        } else {
+            mCacheHitCount++;
+        }
+        return data;
     }
 
     /**
@@ -96,24 +148,55 @@ public class AnqpCache {
             return;
         }
 
-        // Get all expired keys.
-        List<ANQPNetworkKey> expiredKeys = new ArrayList<>();
-        for (Map.Entry<ANQPNetworkKey, ANQPData> entry : mANQPCache.entrySet()) {
-            if (entry.getValue().expired(now)) {
-                expiredKeys.add(entry.getKey());
+        // Remove all expired entries, in order of expiry.
+        while (!mPendingExpiries.isEmpty() && mPendingExpiries.peek().expiryTime <= now) {
+            PendingExpiry expiry = mPendingExpiries.poll();
+            if (expiry.expiryTime == expiry.data.getExpiryTime()) {
+                // Only removes the entry if it was not replaced since.
+                mANQPCache.remove(expiry.key, expiry.data);
             }
         }
+        mLastSweep = now;
+    }
 
-        // Remove all expired entries.
-        for (ANQPNetworkKey key : expiredKeys) {
-            mANQPCache.remove(key);
+    private void addPendingExpiry(ANQPNetworkKey key, ANQPData data) {
+        mPendingExpiries.add(new PendingExpiry(key, data));
+        // Drop stale expiries once they outnumber the live entries.
+        if (mPendingExpiries.size() > 2 * Math.max(mANQPCache.size(), 16)) {
+            mPendingExpiries.clear();
+            for (Map.Entry<ANQPNetworkKey, ANQPData> entry : mANQPCache.entrySet()) {
+                mPendingExpiries.add(new PendingExpiry(entry.getKey(), entry.getValue()));
+            }
         }
-        mLastSweep = now;
+    }
+
+    /**
+     * Return the number of lookups which found an entry in the cache.
+     */
+    public long getCacheHitCount() {
+        return mCacheHitCount;
+    }
+
+    /**
+     * Return the number of lookups which did not find an entry in the cache.
+     */
+    public long getCacheMissCount() {
+        return mCacheMissCount;
+    }
+
+    /**
+     * Return the number of entries evicted because the cache was full.
+     */
+    public long getCacheEvictionCount() {
+        return mCacheEvictionCount;
     }
 
     public void dump(PrintWriter out) {
         out.println("Last sweep " + Utils.toHMS(mClock.getElapsedSinceBootMillis() - mLastSweep)
                 + " ago.");
+        out.println("Cache size " + mANQPCache.size() + "/" + mMaxCacheSize + ", hits "
+                + mCacheHitCount + ", misses " + mCacheMissCount + ", evictions "
+                + mCacheEvictionCount);
         for (Map.Entry<ANQPNetworkKey, ANQPData> entry : mANQPCache.entrySet()) {
             out.println(entry.getKey() + ": " + entry.getValue());
         }
@@ -124,6 +207,7 @@ public class AnqpCache {
      */
     public void flush() {
         mANQPCache.clear();
+        mPendingExpiries.clear();
         mLastSweep = mClock.getElapsedSinceBootMillis();
     }
 }
@@ -9,6 +9,7 @@ import com.android.server.wifi.hotspot2.anqp.ANQPElement;
 import com.android.server.wifi.hotspot2.anqp.Constants;
 import com.android.server.wifi.hotspot2.anqp.RawByteElement;
 import com.android.server.wifi.util.InformationElementUtil;
+import com.android.server.wifi.util.ParsedInformationElements;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
@@ -121,6 +122,9 @@ public class NetworkDetail {
 
     private final Map<Constants.ANQPElementType, ANQPElement> mANQPElements;
 
+    // View over the information elements of the beacon, shared with Passpoint matching.
+    private final ParsedInformationElements mParsedInformationElements;
+
     /*
      * From Wi-Fi Alliance MBO-OCE Information element.
      * mMboAssociationDisallowedReasonCode is the reason code for AP not accepting new connections
@@ -138,9 +142,16 @@ public class NetworkDetail {
 
     public NetworkDetail(String bssid, ScanResult.InformationElement[] infoElements,
             List<String> anqpLines, int freq) {
-        if (infoElements == null) {
-            infoElements = new ScanResult.InformationElement[0];
-        }
+        this(bssid, new ParsedInformationElements(infoElements), anqpLines, freq);
+    }
+
+    /**
+     * Create a NetworkDetail from the view shared with the other consumers of the same scan
+     * result. The Passpoint related elements decoded here are memoized in |parsedIes|.
+     */
+    public NetworkDetail(String bssid, ParsedInformationElements parsedIes,
+            List<String> anqpLines, int freq) {
+        ScanResult.InformationElement[] infoElements = parsedIes.getElements();
 
         mBSSID = Utils.parseMac(bssid);
 
@@ -193,10 +204,8 @@ public class NetworkDetail {
 
         RuntimeException exception = null;
 
-        ArrayList<Integer> iesFound = new ArrayList<Integer>();
         try {
             for (ScanResult.InformationElement ie : infoElements) {
-                iesFound.add(ie.id);
                 switch (ie.id) {
                     case ScanResult.InformationElement.EID_SSID:
                         ssidOctets = ie.bytes;
@@ -311,6 +320,11 @@ public class NetworkDetail {
             }
         }
 
+        // Share the elements decoded above, unless the walk stopped early on a malformed element.
+        if (exception == null) {
+            parsedIes.setPasspointElements(interworking, roamingConsortium, vsa);
+        }
+        mParsedInformationElements = parsedIes;
         mSSID = ssid;
         mHESSID = interworking.hessid;
         mIsHiddenSsid = isHiddenSsid;
@@ -414,7 +428,7 @@ public class NetworkDetail {
             mWifiMode = InformationElementUtil.WifiMode.determineMode(mPrimaryFreq, mMaxRate,
                     ehtOperation.isPresent(), heOperation.isPresent(), vhtOperation.isPresent(),
                     htOperation.isPresent(),
-                    iesFound.contains(ScanResult.InformationElement.EID_ERP));
+                    parsedIes.contains(ScanResult.InformationElement.EID_ERP));
         } else {
             mWifiMode = 0;
             mMaxRate = 0;
@@ -459,7 +473,7 @@ public class NetworkDetail {
                     + ", VHT: " + String.valueOf(vhtOperation.isPresent())
                     + ", HT: " + String.valueOf(htOperation.isPresent())
                     + ", ERP: " + String.valueOf(
-                    iesFound.contains(ScanResult.InformationElement.EID_ERP))
+                    parsedIes.contains(ScanResult.InformationElement.EID_ERP))
                     + ", SupportedRates: " + supportedRates.toString()
                     + " ExtendedSupportedRates: " + extendedSupportedRates.toString());
         }
@@ -496,6 +510,7 @@ public class NetworkDetail {
         mExtendedCapabilities =
                 new InformationElementUtil.ExtendedCapabilities(base.mExtendedCapabilities);
         mANQPElements = anqpElements;
+        mParsedInformationElements = base.mParsedInformationElements;
         mChannelWidth = base.mChannelWidth;
         mPrimaryFreq = base.mPrimaryFreq;
         mCenterfreq0 = base.mCenterfreq0;
@@ -515,6 +530,14 @@ public class NetworkDetail {
         return new NetworkDetail(this, anqpElements);
     }
 
+    /**
+     * Return the view over the information elements of this network, with the Passpoint related
+     * elements already decoded.
+     */
+    public ParsedInformationElements getParsedInformationElements() {
+        return mParsedInformationElements;
+    }
+
     public boolean queriable(List<Constants.ANQPElementType> queryElements) {
         return mAnt != null &&
                 (Constants.hasBaseANQPElements(queryElements) ||
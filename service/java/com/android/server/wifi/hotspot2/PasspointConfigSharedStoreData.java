@@ -70,6 +70,14 @@ public class PasspointConfigSharedStoreData implements WifiConfigStore.StoreData
          * @param providerIndex The provider index used for provider creation
          */
         void setProviderIndex(long providerIndex);
+
+        /**
+         * Check if the provider index has changed since it was last retrieved with
+         * {@link #getProviderIndex()}.
+         *
+         * @return true if there is new data to serialize, false otherwise.
+         */
+        boolean hasNewDataToSerialize();
     }
 
     PasspointConfigSharedStoreData(DataSource dataSource) {
@@ -105,8 +113,7 @@ public class PasspointConfigSharedStoreData implements WifiConfigStore.StoreData
 
     @Override
     public boolean hasNewDataToSerialize() {
-        // always persist.
-        return true;
+        return mDataSource.hasNewDataToSerialize();
     }
 
     @Override
@@ -102,6 +102,14 @@ public class PasspointConfigUserStoreData implements WifiConfigStore.StoreData {
          * @param providers The list of providers
          */
         void setProviders(List<PasspointProvider> providers);
+
+        /**
+         * Check if the provider list has changed since it was last retrieved with
+         * {@link #getProviders()}.
+         *
+         * @return true if there is new data to serialize, false otherwise.
+         */
+        boolean hasNewDataToSerialize();
     }
 
     PasspointConfigUserStoreData(WifiKeyStore keyStore,
@@ -141,8 +149,7 @@ public class PasspointConfigUserStoreData implements WifiConfigStore.StoreData {
 
     @Override
     public boolean hasNewDataToSerialize() {
-        // always persist.
-        return true;
+        return mDataSource.hasNewDataToSerialize();
     }
 
     @Override
@@ -48,6 +48,7 @@ import com.android.server.wifi.Clock;
 import com.android.server.wifi.MacAddressUtil;
 import com.android.server.wifi.NetworkUpdateResult;
 import com.android.server.wifi.RunnerHandler;
+import com.android.server.wifi.ScanDetail;
 import com.android.server.wifi.WifiCarrierInfoManager;
 import com.android.server.wifi.WifiConfigManager;
 import com.android.server.wifi.WifiConfigStore;
@@ -65,7 +66,9 @@ import com.android.server.wifi.hotspot2.anqp.VenueNameElement;
 import com.android.server.wifi.hotspot2.anqp.VenueUrlElement;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.UserActionEvent;
 import com.android.server.wifi.util.InformationElementUtil;
+import com.android.server.wifi.util.ParsedInformationElements;
 import com.android.server.wifi.util.WifiPermissionsUtil;
+import com.android.wifi.resources.R;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -125,7 +128,12 @@ public class PasspointManager {
     private final PasspointObjectFactory mObjectFactory;
 
     private final Map<String, PasspointProvider> mProviders;
+    private final PasspointProviderIndex mProviderMatchIndex = new PasspointProviderIndex();
     private final AnqpCache mAnqpCache;
+    // ANQP cache counts already reported to WifiMetrics, see updateMetrics().
+    private long mReportedAnqpCacheHitCount;
+    private long mReportedAnqpCacheMissCount;
+    private long mReportedAnqpCacheEvictionCount;
     private final ANQPRequestManager mAnqpRequestManager;
     private final WifiConfigManager mWifiConfigManager;
     private final WifiMetrics mWifiMetrics;
@@ -146,6 +154,8 @@ public class PasspointManager {
 
     // Counter used for assigning unique identifier to each provider.
     private long mProviderIndex;
+    private boolean mHasNewUserDataToSerialize = false;
+    private boolean mHasNewSharedDataToSerialize = false;
     private boolean mVerboseLoggingEnabled = false;
     // Set default value to false before receiving boot completed event.
     private boolean mEnabled = false;
@@ -205,6 +215,7 @@ public class PasspointManager {
     private class UserDataSourceHandler implements PasspointConfigUserStoreData.DataSource {
         @Override
         public List<PasspointProvider> getProviders() {
+            mHasNewUserDataToSerialize = false;
             List<PasspointProvider> providers = new ArrayList<>();
             for (Map.Entry<String, PasspointProvider> entry : mProviders.entrySet()) {
                 providers.add(entry.getValue());
@@ -215,15 +226,23 @@ public class PasspointManager {
         @Override
         public void setProviders(List<PasspointProvider> providers) {
             mProviders.clear();
+            mProviderMatchIndex.clear();
             for (PasspointProvider provider : providers) {
                 provider.enableVerboseLogging(mVerboseLoggingEnabled);
                 mProviders.put(provider.getConfig().getUniqueId(), provider);
+                mProviderMatchIndex.addProvider(provider.getConfig().getUniqueId(),
+                        provider.getIndexKeys());
                 if (provider.getPackageName() != null) {
                     startTrackingAppOpsChange(provider.getPackageName(),
                             provider.getCreatorUid());
                 }
             }
         }
+
+        @Override
+        public boolean hasNewDataToSerialize() {
+            return mHasNewUserDataToSerialize;
+        }
     }
 
     /**
@@ -233,6 +252,7 @@ public class PasspointManager {
     private class SharedDataSourceHandler implements PasspointConfigSharedStoreData.DataSource {
         @Override
         public long getProviderIndex() {
+            mHasNewSharedDataToSerialize = false;
             return mProviderIndex;
         }
 
@@ -240,6 +260,11 @@ public class PasspointManager {
         public void setProviderIndex(long providerIndex) {
             mProviderIndex = providerIndex;
         }
+
+        @Override
+        public boolean hasNewDataToSerialize() {
+            return mHasNewSharedDataToSerialize;
+        }
     }
 
     /**
@@ -302,6 +327,7 @@ public class PasspointManager {
                 .count() == 0) {
             return;
         }
+        mHasNewUserDataToSerialize = true;
         mWifiConfigManager.saveToStore(true);
     }
 
@@ -317,6 +343,7 @@ public class PasspointManager {
         if (provider != null) {
             provider.setUserConnectChoice(null, 0);
         }
+        mHasNewUserDataToSerialize = true;
         mWifiConfigManager.saveToStore(true);
     }
 
@@ -376,7 +403,8 @@ public class PasspointManager {
         mKeyStore = keyStore;
         mObjectFactory = objectFactory;
         mProviders = new HashMap<>();
-        mAnqpCache = objectFactory.makeAnqpCache(clock);
+        mAnqpCache = objectFactory.makeAnqpCache(clock, context.getResources().getInteger(
+                R.integer.config_wifiPasspointAnqpCacheMaxSize));
         mAnqpRequestManager = objectFactory.makeANQPRequestManager(mPasspointEventHandler, clock);
         mWifiConfigManager = wifiConfigManager;
         mWifiMetrics = wifiMetrics;
@@ -510,6 +538,7 @@ public class PasspointManager {
         PasspointProvider newProvider = mObjectFactory.makePasspointProvider(config, mKeyStore,
                 mWifiCarrierInfoManager, mProviderIndex++, uid, packageName, isFromSuggestion,
                 mClock);
+        mHasNewSharedDataToSerialize = true;
         newProvider.setTrusted(isTrusted);
         newProvider.setRestricted(isRestricted);
 
@@ -560,6 +589,7 @@ public class PasspointManager {
                     + " and unique ID: " + config.getUniqueId());
             old.uninstallCertsAndKeys();
             mProviders.remove(config.getUniqueId());
+            mProviderMatchIndex.removeProvider(config.getUniqueId());
             // Keep the user connect choice and AnonymousIdentity
             newProvider.setUserConnectChoice(old.getConnectChoice(), old.getConnectChoiceRssi());
             newProvider.setAnonymousIdentity(old.getAnonymousIdentity());
@@ -575,6 +605,8 @@ public class PasspointManager {
         }
         newProvider.enableVerboseLogging(mVerboseLoggingEnabled);
         mProviders.put(config.getUniqueId(), newProvider);
+        mProviderMatchIndex.addProvider(config.getUniqueId(), newProvider.getIndexKeys());
+        mHasNewUserDataToSerialize = true;
         if (!isFromSuggestion) {
             // Suggestions will be handled by the WifiNetworkSuggestionsManager
             mWifiConfigManager.saveToStore(true /* forceWrite */);
@@ -625,6 +657,8 @@ public class PasspointManager {
         }
         String uniqueId = provider.getConfig().getUniqueId();
         mProviders.remove(uniqueId);
+        mProviderMatchIndex.removeProvider(uniqueId);
+        mHasNewUserDataToSerialize = true;
         mWifiConfigManager.removeConnectChoiceFromAllNetworks(uniqueId);
         if (!provider.isFromSuggestion()) {
             // Suggestions will be handled by the WifiNetworkSuggestionsManager
@@ -722,9 +756,10 @@ public class PasspointManager {
                 // Update WifiConfigManager if changed.
                 updateWifiConfigInWcmIfPresent(provider.getWifiConfig(), provider.getCreatorUid(),
                         provider.getPackageName(), provider.isFromSuggestion());
+                mHasNewUserDataToSerialize = true;
             }
 
-            mWifiConfigManager.saveToStore(true);
+            mWifiConfigManager.saveModuleDataToStore(true);
             return true;
         }
 
@@ -748,7 +783,8 @@ public class PasspointManager {
             }
         }
         if (found) {
-            mWifiConfigManager.saveToStore(true);
+            mHasNewUserDataToSerialize = true;
+            mWifiConfigManager.saveModuleDataToStore(true);
         }
         return found;
     }
@@ -779,7 +815,8 @@ public class PasspointManager {
             }
         }
         if (found) {
-            mWifiConfigManager.saveToStore(true);
+            mHasNewUserDataToSerialize = true;
+            mWifiConfigManager.saveModuleDataToStore(true);
         }
         return found;
     }
@@ -807,7 +844,8 @@ public class PasspointManager {
             }
         }
         if (found) {
-            mWifiConfigManager.saveToStore(true);
+            mHasNewUserDataToSerialize = true;
+            mWifiConfigManager.saveModuleDataToStore(true);
         }
         return found;
     }
@@ -852,6 +890,19 @@ public class PasspointManager {
         return matchProvider(scanResult, true);
     }
 
+    /**
+     * Same as {@link #matchProvider(ScanResult)}, but reuses the information elements already
+     * decoded in the {@link NetworkDetail} of the provided scan.
+     *
+     * @param scanDetail The scan detail associated with the AP
+     * @return a list of pairs of {@link PasspointProvider} and match status.
+     */
+    public @NonNull List<Pair<PasspointProvider, PasspointMatch>> matchProvider(
+            ScanDetail scanDetail) {
+        return matchProvider(scanDetail.getScanResult(), getParsedInformationElements(scanDetail),
+                true);
+    }
+
     /**
      * Find all providers that can provide service through the given AP, which means the
      * providers contained credential to authenticate with the given AP.
@@ -864,11 +915,18 @@ public class PasspointManager {
      */
     public @NonNull List<Pair<PasspointProvider, PasspointMatch>> matchProvider(
             ScanResult scanResult, boolean anqpRequestAllowed) {
+        return matchProvider(scanResult,
+                new ParsedInformationElements(scanResult.informationElements), anqpRequestAllowed);
+    }
+
+    private @NonNull List<Pair<PasspointProvider, PasspointMatch>> matchProvider(
+            ScanResult scanResult, ParsedInformationElements parsedIes,
+            boolean anqpRequestAllowed) {
         if (!mEnabled) {
             return Collections.emptyList();
         }
         List<Pair<PasspointProvider, PasspointMatch>> allMatches = getAllMatchedProviders(
-                scanResult, anqpRequestAllowed).stream()
+                scanResult, parsedIes, anqpRequestAllowed).stream()
                 .filter(a -> !isExpired(a.first.getConfig()))
                 .collect(Collectors.toList());
         if (allMatches.isEmpty()) {
@@ -887,18 +945,21 @@ public class PasspointManager {
      */
     public @NonNull List<Pair<PasspointProvider, PasspointMatch>> getAllMatchedProviders(
             ScanResult scanResult) {
-        return getAllMatchedProviders(scanResult, true);
+        return getAllMatchedProviders(scanResult,
+                new ParsedInformationElements(scanResult.informationElements), true);
     }
 
     /**
      * Return a list of all providers that can provide service through the given AP.
      *
      * @param scanResult The scan result associated with the AP
+     * @param parsedIes The decoded information elements of the scan result
      * @param anqpRequestAllowed Indicates if to allow ANQP request if the provider's entry is empty
      * @return a list of pairs of {@link PasspointProvider} and match status.
      */
     private @NonNull List<Pair<PasspointProvider, PasspointMatch>> getAllMatchedProviders(
-            ScanResult scanResult, boolean anqpRequestAllowed) {
+            ScanResult scanResult, ParsedInformationElements parsedIes,
+            boolean anqpRequestAllowed) {
         if (!mEnabled) {
             return Collections.emptyList();
         }
@@ -908,9 +969,8 @@ public class PasspointManager {
         // Retrieve the relevant information elements, mainly Roaming Consortium IE and Hotspot 2.0
         // Vendor Specific IE.
         InformationElementUtil.RoamingConsortium roamingConsortium =
-                InformationElementUtil.getRoamingConsortiumIE(scanResult.informationElements);
-        InformationElementUtil.Vsa vsa = InformationElementUtil.getHS2VendorSpecificIE(
-                scanResult.informationElements);
+                parsedIes.getRoamingConsortium();
+        InformationElementUtil.Vsa vsa = parsedIes.getVsa();
 
         // Lookup ANQP data in the cache.
         long bssid;
@@ -932,11 +992,17 @@ public class PasspointManager {
             return allMatches;
         }
         boolean anyProviderUpdated = false;
+        // Only match the providers which share at least one domain, realm, OI or PLMN with the AP.
+        Set<String> candidateProviders = mProviderMatchIndex.getCandidateProviders(
+                anqpEntry.getElements(), roamingConsortium);
         for (Map.Entry<String, PasspointProvider> entry : mProviders.entrySet()) {
             PasspointProvider provider = entry.getValue();
             if (provider.tryUpdateCarrierId()) {
                 anyProviderUpdated = true;
             }
+            if (!candidateProviders.contains(entry.getKey())) {
+                continue;
+            }
             if (mVerboseLoggingEnabled) {
                 Log.d(TAG, "Matching provider " + provider.getConfig().getHomeSp().getFqdn()
                         + " with "
@@ -950,7 +1016,8 @@ public class PasspointManager {
             }
         }
         if (anyProviderUpdated) {
-            mWifiConfigManager.saveToStore(true);
+            mHasNewUserDataToSerialize = true;
+            mWifiConfigManager.saveModuleDataToStore(true);
         }
         if (allMatches.size() != 0) {
             for (Pair<PasspointProvider, PasspointMatch> match : allMatches) {
@@ -1035,9 +1102,38 @@ public class PasspointManager {
      * @return Map of ANQP elements
      */
     public Map<Constants.ANQPElementType, ANQPElement> getANQPElements(ScanResult scanResult) {
+        return getANQPElements(scanResult,
+                new ParsedInformationElements(scanResult.informationElements));
+    }
+
+    /**
+     * Same as {@link #getANQPElements(ScanResult)}, but reuses the information elements already
+     * decoded in the {@link NetworkDetail} of the provided scan.
+     *
+     * @param scanDetail The scan detail associated with the AP
+     * @return Map of ANQP elements
+     */
+    public Map<Constants.ANQPElementType, ANQPElement> getANQPElements(ScanDetail scanDetail) {
+        return getANQPElements(scanDetail.getScanResult(),
+                getParsedInformationElements(scanDetail));
+    }
+
+    /**
+     * Return the decoded information elements of the provided scan, decoding them from the scan
+     * result if its {@link NetworkDetail} does not have them.
+     */
+    private static ParsedInformationElements getParsedInformationElements(ScanDetail scanDetail) {
+        NetworkDetail networkDetail = scanDetail.getNetworkDetail();
+        if (networkDetail != null && networkDetail.getParsedInformationElements() != null) {
+            return networkDetail.getParsedInformationElements();
+        }
+        return new ParsedInformationElements(scanDetail.getScanResult().informationElements);
+    }
+
+    private Map<Constants.ANQPElementType, ANQPElement> getANQPElements(ScanResult scanResult,
+            ParsedInformationElements parsedIes) {
         // Retrieve the Hotspot 2.0 Vendor Specific IE.
-        InformationElementUtil.Vsa vsa =
-                InformationElementUtil.getHS2VendorSpecificIE(scanResult.informationElements);
+        InformationElementUtil.Vsa vsa = parsedIes.getVsa();
 
         // Lookup ANQP data in the cache.
         long bssid;
@@ -1280,6 +1376,7 @@ public class PasspointManager {
         if (!provider.getHasEverConnected()) {
             // First successful connection using this provider.
             provider.setHasEverConnected(true);
+            mHasNewUserDataToSerialize = true;
         }
         provider.setMostRecentSsid(ssid);
     }
@@ -1299,6 +1396,16 @@ public class PasspointManager {
         }
         mWifiMetrics.updateSavedPasspointProfilesInfo(mProviders);
         mWifiMetrics.updateSavedPasspointProfiles(numProviders, numConnectedProviders);
+        // The cache counts since boot, only report what happened since the last report.
+        long hitCount = mAnqpCache.getCacheHitCount();
+        long missCount = mAnqpCache.getCacheMissCount();
+        long evictionCount = mAnqpCache.getCacheEvictionCount();
+        mWifiMetrics.incrementPasspointAnqpCacheStats(hitCount - mReportedAnqpCacheHitCount,
+                missCount - mReportedAnqpCacheMissCount,
+                evictionCount - mReportedAnqpCacheEvictionCount);
+        mReportedAnqpCacheHitCount = hitCount;
+        mReportedAnqpCacheMissCount = missCount;
+        mReportedAnqpCacheEvictionCount = evictionCount;
     }
 
     /**
@@ -1315,6 +1422,7 @@ public class PasspointManager {
         }
         pw.println("PasspointManager - Providers End ---");
         pw.println("PasspointManager - Next provider ID to be assigned " + mProviderIndex);
+        mProviderMatchIndex.dump(pw);
         mAnqpCache.dump(pw);
         mAnqpRequestManager.dump(pw);
     }
@@ -1366,6 +1474,9 @@ public class PasspointManager {
                 enterpriseConfig.getClientCertificateAlias(), null, false, false, mClock);
         provider.enableVerboseLogging(mVerboseLoggingEnabled);
         mProviders.put(passpointConfig.getUniqueId(), provider);
+        mProviderMatchIndex.addProvider(passpointConfig.getUniqueId(), provider.getIndexKeys());
+        mHasNewUserDataToSerialize = true;
+        mHasNewSharedDataToSerialize = true;
         return true;
     }
 
@@ -1418,9 +1529,10 @@ public class PasspointManager {
                 null, mWifiCarrierInfoManager, 0, 0, null, false, mClock);
         List<ScanResult> filteredScanResults = new ArrayList<>();
         for (ScanResult scanResult : scanResults) {
-            PasspointMatch matchInfo = provider.match(getANQPElements(scanResult),
-                    InformationElementUtil.getRoamingConsortiumIE(scanResult.informationElements),
-                    scanResult);
+            ParsedInformationElements parsedIes =
+                    new ParsedInformationElements(scanResult.informationElements);
+            PasspointMatch matchInfo = provider.match(getANQPElements(scanResult, parsedIes),
+                    parsedIes.getRoamingConsortium(), scanResult);
             if (matchInfo == PasspointMatch.HomeProvider
                     || matchInfo == PasspointMatch.RoamingProvider) {
                 filteredScanResults.add(scanResult);
@@ -1621,6 +1733,7 @@ public class PasspointManager {
         PasspointProvider provider = mProviders.get(configuration.getProfileKey());
         if (provider != null) {
             provider.setAnonymousIdentity(configuration.enterpriseConfig.getAnonymousIdentity());
+            mHasNewUserDataToSerialize = true;
             mWifiConfigManager.saveToStore(true);
         }
     }
@@ -1630,6 +1743,7 @@ public class PasspointManager {
      */
     public void resetSimPasspointNetwork() {
         mProviders.values().stream().forEach(p -> p.setAnonymousIdentity(null));
+        mHasNewUserDataToSerialize = true;
         mWifiConfigManager.saveToStore(true);
     }
 
@@ -158,7 +158,7 @@ public class PasspointNetworkNominateHelper {
      */
     private boolean isApWanLinkStatusDown(ScanDetail scanDetail) {
         Map<Constants.ANQPElementType, ANQPElement> anqpElements =
-                mPasspointManager.getANQPElements(scanDetail.getScanResult());
+                mPasspointManager.getANQPElements(scanDetail);
         if (anqpElements == null) {
             return false;
         }
@@ -267,7 +267,7 @@ public class PasspointNetworkNominateHelper {
         // Match each scanDetail with the best provider (home > roaming), and grouped by provider.
         for (ScanDetail scanDetail : scanDetails) {
             List<Pair<PasspointProvider, PasspointMatch>> matchedProviders =
-                    mPasspointManager.matchProvider(scanDetail.getScanResult());
+                    mPasspointManager.matchProvider(scanDetail);
             if (matchedProviders == null) {
                 continue;
             }
@@ -100,10 +100,11 @@ public class PasspointObjectFactory{
      * Create a AnqpCache instance.
      *
      * @param clock Instance of {@link Clock}
+     * @param maxCacheSize Maximum number of entries in the cache
      * @return {@link AnqpCache}
      */
-    public AnqpCache makeAnqpCache(Clock clock) {
-        return new AnqpCache(clock);
+    public AnqpCache makeAnqpCache(Clock clock, int maxCacheSize) {
+        return new AnqpCache(clock, maxCacheSize);
     }
 
     /**
@@ -129,6 +129,7 @@ public class PasspointProvider {
     // A map that maps SSIDs (String) to a pair of RCOI and a timestamp (both are Long) to be
     // used later when connecting to an RCOI-based Passpoint network.
     private final Map<String, Pair<Long, Long>> mRcoiMatchForNetwork = new HashMap<>();
+    private PasspointProviderIndex.Keys mIndexKeys;
 
     public PasspointProvider(PasspointConfiguration config, WifiKeyStore keyStore,
             WifiCarrierInfoManager wifiCarrierInfoManager, long providerId, int creatorUid,
@@ -410,6 +411,38 @@ public class PasspointProvider {
         }
     }
 
+    /**
+     * Return the keys this provider can match an AP on, used to index the provider in
+     * {@link PasspointProviderIndex}. This covers every check performed by
+     * {@link #match(Map, RoamingConsortium, ScanResult)}.
+     *
+     * @return {@link PasspointProviderIndex.Keys}
+     */
+    public PasspointProviderIndex.Keys getIndexKeys() {
+        if (mIndexKeys != null) {
+            return mIndexKeys;
+        }
+        HomeSp homeSp = mConfig.getHomeSp();
+        List<String> domains = new ArrayList<>();
+        domains.add(homeSp.getFqdn());
+        if (homeSp.getOtherHomePartners() != null) {
+            domains.addAll(Arrays.asList(homeSp.getOtherHomePartners()));
+        }
+        List<Long> ois = new ArrayList<>();
+        for (long[] providerOis : new long[][] {homeSp.getMatchAllOis(),
+                homeSp.getMatchAnyOis(), homeSp.getRoamingConsortiumOis()}) {
+            if (providerOis == null) continue;
+            for (long oi : providerOis) {
+                ois.add(oi);
+            }
+        }
+        List<String> plmns = mImsiParameter == null
+                ? new ArrayList<>() : mImsiParameter.getMatchingMccMncs();
+        mIndexKeys = new PasspointProviderIndex.Keys(domains,
+                Arrays.asList(mConfig.getCredential().getRealm()), ois, plmns);
+        return mIndexKeys;
+    }
+
     /**
      * Try to update the carrier ID according to the IMSI parameter of passpoint configuration.
      *
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.hotspot2;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.CellularNetwork;
+import com.android.server.wifi.hotspot2.anqp.Constants.ANQPElementType;
+import com.android.server.wifi.hotspot2.anqp.DomainNameElement;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmData;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmElement;
+import com.android.server.wifi.hotspot2.anqp.RoamingConsortiumElement;
+import com.android.server.wifi.hotspot2.anqp.ThreeGPPNetworkElement;
+import com.android.server.wifi.util.InformationElementUtil.RoamingConsortium;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of the installed Passpoint providers, used to pre-filter the providers which
+ * need to be matched against an AP.
+ *
+ * Each provider is indexed by the keys it can possibly match on: its home and other home partner
+ * domains, the realm of its credential, its roaming consortium OIs and, for SIM credentials, the
+ * MCC-MNC(s) of its IMSI parameter. A provider can only match an AP if it shares at least one key
+ * with the AP's ANQP elements or Roaming Consortium IE, so all other providers can be skipped.
+ *
+ * Domains and realms are matched the same way as {@link DomainMatcher#arg2SubdomainOfArg1}: a
+ * provider domain matches an AP domain which is the same or one of its sub-domains.
+ *
+ * Providers which do not provide any {@link Keys} are always returned as candidates.
+ */
+public class PasspointProviderIndex {
+    /**
+     * Keys under which a provider is indexed.
+     */
+    public static class Keys {
+        /** Domains matched against the Domain Name ANQP element. */
+        public final List<String> domains;
+        /** Realms matched against the NAI Realm ANQP element. */
+        public final List<String> realms;
+        /** OIs matched against the Roaming Consortium ANQP element and IE. */
+        public final List<Long> ois;
+        /** MCC-MNCs matched against the 3GPP Network ANQP element and 3GPP domains. */
+        public final List<String> plmns;
+
+        public Keys(@NonNull List<String> domains, @NonNull List<String> realms,
+                @NonNull List<Long> ois, @NonNull List<String> plmns) {
+            this.domains = domains;
+            this.realms = realms;
+            this.ois = ois;
+            this.plmns = plmns;
+        }
+    }
+
+    // Unique IDs of the providers indexed under each key. Domain and realm keys are stored in
+    // label order, as returned by Utils#splitDomain, joined with ".".
+    private final Map<String, Set<String>> mDomainIndex = new HashMap<>();
+    private final Map<String, Set<String>> mRealmIndex = new HashMap<>();
+    private final Map<Long, Set<String>> mOiIndex = new HashMap<>();
+    private final Map<String, Set<String>> mPlmnIndex = new HashMap<>();
+    // Providers without keys, which are candidates for every AP.
+    private final Set<String> mUnindexedProviders = new HashSet<>();
+    private final Map<String, Keys> mProviderKeys = new HashMap<>();
+
+    /**
+     * Add a provider to the index, replacing any provider with the same unique ID.
+     *
+     * @param uniqueId The unique ID of the provider
+     * @param keys The keys of the provider, or null if the provider cannot be indexed
+     */
+    public void addProvider(@NonNull String uniqueId, @Nullable Keys keys) {
+        removeProvider(uniqueId);
+        if (keys == null) {
+            mUnindexedProviders.add(uniqueId);
+            return;
+        }
+        mProviderKeys.put(uniqueId, keys);
+        for (String domain : keys.domains) {
+            addKey(mDomainIndex, toDomainKey(domain), uniqueId);
+        }
+        for (String realm : keys.realms) {
+            addKey(mRealmIndex, toDomainKey(realm), uniqueId);
+        }
+        for (long oi : keys.ois) {
+            addKey(mOiIndex, oi, uniqueId);
+        }
+        for (String plmn : keys.plmns) {
+            addKey(mPlmnIndex, plmn, uniqueId);
+        }
+    }
+
+    /**
+     * Remove a provider from the index.
+     *
+     * @param uniqueId The unique ID of the provider
+     */
+    public void removeProvider(@NonNull String uniqueId) {
+        mUnindexedProviders.remove(uniqueId);
+        Keys keys = mProviderKeys.remove(uniqueId);
+        if (keys == null) {
+            return;
+        }
+        for (String domain : keys.domains) {
+            removeKey(mDomainIndex, toDomainKey(domain), uniqueId);
+        }
+        for (String realm : keys.realms) {
+            removeKey(mRealmIndex, toDomainKey(realm), uniqueId);
+        }
+        for (long oi : keys.ois) {
+            removeKey(mOiIndex, oi, uniqueId);
+        }
+        for (String plmn : keys.plmns) {
+            removeKey(mPlmnIndex, plmn, uniqueId);
+        }
+    }
+
+    /**
+     * Remove all providers from the index.
+     */
+    public void clear() {
+        mDomainIndex.clear();
+        mRealmIndex.clear();
+        mOiIndex.clear();
+        mPlmnIndex.clear();
+        mUnindexedProviders.clear();
+        mProviderKeys.clear();
+    }
+
+    /**
+     * Return the unique IDs of the providers which may match an AP with the given ANQP elements
+     * and Roaming Consortium IE.
+     *
+     * @param anqpElements ANQP elements from the AP
+     * @param roamingConsortiumFromAp Roaming Consortium information element from the AP
+     * @return set of provider unique IDs
+     */
+    public @NonNull Set<String> getCandidateProviders(
+            @NonNull Map<ANQPElementType, ANQPElement> anqpElements,
+            @NonNull RoamingConsortium roamingConsortiumFromAp) {
+        Set<String> candidates = new HashSet<>(mUnindexedProviders);
+
+        DomainNameElement domainNameElement =
+                (DomainNameElement) anqpElements.get(ANQPElementType.ANQPDomName);
+        if (domainNameElement != null) {
+            for (String domain : domainNameElement.getDomains()) {
+                if (TextUtils.isEmpty(domain)) continue;
+                List<String> labels = Utils.splitDomain(domain);
+                lookUpDomain(mDomainIndex, labels, candidates);
+                // 3GPP network domains are also matched against SIM credentials.
+                lookUp(mPlmnIndex, Utils.getMccMnc(labels), candidates);
+            }
+        }
+
+        NAIRealmElement naiRealmElement =
+                (NAIRealmElement) anqpElements.get(ANQPElementType.ANQPNAIRealm);
+        if (naiRealmElement != null) {
+            for (NAIRealmData realmData : naiRealmElement.getRealmDataList()) {
+                for (String realm : realmData.getRealms()) {
+                    if (TextUtils.isEmpty(realm)) continue;
+                    lookUpDomain(mRealmIndex, Utils.splitDomain(realm), candidates);
+                }
+            }
+        }
+
+        RoamingConsortiumElement roamingConsortiumElement =
+                (RoamingConsortiumElement) anqpElements.get(
+                        ANQPElementType.ANQPRoamingConsortium);
+        if (roamingConsortiumElement != null) {
+            for (Long oi : roamingConsortiumElement.getOIs()) {
+                lookUp(mOiIndex, oi, candidates);
+            }
+        }
+        long[] apOis = roamingConsortiumFromAp.getRoamingConsortiums();
+        if (apOis != null) {
+            for (long oi : apOis) {
+                lookUp(mOiIndex, oi, candidates);
+            }
+        }
+
+        ThreeGPPNetworkElement threeGppNetworkElement =
+                (ThreeGPPNetworkElement) anqpElements.get(ANQPElementType.ANQP3GPPNetwork);
+        if (threeGppNetworkElement != null) {
+            for (CellularNetwork network : threeGppNetworkElement.getNetworks()) {
+                for (String plmn : network.getPlmns()) {
+                    lookUp(mPlmnIndex, plmn, candidates);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Dump the index size.
+     */
+    public void dump(PrintWriter pw) {
+        pw.println("PasspointProviderIndex: " + mProviderKeys.size() + " indexed, "
+                + mUnindexedProviders.size() + " unindexed providers, " + mDomainIndex.size()
+                + " domains, " + mRealmIndex.size() + " realms, " + mOiIndex.size() + " OIs, "
+                + mPlmnIndex.size() + " PLMNs");
+    }
+
+    /**
+     * Look up the providers indexed under the domain and each of its parent domains.
+     */
+    private static void lookUpDomain(Map<String, Set<String>> index, List<String> labels,
+            Set<String> candidates) {
+        StringBuilder key = new StringBuilder();
+        for (String label : labels) {
+            if (key.length() > 0) {
+                key.append('.');
+            }
+            key.append(label);
+            lookUp(index, key.toString(), candidates);
+        }
+    }
+
+    private static String toDomainKey(String domain) {
+        if (TextUtils.isEmpty(domain)) {
+            return null;
+        }
+        return TextUtils.join(".", Utils.splitDomain(domain));
+    }
+
+    private static <K> void lookUp(Map<K, Set<String>> index, K key, Set<String> candidates) {
+        if (key == null) {
+            return;
+        }
+        Set<String> providers = index.get(key);
+        if (providers != null) {
+            candidates.addAll(providers);
+        }
+    }
+
+    private static <K> void addKey(Map<K, Set<String>> index, K key, String uniqueId) {
+        if (key == null) {
+            return;
+        }
+        index.computeIfAbsent(key, k -> new HashSet<>()).add(uniqueId);
+    }
+
+    private static <K> void removeKey(Map<K, Set<String>> index, K key, String uniqueId) {
+        if (key == null) {
+            return;
+        }
+        Set<String> providers = index.get(key);
+        if (providers == null) {
+            return;
+        }
+        providers.remove(uniqueId);
+        if (providers.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -16,15 +16,31 @@
 
 package com.android.server.wifi.util;
 
-import java.util.ArrayList;
+import com.android.internal.annotations.VisibleForTesting;
 
 /**
  * A ring buffer where each element of the ring is itself a byte array.
+ *
+ * The data of all elements is copied into a single array, so appending does not retain the
+ * caller's array. The array grows by doubling as data is added, up to |maxBytes|, after which
+ * appending does not allocate (except to grow the table of element boundaries). Elements are
+ * copied out again when read.
  */
 public class ByteArrayRingBuffer {
-    private ArrayList<byte[]> mArrayList;
+    private static final int INITIAL_MAX_BUFFERS = 16;
+    private static final int MIN_CAPACITY_BYTES = 1024;
+
     private int mMaxBytes;
+    // Grows up to |mMaxBytes|, see ensureCapacity().
+    private byte[] mData = new byte[0];
+    // Offset in |mData| of the oldest byte.
+    private int mHead;
     private int mBytesUsed;
+    // Ring of the offsets and lengths of each element, starting at |mFirstBuffer|.
+    private int[] mOffsets;
+    private int[] mLengths;
+    private int mFirstBuffer;
+    private int mNumBuffers;
 
     /**
      * Creates a ring buffer that holds at most |maxBytes| of data. The overhead for each element
@@ -35,13 +51,13 @@ public class ByteArrayRingBuffer {
         if (maxBytes < 1) {
             throw new IllegalArgumentException();
         }
-        mArrayList = new ArrayList<byte[]>();
         mMaxBytes = maxBytes;
-        mBytesUsed = 0;
+        mOffsets = new int[INITIAL_MAX_BUFFERS];
+        mLengths = new int[INITIAL_MAX_BUFFERS];
     }
 
     /**
-     * Adds |newData| to the ring buffer. Removes existing entries to make room, if necessary.
+     * Copies |newData| into the ring buffer. Removes existing entries to make room, if necessary.
      * Existing entries are removed in FIFO order.
      * <p><b>Note:</b> will fail if |newData| itself exceeds the size limit for this buffer.
      * Will first remove all existing entries in this case. (This guarantees that the ring buffer
@@ -54,19 +70,41 @@ public class ByteArrayRingBuffer {
         if (mBytesUsed + newData.length > mMaxBytes) {
             return false;
         }
+        ensureCapacity(mBytesUsed + newData.length);
+
+        if (mNumBuffers == mOffsets.length) {
+            growBufferTable();
+        }
+        int tail = wrap(mHead + mBytesUsed, mData.length);
+        int firstPart = Math.min(newData.length, mData.length - tail);
+        System.arraycopy(newData, 0, mData, tail, firstPart);
+        System.arraycopy(newData, firstPart, mData, 0, newData.length - firstPart);
 
-        mArrayList.add(newData);
+        int index = wrap(mFirstBuffer + mNumBuffers, mOffsets.length);
+        mOffsets[index] = tail;
+        mLengths[index] = newData.length;
+        mNumBuffers++;
         mBytesUsed += newData.length;
         return true;
     }
 
     /**
-     * Returns the |i|-th element of the ring. The element retains its position in the ring.
+     * Returns a copy of the |i|-th element of the ring. The element retains its position in the
+     * ring.
      * @param i
      * @return the requested element
      */
     public byte[] getBuffer(int i) {
-        return mArrayList.get(i);
+        if (i < 0 || i >= mNumBuffers) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + mNumBuffers);
+        }
+        int index = wrap(mFirstBuffer + i, mOffsets.length);
+        int offset = mOffsets[index];
+        byte[] buffer = new byte[mLengths[index]];
+        int firstPart = Math.min(buffer.length, mData.length - offset);
+        System.arraycopy(mData, offset, buffer, 0, firstPart);
+        System.arraycopy(mData, 0, buffer, firstPart, buffer.length - firstPart);
+        return buffer;
     }
 
     /**
@@ -74,7 +112,16 @@ public class ByteArrayRingBuffer {
      * @return the number of elements present
      */
     public int getNumBuffers() {
-        return mArrayList.size();
+        return mNumBuffers;
+    }
+
+    /**
+     * Returns the size of the array currently backing the ring, which grows up to the size limit
+     * as data is added.
+     */
+    @VisibleForTesting
+    int getCapacityBytes() {
+        return mData.length;
     }
 
     /**
@@ -82,18 +129,73 @@ public class ByteArrayRingBuffer {
      * @param maxBytes upper bound on the amount of data to hold
      */
     public void resize(int maxBytes) {
-        pruneToSize(maxBytes);
         mMaxBytes = maxBytes;
+        pruneToSize(maxBytes);
+        if (mData.length > maxBytes) {
+            reallocate(maxBytes);
+        }
+    }
+
+    /**
+     * Grows the data array, if needed, so that it can hold |sizeBytes|, which must not exceed
+     * |mMaxBytes|.
+     */
+    private void ensureCapacity(int sizeBytes) {
+        if (sizeBytes <= mData.length) {
+            return;
+        }
+        int capacity = Math.max(sizeBytes, Math.max(mData.length * 2, MIN_CAPACITY_BYTES));
+        reallocate(Math.min(capacity, mMaxBytes));
+    }
+
+    /**
+     * Moves the elements to the start of a new data array of |capacity| bytes, in order.
+     */
+    private void reallocate(int capacity) {
+        byte[] data = new byte[capacity];
+        int offset = 0;
+        for (int i = 0; i < mNumBuffers; i++) {
+            int index = wrap(mFirstBuffer + i, mOffsets.length);
+            int length = mLengths[index];
+            int firstPart = Math.min(length, mData.length - mOffsets[index]);
+            System.arraycopy(mData, mOffsets[index], data, offset, firstPart);
+            System.arraycopy(mData, 0, data, offset + firstPart, length - firstPart);
+            mOffsets[index] = offset;
+            offset += length;
+        }
+        mData = data;
+        mHead = 0;
     }
 
     private void pruneToSize(int sizeBytes) {
-        int newBytesUsed = mBytesUsed;
-        int i = 0;
-        while (i < mArrayList.size() && newBytesUsed > sizeBytes) {
-            newBytesUsed -= mArrayList.get(i).length;
-            i++;
+        while (mNumBuffers > 0 && mBytesUsed > sizeBytes) {
+            int length = mLengths[mFirstBuffer];
+            mHead = wrap(mOffsets[mFirstBuffer] + length, mData.length);
+            mBytesUsed -= length;
+            mFirstBuffer = wrap(mFirstBuffer + 1, mOffsets.length);
+            mNumBuffers--;
+        }
+        if (mNumBuffers == 0) {
+            mHead = 0;
+            mFirstBuffer = 0;
         }
-        mArrayList.subList(0, i).clear();
-        mBytesUsed = newBytesUsed;
+    }
+
+    private void growBufferTable() {
+        int[] offsets = new int[mOffsets.length * 2];
+        int[] lengths = new int[mLengths.length * 2];
+        for (int i = 0; i < mNumBuffers; i++) {
+            int index = wrap(mFirstBuffer + i, mOffsets.length);
+            offsets[i] = mOffsets[index];
+            lengths[i] = mLengths[index];
+        }
+        mOffsets = offsets;
+        mLengths = lengths;
+        mFirstBuffer = 0;
+    }
+
+    /** Wraps |position|, which must be less than twice |size|, into [0, size). */
+    private static int wrap(int position, int size) {
+        return position >= size ? position - size : position;
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+
+import com.android.server.wifi.proto.nano.WifiMetricsProto.Int32Count;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counts occurrences of int keys like {@link IntCounter}, but can be recorded to from any thread
+ * without locking.
+ *
+ * Keys are kept in a fixed-capacity open-addressing table which is claimed with compare-and-set,
+ * and counts are atomic cells, so {@link #add(int, int)} never blocks nor allocates. Readers take
+ * a snapshot with {@link #toIntCounter()}, or take the counts and start over with
+ * {@link #getAndReset()} when the metrics proto is consolidated for upload. The capacity bounds
+ * the number of distinct keys recorded between two resets, each of which swaps in an empty table.
+ * Occurrences of keys which do not fit are counted in {@link #getDroppedCount()}.
+ */
+public class ConcurrentIntCounter {
+    public static final int DEFAULT_CAPACITY = 128;
+
+    // Slot value of an unused slot. Used slots hold OCCUPIED | (key & 0xffffffffL).
+    private static final long EMPTY = 0;
+    private static final long OCCUPIED = 1L << 32;
+
+    /** See {@link IntCounter#keyLowerBound}. */
+    public final int keyLowerBound;
+    /** See {@link IntCounter#keyUpperBound}. */
+    public final int keyUpperBound;
+
+    private final int mSize;
+    private final AtomicReference<Table> mTable;
+
+    /** Keys and counts recorded since the last {@link #clear()}. */
+    private static class Table {
+        public final AtomicLongArray slots;
+        public final AtomicIntegerArray counts;
+        public final AtomicInteger droppedCount = new AtomicInteger();
+
+        Table(int size) {
+            slots = new AtomicLongArray(size);
+            counts = new AtomicIntegerArray(size);
+        }
+    }
+
+    public ConcurrentIntCounter() {
+        this(Integer.MIN_VALUE, Integer.MAX_VALUE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param keyLowerBound see {@link IntCounter#keyLowerBound}
+     * @param keyUpperBound see {@link IntCounter#keyUpperBound}
+     * @param capacity maximum number of distinct keys, rounded up to a power of 2
+     */
+    public ConcurrentIntCounter(int keyLowerBound, int keyUpperBound, int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.keyLowerBound = keyLowerBound;
+        this.keyUpperBound = keyUpperBound;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mSize = size;
+        mTable = new AtomicReference<>(new Table(size));
+    }
+
+    /**
+     * Increments the count of a key by 1.
+     */
+    public void increment(int key) {
+        add(key, 1);
+    }
+
+    /**
+     * Increments the count of a key by <code>count</code>.
+     */
+    public void add(int key, int count) {
+        Table table = mTable.get();
+        int mask = mSize - 1;
+        key = Math.max(keyLowerBound, Math.min(key, keyUpperBound));
+        long tagged = OCCUPIED | (key & 0xffffffffL);
+        int start = (key * 0x9E3779B9) >>> 16 & mask;
+        int slot = start;
+        do {
+            long current = table.slots.get(slot);
+            if (current == EMPTY) {
+                if (table.slots.compareAndSet(slot, EMPTY, tagged)) {
+                    table.counts.addAndGet(slot, count);
+                    return;
+                }
+                // Lost the race for this slot, it may have been claimed for the same key.
+                current = table.slots.get(slot);
+            }
+            if (current == tagged) {
+                table.counts.addAndGet(slot, count);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        } while (slot != start);
+        table.droppedCount.addAndGet(count);
+    }
+
+    /**
+     * Returns the number of occurrences since the last {@link #clear()} which were not counted
+     * because the table was full.
+     */
+    public int getDroppedCount() {
+        return mTable.get().droppedCount.get();
+    }
+
+    /**
+     * Forgets all keys and counts. Occurrences recorded concurrently may or may not be kept.
+     */
+    public void clear() {
+        mTable.set(new Table(mSize));
+    }
+
+    /**
+     * Swaps in an empty table, then returns the counts recorded in the previous one. Unlike
+     * {@link #toIntCounter()} followed by {@link #clear()}, occurrences recorded while the
+     * snapshot is taken are kept for the next one, except for an add() which already picked up
+     * the previous table when it was swapped out.
+     */
+    public @NonNull IntCounter getAndReset() {
+        return toIntCounter(mTable.getAndSet(new Table(mSize)));
+    }
+
+    /**
+     * Returns a snapshot of the non-zero counts, merged into a new {@link IntCounter} with the
+     * same bounds.
+     */
+    public @NonNull IntCounter toIntCounter() {
+        return toIntCounter(mTable.get());
+    }
+
+    private IntCounter toIntCounter(Table table) {
+        IntCounter counter = new IntCounter(keyLowerBound, keyUpperBound);
+        for (int i = 0; i < mSize; i++) {
+            long slot = table.slots.get(i);
+            if (slot == EMPTY) continue;
+            int count = table.counts.get(i);
+            if (count != 0) {
+                counter.add((int) slot, count);
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Converts a snapshot of this object to the standard Protobuf representation.
+     */
+    public Int32Count[] toProto() {
+        return toIntCounter().toProto();
+    }
+
+    @Override
+    public String toString() {
+        int dropped = getDroppedCount();
+        return toIntCounter() + (dropped == 0 ? "" : " (dropped " + dropped + ")");
+    }
+}
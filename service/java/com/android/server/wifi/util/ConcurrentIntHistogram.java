@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+
+import com.android.server.wifi.proto.nano.WifiMetricsProto.HistogramBucketInt32;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A histogram with the same buckets as {@link IntHistogram}, which can be recorded to from any
+ * thread without locking.
+ *
+ * Every bucket is an atomic cell, so {@link #add(int, int)} never blocks nor allocates. Readers
+ * take a snapshot with {@link #toIntHistogram()}, or take the counts and start over with
+ * {@link #getAndReset()} when the metrics proto is consolidated for upload.
+ */
+public class ConcurrentIntHistogram {
+    private final int[] mBucketBoundaries;
+    // Count per bucket key, see IntHistogram for the definition of keys.
+    private final AtomicIntegerArray mBuckets;
+
+    /**
+     * See {@link IntHistogram#IntHistogram(int[])}.
+     */
+    public ConcurrentIntHistogram(@NonNull int[] bucketBoundaries) {
+        if (bucketBoundaries == null || bucketBoundaries.length == 0) {
+            throw new IllegalArgumentException("bucketBoundaries must be non-null and non-empty!");
+        }
+        for (int i = 0; i < bucketBoundaries.length - 1; i++) {
+            if (bucketBoundaries[i] >= bucketBoundaries[i + 1]) {
+                throw new IllegalArgumentException(
+                        "bucketBoundaries values must be strictly monotonically increasing");
+            }
+        }
+        mBucketBoundaries = bucketBoundaries.clone();
+        mBuckets = new AtomicIntegerArray(bucketBoundaries.length + 1);
+    }
+
+    /**
+     * Increments the count of the bucket that this value falls into by 1.
+     */
+    public void increment(int value) {
+        add(value, 1);
+    }
+
+    /**
+     * Increments the count of the bucket that this value falls into by <code>count</code>.
+     */
+    public void add(int value, int count) {
+        int insertionIndex = Arrays.binarySearch(mBucketBoundaries, value);
+        mBuckets.addAndGet(Math.abs(insertionIndex + 1), count);
+    }
+
+    /**
+     * Resets all buckets to 0. Values recorded concurrently may or may not be kept.
+     */
+    public void clear() {
+        for (int i = 0; i < mBuckets.length(); i++) {
+            mBuckets.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the non-empty buckets, merged into a new {@link IntHistogram} with the
+     * same bucket boundaries.
+     */
+    public @NonNull IntHistogram toIntHistogram() {
+        return toIntHistogram(false);
+    }
+
+    /**
+     * Returns the non-empty buckets like {@link #toIntHistogram()}, resetting each of them to 0
+     * as it is read. Unlike a snapshot followed by {@link #clear()}, no value recorded in between
+     * is lost: it is either part of the returned histogram or kept for the next one.
+     */
+    public @NonNull IntHistogram getAndReset() {
+        return toIntHistogram(true);
+    }
+
+    private IntHistogram toIntHistogram(boolean reset) {
+        IntHistogram histogram = new IntHistogram(mBucketBoundaries);
+        for (int key = 0; key < mBuckets.length(); key++) {
+            int count = reset ? mBuckets.getAndSet(key, 0) : mBuckets.get(key);
+            if (count != 0) {
+                // The start of a bucket falls into that bucket.
+                histogram.add(key == 0 ? Integer.MIN_VALUE : mBucketBoundaries[key - 1], count);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Converts a snapshot of this histogram to the standard Protobuf representation.
+     */
+    public HistogramBucketInt32[] toProto() {
+        return toIntHistogram().toProto();
+    }
+
+    @Override
+    public String toString() {
+        return toIntHistogram().toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Follows a text file whose content is a sliding window of recent lines, such as a kernel trace
+ * buffer, and accumulates the lines in a bounded in-memory window.
+ *
+ * Each {@link #poll()} opens the file, reads it whole and closes it again. Reading the trace file
+ * of a tracefs instance pauses tracing for as long as it is open, so it must not be held open. The
+ * file data which follows the last line seen by the previous poll is added to the window. If that
+ * line is no longer in the file, e.g. because the kernel ring buffer wrapped, the whole file is
+ * added. Text marks can be inserted into the window with {@link #mark(String)} to delimit the
+ * data, and {@link #snapshot()} returns a copy of it.
+ *
+ * This class is not thread-safe.
+ */
+public class FileTailReader {
+    private final String mPath;
+    private final byte[] mWindow;
+    // Offset in |mWindow| of the oldest byte, and number of valid bytes.
+    private int mStart;
+    private int mLength;
+    // Last line of the file as of the previous poll, without its line terminator.
+    @Nullable private byte[] mLastLine;
+
+    /**
+     * @param path path of the file to follow. The file does not need to exist yet.
+     * @param windowSizeBytes maximum number of bytes to keep in memory
+     */
+    public FileTailReader(@NonNull String path, int windowSizeBytes) {
+        if (windowSizeBytes < 1) {
+            throw new IllegalArgumentException("windowSizeBytes must be positive");
+        }
+        mPath = path;
+        mWindow = new byte[windowSizeBytes];
+    }
+
+    /**
+     * Reads the file and adds the lines which were not seen by the previous call to the window,
+     * dropping the oldest data if necessary.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    public void poll() throws IOException {
+        byte[] data = Files.readAllBytes(Paths.get(mPath));
+        if (data.length == 0) {
+            return;
+        }
+        int newDataStart = findEndOfLastLine(data);
+        append(data, newDataStart, data.length - newDataStart);
+        mLastLine = getLastLine(data);
+    }
+
+    /**
+     * Appends a line of text to the window, on a line of its own.
+     */
+    public void mark(@NonNull String text) {
+        if (mLength > 0 && mWindow[(mStart + mLength - 1) % mWindow.length] != '\n') {
+            append(new byte[] {'\n'}, 0, 1);
+        }
+        byte[] line = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        append(line, 0, line.length);
+    }
+
+    /**
+     * Returns a copy of the window, oldest byte first.
+     */
+    public @NonNull byte[] snapshot() {
+        byte[] snapshot = new byte[mLength];
+        int firstPart = Math.min(mLength, mWindow.length - mStart);
+        System.arraycopy(mWindow, mStart, snapshot, 0, firstPart);
+        System.arraycopy(mWindow, 0, snapshot, firstPart, mLength - firstPart);
+        return snapshot;
+    }
+
+    /**
+     * Returns the offset in |data| just after the last line seen by the previous poll, including
+     * its line terminator, or 0 if that line is not in |data|.
+     */
+    private int findEndOfLastLine(byte[] data) {
+        if (mLastLine == null) {
+            return 0;
+        }
+        int length = mLastLine.length;
+        for (int begin = data.length - length; begin >= 0; begin--) {
+            int end = begin + length;
+            if ((begin == 0 || data[begin - 1] == '\n')
+                    && (end == data.length || data[end] == '\n')
+                    && regionMatches(data, begin, mLastLine)) {
+                return end == data.length ? end : end + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean regionMatches(byte[] data, int offset, byte[] other) {
+        for (int i = 0; i < other.length; i++) {
+            if (data[offset + i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the last line of |data|, without its line terminator, or null if it is empty.
+     */
+    private static @Nullable byte[] getLastLine(byte[] data) {
+        int end = data[data.length - 1] == '\n' ? data.length - 1 : data.length;
+        int begin = end;
+        while (begin > 0 && data[begin - 1] != '\n') {
+            begin--;
+        }
+        return begin == end ? null : Arrays.copyOfRange(data, begin, end);
+    }
+
+    private void append(byte[] data, int offset, int count) {
+        // Only the last window's worth of |data| can be kept.
+        int skipped = Math.max(0, count - mWindow.length);
+        offset += skipped;
+        count -= skipped;
+        while (count > 0) {
+            int tail = (mStart + mLength) % mWindow.length;
+            int chunk = Math.min(count, mWindow.length - tail);
+            System.arraycopy(data, offset, mWindow, tail, chunk);
+            offset += chunk;
+            count -= chunk;
+            advance(chunk);
+        }
+    }
+
+    /** Accounts for |count| bytes written at the tail, which may overwrite the oldest ones. */
+    private void advance(int count) {
+        mLength += count;
+        if (mLength > mWindow.length) {
+            mStart = (mStart + mLength - mWindow.length) % mWindow.length;
+            mLength = mWindow.length;
+        }
+    }
+}
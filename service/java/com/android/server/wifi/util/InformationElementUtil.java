@@ -1818,6 +1818,15 @@ public class InformationElementUtil {
             }
         }
 
+        /**
+         * Same as {@link #from(InformationElement[], int, boolean, int)}, reading the elements
+         * from the view shared with the other consumers of the same scan result.
+         */
+        public void from(ParsedInformationElements ies, int beaconCap, boolean isOweSupported,
+                int freq) {
+            from(ies.getElements(), beaconCap, isOweSupported, freq);
+        }
+
         private static boolean isOweElement(InformationElement ie) {
             ByteBuffer buf = ByteBuffer.wrap(ie.bytes).order(ByteOrder.LITTLE_ENDIAN);
             try {
@@ -20,6 +20,11 @@ package com.android.server.wifi.util;
  * Utility providiing a basic Kalman filter
  *
  * For background, see https://en.wikipedia.org/wiki/Kalman_filter
+ *
+ * The steps reuse a workspace that is only reallocated when the dimensions change, and the
+ * common case of a 2-dimensional state with a scalar observation is computed without temporary
+ * matrices. The state estimate mx and covariance mP may be updated in place or replaced by a
+ * workspace matrix, so callers should copy them if they need to keep a value across steps.
  */
 public class KalmanFilter {
     public Matrix mF; // stateTransition
@@ -29,24 +34,150 @@ public class KalmanFilter {
     public Matrix mP; // aPosterioriErrorCovariance
     public Matrix mx; // stateEstimate
 
+    // Workspace for the general case, see reuse().
+    private Matrix mStateScratch;
+    private Matrix mCovarianceScratch;
+    private Matrix mCovarianceScratch2;
+    private Matrix mInnovation;
+    private Matrix mObservationScratch;
+    private Matrix mInnovationCovariance;
+    private Matrix mInnovationCovarianceInverse;
+    private Matrix mInverseScratch;
+    private Matrix mCrossCovariance;
+    private Matrix mGain;
+
     /**
      * Performs the prediction phase of the filter, using the state estimate to produce
      * a new estimate for the current timestep.
      */
     public void predict() {
-        mx = mF.dot(mx);
-        mP = mF.dot(mP).dotTranspose(mF).plus(mQ);
+        if (is2x2(mF) && is2x2(mP) && is2x2(mQ) && isShape(mx, 2, 1)) {
+            predict2x2();
+            return;
+        }
+        // x = F x
+        mStateScratch = reuse(mStateScratch, mF.n, mx.m);
+        mF.dot(mx, mStateScratch);
+        Matrix previousState = mx;
+        mx = mStateScratch;
+        mStateScratch = previousState;
+        // P = F P F' + Q
+        mCovarianceScratch = reuse(mCovarianceScratch, mF.n, mP.m);
+        mCovarianceScratch2 = reuse(mCovarianceScratch2, mF.n, mF.n);
+        mF.dot(mP, mCovarianceScratch).dotTranspose(mF, mCovarianceScratch2);
+        if (!isShape(mP, mF.n, mF.n)) {
+            mP = new Matrix(mF.n, mF.n);
+        }
+        mCovarianceScratch2.plus(mQ, mP);
     }
 
     /**
      * Updates the state estimate to incorporate the new observation z.
      */
     public void update(Matrix z) {
-        Matrix y = z.minus(mH.dot(mx));
-        Matrix tS = mH.dot(mP).dotTranspose(mH).plus(mR);
-        Matrix tK = mP.dotTranspose(mH).dot(tS.inverse());
-        mx = mx.plus(tK.dot(y));
-        mP = mP.minus(tK.dot(mH).dot(mP));
+        if (is2x2(mP) && isShape(mx, 2, 1) && isShape(mH, 1, 2) && isShape(mR, 1, 1)
+                && isShape(z, 1, 1)) {
+            update2x2(z.mem[0]);
+            return;
+        }
+        int n = mP.n;
+        int k = mH.n;
+        // y = z - H x
+        mInnovation = reuse(mInnovation, k, mx.m);
+        z.minus(mH.dot(mx, mInnovation), mInnovation);
+        // S = H P H' + R
+        mObservationScratch = reuse(mObservationScratch, k, mP.m);
+        mInnovationCovariance = reuse(mInnovationCovariance, k, k);
+        mH.dot(mP, mObservationScratch).dotTranspose(mH, mInnovationCovariance)
+                .plus(mR, mInnovationCovariance);
+        // K = P H' S^-1
+        mCrossCovariance = reuse(mCrossCovariance, n, k);
+        mInnovationCovarianceInverse = reuse(mInnovationCovarianceInverse, k, k);
+        mInverseScratch = reuse(mInverseScratch, k, 2 * k);
+        mGain = reuse(mGain, n, k);
+        mP.dotTranspose(mH, mCrossCovariance).dot(
+                mInnovationCovariance.inverse(mInnovationCovarianceInverse, mInverseScratch),
+                mGain);
+        // x = x + K y
+        mStateScratch = reuse(mStateScratch, n, mx.m);
+        mx.plus(mGain.dot(mInnovation, mStateScratch), mx);
+        // P = P - K H P
+        mCovarianceScratch = reuse(mCovarianceScratch, n, mH.m);
+        mCovarianceScratch2 = reuse(mCovarianceScratch2, n, mP.m);
+        mP.minus(mGain.dot(mH, mCovarianceScratch).dot(mP, mCovarianceScratch2), mP);
+    }
+
+    /**
+     * Same as the general case of {@link #predict()} for a 2-dimensional state, with the
+     * operations done in the same order.
+     */
+    private void predict2x2() {
+        double[] f = mF.mem;
+        double[] p = mP.mem;
+        double[] q = mQ.mem;
+        double[] x = mx.mem;
+        double x0 = f[0] * x[0] + f[1] * x[1];
+        double x1 = f[2] * x[0] + f[3] * x[1];
+        x[0] = x0;
+        x[1] = x1;
+        // A = F P
+        double a00 = f[0] * p[0] + f[1] * p[2];
+        double a01 = f[0] * p[1] + f[1] * p[3];
+        double a10 = f[2] * p[0] + f[3] * p[2];
+        double a11 = f[2] * p[1] + f[3] * p[3];
+        // P = A F' + Q
+        p[0] = (a00 * f[0] + a01 * f[1]) + q[0];
+        p[1] = (a00 * f[2] + a01 * f[3]) + q[1];
+        p[2] = (a10 * f[0] + a11 * f[1]) + q[2];
+        p[3] = (a10 * f[2] + a11 * f[3]) + q[3];
+    }
+
+    /**
+     * Same as the general case of {@link #update(Matrix)} for a 2-dimensional state and a scalar
+     * observation, with the operations done in the same order.
+     */
+    private void update2x2(double z) {
+        double[] h = mH.mem;
+        double[] p = mP.mem;
+        double[] x = mx.mem;
+        double y = z - (h[0] * x[0] + h[1] * x[1]);
+        double hp0 = h[0] * p[0] + h[1] * p[2];
+        double hp1 = h[0] * p[1] + h[1] * p[3];
+        double s = (hp0 * h[0] + hp1 * h[1]) + mR.mem[0];
+        if (s == 0.0) throw new ArithmeticException("Singular matrix");
+        double sInverse = 1.0 / s;
+        double k0 = (p[0] * h[0] + p[1] * h[1]) * sInverse;
+        double k1 = (p[2] * h[0] + p[3] * h[1]) * sInverse;
+        x[0] = x[0] + k0 * y;
+        x[1] = x[1] + k1 * y;
+        // P = P - (K H) P
+        double kh00 = k0 * h[0];
+        double kh01 = k0 * h[1];
+        double kh10 = k1 * h[0];
+        double kh11 = k1 * h[1];
+        double c00 = kh00 * p[0] + kh01 * p[2];
+        double c01 = kh00 * p[1] + kh01 * p[3];
+        double c10 = kh10 * p[0] + kh11 * p[2];
+        double c11 = kh10 * p[1] + kh11 * p[3];
+        p[0] = p[0] - c00;
+        p[1] = p[1] - c01;
+        p[2] = p[2] - c10;
+        p[3] = p[3] - c11;
+    }
+
+    private static boolean isShape(Matrix matrix, int rows, int cols) {
+        return matrix != null && matrix.n == rows && matrix.m == cols;
+    }
+
+    private static boolean is2x2(Matrix matrix) {
+        return isShape(matrix, 2, 2);
+    }
+
+    /**
+     * Returns the buffer if it has the given shape, or a new matrix otherwise.
+     */
+    private static Matrix reuse(Matrix buffer, int rows, int cols) {
+        return isShape(buffer, rows, cols) ? buffer : new Matrix(rows, cols);
     }
 
     @Override
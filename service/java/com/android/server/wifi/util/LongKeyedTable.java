@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Open-addressing hash table keyed by primitive longs, such as MAC addresses encoded as 48-bit
+ * values, with a referenced bit per entry for approximate least-recently-used eviction.
+ *
+ * Lookups do not allocate. Entries are marked as referenced with {@link #markReferenced(long)},
+ * and {@link #evictUnreferenced(Consumer)} drops the entries which were not referenced since the
+ * previous eviction round.
+ *
+ * @param <V> type of the values
+ */
+public class LongKeyedTable<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private boolean[] mReferenced;
+    private int mSize;
+    private int mReferencedCount;
+
+    public LongKeyedTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mReferenced = new boolean[capacity];
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Returns the slot holding the key, or the empty slot where it would be inserted. */
+    private int findSlot(long key) {
+        int mask = mKeys.length - 1;
+        int slot = hash(key, mask);
+        while (mValues[slot] != null && mKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the value for the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(long key) {
+        return (V) mValues[findSlot(key)];
+    }
+
+    /**
+     * Adds or replaces the value for the key. The entry starts out unreferenced.
+     *
+     * @return the previous value for the key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V put(long key, @NonNull V value) {
+        int slot = findSlot(key);
+        V old = (V) mValues[slot];
+        if (old == null) {
+            if ((mSize + 1) * 2 > mKeys.length) {
+                rehash(mKeys.length * 2);
+                slot = findSlot(key);
+            }
+            mKeys[slot] = key;
+            mSize++;
+        } else if (mReferenced[slot]) {
+            mReferenced[slot] = false;
+            mReferencedCount--;
+        }
+        mValues[slot] = value;
+        return old;
+    }
+
+    /**
+     * Marks the entry for the key as referenced.
+     *
+     * @return true if the entry was not referenced yet.
+     */
+    public boolean markReferenced(long key) {
+        int slot = findSlot(key);
+        if (mValues[slot] == null || mReferenced[slot]) {
+            return false;
+        }
+        mReferenced[slot] = true;
+        mReferencedCount++;
+        return true;
+    }
+
+    /**
+     * Returns the number of entries referenced since the last eviction round.
+     */
+    public int referencedCount() {
+        return mReferencedCount;
+    }
+
+    /**
+     * Removes the entries which were not referenced since the previous round, and marks the
+     * remaining ones as unreferenced for the next round.
+     *
+     * @param evicted called for every removed value, may be null.
+     * @return the number of removed entries.
+     */
+    public int evictUnreferenced(@Nullable Consumer<V> evicted) {
+        int removed = retain(mReferenced, evicted);
+        Arrays.fill(mReferenced, false);
+        mReferencedCount = 0;
+        return removed;
+    }
+
+    /**
+     * Removes the entries whose values match the filter.
+     *
+     * @return the number of removed entries.
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(@NonNull Predicate<V> filter) {
+        boolean[] keep = new boolean[mKeys.length];
+        for (int i = 0; i < mValues.length; i++) {
+            keep[i] = mValues[i] != null && !filter.test((V) mValues[i]);
+        }
+        return retain(keep, null);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(mValues, null);
+        Arrays.fill(mReferenced, false);
+        mSize = 0;
+        mReferencedCount = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns a new list of all the values, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public @NonNull List<V> values() {
+        List<V> values = new ArrayList<>(mSize);
+        for (Object value : mValues) {
+            if (value != null) {
+                values.add((V) value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Keeps only the occupied slots flagged in |keep| and re-inserts them, since removing
+     * entries in place would break the probe sequences of linear probing.
+     */
+    @SuppressWarnings("unchecked")
+    private int retain(boolean[] keep, @Nullable Consumer<V> removed) {
+        long[] keys = mKeys;
+        Object[] values = mValues;
+        boolean[] referenced = mReferenced;
+        int oldSize = mSize;
+        allocate(keys.length);
+        mSize = 0;
+        mReferencedCount = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) continue;
+            if (keep[i]) {
+                insert(keys[i], values[i], referenced[i]);
+            } else if (removed != null) {
+                removed.accept((V) values[i]);
+            }
+        }
+        return oldSize - mSize;
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = mKeys;
+        Object[] values = mValues;
+        boolean[] referenced = mReferenced;
+        allocate(capacity);
+        mSize = 0;
+        mReferencedCount = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                insert(keys[i], values[i], referenced[i]);
+            }
+        }
+    }
+
+    private void insert(long key, Object value, boolean referenced) {
+        int slot = findSlot(key);
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mReferenced[slot] = referenced;
+        mSize++;
+        if (referenced) mReferencedCount++;
+    }
+}
@@ -210,6 +210,39 @@ public class NativeUtil {
         }
     }
 
+    /**
+     * Converts a mac address string to a long representing the MAC address, without allocating.
+     *
+     * @param macStr string of format: "XX:XX:XX:XX:XX:XX", where each XX is one or two hexadecimal
+     *               digits, as accepted by {@link android.net.MacAddress#fromString(String)}.
+     * @return the 48-bit value of the mac address, or -1 for malformed inputs.
+     */
+    public static long macAddressStringToLong(String macStr) {
+        if (macStr == null) {
+            return -1;
+        }
+        long mac = 0;
+        int group = 0;
+        int groups = 0;
+        int digits = 0;
+        for (int i = 0; i <= macStr.length(); i++) {
+            if (i == macStr.length() || macStr.charAt(i) == ':') {
+                if (digits == 0 || ++groups > MAC_LENGTH) return -1;
+                mac = (mac << 8) | group;
+                group = 0;
+                digits = 0;
+                continue;
+            }
+            int value = Character.digit(macStr.charAt(i), 16);
+            if (value < 0 || ++digits > 2) return -1;
+            group = (group << 4) | value;
+        }
+        if (groups != MAC_LENGTH) {
+            return -1;
+        }
+        return mac;
+    }
+
     /**
      * Remove enclosing quotes from the provided string.
      *
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.wifi.ScanResult.InformationElement;
+import android.util.Log;
+
+/**
+ * Read-only view over the information elements of a single scan result.
+ *
+ * The view is built once per scan result during scan conversion and shared by
+ * {@link InformationElementUtil.Capabilities}, NetworkDetail and Passpoint matching. The element
+ * IDs and extension IDs present are indexed on construction, so that consumers can check for an
+ * element without walking the elements again.
+ *
+ * The Interworking, Roaming Consortium and Vendor Specific elements are the only structures
+ * decoded by more than one consumer. They are decoded together in a single walk on first access,
+ * or provided by NetworkDetail once its own walk decoded them, and memoized so that Passpoint
+ * matching does not parse them again on every lookup of the same scan result.
+ *
+ * This class is not thread-safe.
+ */
+public class ParsedInformationElements {
+    private static final String TAG = "ParsedInformationElements";
+    // Number of 64-bit words needed to index the 256 element IDs, or extension IDs.
+    private static final int ID_INDEX_WORDS = 4;
+
+    private final InformationElement[] mElements;
+    // Element IDs and extension element IDs present in |mElements|, one bit per ID.
+    private final long[] mIdIndex = new long[ID_INDEX_WORDS];
+    private final long[] mExtIdIndex = new long[ID_INDEX_WORDS];
+
+    private InformationElementUtil.Interworking mInterworking;
+    private InformationElementUtil.RoamingConsortium mRoamingConsortium;
+    private InformationElementUtil.Vsa mVsa;
+
+    /**
+     * Create a view over the provided elements, which are decoded on first access.
+     *
+     * @param elements elements parsed by
+     *                 {@link InformationElementUtil#parseInformationElements(byte[])}, may be null.
+     */
+    public ParsedInformationElements(@Nullable InformationElement[] elements) {
+        mElements = elements == null ? new InformationElement[0] : elements;
+        for (InformationElement ie : mElements) {
+            setBit(mIdIndex, ie.id);
+            if (ie.id == InformationElement.EID_EXTENSION_PRESENT) {
+                setBit(mExtIdIndex, ie.idExt);
+            }
+        }
+    }
+
+    /**
+     * Create a view by parsing the provided raw information element bytes.
+     */
+    @NonNull
+    public static ParsedInformationElements parse(@Nullable byte[] bytes) {
+        return new ParsedInformationElements(
+                InformationElementUtil.parseInformationElements(bytes));
+    }
+
+    private static void setBit(long[] index, int id) {
+        if (id < 0 || id > 255) {
+            return;
+        }
+        index[id >>> 6] |= 1L << (id & 63);
+    }
+
+    private static boolean isBitSet(long[] index, int id) {
+        if (id < 0 || id > 255) {
+            return false;
+        }
+        return (index[id >>> 6] & (1L << (id & 63))) != 0;
+    }
+
+    /**
+     * Return the underlying information elements.
+     */
+    @NonNull
+    public InformationElement[] getElements() {
+        return mElements;
+    }
+
+    /**
+     * Return true if an element with the provided element ID is present.
+     */
+    public boolean contains(int id) {
+        return isBitSet(mIdIndex, id);
+    }
+
+    /**
+     * Return true if an extension element with the provided extension element ID is present.
+     */
+    public boolean containsExtension(int idExt) {
+        return isBitSet(mExtIdIndex, idExt);
+    }
+
+    /**
+     * Provide the Passpoint related elements, once decoded by a complete walk of the elements,
+     * so that they are not decoded again on first access.
+     */
+    public void setPasspointElements(@NonNull InformationElementUtil.Interworking interworking,
+            @NonNull InformationElementUtil.RoamingConsortium roamingConsortium,
+            @NonNull InformationElementUtil.Vsa vsa) {
+        mInterworking = interworking;
+        mRoamingConsortium = roamingConsortium;
+        mVsa = vsa;
+    }
+
+    /**
+     * Return the decoded Interworking element. Values are left at their defaults if the element
+     * is absent or malformed.
+     */
+    @NonNull
+    public InformationElementUtil.Interworking getInterworking() {
+        decodeIfNeeded();
+        return mInterworking;
+    }
+
+    /**
+     * Return the decoded Roaming Consortium element. Values are left at their defaults if the
+     * element is absent or malformed.
+     */
+    @NonNull
+    public InformationElementUtil.RoamingConsortium getRoamingConsortium() {
+        decodeIfNeeded();
+        return mRoamingConsortium;
+    }
+
+    /**
+     * Return the Vendor Specific elements (Hotspot 2.0 indication and MBO-OCE) decoded into a
+     * single {@link InformationElementUtil.Vsa}. Values are left at their defaults if no such
+     * element is present.
+     */
+    @NonNull
+    public InformationElementUtil.Vsa getVsa() {
+        decodeIfNeeded();
+        return mVsa;
+    }
+
+    /**
+     * Decode all the Passpoint related elements in a single walk. A malformed element is skipped
+     * without affecting the others, as in
+     * {@link InformationElementUtil#getRoamingConsortiumIE(InformationElement[])}.
+     */
+    private void decodeIfNeeded() {
+        if (mVsa != null) {
+            return;
+        }
+        InformationElementUtil.Interworking interworking =
+                new InformationElementUtil.Interworking();
+        InformationElementUtil.RoamingConsortium roamingConsortium =
+                new InformationElementUtil.RoamingConsortium();
+        InformationElementUtil.Vsa vsa = new InformationElementUtil.Vsa();
+        mInterworking = interworking;
+        mRoamingConsortium = roamingConsortium;
+        mVsa = vsa;
+        if (!contains(InformationElement.EID_INTERWORKING)
+                && !contains(InformationElement.EID_ROAMING_CONSORTIUM)
+                && !contains(InformationElement.EID_VSA)) {
+            return;
+        }
+        for (InformationElement ie : mElements) {
+            try {
+                switch (ie.id) {
+                    case InformationElement.EID_INTERWORKING:
+                        interworking.from(ie);
+                        break;
+                    case InformationElement.EID_ROAMING_CONSORTIUM:
+                        roamingConsortium.from(ie);
+                        break;
+                    case InformationElement.EID_VSA:
+                        vsa.from(ie);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to parse IE " + ie.id + ": " + e.getMessage());
+            }
+        }
+    }
+}
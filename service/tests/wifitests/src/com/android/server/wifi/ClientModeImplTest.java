@@ -49,6 +49,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -3335,6 +3336,35 @@ public class ClientModeImplTest extends WifiBaseTest {
         assertEquals(wifiInfo.getMacAddress(), connectionInfo.getMacAddress());
     }
 
+    /**
+     * Test that {@link ClientModeImpl#getConnectionInfoSnapshot()} publishes a copy of WifiInfo
+     * once the state machine has processed a message.
+     */
+    @Test
+    public void testConnectionInfoSnapshotIsPublishedAfterEachMessage() throws Exception {
+        connect();
+
+        WifiInfo snapshot = mCmi.getConnectionInfoSnapshot();
+        assertNotSame(mWifiInfo, snapshot);
+        assertEquals(TEST_BSSID_STR, snapshot.getBSSID());
+        assertEquals(TEST_WIFI_SSID, snapshot.getWifiSsid());
+
+        DisconnectEventInfo disconnectEventInfo =
+                new DisconnectEventInfo(TEST_SSID, TEST_BSSID_STR, 0, false);
+        mCmi.sendMessage(WifiMonitor.NETWORK_DISCONNECTION_EVENT, disconnectEventInfo);
+        mCmi.sendMessage(WifiMonitor.SUPPLICANT_STATE_CHANGE_EVENT, 0, 0,
+                new StateChangeResult(0, TEST_WIFI_SSID, TEST_BSSID_STR, sFreq,
+                        SupplicantState.DISCONNECTED));
+        mLooper.dispatchAll();
+
+        WifiInfo disconnectedSnapshot = mCmi.getConnectionInfoSnapshot();
+        assertNotSame(snapshot, disconnectedSnapshot);
+        assertEquals(mWifiInfo.getBSSID(), disconnectedSnapshot.getBSSID());
+        assertEquals(mWifiInfo.getSupplicantState(), disconnectedSnapshot.getSupplicantState());
+        // A published snapshot is never modified.
+        assertEquals(TEST_BSSID_STR, snapshot.getBSSID());
+    }
+
     /**
      * Test that reconnectCommand() triggers connectivity scan when ClientModeImpl
      * is in DisconnectedMode.
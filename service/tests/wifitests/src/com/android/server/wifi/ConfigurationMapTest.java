@@ -19,8 +19,10 @@ package com.android.server.wifi;
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.mockitoSession;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
@@ -203,6 +205,7 @@ public class ConfigurationMapTest extends WifiBaseTest {
             assertEquals(config, mConfigs.getForCurrentUser(config.networkId));
             assertEquals(config, mConfigs.getByConfigKeyForCurrentUser(
                     config.getProfileKey()));
+            assertTrue(mConfigs.getBySsidForCurrentUser(config.SSID).contains(config));
             final boolean wasEphemeral = config.ephemeral;
             config.ephemeral = false;
             assertNull(getEphemeralForCurrentUser(config.SSID));
@@ -216,6 +219,7 @@ public class ConfigurationMapTest extends WifiBaseTest {
         for (WifiConfiguration config : configsNotForCurrentUser) {
             assertNull(mConfigs.getForCurrentUser(config.networkId));
             assertNull(mConfigs.getByConfigKeyForCurrentUser(config.getProfileKey()));
+            assertFalse(mConfigs.getBySsidForCurrentUser(config.SSID).contains(config));
             final boolean wasEphemeral = config.ephemeral;
             config.ephemeral = false;
             assertNull(getEphemeralForCurrentUser(config.SSID));
@@ -318,6 +322,37 @@ public class ConfigurationMapTest extends WifiBaseTest {
         verifyGetters(configs);
     }
 
+    /**
+     * Verifies that the profile key and SSID indexes are updated when a network modified in place
+     * is put again, and never return a network whose key no longer matches.
+     */
+    @Test
+    public void testIndexesUpdatedOnPutAfterInPlaceModification() {
+        WifiConfiguration config = WifiConfigurationTestUtil.createOpenNetwork();
+        WifiConfiguration otherConfig = WifiConfigurationTestUtil.createOpenNetwork(config.SSID);
+        otherConfig.networkId = config.networkId + 1;
+        mConfigs.put(config);
+        mConfigs.put(otherConfig);
+        assertEquals(2, mConfigs.getBySsidForCurrentUser(config.SSID).size());
+
+        String oldSsid = config.SSID;
+        String oldProfileKey = config.getProfileKey();
+        config.SSID = "\"modified\"";
+        // Stale index entries are not returned until the network is put again.
+        assertFalse(mConfigs.getBySsidForCurrentUser(oldSsid).contains(config));
+        assertTrue(mConfigs.getBySsidForCurrentUser(config.SSID).isEmpty());
+
+        mConfigs.put(config);
+        assertEquals(Arrays.asList(config), mConfigs.getBySsidForCurrentUser(config.SSID));
+        assertEquals(config, mConfigs.getByConfigKeyForCurrentUser(config.getProfileKey()));
+        assertEquals(Arrays.asList(otherConfig), mConfigs.getBySsidForCurrentUser(oldSsid));
+        assertEquals(otherConfig, mConfigs.getByConfigKeyForCurrentUser(oldProfileKey));
+
+        mConfigs.remove(otherConfig.networkId);
+        assertTrue(mConfigs.getBySsidForCurrentUser(oldSsid).isEmpty());
+        assertNull(mConfigs.getByConfigKeyForCurrentUser(oldProfileKey));
+    }
+
     /**
      * Verifies that {@link ConfigurationMap#getByScanResultForCurrentUser(ScanResult)} can
      * positively match the corresponding networks.
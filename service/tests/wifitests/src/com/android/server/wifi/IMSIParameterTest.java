@@ -24,6 +24,7 @@ import androidx.test.filters.SmallTest;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -147,4 +148,20 @@ public class IMSIParameterTest extends WifiBaseTest {
 
         assertFalse(param.matchesMccMnc(VALID_MCC_MNC_6));     // length of Prefix mismatch
     }
+
+    /**
+     * Verify that {@link IMSIParameter#getMatchingMccMncs} returns exactly the MCC-MNCs accepted
+     * by {@link IMSIParameter#matchesMccMnc}.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void getMatchingMccMncs() throws Exception {
+        assertEquals(Arrays.asList(VALID_MCC_MNC, VALID_MCC_MNC_6),
+                new IMSIParameter(VALID_FULL_IMSI, false).getMatchingMccMncs());
+        assertEquals(Arrays.asList(VALID_MCC_MNC),
+                new IMSIParameter(VALID_MCC_MNC, true).getMatchingMccMncs());
+        assertEquals(Arrays.asList(VALID_MCC_MNC_6),
+                new IMSIParameter(VALID_MCC_MNC_6, true).getMatchingMccMncs());
+    }
 }
@@ -244,6 +244,42 @@ public class LastMileLoggerTest extends WifiBaseTest {
         assertTrue(dumpString.contains("rdev_connect try #2"));
     }
 
+    @Test
+    public void failureTraceOnlyReadsNewDataAndIsDelimitedByMarks() throws Exception {
+        mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_STARTED);
+        FileUtils.stringToFile(mTraceDataFile.getPath(), "rdev_connect try #1\n");
+        mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_FAILED);
+        // The trace file holds the whole content of the kernel ring buffer on every read.
+        FileUtils.stringToFile(mTraceDataFile.getPath(),
+                "rdev_connect try #1\nrdev_connect try #2\n");
+        mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_TIMEOUT);
+
+        String dumpString = getDumpString();
+        String failureLog = dumpString.substring(dumpString.indexOf("--- Last failed"),
+                dumpString.indexOf("--- Latest"));
+        assertTrue(failureLog.indexOf("rdev_connect try #1")
+                < failureLog.indexOf("wlan0 connection failed"));
+        assertTrue(failureLog.contains("started at elapsedRealtime="));
+        assertTrue(failureLog.indexOf("wlan0 connection failed")
+                < failureLog.indexOf("rdev_connect try #2"));
+        assertTrue(failureLog.indexOf("rdev_connect try #2")
+                < failureLog.indexOf("wlan0 connection timed out"));
+        // Each trace line is only read once.
+        assertEquals(failureLog.indexOf("rdev_connect try #1"),
+                failureLog.lastIndexOf("rdev_connect try #1"));
+    }
+
+    @Test
+    public void connectionEventsOtherThanFailuresDoNotReadTrace() throws Exception {
+        mTraceDataFile.delete();
+        mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_STARTED);
+        mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_SUCCEEDED);
+        verifyZeroInteractions(mLog);
+
+        mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_FAILED);
+        verify(mLog).warn(contains("Failed to read event trace"));
+    }
+
     @Test
     public void dumpDoesNotClearLastFailureData() throws Exception {
         mLastMileLogger.reportConnectionEvent(WLAN0, WifiDiagnostics.CONNECTION_EVENT_STARTED);
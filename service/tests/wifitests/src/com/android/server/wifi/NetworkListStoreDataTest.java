@@ -62,6 +62,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -683,6 +684,45 @@ public class NetworkListStoreDataTest extends WifiBaseTest {
         assertEquals(0, serializeData().length);
     }
 
+    /**
+     * Verify that the store data only has new data to serialize after the configurations are set
+     * and until they are serialized.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void hasNewDataToSerializeOnlyAfterSetConfigurations() throws Exception {
+        assertFalse(mNetworkListSharedStoreData.hasNewDataToSerialize());
+        mNetworkListSharedStoreData.setConfigurations(new ArrayList<>());
+        assertTrue(mNetworkListSharedStoreData.hasNewDataToSerialize());
+        serializeData();
+        assertFalse(mNetworkListSharedStoreData.hasNewDataToSerialize());
+    }
+
+    /**
+     * Verify that the snapshot of the network list is serialized like the network list at the
+     * time it was taken, even if the networks are updated before it is serialized.
+     */
+    @Test
+    public void serializeSnapshotOfNetworkList() throws Exception {
+        WifiConfiguration network = WifiConfigurationTestUtil.createPskNetwork();
+        network.isMostRecentlyConnected = true;
+        mNetworkListSharedStoreData.setConfigurations(new ArrayList<>(Arrays.asList(network)));
+        byte[] expectedData = serializeData();
+
+        mNetworkListSharedStoreData.setConfigurations(new ArrayList<>(Arrays.asList(network)));
+        WifiConfigStore.DataSnapshot snapshot = mNetworkListSharedStoreData.snapshotData();
+        assertFalse(mNetworkListSharedStoreData.hasNewDataToSerialize());
+        network.preSharedKey = "\"updatedPassword\"";
+
+        final XmlSerializer out = new FastXmlSerializer();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        out.setOutput(outputStream, StandardCharsets.UTF_8.name());
+        snapshot.serializeData(out, mShouldEncrypt ? mWifiConfigStoreEncryptionUtil : null);
+        out.flush();
+        assertArrayEquals(expectedData, outputStream.toByteArray());
+    }
+
     /**
      * Verify that parsing an empty data doesn't cause any crash and no configuration should
      * be parsed.
@@ -409,7 +409,7 @@ public class OpenNetworkNotifierTest extends WifiBaseTest {
 
         mBroadcastReceiver.onReceive(mContext, createIntent(ACTION_USER_DISMISSED_NOTIFICATION));
 
-        verify(mWifiConfigManager).saveToStore(false /* forceWrite */);
+        verify(mWifiConfigManager).saveModuleDataToStore(false /* forceWrite */);
 
         mNotificationController.clearPendingNotification(true);
         List<ScanDetail> scanResults = mOpenNetworks;
@@ -435,7 +435,7 @@ public class OpenNetworkNotifierTest extends WifiBaseTest {
 
         mBroadcastReceiver.onReceive(mContext, createIntent(ACTION_CONNECT_TO_NETWORK));
 
-        verify(mWifiConfigManager).saveToStore(false /* forceWrite */);
+        verify(mWifiConfigManager).saveModuleDataToStore(false /* forceWrite */);
         verify(mWifiMetrics).setNetworkRecommenderBlocklistSize(OPEN_NET_NOTIFIER_TAG, 1);
 
         List<ScanDetail> scanResults = mOpenNetworks;
@@ -855,7 +855,7 @@ public class OpenNetworkNotifierTest extends WifiBaseTest {
     @Test
     public void removeNetworkFromBlacklist_handlesNull() {
         mNotificationController.handleWifiConnected(null);
-        verify(mWifiConfigManager, never()).saveToStore(false /* forceWrite */);
+        verify(mWifiConfigManager, never()).saveModuleDataToStore(false /* forceWrite */);
     }
 
     /**
@@ -864,7 +864,7 @@ public class OpenNetworkNotifierTest extends WifiBaseTest {
     @Test
     public void removeNetworkFromBlacklist_returnsEarlyIfNothingIsRemoved() {
         mNotificationController.handleWifiConnected(TEST_SSID_1);
-        verify(mWifiConfigManager, never()).saveToStore(false /* forceWrite */);
+        verify(mWifiConfigManager, never()).saveModuleDataToStore(false /* forceWrite */);
     }
 
     /**
@@ -877,7 +877,7 @@ public class OpenNetworkNotifierTest extends WifiBaseTest {
 
         // Simulate the user connecting to TEST_SSID_1 and verify it is removed from the blacklist
         mNotificationController.handleWifiConnected(mTestNetwork.SSID);
-        verify(mWifiConfigManager, times(2)).saveToStore(false /* forceWrite */);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(false /* forceWrite */);
         verify(mWifiMetrics).setNetworkRecommenderBlocklistSize(OPEN_NET_NOTIFIER_TAG, 0);
         ScanResult actual = mNotificationController.recommendNetwork(mOpenNetworks);
         ScanResult expected = mOpenNetworks.get(0).getScanResult();
@@ -118,6 +118,20 @@ public class RandomizedMacStoreDataTest extends WifiBaseTest {
                 mRandomizedMacStoreData.getStoreFileId());
     }
 
+    /**
+     * Verify that the store data only has new data to serialize after the MAC address mapping is
+     * set and until it is serialized.
+     * @throws Exception
+     */
+    @Test
+    public void testHasNewDataToSerialize() throws Exception {
+        assertFalse(mRandomizedMacStoreData.hasNewDataToSerialize());
+        mRandomizedMacStoreData.setMacMapping(new HashMap<>());
+        assertTrue(mRandomizedMacStoreData.hasNewDataToSerialize());
+        serializeData();
+        assertFalse(mRandomizedMacStoreData.hasNewDataToSerialize());
+    }
+
     /**
      * Verify that MAC address mapping data is serialized and deserialized correctly.
      * @throws Exception
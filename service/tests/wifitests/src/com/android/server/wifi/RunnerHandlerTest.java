@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.os.Message;
+import android.os.test.TestLooper;
+import android.util.LocalLog;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Unit tests for {@link RunnerHandler}.
+ */
+@SmallTest
+public class RunnerHandlerTest extends WifiBaseTest {
+    private static final int RUNNING_TIME_THRESHOLD_MS = 0;
+
+    @Mock private WifiMetrics mWifiMetrics;
+
+    private TestLooper mLooper;
+    private LocalLog mLocalLog;
+    private RunnerHandler mRunnerHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mLooper = new TestLooper();
+        mLocalLog = new LocalLog(32);
+        mRunnerHandler = new RunnerHandler(mLooper.getLooper(), RUNNING_TIME_THRESHOLD_MS,
+                mLocalLog, mWifiMetrics);
+    }
+
+    private String dumpLocalLog() {
+        StringWriter sw = new StringWriter();
+        mLocalLog.dump(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Verifies that lambdas are attributed to the method posting them, and that the signature is
+     * only stored in the message the first time the lambda is posted.
+     */
+    @Test
+    public void testLambdaSignatureIsCachedPerCallSite() {
+        Message[] messages = new Message[2];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Message.obtain(mRunnerHandler, () -> sleep(2));
+            mRunnerHandler.sendMessage(messages[i]);
+        }
+        assertNotNull(messages[0].peekData());
+        assertNull(messages[1].peekData());
+
+        mLooper.dispatchAll();
+
+        String signature = "RunnerHandlerTest#testLambdaSignatureIsCachedPerCallSite";
+        String log = dumpLocalLog();
+        int first = log.indexOf(signature + " was running for");
+        assertTrue(log, first >= 0);
+        assertTrue(log, log.indexOf(signature + " was running for", first + 1) > first);
+    }
+
+    /**
+     * Verifies that a Runnable class which can be instantiated at several call sites is
+     * attributed to each of them.
+     */
+    @Test
+    public void testNamedRunnableClassIsAttributedToEachCaller() {
+        postSleepRunnableFromFirstCaller();
+        postSleepRunnableFromSecondCaller();
+        mLooper.dispatchAll();
+
+        String log = dumpLocalLog();
+        assertTrue(log, log.contains("RunnerHandlerTest#postSleepRunnableFromFirstCaller"));
+        assertTrue(log, log.contains("RunnerHandlerTest#postSleepRunnableFromSecondCaller"));
+    }
+
+    private void postSleepRunnableFromFirstCaller() {
+        mRunnerHandler.post(new SleepRunnable());
+    }
+
+    private void postSleepRunnableFromSecondCaller() {
+        mRunnerHandler.post(new SleepRunnable());
+    }
+
+    private static class SleepRunnable implements Runnable {
+        @Override
+        public void run() {
+            sleep(2);
+        }
+    }
+
+    /**
+     * Verifies that a cached signature is still reported to the metrics for slow jobs, including
+     * jobs posted to the front of the queue.
+     */
+    @Test
+    public void testSlowJobReportedToMetricsWithCachedSignature() {
+        for (int i = 0; i < 2; i++) {
+            mRunnerHandler.postToFront(() -> sleep(110));
+        }
+        mLooper.dispatchAll();
+
+        String signature = "RunnerHandlerTest#testSlowJobReportedToMetricsWithCachedSignature";
+        verify(mWifiMetrics, times(2))
+                .wifiThreadTaskExecuted(eq(signature), anyInt(), anyInt());
+    }
+}
@@ -93,6 +93,64 @@ public class ScanDetailCacheTest extends WifiBaseTest {
         assertEquals(s4, mScanDetailCache.getScanDetail(TEST_BSSID_4));
     }
 
+    @Test
+    public void testTrimRemovesLeastRecentlyPutEntries() {
+        ScanDetail[] scanDetails = new ScanDetail[TEST_MAX_SIZE];
+        for (int i = 0; i < TEST_MAX_SIZE; i++) {
+            setClockTime(1000 * (i + 1));
+            scanDetails[i] = createScanDetailForNetwork(mWifiConfiguration,
+                    String.format("0a:08:5c:67:89:%02x", i), TEST_RSSI, TEST_FREQUENCY);
+            mScanDetailCache.put(scanDetails[i]);
+        }
+        assertEquals(TEST_MAX_SIZE, mScanDetailCache.size());
+
+        // Refresh the first entry so that it is no longer the oldest one.
+        mScanDetailCache.put(scanDetails[0]);
+        assertEquals(TEST_MAX_SIZE, mScanDetailCache.size());
+
+        setClockTime(1000 * (TEST_MAX_SIZE + 1));
+        ScanDetail newScanDetail = createScanDetailForNetwork(mWifiConfiguration,
+                "0a:08:5c:67:89:ff", TEST_RSSI, TEST_FREQUENCY);
+        mScanDetailCache.put(newScanDetail);
+
+        // Cache is trimmed down to |TEST_TRIM_SIZE| before the new entry is added.
+        assertEquals(TEST_TRIM_SIZE + 1, mScanDetailCache.size());
+        assertEquals(scanDetails[TEST_MAX_SIZE - 1],
+                mScanDetailCache.getScanDetail(scanDetails[TEST_MAX_SIZE - 1].getBSSIDString()));
+        assertEquals(scanDetails[0],
+                mScanDetailCache.getScanDetail(scanDetails[0].getBSSIDString()));
+        assertNull(mScanDetailCache.getScanDetail(scanDetails[1].getBSSIDString()));
+        assertEquals(newScanDetail.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+    }
+
+    @Test
+    public void testGetMostRecentScanResultAfterRemoveAndUpdate() {
+        setClockTime(1000);
+        ScanDetail s1 = createScanDetailForNetwork(mWifiConfiguration, TEST_BSSID_1,
+                TEST_RSSI, TEST_FREQUENCY);
+        setClockTime(2000);
+        ScanDetail s2 = createScanDetailForNetwork(mWifiConfiguration, TEST_BSSID_2,
+                TEST_RSSI, TEST_FREQUENCY);
+        mScanDetailCache.put(s1);
+        mScanDetailCache.put(s2);
+        assertEquals(s2.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+
+        mScanDetailCache.remove(TEST_BSSID_2);
+        assertEquals(s1.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+
+        mScanDetailCache.put(s2);
+        assertEquals(s2.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+
+        // Update the seen time of the older entry and verify it becomes the most recent one.
+        s1.getScanResult().seen = 3000;
+        mScanDetailCache.put(s1);
+        assertEquals(s1.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+
+        mScanDetailCache.remove(TEST_BSSID_1);
+        mScanDetailCache.remove(TEST_BSSID_2);
+        assertNull(mScanDetailCache.getMostRecentScanResult());
+    }
+
     private void setClockTime(long millis) {
         when(mClock.getUptimeSinceBootMillis()).thenReturn(millis);
         when(mClock.getWallClockMillis()).thenReturn(millis);
@@ -596,6 +596,43 @@ public class ScanRequestProxyTest extends WifiBaseTest {
         verifyScanMetricsDataWasSet();
     }
 
+    /**
+     * Verify that the "network in range" queries reflect the security types seen in the last
+     * scan results, and are reset when the scan results are cleared.
+     */
+    @Test
+    public void testNetworkInRangeQueries() throws Exception {
+        final String quotedSsid = "\"AN SSID\"";
+        final String otherQuotedSsid = "\"OTHER SSID\"";
+        ScanResult[] results = mTestScanDatas1[0].getResults();
+        results[0].capabilities = "[RSN-PSK-CCMP][ESS]";
+        results[1].capabilities = "[RSN-PSK+SAE-CCMP][ESS]";
+        for (int i = 2; i < results.length; i++) {
+            results[i].capabilities = "[ESS]";
+        }
+
+        enableScanning();
+        assertTrue(mScanRequestProxy.startScan(TEST_UID, TEST_PACKAGE_NAME_1));
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        mLooper.dispatchAll();
+
+        assertTrue(mScanRequestProxy.isWpa2PersonalOnlyNetworkInRange(quotedSsid));
+        assertTrue(mScanRequestProxy.isWpa2Wpa3PersonalTransitionNetworkInRange(quotedSsid));
+        assertTrue(mScanRequestProxy.isOpenOnlyNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isWpa3PersonalOnlyNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isOweOnlyNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isWpa2EnterpriseOnlyNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isWpa3EnterpriseOnlyNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isWpa2PersonalOnlyNetworkInRange(otherQuotedSsid));
+        assertFalse(mScanRequestProxy.isOpenOnlyNetworkInRange(otherQuotedSsid));
+
+        // Disabling scanning clears the scan results.
+        mScanRequestProxy.enableScanning(false, false);
+        assertFalse(mScanRequestProxy.isWpa2PersonalOnlyNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isWpa2Wpa3PersonalTransitionNetworkInRange(quotedSsid));
+        assertFalse(mScanRequestProxy.isOpenOnlyNetworkInRange(quotedSsid));
+    }
+
     /**
      * Verify that we don't use the same listener for multiple scan requests.
      */
@@ -1220,6 +1257,38 @@ public class ScanRequestProxyTest extends WifiBaseTest {
         assertThat(mScanRequestProxy.getScanResults()).hasSize(scanResultsOriginalSize);
     }
 
+    /**
+     * Verify that the published snapshot is unmodifiable, shared until the scan results change,
+     * and cleared when scanning is disabled.
+     */
+    @Test
+    public void testGetScanResultsSnapshot() {
+        testStartScanSuccess();
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        mLooper.dispatchAll();
+
+        List<ScanResult> snapshot1 = mScanRequestProxy.getScanResultsSnapshot();
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas1[0].getResults(),
+                snapshot1.stream().toArray(ScanResult[]::new));
+        assertSame(snapshot1, mScanRequestProxy.getScanResultsSnapshot());
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot1.add(new ScanResult()));
+
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas2);
+        mLooper.dispatchAll();
+
+        List<ScanResult> snapshot2 = mScanRequestProxy.getScanResultsSnapshot();
+        assertNotSame(snapshot1, snapshot2);
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas2[0].getResults(),
+                snapshot2.stream().toArray(ScanResult[]::new));
+        // Readers still holding the previous snapshot are not affected.
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas1[0].getResults(),
+                snapshot1.stream().toArray(ScanResult[]::new));
+
+        mScanRequestProxy.enableScanning(false, false);
+        assertTrue(mScanRequestProxy.getScanResultsSnapshot().isEmpty());
+    }
+
     /** Test that getScanResults() always returns the hidden network result with SSID */
     @Test
     public void testGetScanResults_HiddenNetwork_ReturnsSsidScanresult() {
@@ -17,6 +17,7 @@
 package com.android.server.wifi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
@@ -167,6 +168,17 @@ public class SsidSetStoreDataTest extends WifiBaseTest {
         verify(mDataSource).setSsids(eq(ssidSet));
     }
 
+    /**
+     * Verify that the store data reports new data only when the data source has changed.
+     */
+    @Test
+    public void hasNewDataToSerializeFromDataSource() {
+        when(mDataSource.hasNewDataToSerialize()).thenReturn(false);
+        assertFalse(mSsidSetStoreData.hasNewDataToSerialize());
+        when(mDataSource.hasNewDataToSerialize()).thenReturn(true);
+        assertTrue(mSsidSetStoreData.hasNewDataToSerialize());
+    }
+
     /**
      * Verify that a XmlPullParserException will be thrown when parsing a SSIDSet set with an
      * unknown tag.
@@ -26,6 +26,7 @@ import static org.mockito.Mockito.when;
 
 import android.net.wifi.SecurityParams;
 import android.net.wifi.WifiConfiguration;
+import android.util.ArraySet;
 import android.util.Xml;
 
 import androidx.test.filters.SmallTest;
@@ -176,6 +177,41 @@ public class WakeupConfigStoreDataTest extends WifiBaseTest {
         verify(mNetworkDataSource).setData(eq(Collections.emptySet()));
     }
 
+    /**
+     * Verify that hasNewDataToSerialize returns true only when a data source changed since the
+     * last serialization.
+     */
+    @Test
+    public void hasNewDataToSerializeOnlyWhenDataSourceChanged() throws Exception {
+        ScanResultMatchInfo network = new ScanResultMatchInfo();
+        network.networkSsid = "ssid 1";
+        network.securityParamsList.add(SecurityParams.createSecurityParamsBySecurityType(
+                WifiConfiguration.SECURITY_TYPE_OPEN));
+        Set<ScanResultMatchInfo> networks = new ArraySet<>();
+
+        when(mActiveDataSource.getData()).thenReturn(false);
+        when(mIsOnboardedDataSource.getData()).thenReturn(true);
+        when(mNotificationsDataSource.getData()).thenReturn(1);
+        when(mNetworkDataSource.getData()).thenReturn(networks);
+        assertTrue(mWakeupConfigData.hasNewDataToSerialize());
+
+        serializeData();
+        assertFalse(mWakeupConfigData.hasNewDataToSerialize());
+
+        when(mActiveDataSource.getData()).thenReturn(true);
+        assertTrue(mWakeupConfigData.hasNewDataToSerialize());
+        serializeData();
+        assertFalse(mWakeupConfigData.hasNewDataToSerialize());
+
+        networks.add(network);
+        assertTrue(mWakeupConfigData.hasNewDataToSerialize());
+        serializeData();
+        assertFalse(mWakeupConfigData.hasNewDataToSerialize());
+
+        mWakeupConfigData.resetData();
+        assertTrue(mWakeupConfigData.hasNewDataToSerialize());
+    }
+
     /**
      * Verify that hasBeenRead returns false on newly instantiated WakeupConfigStoreData.
      */
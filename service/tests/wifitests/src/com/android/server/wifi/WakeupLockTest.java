@@ -148,7 +148,7 @@ public class WakeupLockTest extends WifiBaseTest {
         mWakeupLock.update(networks);
 
         // want 2 invocations, once for setLock(), once for addToLock
-        verify(mWifiConfigManager, times(2)).saveToStore(false);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(false);
     }
 
     /**
@@ -251,7 +251,7 @@ public class WakeupLockTest extends WifiBaseTest {
     @Test
     public void initializeShouldSaveSsidsToStore() {
         setLockAndInitializeByTimeout(Collections.singletonList(mNetwork1));
-        verify(mWifiConfigManager).saveToStore(eq(false));
+        verify(mWifiConfigManager).saveModuleDataToStore(eq(false));
     }
 
     /**
@@ -263,7 +263,7 @@ public class WakeupLockTest extends WifiBaseTest {
         updateEnoughTimesToEvictWithoutAsserts(Collections.emptyList());
 
         // need exactly 2 invocations: 1 for initialize, 1 for successful update
-        verify(mWifiConfigManager, times(2)).saveToStore(eq(false));
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(eq(false));
     }
 
     /**
@@ -273,7 +273,7 @@ public class WakeupLockTest extends WifiBaseTest {
     public void updateShouldNotSaveIfLockDoesNotChange() {
         List<ScanResultMatchInfo> networks = Collections.singletonList(mNetwork1);
         setLockAndInitializeByTimeout(networks);
-        verify(mWifiConfigManager, times(1)).saveToStore(anyBoolean());
+        verify(mWifiConfigManager, times(1)).saveModuleDataToStore(anyBoolean());
         mWakeupLock.update(networks);
     }
 
@@ -297,7 +297,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
     public void initWithDefaultConfiguration() throws Exception {
         WifiApConfigStore store = createWifiApConfigStore();
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
     }
 
 
@@ -325,7 +325,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         store.setApConfiguration(null);
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
         verifyDefaultApConfig(mDataStoreSource.toSerialize(), TEST_DEFAULT_AP_SSID);
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
         verify(mBackupManagerProxy).notifyDataChanged();
         assertFalse(store.getApConfiguration().isUserConfigurationInternal());
         assertNotEquals(lassPassphrase, store.getLastConfiguredTetheredApPassphraseSinceBoot());
@@ -343,7 +343,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
 
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
         assertFalse(store.getApConfiguration().isUserConfigurationInternal());
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
 
         /* Update with a valid configuration. */
         SoftApConfiguration expectedConfig = setupApConfig(
@@ -359,7 +359,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         assertEquals(TEST_RANDOMIZED_MAC, store.getApConfiguration()
                 .getPersistentRandomizedMacAddress());
         verifyApConfig(expectedConfig, mDataStoreSource.toSerialize());
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         verify(mBackupManagerProxy, times(2)).notifyDataChanged();
         assertTrue(store.getApConfiguration().isUserConfigurationInternal());
     }
@@ -374,7 +374,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         /* Initialize WifiApConfigStore with default configuration. */
         WifiApConfigStore store = createWifiApConfigStore();
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
 
         /* Update with a valid configuration. */
         SoftApConfiguration providedConfig = setupApConfig(
@@ -396,7 +396,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         store.setApConfiguration(providedConfig);
         verifyApConfig(expectedConfig, store.getApConfiguration());
         verifyApConfig(expectedConfig, mDataStoreSource.toSerialize());
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         verify(mBackupManagerProxy, times(2)).notifyDataChanged();
     }
 
@@ -410,7 +410,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         /* Initialize WifiApConfigStore with default configuration. */
         WifiApConfigStore store = createWifiApConfigStore();
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
 
         /* Update with a valid configuration. */
         SoftApConfiguration expectedConfig = setupApConfig(
@@ -423,7 +423,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         store.setApConfiguration(expectedConfig);
         verifyApConfig(expectedConfig, store.getApConfiguration());
         verifyApConfig(expectedConfig, mDataStoreSource.toSerialize());
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         verify(mBackupManagerProxy, times(2)).notifyDataChanged();
     }
 
@@ -436,7 +436,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         /* Initialize WifiApConfigStore with default configuration. */
         WifiApConfigStore store = createWifiApConfigStore();
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
 
         /* Update with a valid configuration. */
         SoftApConfiguration expectedConfig = setupApConfig(
@@ -449,7 +449,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         store.setApConfiguration(expectedConfig);
         verifyApConfig(expectedConfig, store.getApConfiguration());
         verifyApConfig(expectedConfig, mDataStoreSource.toSerialize());
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         verify(mBackupManagerProxy, times(2)).notifyDataChanged();
     }
 
@@ -479,7 +479,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         mDataStoreSource.fromDeserialized(persistedConfig);
         verifyApConfig(expectedConfig, store.getApConfiguration());
         verifyApConfig(expectedConfig, mDataStoreSource.toSerialize());
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
         verify(mBackupManagerProxy).notifyDataChanged();
     }
 
@@ -502,7 +502,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         WifiApConfigStore store = createWifiApConfigStore();
         mDataStoreSource.fromDeserialized(persistedConfig);
         verifyApConfig(persistedConfig, store.getApConfiguration());
-        verify(mWifiConfigManager, never()).saveToStore(true);
+        verify(mWifiConfigManager, never()).saveModuleDataToStore(true);
         verify(mBackupManagerProxy, never()).notifyDataChanged();
     }
 
@@ -1311,7 +1311,7 @@ public class WifiApConfigStoreTest extends WifiBaseTest {
         int testChannal = 149;
         WifiApConfigStore store = createWifiApConfigStore();
         verifyDefaultApConfig(store.getApConfiguration(), TEST_DEFAULT_AP_SSID);
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
 
         // Test to enable forced AP band
         store.enableForceSoftApBandOrChannel(testBand, 0);
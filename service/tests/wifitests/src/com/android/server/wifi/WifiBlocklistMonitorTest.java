@@ -1225,6 +1225,44 @@ public class WifiBlocklistMonitorTest extends WifiBaseTest {
         assertEquals(0, mWifiBlocklistMonitor.updateAndGetBssidBlocklist().size());
     }
 
+    /**
+     * Verify that BSSIDs expire in order of their blocklist end time, including a BSSID whose
+     * block duration is extended, and that the per-SSID queries only count that SSID's BSSIDs.
+     */
+    @Test
+    public void testBlocklistExpiresInEndTimeOrderAndPerSsidQueries() {
+        WifiConfiguration config1 = WifiConfigurationTestUtil.createPskNetwork(TEST_SSID_1);
+        WifiConfiguration config2 = WifiConfigurationTestUtil.createPskNetwork(TEST_SSID_2);
+        when(mClock.getWallClockMillis()).thenReturn(0L);
+        mWifiBlocklistMonitor.blockBssidForDurationMs(TEST_BSSID_1, config1, 1000L,
+                TEST_FRAMEWORK_BLOCK_REASON, TEST_GOOD_RSSI);
+        mWifiBlocklistMonitor.blockBssidForDurationMs(TEST_BSSID_2, config1, 3000L,
+                TEST_FRAMEWORK_BLOCK_REASON, TEST_GOOD_RSSI);
+        mWifiBlocklistMonitor.blockBssidForDurationMs(TEST_BSSID_3, config2, 2000L,
+                TEST_FRAMEWORK_BLOCK_REASON, TEST_GOOD_RSSI);
+        // Extend the block duration of TEST_BSSID_1.
+        mWifiBlocklistMonitor.blockBssidForDurationMs(TEST_BSSID_1, config1, 5000L,
+                TEST_FRAMEWORK_BLOCK_REASON, TEST_GOOD_RSSI);
+        assertEquals(Set.of(TEST_BSSID_1, TEST_BSSID_2, TEST_BSSID_3),
+                mWifiBlocklistMonitor.updateAndGetBssidBlocklist());
+        assertEquals(2, mWifiBlocklistMonitor.updateAndGetNumBlockedBssidsForSsid(TEST_SSID_1));
+        assertEquals(Set.of(TEST_FRAMEWORK_BLOCK_REASON),
+                mWifiBlocklistMonitor.getFailureReasonsForSsid(TEST_SSID_2));
+
+        when(mClock.getWallClockMillis()).thenReturn(2500L);
+        assertEquals(Set.of(TEST_BSSID_1, TEST_BSSID_2),
+                mWifiBlocklistMonitor.updateAndGetBssidBlocklist());
+        assertEquals(0, mWifiBlocklistMonitor.updateAndGetNumBlockedBssidsForSsid(TEST_SSID_2));
+        assertTrue(mWifiBlocklistMonitor.getFailureReasonsForSsid(TEST_SSID_2).isEmpty());
+
+        when(mClock.getWallClockMillis()).thenReturn(3500L);
+        assertEquals(Set.of(TEST_BSSID_1), mWifiBlocklistMonitor.updateAndGetBssidBlocklist());
+        assertEquals(1, mWifiBlocklistMonitor.updateAndGetNumBlockedBssidsForSsid(TEST_SSID_1));
+
+        when(mClock.getWallClockMillis()).thenReturn(5500L);
+        assertTrue(mWifiBlocklistMonitor.updateAndGetBssidBlocklist().isEmpty());
+    }
+
     /**
      * Verify that invalid inputs are handled and result in no-op.
      */
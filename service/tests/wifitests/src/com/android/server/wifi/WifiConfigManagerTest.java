@@ -22,7 +22,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
@@ -1411,6 +1413,123 @@ public class WifiConfigManagerTest extends WifiBaseTest {
         assertEquals(openNetwork.networkId, wifiConfigCaptor.getValue().networkId);
     }
 
+    /**
+     * Verifies that {@link WifiConfigManager#getConfiguredNetworksSnapshot()} returns the same
+     * masked copies until a network is added, changed or removed.
+     */
+    @Test
+    public void testGetConfiguredNetworksSnapshot() {
+        WifiConfiguration pskNetwork = WifiConfigurationTestUtil.createPskNetwork();
+        verifyAddNetworkToWifiConfigManager(pskNetwork);
+
+        List<WifiConfiguration> snapshot = mWifiConfigManager.getConfiguredNetworksSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(WifiConfigManager.PASSWORD_MASK, snapshot.get(0).preSharedKey);
+        assertSame(snapshot, mWifiConfigManager.getConfiguredNetworksSnapshot());
+        try {
+            snapshot.clear();
+            fail("Snapshot should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // Changes made in place are picked up.
+        assertTrue(mWifiConfigManager.updateNetworkAfterConnect(
+                pskNetwork.networkId, false, false, TEST_RSSI));
+        List<WifiConfiguration> connectedSnapshot =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
+        assertNotSame(snapshot, connectedSnapshot);
+        assertTrue(connectedSnapshot.get(0).isCurrentlyConnected);
+        assertFalse(snapshot.get(0).isCurrentlyConnected);
+
+        WifiConfiguration openNetwork = WifiConfigurationTestUtil.createOpenNetwork();
+        verifyAddNetworkToWifiConfigManager(openNetwork);
+        assertEquals(2, mWifiConfigManager.getConfiguredNetworksSnapshot().size());
+
+        verifyRemoveNetworkFromWifiConfigManager(pskNetwork);
+        List<WifiConfiguration> removedSnapshot =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
+        assertEquals(1, removedSnapshot.size());
+        assertEquals(openNetwork.networkId, removedSnapshot.get(0).networkId);
+        assertEquals(1, connectedSnapshot.size());
+    }
+
+    /**
+     * Verifies that {@link WifiConfigManager#getSavedNetworksSnapshot(int)} returns the saved
+     * networks published by the last network change, with the MAC addresses masked for callers
+     * other than the creator.
+     */
+    @Test
+    public void testGetSavedNetworksSnapshot() throws Exception {
+        assertTrue(mWifiConfigManager.getSavedNetworksSnapshot(Process.WIFI_UID).isEmpty());
+
+        WifiConfiguration pskNetwork = WifiConfigurationTestUtil.createPskNetwork();
+        verifyAddNetworkToWifiConfigManager(pskNetwork);
+        WifiConfiguration ephemeralNetwork = WifiConfigurationTestUtil.createOpenNetwork();
+        ephemeralNetwork.ephemeral = true;
+        verifyAddEphemeralNetworkToWifiConfigManager(ephemeralNetwork);
+
+        List<WifiConfiguration> snapshot =
+                mWifiConfigManager.getSavedNetworksSnapshot(Process.WIFI_UID);
+        assertEquals(1, snapshot.size());
+        assertEquals(pskNetwork.networkId, snapshot.get(0).networkId);
+        assertEquals(WifiConfigManager.PASSWORD_MASK, snapshot.get(0).preSharedKey);
+        assertSame(snapshot, mWifiConfigManager.getSavedNetworksSnapshot(Process.WIFI_UID));
+        assertNotEquals(WifiInfo.DEFAULT_MAC_ADDRESS,
+                snapshot.get(0).getRandomizedMacAddress().toString());
+
+        List<WifiConfiguration> otherAppSnapshot =
+                mWifiConfigManager.getSavedNetworksSnapshot(TEST_OTHER_USER_UID);
+        assertEquals(1, otherAppSnapshot.size());
+        assertRandomizedMacAddressMaskedInWifiConfiguration(otherAppSnapshot.get(0));
+        // The shared snapshot is not modified by the masking.
+        assertNotEquals(WifiInfo.DEFAULT_MAC_ADDRESS,
+                snapshot.get(0).getRandomizedMacAddress().toString());
+
+        verifyRemoveNetworkFromWifiConfigManager(pskNetwork);
+        assertTrue(mWifiConfigManager.getSavedNetworksSnapshot(Process.WIFI_UID).isEmpty());
+    }
+
+    /**
+     * Verifies that {@link WifiConfigManager#saveModuleDataToStore(boolean)} writes the store
+     * without handing unchanged network lists to the store data again, while
+     * {@link WifiConfigManager#saveToStore(boolean)} always does.
+     */
+    @Test
+    public void testSaveModuleDataToStoreSkipsUnchangedNetworkLists() throws Exception {
+        WifiConfiguration openNetwork = WifiConfigurationTestUtil.createOpenNetwork();
+        verifyAddNetworkToWifiConfigManager(openNetwork);
+        clearInvocations(mWifiConfigStore, mNetworkListSharedStoreData,
+                mNetworkListUserStoreData);
+
+        assertTrue(mWifiConfigManager.saveModuleDataToStore(true));
+        verify(mWifiConfigStore).write(true);
+        verify(mNetworkListSharedStoreData, never()).setConfigurations(any());
+        verify(mNetworkListUserStoreData, never()).setConfigurations(any());
+
+        assertTrue(mWifiConfigManager.saveToStore(true));
+        verify(mNetworkListSharedStoreData).setConfigurations(any());
+        verify(mNetworkListUserStoreData).setConfigurations(any());
+    }
+
+    /**
+     * Verifies that listeners are notified when the order of the most recently connected
+     * networks changes.
+     */
+    @Test
+    public void testNetworkConnectionOrderChangedNotified() throws Exception {
+        WifiConfiguration openNetwork = WifiConfigurationTestUtil.createOpenNetwork();
+        verifyAddNetworkToWifiConfigManager(openNetwork);
+        verify(mWcmListener, never()).onNetworkConnectionOrderChanged();
+
+        assertTrue(mWifiConfigManager.updateNetworkAfterConnect(
+                openNetwork.networkId, false, false, TEST_RSSI));
+        verify(mWcmListener).onNetworkConnectionOrderChanged();
+
+        verifyRemoveNetworkFromWifiConfigManager(openNetwork);
+        verify(mWcmListener, times(2)).onNetworkConnectionOrderChanged();
+    }
+
     /**
      * Verifies the removal of an ephemeral network using
      * {@link WifiConfigManager#removeNetwork(int)}
@@ -26,10 +26,13 @@ import android.content.pm.PackageManager;
 import android.net.MacAddress;
 import android.net.wifi.WifiConfiguration;
 import android.net.wifi.WifiMigration;
+import android.net.wifi.WifiNetworkSuggestion;
 import android.net.wifi.util.HexEncoding;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.UserHandle;
 import android.os.test.TestLooper;
+import android.util.Log;
 
 import androidx.test.filters.SmallTest;
 
@@ -37,6 +40,8 @@ import com.android.dx.mockito.inline.extended.ExtendedMockito;
 import com.android.internal.util.FastPrintWriter;
 import com.android.server.wifi.WifiConfigStore.StoreData;
 import com.android.server.wifi.WifiConfigStore.StoreFile;
+import com.android.server.wifi.WifiNetworkSuggestionsManager.ExtendedWifiNetworkSuggestion;
+import com.android.server.wifi.WifiNetworkSuggestionsManager.PerAppInfo;
 import com.android.server.wifi.util.ArrayUtils;
 import com.android.server.wifi.util.EncryptedData;
 import com.android.server.wifi.util.WifiConfigStoreEncryptionUtil;
@@ -45,6 +50,7 @@ import com.android.server.wifi.util.XmlUtil;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.MockitoSession;
@@ -59,19 +65,26 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Unit tests for {@link com.android.server.wifi.WifiConfigStore}.
  */
 @SmallTest
 public class WifiConfigStoreTest extends WifiBaseTest {
+    private static final String TAG = "WifiConfigStoreTest";
     private static final String TEST_USER_DATA = "UserData";
     private static final String TEST_SHARE_DATA = "ShareData";
     private static final String TEST_CREATOR_NAME = "CreatorName";
@@ -277,7 +290,7 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         setupMocks();
 
         mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
-                mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore));
+                mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore), null);
         // Enable verbose logging before tests.
         mWifiConfigStore.enableVerboseLogging(true);
     }
@@ -334,6 +347,172 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
     }
 
+    /**
+     * Tests the buffered write with a write handler.
+     * Expected behavior: The store files should be written on the write handler, with the writes
+     * queued before the handler runs coalesced into a single write.
+     */
+    @Test
+    public void testAsyncWriteCoalescesQueuedWrites() throws Exception {
+        TestLooper writeLooper = new TestLooper();
+        mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
+                mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore),
+                new Handler(writeLooper.getLooper()));
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mWifiConfigStore.write(false);
+        mAlarmManager.dispatch(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG);
+        mLooper.dispatchAll();
+        mWifiConfigStore.write(false);
+        mAlarmManager.dispatch(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG);
+        mLooper.dispatchAll();
+        assertFalse(mSharedStore.isStoreWritten());
+        assertFalse(mUserStore.isStoreWritten());
+        verify(mWifiMetrics).incrementNumWifiConfigStoreCoalescedWrites();
+
+        writeLooper.dispatchAll();
+        assertTrue(mSharedStore.isStoreWritten());
+        assertTrue(mUserStore.isStoreWritten());
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+        verify(mWifiMetrics).noteWifiConfigStoreWriteLatency(anyInt());
+    }
+
+    /**
+     * Tests the buffered write of a {@link StoreData} supporting snapshots with a write handler.
+     * Expected behavior: The data should be snapshotted on the calling thread, and serialized on
+     * the write handler.
+     */
+    @Test
+    public void testAsyncWriteSerializesSnapshotOnWriteHandler() throws Exception {
+        TestLooper writeLooper = new TestLooper();
+        mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
+                mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore),
+                new Handler(writeLooper.getLooper()));
+        StoreData storeData = mock(StoreData.class);
+        WifiConfigStore.DataSnapshot dataSnapshot = mock(WifiConfigStore.DataSnapshot.class);
+        when(storeData.getName()).thenReturn("TestSnapshotData");
+        when(storeData.getStoreFileId()).thenReturn(WifiConfigStore.STORE_FILE_SHARED_GENERAL);
+        when(storeData.hasNewDataToSerialize()).thenReturn(true);
+        when(storeData.snapshotData()).thenReturn(dataSnapshot);
+        mWifiConfigStore.registerStoreData(storeData);
+
+        mWifiConfigStore.write(false);
+        mAlarmManager.dispatch(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG);
+        mLooper.dispatchAll();
+        verify(storeData).snapshotData();
+        verify(dataSnapshot, never()).serializeData(any(), any());
+
+        writeLooper.dispatchAll();
+        verify(dataSnapshot).serializeData(any(), eq(mEncryptionUtil));
+        verify(storeData, never()).serializeData(any(), any());
+        assertTrue(mSharedStore.isStoreWritten());
+    }
+
+    /**
+     * Tests the force write with a write handler.
+     * Expected behavior: The store files should be written on the calling thread, together with
+     * any data queued on the write handler.
+     */
+    @Test
+    public void testForceWriteWithWriteHandlerIsSynchronous() throws Exception {
+        TestLooper writeLooper = new TestLooper();
+        mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
+                mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore),
+                new Handler(writeLooper.getLooper()));
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mWifiConfigStore.write(false);
+        mAlarmManager.dispatch(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG);
+        mLooper.dispatchAll();
+        assertFalse(mSharedStore.isStoreWritten());
+
+        mWifiConfigStore.write(true);
+        assertTrue(mSharedStore.isStoreWritten());
+        assertTrue(mUserStore.isStoreWritten());
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+
+        // Nothing is left for the write handler.
+        writeLooper.dispatchAll();
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+    }
+
+    /**
+     * Tests the force write when writing one of the store files fails.
+     * Expected behavior: The error should be thrown to the caller after the other store files are
+     * written, and the failed file should be written again by the next force write.
+     */
+    @Test
+    public void testForceWriteFailureRequeuesStoreFile() throws Exception {
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mSharedStore.setWriteException(new IOException());
+        try {
+            mWifiConfigStore.write(true);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertFalse(mSharedStore.isStoreWritten());
+        assertTrue(mUserStore.isStoreWritten());
+        verify(mWifiMetrics, never()).noteWifiConfigStoreWriteDuration(anyInt());
+
+        // No new data, but the failed store file is still queued.
+        mSharedStore.setWriteException(null);
+        mSharedStoreData.setHasAnyNewData(false);
+        mUserStoreData.setHasAnyNewData(false);
+        mWifiConfigStore.write(true);
+        assertTrue(mSharedStore.isStoreWritten());
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+    }
+
+    /**
+     * Tests the flush API with a write handler.
+     * Expected behavior: The queued data should be written on the calling thread, leaving nothing
+     * for the write handler to write.
+     */
+    @Test
+    public void testFlushWritesQueuedData() throws Exception {
+        TestLooper writeLooper = new TestLooper();
+        mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
+                mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore),
+                new Handler(writeLooper.getLooper()));
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mWifiConfigStore.write(false);
+        mAlarmManager.dispatch(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG);
+        mLooper.dispatchAll();
+        assertFalse(mSharedStore.isStoreWritten());
+
+        mWifiConfigStore.flush();
+        assertTrue(mSharedStore.isStoreWritten());
+        writeLooper.dispatchAll();
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+    }
+
+    /**
+     * Tests the flush API with a buffered write pending.
+     * Expected behavior: The buffered data should be written and the alarm stopped.
+     */
+    @Test
+    public void testFlushWritesBufferedData() throws Exception {
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mWifiConfigStore.write(false);
+        assertTrue(mAlarmManager.isPending(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG));
+
+        mWifiConfigStore.flush();
+        assertFalse(mAlarmManager.isPending(WifiConfigStore.BUFFERED_WRITE_ALARM_TAG));
+        assertTrue(mSharedStore.isStoreWritten());
+    }
+
     /**
      * Tests the write API with the force flag set to false.
      * Expected behavior: This should set an alarm to write to the store files.
@@ -544,6 +723,62 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
     }
 
+    /**
+     * Tests the read API behaviour with multiple store files.
+     * Expected behaviour: The store files should be read concurrently on the calling thread and
+     * the write handler, and the data should be deserialized on the calling thread.
+     */
+    @Test
+    public void testReadReadsStoreFilesConcurrently() throws Exception {
+        CountDownLatch readLatch = new CountDownLatch(2);
+        AtomicBoolean readConcurrently = new AtomicBoolean(true);
+        MockStoreFile sharedStore = new MockStoreFile(WifiConfigStore.STORE_FILE_SHARED_GENERAL) {
+            @Override
+            public byte[] readRawData() {
+                awaitConcurrentRead(readLatch, readConcurrently);
+                return super.readRawData();
+            }
+        };
+        MockStoreFile userStore = new MockStoreFile(WifiConfigStore.STORE_FILE_USER_GENERAL) {
+            @Override
+            public byte[] readRawData() {
+                awaitConcurrentRead(readLatch, readConcurrently);
+                return super.readRawData();
+            }
+        };
+        HandlerThread writeThread = new HandlerThread("WifiConfigStoreTestWriter");
+        writeThread.start();
+        mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
+                mWifiMetrics, Arrays.asList(sharedStore), new Handler(writeThread.getLooper()));
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.setUserStores(Arrays.asList(userStore));
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        try {
+            mWifiConfigStore.read();
+        } finally {
+            writeThread.quitSafely();
+        }
+        assertTrue(readConcurrently.get());
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+    }
+
+    private static void awaitConcurrentRead(CountDownLatch readLatch,
+            AtomicBoolean readConcurrently) {
+        readLatch.countDown();
+        try {
+            if (!readLatch.await(1, TimeUnit.SECONDS)) {
+                readConcurrently.set(false);
+            }
+        } catch (InterruptedException e) {
+            readConcurrently.set(false);
+        }
+    }
+
     /**
      * Verifies that a read operation will reset the data in the data container, to avoid
      * any stale data from previous read.
@@ -809,6 +1044,152 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         verify(userStoreNetworkSuggestionsData, never()).serializeData(any(), any());
     }
 
+    /**
+     * Tests the write API behavior when only some of the store data's registered for a given
+     * store file have new data to write.
+     * Expected behaviour: The store file should be written with the previously serialized
+     * sections of the store data's without new data, without serializing them again.
+     */
+    @Test
+    public void testWriteReusesSerializedSectionsWithNoNewData() throws Exception {
+        StoreData otherSharedStoreData = mock(StoreData.class);
+        when(otherSharedStoreData.getStoreFileId())
+                .thenReturn(WifiConfigStore.STORE_FILE_SHARED_GENERAL);
+        when(otherSharedStoreData.hasNewDataToSerialize()).thenReturn(true);
+        when(otherSharedStoreData.getName()).thenReturn("otherSharedStoreData");
+
+        assertTrue(mWifiConfigStore.registerStoreData(mSharedStoreData));
+        assertTrue(mWifiConfigStore.registerStoreData(otherSharedStoreData));
+
+        mSharedStoreData.setData("abcds");
+        mWifiConfigStore.write(true);
+        verify(otherSharedStoreData).serializeData(any(), any());
+
+        // Only |mSharedStoreData| has new data now.
+        when(otherSharedStoreData.hasNewDataToSerialize()).thenReturn(false);
+        mSharedStoreData.setData("asdfa");
+        mWifiConfigStore.write(true);
+
+        verify(otherSharedStoreData).serializeData(any(), any());
+        assertTrue(new String(mSharedStore.getStoreBytes()).contains("<otherSharedStoreData />"));
+
+        // Verify the new data is loaded to the data container after a read.
+        mWifiConfigStore.read();
+        assertEquals("asdfa", mSharedStoreData.getData());
+    }
+
+    /**
+     * Tests the read API behavior when the binary format is enabled on a device with store files
+     * written in XML.
+     * Expected behaviour: The XML store files should be read, and written in the binary format on
+     * the next write.
+     */
+    @Test
+    public void testBinaryFormatMigratesFromXml() throws Exception {
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        mSharedStoreData.setData("abcds");
+        mUserStoreData.setData("asdfa");
+        mWifiConfigStore.write(true);
+        assertTrue(new String(mSharedStore.getStoreBytes()).startsWith("<?xml"));
+
+        mWifiConfigStore.setBinaryFormatEnabled(true);
+        mWifiConfigStore.read();
+        assertEquals("abcds", mSharedStoreData.getData());
+        assertEquals("asdfa", mUserStoreData.getData());
+
+        mWifiConfigStore.write(true);
+        assertTrue(new String(mSharedStore.getStoreBytes()).startsWith("WCSB"));
+        assertTrue(new String(mUserStore.getStoreBytes()).startsWith("WCSB"));
+
+        mWifiConfigStore.read();
+        assertEquals("abcds", mSharedStoreData.getData());
+        assertEquals("asdfa", mUserStoreData.getData());
+    }
+
+    /**
+     * Tests the read API behavior when a store file in the binary format has an unknown version.
+     * Expected behaviour: The read should fail like for an XML store file with an invalid
+     * version.
+     */
+    @Test(expected = XmlPullParserException.class)
+    public void testBinaryFormatReadWithInvalidVersion() throws Exception {
+        mWifiConfigStore.setBinaryFormatEnabled(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData("abcds");
+        mWifiConfigStore.write(true);
+        byte[] storeBytes = mSharedStore.getStoreBytes();
+        assertTrue(new String(storeBytes).startsWith("WCSB"));
+
+        // The version follows the 4 bytes of magic.
+        ByteBuffer.wrap(storeBytes).putInt(4, 99);
+        mWifiConfigStore.read();
+    }
+
+    /**
+     * Compares the size and the parse time of the user store files written in XML and in the
+     * binary format, for 1000 saved networks and 500 network suggestions.
+     * Expected behaviour: Both formats should be read back to the same data, and the binary
+     * store files should be smaller.
+     */
+    @Test
+    public void testBinaryFormatSizeAndParseTimeComparedToXml() throws Exception {
+        List<WifiConfiguration> configs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            configs.add(WifiConfigurationTestUtil.createOpenNetwork());
+        }
+        Map<String, PerAppInfo> suggestionsMap = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            PerAppInfo appInfo = new PerAppInfo(i, "com.example.app" + i, null);
+            for (int j = 0; j < 100; j++) {
+                ExtendedWifiNetworkSuggestion ewns = ExtendedWifiNetworkSuggestion.fromWns(
+                        new WifiNetworkSuggestion(WifiConfigurationTestUtil.createOpenNetwork(),
+                                null, false, false, true, true, 0), appInfo, true);
+                appInfo.extNetworkSuggestions.put(ewns.hashCode(), ewns);
+            }
+            suggestionsMap.put(appInfo.packageName, appInfo);
+        }
+
+        int[] sizes = new int[2];
+        for (boolean binary : new boolean[] {false, true}) {
+            NetworkListStoreData networkList = new NetworkListUserStoreData(mContext);
+            networkList.setConfigurations(configs);
+            NetworkSuggestionStoreData.DataSource suggestionsSource =
+                    mock(NetworkSuggestionStoreData.DataSource.class);
+            when(suggestionsSource.toSerialize()).thenReturn(suggestionsMap);
+            when(suggestionsSource.hasNewDataToSerialize()).thenReturn(true);
+
+            mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()),
+                    mClock, mWifiMetrics, Arrays.asList(mSharedStore, mSharedSoftApStore), null);
+            mWifiConfigStore.setBinaryFormatEnabled(binary);
+            mWifiConfigStore.registerStoreData(networkList);
+            mWifiConfigStore.registerStoreData(new NetworkSuggestionStoreData(suggestionsSource));
+            mWifiConfigStore.setUserStores(mUserStores);
+            mWifiConfigStore.write(true);
+            int size = mUserStore.getStoreBytes().length
+                    + mUserNetworkSuggestionsStore.getStoreBytes().length;
+
+            long startNanos = System.nanoTime();
+            mWifiConfigStore.read();
+            long parseMicros = (System.nanoTime() - startNanos) / 1000;
+            Log.i(TAG, (binary ? "Binary" : "XML") + " format: " + size + " bytes, parsed in "
+                    + parseMicros + " us");
+
+            WifiConfigurationTestUtil.assertConfigurationsEqualForConfigStore(
+                    configs, networkList.getConfigurations());
+            ArgumentCaptor<Map<String, PerAppInfo>> suggestionsCaptor =
+                    ArgumentCaptor.forClass(Map.class);
+            verify(suggestionsSource).fromDeserialized(suggestionsCaptor.capture());
+            assertEquals(suggestionsMap.keySet(), suggestionsCaptor.getValue().keySet());
+            for (PerAppInfo appInfo : suggestionsCaptor.getValue().values()) {
+                assertEquals(100, appInfo.extNetworkSuggestions.size());
+            }
+            sizes[binary ? 1 : 0] = size;
+        }
+        assertTrue(sizes[1] < sizes[0]);
+    }
+
     /**
      * Verify that we gracefully skip unknown section when reading an user store file.
      */
@@ -963,7 +1344,7 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         when(userStoreFile2.getFileId())
                 .thenReturn(WifiConfigStore.STORE_FILE_USER_NETWORK_SUGGESTIONS);
         mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
-                mWifiMetrics, Arrays.asList(sharedStoreFile1, sharedStoreFile2));
+                mWifiMetrics, Arrays.asList(sharedStoreFile1, sharedStoreFile2), null);
         mWifiConfigStore.setUserStores(Arrays.asList(userStoreFile1, userStoreFile2));
 
         // Register data container.
@@ -1081,6 +1462,7 @@ public class WifiConfigStoreTest extends WifiBaseTest {
     private class MockStoreFile extends StoreFile {
         private byte[] mStoreBytes;
         private boolean mStoreWritten;
+        private IOException mWriteException;
 
         MockStoreFile(@WifiConfigStore.StoreFileId int fileId) {
             super(new File("MockStoreFile"), fileId, UserHandle.ALL, mEncryptionUtil);
@@ -1098,12 +1480,19 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         }
 
         @Override
-        public void writeBufferedRawData() {
+        public void writeBufferedRawData() throws IOException {
+            if (mWriteException != null) {
+                throw mWriteException;
+            }
             if (!ArrayUtils.isEmpty(mStoreBytes)) {
                 mStoreWritten = true;
             }
         }
 
+        public void setWriteException(IOException writeException) {
+            mWriteException = writeException;
+        }
+
         public byte[] getStoreBytes() {
             return mStoreBytes;
         }
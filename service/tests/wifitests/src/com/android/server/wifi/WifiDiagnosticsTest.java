@@ -1127,4 +1127,23 @@ public class WifiDiagnosticsTest extends WifiBaseTest {
 
         verify(mWifiNative).resetLogHandler();
     }
+
+    /** Verifies that LimitedCircularArray keeps the most recent elements, oldest first. */
+    @Test
+    public void limitedCircularArrayKeepsMostRecentElementsInOrder() {
+        WifiDiagnostics.LimitedCircularArray<Integer> array =
+                new WifiDiagnostics.LimitedCircularArray<>(3);
+        array.addLast(1);
+        array.addLast(2);
+        assertEquals(2, array.size());
+        assertEquals(1, (int) array.get(0));
+
+        array.addLast(3);
+        array.addLast(4);
+        array.addLast(5);
+        assertEquals(3, array.size());
+        assertEquals(3, (int) array.get(0));
+        assertEquals(4, (int) array.get(1));
+        assertEquals(5, (int) array.get(2));
+    }
 }
@@ -254,7 +254,7 @@ public class WifiHealthMonitorTest extends WifiBaseTest {
 
     private WifiConfigManager mockConfigManager() {
         WifiConfigManager wifiConfigManager = mock(WifiConfigManager.class);
-        when(wifiConfigManager.getConfiguredNetworks()).thenReturn(mConfiguredNetworks);
+        when(wifiConfigManager.getConfiguredNetworksSnapshot()).thenReturn(mConfiguredNetworks);
         when(wifiConfigManager.findScanRssi(anyInt(), anyInt()))
                 .thenReturn(-53);
 
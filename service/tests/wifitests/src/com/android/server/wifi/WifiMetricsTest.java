@@ -330,6 +330,25 @@ public class WifiMetricsTest extends WifiBaseTest {
         mDecodedProto = WifiMetricsProto.WifiLog.parseFrom(protoBytes);
     }
 
+    /**
+     * Verifies that the Passpoint ANQP cache statistics add up until the metrics are cleared.
+     */
+    @Test
+    public void testPasspointAnqpCacheStatsAreResetOnClear() throws Exception {
+        mWifiMetrics.incrementPasspointAnqpCacheStats(5, 3, 1);
+        mWifiMetrics.incrementPasspointAnqpCacheStats(2, 0, 3);
+        dumpProtoAndDeserialize();
+        assertEquals(7, mDecodedProto.passpointAnqpCacheHitCount);
+        assertEquals(3, mDecodedProto.passpointAnqpCacheMissCount);
+        assertEquals(4, mDecodedProto.passpointAnqpCacheEvictionCount);
+
+        mWifiMetrics.incrementPasspointAnqpCacheStats(1, 1, 0);
+        dumpProtoAndDeserialize();
+        assertEquals(1, mDecodedProto.passpointAnqpCacheHitCount);
+        assertEquals(1, mDecodedProto.passpointAnqpCacheMissCount);
+        assertEquals(0, mDecodedProto.passpointAnqpCacheEvictionCount);
+    }
+
     /** Verifies that dump() includes the expected header */
     @Test
     public void stateDumpIncludesHeader() throws Exception {
@@ -4838,6 +4857,31 @@ public class WifiMetricsTest extends WifiBaseTest {
         assertEquals(2, mDecodedProto.wifiConfigStoreIo.writeDurations[2].count);
     }
 
+    /**
+     * Test the generation of 'WifiConfigStoreIO' write queue and latency metrics.
+     */
+    @Test
+    public void testWifiConfigStoreWriteQueueMetrics() throws Exception {
+        mWifiMetrics.noteWifiConfigStoreWriteQueueDepth(2);
+        mWifiMetrics.noteWifiConfigStoreWriteQueueDepth(2);
+        mWifiMetrics.noteWifiConfigStoreWriteQueueDepth(4);
+        mWifiMetrics.incrementNumWifiConfigStoreCoalescedWrites();
+        mWifiMetrics.noteWifiConfigStoreWriteLatency(30);
+        mWifiMetrics.noteWifiConfigStoreWriteLatency(45);
+
+        dumpProtoAndDeserialize();
+
+        assertEquals(2, mDecodedProto.wifiConfigStoreIo.writeQueueDepth.length);
+        assertEquals(2, mDecodedProto.wifiConfigStoreIo.writeQueueDepth[0].key);
+        assertEquals(2, mDecodedProto.wifiConfigStoreIo.writeQueueDepth[0].count);
+        assertEquals(4, mDecodedProto.wifiConfigStoreIo.writeQueueDepth[1].key);
+        assertEquals(1, mDecodedProto.wifiConfigStoreIo.writeQueueDepth[1].count);
+        assertEquals(1, mDecodedProto.wifiConfigStoreIo.numCoalescedWrites);
+        assertEquals(1, mDecodedProto.wifiConfigStoreIo.writeLatencies.length);
+        assertEquals(50, mDecodedProto.wifiConfigStoreIo.writeLatencies[0].rangeEndMs);
+        assertEquals(2, mDecodedProto.wifiConfigStoreIo.writeLatencies[0].count);
+    }
+
     /**
      * Test link probe metrics.
      */
@@ -5920,6 +5964,56 @@ public class WifiMetricsTest extends WifiBaseTest {
                 mDecodedProto.initPartialScanStats.failedScanChannelCountHistogram);
     }
 
+    /**
+     * Test the network selection stage duration histograms
+     */
+    @Test
+    public void testNetworkSelectionStageDurations() throws Exception {
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS, 50);
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS, 700);
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT, 2000);
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS, 150);
+        mWifiMetrics.logNetworkSelectionStageDuration(
+                WifiMetrics.NETWORK_SELECTION_STAGE_SCORE_CANDIDATES, 1_000_000L);
+        mWifiMetrics.logNetworkSelectionNominatorDuration(
+                WifiNetworkSelector.NetworkNominator.NOMINATOR_ID_SAVED, 20000);
+
+        dumpProtoAndDeserialize();
+
+        WifiMetricsProto.NetworkSelectionStageStats stats =
+                mDecodedProto.networkSelectionStageStats;
+        assertHistogramBucketsEqual(new HistogramBucketInt32[] {
+                buildHistogramBucketInt32(Integer.MIN_VALUE, 100, 1),
+                buildHistogramBucketInt32(500, 1000, 1),
+        }, stats.filterScanResultsMicrosHistogram);
+        assertHistogramBucketsEqual(new HistogramBucketInt32[] {
+                buildHistogramBucketInt32(1000, 5000, 1),
+        }, stats.predictThroughputMicrosHistogram);
+        assertHistogramBucketsEqual(new HistogramBucketInt32[] {
+                buildHistogramBucketInt32(100, 500, 1),
+        }, stats.updateSecurityParamsMicrosHistogram);
+        assertHistogramBucketsEqual(new HistogramBucketInt32[] {
+                buildHistogramBucketInt32(500000, Integer.MAX_VALUE, 1),
+        }, stats.scoreCandidatesMicrosHistogram);
+        assertEquals(1, stats.nominateNetworksMicrosHistograms.length);
+        assertEquals(WifiNetworkSelector.NetworkNominator.NOMINATOR_ID_SAVED,
+                stats.nominateNetworksMicrosHistograms[0].nominatorId);
+        assertHistogramBucketsEqual(new HistogramBucketInt32[] {
+                buildHistogramBucketInt32(10000, 50000, 1),
+        }, stats.nominateNetworksMicrosHistograms[0].durationMicrosHistogram);
+
+        // The histograms are cleared once reported.
+        dumpProtoAndDeserialize();
+        assertEquals(0, mDecodedProto.networkSelectionStageStats
+                .filterScanResultsMicrosHistogram.length);
+        assertEquals(0, mDecodedProto.networkSelectionStageStats
+                .nominateNetworksMicrosHistograms.length);
+    }
+
     /**
      * Test overlapping and non-overlapping connection events return overlapping duration correctly
      */
@@ -21,7 +21,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -106,6 +109,57 @@ public class WifiMonitorTest extends WifiBaseTest {
         assertEquals(WLAN_IFACE_NAME, message.getData().getString(WifiMonitor.KEY_IFACE));
     }
 
+    /**
+     * Verify that the messages sent to the different handlers of an iface carry the iface name
+     * in a shared data Bundle.
+     */
+    @Test
+    public void testMessagesShareIfaceData() {
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.WPS_TIMEOUT_EVENT, mHandlerSpy);
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.WPS_TIMEOUT_EVENT, mSecondHandlerSpy);
+        mWifiMonitor.broadcastWpsTimeoutEvent(WLAN_IFACE_NAME);
+        mLooper.dispatchAll();
+
+        ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(mHandlerSpy).handleMessage(messageCaptor.capture());
+        Message message = messageCaptor.getValue();
+        verify(mSecondHandlerSpy).handleMessage(messageCaptor.capture());
+        Message secondMessage = messageCaptor.getValue();
+
+        assertEquals(WifiMonitor.WPS_TIMEOUT_EVENT, secondMessage.what);
+        assertEquals(WLAN_IFACE_NAME, secondMessage.getData().getString(WifiMonitor.KEY_IFACE));
+        assertSame(message.getData(), secondMessage.getData());
+    }
+
+    /**
+     * Verify that a handler registered twice receives each message once, and no longer receives
+     * messages once deregistered.
+     */
+    @Test
+    public void testRegisterHandlerTwiceAndDeregister() {
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.WPS_TIMEOUT_EVENT, mHandlerSpy);
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.WPS_TIMEOUT_EVENT, mHandlerSpy);
+        mWifiMonitor.broadcastWpsTimeoutEvent(WLAN_IFACE_NAME);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy).handleMessage(any(Message.class));
+
+        mWifiMonitor.deregisterHandler(
+                WLAN_IFACE_NAME, WifiMonitor.WPS_TIMEOUT_EVENT, mHandlerSpy);
+        mWifiMonitor.broadcastWpsTimeoutEvent(WLAN_IFACE_NAME);
+        // The iface is still known, so the event is not broadcast to the other ifaces.
+        mWifiMonitor.registerHandler(
+                SECOND_WLAN_IFACE_NAME, WifiMonitor.WPS_TIMEOUT_EVENT, mSecondHandlerSpy);
+        mWifiMonitor.setMonitoring(SECOND_WLAN_IFACE_NAME, true);
+        mWifiMonitor.broadcastWpsTimeoutEvent(WLAN_IFACE_NAME);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy).handleMessage(any(Message.class));
+        verify(mSecondHandlerSpy, never()).handleMessage(any(Message.class));
+    }
+
     /**
      * Broadcast WPS failure event test.
      */
@@ -3202,7 +3202,7 @@ public class WifiNetworkFactoryTest extends WifiBaseTest {
         sendNetworkRequestAndSetupForConnectionStatus(TEST_SSID_1);
 
         // Verify config store interactions.
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
 
         Map<String, Set<AccessPoint>> approvedAccessPointsMapToWrite = mDataSource.toSerialize();
@@ -3252,6 +3252,44 @@ public class WifiNetworkFactoryTest extends WifiBaseTest {
                 mConnectListenerArgumentCaptor.capture(), anyInt(), any());
     }
 
+    /**
+     * Verify that moving an access point to the end of the user approved list, when a request
+     * bypasses the user approval, marks the list as new data to serialize.
+     */
+    @Test
+    public void testNetworkSpecifierUserApprovalBypassSavesNewOrder() throws Exception {
+        Map<String, Set<AccessPoint>> approvedAccessPointsMapToRead = new HashMap<>();
+        LinkedHashSet<AccessPoint> approvedAccessPoints = new LinkedHashSet<>();
+        AccessPoint accessPoint1 = new AccessPoint(TEST_SSID_1,
+                MacAddress.fromString(TEST_BSSID_1), WifiConfiguration.SECURITY_TYPE_PSK);
+        AccessPoint accessPoint2 = new AccessPoint(TEST_SSID_2,
+                MacAddress.fromString(TEST_BSSID_2), WifiConfiguration.SECURITY_TYPE_PSK);
+        approvedAccessPoints.add(accessPoint1);
+        approvedAccessPoints.add(accessPoint2);
+        approvedAccessPointsMapToRead.put(TEST_PACKAGE_NAME_1, approvedAccessPoints);
+        mDataSource.fromDeserialized(approvedAccessPointsMapToRead);
+        assertFalse(mDataSource.hasNewDataToSerialize());
+
+        // The new network request should bypass user approval for the first access point.
+        PatternMatcher ssidPatternMatch =
+                new PatternMatcher(TEST_SSID_1, PatternMatcher.PATTERN_LITERAL);
+        Pair<MacAddress, MacAddress> bssidPatternMatch =
+                Pair.create(MacAddress.fromString(TEST_BSSID_1),
+                        MacAddress.BROADCAST_ADDRESS);
+        attachWifiNetworkSpecifierAndAppInfo(
+                ssidPatternMatch, bssidPatternMatch, WifiConfigurationTestUtil.createPskNetwork(),
+                TEST_UID_1, TEST_PACKAGE_NAME_1, new int[0]);
+        mWifiNetworkFactory.needNetworkFor(mNetworkRequest);
+        verify(mConnectHelper).connectToNetwork(eq(mClientModeManager),  any(),
+                mConnectListenerArgumentCaptor.capture(), anyInt(), any());
+
+        // The first access point is now the most recently used one.
+        assertTrue(mDataSource.hasNewDataToSerialize());
+        Map<String, Set<AccessPoint>> approvedAccessPointsMapToWrite = mDataSource.toSerialize();
+        assertArrayEquals(new AccessPoint[] {accessPoint2, accessPoint1},
+                approvedAccessPointsMapToWrite.get(TEST_PACKAGE_NAME_1).toArray());
+    }
+
     /**
      * Verify the config store save and load could preserve the elements order.
      */
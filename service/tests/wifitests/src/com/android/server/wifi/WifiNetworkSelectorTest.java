@@ -35,6 +35,7 @@ import static org.mockito.Mockito.*;
 import android.annotation.NonNull;
 import android.app.admin.DevicePolicyManager;
 import android.app.admin.WifiSsidPolicy;
+import android.content.res.Resources;
 import android.net.MacAddress;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SecurityParams;
@@ -44,17 +45,23 @@ import android.net.wifi.WifiContext;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiScanner;
 import android.net.wifi.WifiSsid;
+import android.os.Debug;
 import android.os.SystemClock;
 import android.util.ArraySet;
 import android.util.LocalLog;
+import android.util.Log;
 
+import androidx.test.filters.LargeTest;
 import androidx.test.filters.SmallTest;
 
 import com.android.dx.mockito.inline.extended.ExtendedMockito;
 import com.android.modules.utils.build.SdkLevel;
 import com.android.server.wifi.WifiNetworkSelector.ClientModeManagerState;
 import com.android.server.wifi.WifiNetworkSelectorTestUtil.ScanDetailsAndWifiConfigs;
+import com.android.server.wifi.hotspot2.PasspointManager;
+import com.android.server.wifi.hotspot2.PasspointNetworkNominateHelper;
 import com.android.server.wifi.proto.nano.WifiMetricsProto;
+import com.android.server.wifi.util.WifiPermissionsUtil;
 import com.android.wifi.resources.R;
 
 import org.junit.After;
@@ -72,7 +79,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -80,6 +89,7 @@ import java.util.concurrent.TimeUnit;
  */
 @SmallTest
 public class WifiNetworkSelectorTest extends WifiBaseTest {
+    private static final String TAG = "WifiNetworkSelectorTest";
     private static final int RSSI_BUMP = 1;
     private static final int PLACEHOLDER_NOMINATOR_ID_1 = -2; // lowest index
     private static final int PLACEHOLDER_NOMINATOR_ID_2 = -1;
@@ -88,6 +98,8 @@ public class WifiNetworkSelectorTest extends WifiBaseTest {
     private static final String TEST_IFACE_NAME = "mockWlan0";
     private static final String TEST_IFACE_NAME_SECONDARY = "mockWlan1";
     private static final String TEST_AUTO_UPGRADE_SSID = "\"auto-upgrade-network\"";
+    private static final int STAGE_WARMUP_ITERATIONS = 3;
+    private static final int STAGE_MEASURED_ITERATIONS = 10;
 
     private static class CandidateParams {
         public static final String BSSID_1 = "6c:f3:7f:ae:8c:f3";
@@ -792,7 +804,7 @@ public class WifiNetworkSelectorTest extends WifiBaseTest {
         WifiConfiguration candidate = mWifiNetworkSelector.selectNetwork(candidates);
         verify(mWifiMetrics).incrementNetworkSelectionFilteredBssidCount(0);
 
-        verify(mWifiConfigManager).getConfiguredNetworks();
+        verify(mWifiConfigManager).getConfiguredNetworksSnapshot();
         verify(mWifiConfigManager, times(savedConfigs.length)).tryEnableNetwork(anyInt());
         verify(mWifiConfigManager, times(savedConfigs.length))
                 .clearNetworkCandidateScanResult(anyInt());
@@ -2267,6 +2279,56 @@ public class WifiNetworkSelectorTest extends WifiBaseTest {
         return scanDetailsAndConfigs.getScanDetails();
     }
 
+    /**
+     * Tests that the time spent in each network selection stage is recorded.
+     */
+    @Test
+    public void testNetworkSelectionStageDurationMetrics() {
+        testLowRssiNoActiveStream();
+
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_FILTER_SCAN_RESULTS), anyLong());
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionNominatorDuration(
+                eq(PLACEHOLDER_NOMINATOR_ID_1), anyLong());
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT), anyLong());
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS), anyLong());
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_SCORE_CANDIDATES), anyLong());
+    }
+
+    /**
+     * Tests that the time spent predicting throughput is only recorded in its own stage, and not
+     * in the nominator, security params or scoring stages.
+     */
+    @Test
+    public void testNetworkSelectionStageDurationsExcludeThroughputPrediction() {
+        long[] nowNanos = {0};
+        when(mClock.getElapsedSinceBootNanos()).thenAnswer(invocation -> nowNanos[0]);
+        when(mThroughputPredictor.predictThroughput(any(), anyInt(), anyInt(), anyInt(),
+                anyInt(), anyInt(), anyInt(), anyInt(), anyBoolean())).thenAnswer(invocation -> {
+                    nowNanos[0] += TimeUnit.MILLISECONDS.toNanos(1);
+                    return 100;
+                });
+
+        testLowRssiNoActiveStream();
+
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_PREDICT_THROUGHPUT),
+                longThat(micros -> micros > 0));
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionNominatorDuration(
+                eq(PLACEHOLDER_NOMINATOR_ID_1), anyLong());
+        verify(mWifiMetrics, never()).logNetworkSelectionNominatorDuration(
+                anyInt(), longThat(micros -> micros != 0));
+        verify(mWifiMetrics, never()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_UPDATE_SECURITY_PARAMS),
+                longThat(micros -> micros != 0));
+        verify(mWifiMetrics, never()).logNetworkSelectionStageDuration(
+                eq(WifiMetrics.NETWORK_SELECTION_STAGE_SCORE_CANDIDATES),
+                longThat(micros -> micros != 0));
+    }
+
     /**
      * Tests that metrics are recorded for 3 scorers.
      */
@@ -3492,4 +3554,132 @@ public class WifiNetworkSelectorTest extends WifiBaseTest {
         candidate = mWifiNetworkSelector.selectNetwork(getWifiCandidates(3, bandMatrix));
         assertEquals("\"mlo\"", candidate.SSID);
     }
+
+    /**
+     * Drive a large synthetic scan, mixing bands, multi-link APs and Passpoint APs, through the
+     * real saved network, network suggestion and Passpoint nominators, candidate collection,
+     * every candidate scorer and the final selection, and report the latency and allocations of
+     * each stage to logcat.
+     *
+     * The numbers include the cost of the mocked collaborators, so they are only meant to be
+     * compared between builds on the same device, not read as absolute costs.
+     *
+     * Expected behavior: every BSSID becomes a candidate and every scorer picks one of them.
+     *
+     * This repeats every stage a number of times to measure it, so it is a large test and is not
+     * run with the small tests of this class.
+     */
+    @LargeTest
+    @Test
+    public void testSyntheticScanThroughAllScorers() {
+        int numBssids = 300;
+        int[] freqs = {2437, 5180, 5745};
+        ScanDetailsAndWifiConfigs scanDetailsAndConfigs =
+                WifiNetworkSelectorTestUtil.setupSyntheticScanDetailsAndConfigStore(numBssids,
+                        freqs, Math.max(mThresholdQualifiedRssi2G, mThresholdQualifiedRssi5G)
+                                + 10, 30, 20, mWifiConfigManager, mClock);
+        List<ScanDetail> scanDetails = scanDetailsAndConfigs.getScanDetails();
+        List<ClientModeManagerState> cmmStates = Arrays.asList(
+                new ClientModeManagerState(TEST_IFACE_NAME, false, true, mWifiInfo));
+        when(mClock.getElapsedSinceBootNanos()).thenAnswer(
+                invocation -> SystemClock.elapsedRealtimeNanos());
+
+        PasspointManager passpointManager = mock(PasspointManager.class);
+        when(passpointManager.isWifiPasspointEnabled()).thenReturn(true);
+        Resources passpointResources = mock(Resources.class);
+        when(passpointResources.getStringArray(
+                R.array.config_wifiPasspointUseApWanLinkStatusAnqpElementFqdnAllowlist))
+                .thenReturn(new String[0]);
+        WifiCarrierInfoManager carrierInfoManager = mock(WifiCarrierInfoManager.class);
+        WifiPseudonymManager pseudonymManager = mock(WifiPseudonymManager.class);
+        WifiNetworkSuggestionsManager suggestionsManager =
+                mock(WifiNetworkSuggestionsManager.class);
+        PasspointNetworkNominateHelper nominateHelper = new PasspointNetworkNominateHelper(
+                passpointManager, mWifiConfigManager, mLocalLog, carrierInfoManager,
+                passpointResources, mClock);
+        List<WifiNetworkSelector.NetworkNominator> nominators = Arrays.asList(
+                new SavedNetworkNominator(mWifiConfigManager, nominateHelper, mLocalLog,
+                        carrierInfoManager, pseudonymManager, mock(WifiPermissionsUtil.class),
+                        suggestionsManager),
+                new NetworkSuggestionNominator(suggestionsManager, mWifiConfigManager,
+                        nominateHelper, mLocalLog, carrierInfoManager, pseudonymManager,
+                        mWifiMetrics));
+        mPlaceholderNominator.setNominatorToSelectCandidate(false);
+        for (WifiNetworkSelector.NetworkNominator nominator : nominators) {
+            mWifiNetworkSelector.registerNetworkNominator(nominator);
+        }
+
+        for (WifiNetworkSelector.NetworkNominator nominator : nominators) {
+            measureNetworkSelectionStage("nominate_" + nominator.getName(),
+                    () -> nominator.nominateNetworks(scanDetails, false, true, true,
+                            Collections.emptySet(), (scanDetail, config) -> { }));
+        }
+        measureNetworkSelectionStage("getCandidatesFromScan",
+                () -> mWifiNetworkSelector.getCandidatesFromScan(scanDetails, new HashSet<>(),
+                        cmmStates, false, true, true, Collections.emptySet(), false));
+        List<WifiCandidates.Candidate> candidates = mWifiNetworkSelector.getCandidatesFromScan(
+                scanDetails, new HashSet<>(), cmmStates, false, true, true,
+                Collections.emptySet(), false);
+        assertEquals(numBssids, candidates.size());
+        // Passpoint APs are matched against the installed providers.
+        verify(passpointManager, atLeastOnce()).matchProvider(any(ScanDetail.class));
+
+        for (WifiCandidates.CandidateScorer scorer : Arrays.asList(mCompatibilityScorer,
+                mScoreCardBasedScorer, mThroughputScorer, new BubbleFunScorer(mScoringParams))) {
+            measureNetworkSelectionStage("score_" + scorer.getIdentifier(),
+                    () -> scorer.scoreCandidates(candidates));
+            WifiCandidates.ScoredCandidate choice = scorer.scoreCandidates(candidates);
+            assertNotNull(scorer.getIdentifier(), choice.candidateKey);
+        }
+        measureNetworkSelectionStage("selectNetwork",
+                () -> mWifiNetworkSelector.selectNetwork(candidates));
+
+        // Report the stages timed by WifiNetworkSelector itself during the runs above.
+        ArgumentCaptor<Integer> stageCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<Long> durationCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(mWifiMetrics, atLeastOnce()).logNetworkSelectionStageDuration(
+                stageCaptor.capture(), durationCaptor.capture());
+        Map<Integer, Long> stageMicros = new TreeMap<>();
+        Map<Integer, Integer> stageCounts = new TreeMap<>();
+        for (int i = 0; i < stageCaptor.getAllValues().size(); i++) {
+            int stage = stageCaptor.getAllValues().get(i);
+            stageMicros.merge(stage, durationCaptor.getAllValues().get(i), Long::sum);
+            stageCounts.merge(stage, 1, Integer::sum);
+        }
+        for (Map.Entry<Integer, Long> entry : stageMicros.entrySet()) {
+            Log.i(TAG, "network selection stage " + entry.getKey() + ": "
+                    + entry.getValue() / stageCounts.get(entry.getKey()) + " us");
+        }
+    }
+
+    /**
+     * Run |stage| for a few warm up iterations, then time it and count its allocations on this
+     * thread over separate measured iterations, and log the per iteration averages.
+     */
+    @SuppressWarnings("deprecation")
+    private static void measureNetworkSelectionStage(String name, Runnable stage) {
+        for (int i = 0; i < STAGE_WARMUP_ITERATIONS; i++) {
+            stage.run();
+        }
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < STAGE_MEASURED_ITERATIONS; i++) {
+            stage.run();
+        }
+        long elapsedNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+
+        // Allocation counting slows down allocations, so it is kept out of the timed iterations.
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        for (int i = 0; i < STAGE_MEASURED_ITERATIONS; i++) {
+            stage.run();
+        }
+        int allocCount = Debug.getThreadAllocCount();
+        int allocBytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        Log.i(TAG, name + ": " + elapsedNanos / STAGE_MEASURED_ITERATIONS / 1000 + " us, "
+                + allocCount / STAGE_MEASURED_ITERATIONS + " allocations, "
+                + allocBytes / STAGE_MEASURED_ITERATIONS + " bytes");
+    }
 }
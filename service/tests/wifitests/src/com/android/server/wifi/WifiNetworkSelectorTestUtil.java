@@ -33,6 +33,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.test.MockAnswerUtil.AnswerWithArguments;
+import android.net.MacAddress;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SecurityParams;
 import android.net.wifi.WifiConfiguration;
@@ -58,6 +59,20 @@ import java.util.Set;
 public class WifiNetworkSelectorTestUtil {
     private static final String TAG = "WifiNetworkSelectorTestUtil";
     private static final long SUPPORTED_FEATURES_ALL = Long.MAX_VALUE;
+    // VHT capabilities IE.
+    private static final byte[] SYNTHETIC_IES = {
+            (byte) 0xbf, (byte) 0x0c, (byte) 0x91, (byte) 0x59, (byte) 0x82, (byte) 0x0f,
+            (byte) 0xea, (byte) 0xff, (byte) 0x00, (byte) 0x00, (byte) 0xea, (byte) 0xff,
+            (byte) 0x00, (byte) 0x00};
+    // VHT capabilities, Interworking and Hotspot 2.0 indication IEs.
+    private static final byte[] SYNTHETIC_PASSPOINT_IES = {
+            (byte) 0xbf, (byte) 0x0c, (byte) 0x91, (byte) 0x59, (byte) 0x82, (byte) 0x0f,
+            (byte) 0xea, (byte) 0xff, (byte) 0x00, (byte) 0x00, (byte) 0xea, (byte) 0xff,
+            (byte) 0x00, (byte) 0x00,
+            (byte) 0x6b, (byte) 0x01, (byte) 0x13,
+            (byte) 0xdd, (byte) 0x05, (byte) 0x50, (byte) 0x6f, (byte) 0x9a, (byte) 0x10,
+            (byte) 0x10};
+
     /**
      * A class that holds a list of scanDetail and their associated WifiConfiguration.
      */
@@ -124,6 +139,63 @@ public class WifiNetworkSelectorTestUtil {
         return new ScanDetailsAndWifiConfigs(scanDetails, savedConfigs);
     }
 
+    /**
+     * Build a synthetic scan of |numBssids| PSK BSSIDs spread over the supplied frequencies,
+     * create the corresponding WifiConfiguration for these networks and set up the mocked
+     * WifiConfigManager. Each BSSID has its own SSID, except for the links of a multi-link AP
+     * which share the SSID of their MLD. This is meant to exercise the network selection pipeline
+     * with scans of a realistic size and composition.
+     *
+     * @param numBssids the number of BSSIDs in the scan
+     * @param freqs the frequencies to spread the BSSIDs over, in a round robin manner
+     * @param level the RSSI of the strongest BSSID, the others are up to 9 dB weaker
+     * @param passpointPercent the percentage of BSSIDs advertising Hotspot 2.0 support
+     * @param mloPercent the percentage of BSSIDs affiliated with a multi-link AP. Consecutive
+     *                   affiliated BSSIDs are grouped in MLDs of up to 3 links
+     * @param wifiConfigManager the mocked WifiConfigManager
+     * @return the constructed ScanDetail list and WifiConfiguration array
+     */
+    public static ScanDetailsAndWifiConfigs setupSyntheticScanDetailsAndConfigStore(
+            int numBssids, int[] freqs, int level, int passpointPercent, int mloPercent,
+            WifiConfigManager wifiConfigManager, Clock clock) {
+        String[] ssids = new String[numBssids];
+        String[] bssids = new String[numBssids];
+        int[] scanFreqs = new int[numBssids];
+        String[] caps = new String[numBssids];
+        int[] levels = new int[numBssids];
+        int[] securities = new int[numBssids];
+        byte[][] iesByteStream = new byte[numBssids][];
+        // Index of the MLD of each BSSID, or -1 if it is not affiliated with a multi-link AP.
+        int[] mldIndices = new int[numBssids];
+        int numMloLinks = 0;
+        for (int i = 0; i < numBssids; i++) {
+            mldIndices[i] = i % 100 < mloPercent ? numMloLinks++ / 3 : -1;
+            ssids[i] = mldIndices[i] >= 0
+                    ? "\"synthetic_mld" + mldIndices[i] + "\"" : "\"synthetic" + i + "\"";
+            bssids[i] = String.format("02:00:00:%02x:%02x:%02x",
+                    (i >> 16) & 0xff, (i >> 8) & 0xff, i & 0xff);
+            scanFreqs[i] = freqs[i % freqs.length];
+            caps[i] = "[WPA2-PSK-CCMP][ESS]";
+            levels[i] = level - (i % 10);
+            securities[i] = SECURITY_PSK;
+            iesByteStream[i] = (99 - i % 100) < passpointPercent
+                    ? SYNTHETIC_PASSPOINT_IES : SYNTHETIC_IES;
+        }
+        ScanDetailsAndWifiConfigs scanDetailsAndConfigs = setupScanDetailsAndConfigStore(ssids,
+                bssids, scanFreqs, caps, levels, securities, wifiConfigManager, clock,
+                iesByteStream);
+        for (int i = 0; i < numBssids; i++) {
+            int mldIndex = mldIndices[i];
+            if (mldIndex >= 0) {
+                scanDetailsAndConfigs.getScanDetails().get(i).getScanResult().setApMldMacAddress(
+                        MacAddress.fromString(String.format("02:11:00:%02x:%02x:%02x",
+                                (mldIndex >> 16) & 0xff, (mldIndex >> 8) & 0xff,
+                                mldIndex & 0xff)));
+            }
+        }
+        return scanDetailsAndConfigs;
+    }
+
     /**
      * Build a list of ScanDetail based on the caller supplied network SSID, BSSID,
      * frequency and RSSI level information. Create the EAP-SIM authticated
@@ -365,6 +437,16 @@ public class WifiNetworkSelectorTestUtil {
                         return savedNetworks;
                     }
                 });
+        when(wifiConfigManager.getConfiguredNetworksSnapshot())
+                .then(new AnswerWithArguments() {
+                    public List<WifiConfiguration> answer() {
+                        List<WifiConfiguration> savedNetworks = new ArrayList<>();
+                        for (int netId = 0; netId < configs.length; netId++) {
+                            savedNetworks.add(new WifiConfiguration(configs[netId]));
+                        }
+                        return savedNetworks;
+                    }
+                });
         when(wifiConfigManager.clearNetworkCandidateScanResult(anyInt()))
                 .then(new AnswerWithArguments() {
                     public boolean answer(int netId) {
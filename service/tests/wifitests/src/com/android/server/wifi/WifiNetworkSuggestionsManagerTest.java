@@ -1985,7 +1985,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                         TEST_PACKAGE_1, TEST_FEATURE));
 
         // Verify config store interactions.
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
 
         Map<String, PerAppInfo> networkSuggestionsMapToWrite = mDataSource.toSerialize();
@@ -2015,7 +2015,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
      */
     @Test
     public void testAddNetworkSuggestionsConfigStoreWriteFailedByOOM() {
-        when(mWifiConfigManager.saveToStore(anyBoolean())).thenThrow(new OutOfMemoryError())
+        when(mWifiConfigManager.saveModuleDataToStore(anyBoolean())).thenThrow(new OutOfMemoryError())
                 .thenReturn(true);
         WifiNetworkSuggestion networkSuggestion = createWifiNetworkSuggestion(
                 WifiConfigurationTestUtil.createOpenNetwork(), null, false, false, true, true,
@@ -2030,7 +2030,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                         TEST_PACKAGE_1, TEST_FEATURE));
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
 
         Map<String, PerAppInfo> networkSuggestionsMapToWrite = mDataSource.toSerialize();
@@ -2063,7 +2063,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                         TEST_PACKAGE_1, WifiManager.ACTION_REMOVE_SUGGESTION_DISCONNECT));
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
 
         // Expect a single app entry with no active suggestions.
@@ -2759,7 +2759,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         verify(mWifiNotificationManager).cancel(SystemMessage.NOTE_NETWORK_SUGGESTION_AVAILABLE);
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
         verify(mWifiMetrics).addUserApprovalSuggestionAppUiReaction(
                 WifiNetworkSuggestionsManager.ACTION_USER_ALLOWED_APP, false);
@@ -2821,7 +2821,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         verify(mWifiNotificationManager).cancel(SystemMessage.NOTE_NETWORK_SUGGESTION_AVAILABLE);
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
         verify(mWifiMetrics).addUserApprovalSuggestionAppUiReaction(
                 WifiNetworkSuggestionsManager.ACTION_USER_DISALLOWED_APP, false);
@@ -2932,6 +2932,40 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         assertEquals(storedNetworkSuggestionListPerApp.size(), 0);
     }
 
+    /**
+     * Verify the network suggestion snapshot follows the suggestions added and removed on the
+     * Wifi thread, and is only visible to the current user.
+     */
+    @Test
+    public void testGetNetworkSuggestionsSnapshot() {
+        assertTrue(mWifiNetworkSuggestionsManager.getSnapshot(TEST_PACKAGE_1, TEST_UID_1)
+                .isEmpty());
+
+        WifiNetworkSuggestion networkSuggestion = createWifiNetworkSuggestion(
+                WifiConfigurationTestUtil.createPskNetwork(), null, false, false, true, true,
+                DEFAULT_PRIORITY_GROUP);
+        assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS,
+                mWifiNetworkSuggestionsManager.add(List.of(networkSuggestion), TEST_UID_1,
+                        TEST_PACKAGE_1, TEST_FEATURE));
+        assertEquals(List.of(networkSuggestion),
+                mWifiNetworkSuggestionsManager.getSnapshot(TEST_PACKAGE_1, TEST_UID_1));
+        assertTrue(mWifiNetworkSuggestionsManager.getSnapshot(TEST_PACKAGE_2, TEST_UID_2)
+                .isEmpty());
+
+        when(mWifiPermissionsUtil.doesUidBelongToCurrentUserOrDeviceOwner(TEST_UID_1))
+                .thenReturn(false);
+        assertTrue(mWifiNetworkSuggestionsManager.getSnapshot(TEST_PACKAGE_1, TEST_UID_1)
+                .isEmpty());
+        when(mWifiPermissionsUtil.doesUidBelongToCurrentUserOrDeviceOwner(TEST_UID_1))
+                .thenReturn(true);
+
+        assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS,
+                mWifiNetworkSuggestionsManager.remove(new ArrayList<>(), TEST_UID_1,
+                        TEST_PACKAGE_1, WifiManager.ACTION_REMOVE_SUGGESTION_DISCONNECT));
+        assertTrue(mWifiNetworkSuggestionsManager.getSnapshot(TEST_PACKAGE_1, TEST_UID_1)
+                .isEmpty());
+    }
+
     /**
      * Verify get hidden networks from All user approve network suggestions
      */
@@ -3013,7 +3047,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         dialogCallbackCaptor.getValue().onPositiveButtonClicked();
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
         verify(mWifiMetrics).addUserApprovalSuggestionAppUiReaction(
                 WifiNetworkSuggestionsManager.ACTION_USER_ALLOWED_APP, true);
@@ -3058,7 +3092,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                 OPSTR_CHANGE_WIFI_STATE, TEST_UID_1, TEST_PACKAGE_1, MODE_IGNORED);
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
         verify(mWifiMetrics).addUserApprovalSuggestionAppUiReaction(
                 WifiNetworkSuggestionsManager.ACTION_USER_DISALLOWED_APP, true);
@@ -3117,7 +3151,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         mLooper.dispatchAll();
 
         // Verify no new config store or app-op interactions.
-        verify(mWifiConfigManager).saveToStore(true); // 1 already done for add
+        verify(mWifiConfigManager).saveModuleDataToStore(true); // 1 already done for add
         verify(mAppOpsManager, never()).setMode(any(), anyInt(), any(), anyInt());
         verify(mWifiMetrics).addUserApprovalSuggestionAppUiReaction(
                 WifiNetworkSuggestionsManager.ACTION_USER_DISMISS, true);
@@ -3153,7 +3187,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         verify(mWifiNotificationManager).cancel(SystemMessage.NOTE_NETWORK_SUGGESTION_AVAILABLE);
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
 
         reset(mWifiNotificationManager);
@@ -3193,7 +3227,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         verify(mWifiNotificationManager).cancel(SystemMessage.NOTE_NETWORK_SUGGESTION_AVAILABLE);
 
         // Verify config store interactions.
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         assertTrue(mDataSource.hasNewDataToSerialize());
 
         reset(mWifiNotificationManager);
@@ -3674,7 +3708,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                     .thenReturn(config);
             wcmConfigs.add(config);
         }
-        when(mWifiConfigManager.getConfiguredNetworks()).thenReturn(wcmConfigs);
+        when(mWifiConfigManager.getConfiguredNetworksSnapshot()).thenReturn(wcmConfigs);
     }
 
     /**
@@ -3833,7 +3867,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                 .thenReturn(TelephonyManager.UNKNOWN_CARRIER_ID);
         mWifiNetworkSuggestionsManager.updateCarrierPrivilegedApps();
         assertEquals(0,  mWifiNetworkSuggestionsManager.get(TEST_PACKAGE_1, TEST_UID_1).size());
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         status = mWifiNetworkSuggestionsManager
                 .add(networkSuggestionList, TEST_UID_1, TEST_PACKAGE_1, TEST_FEATURE);
         assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_ADD_NOT_ALLOWED, status);
@@ -3875,7 +3909,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                 .thenReturn(TelephonyManager.UNKNOWN_CARRIER_ID);
         mWifiNetworkSuggestionsManager.updateCarrierPrivilegedApps(Collections.emptySet());
         assertEquals(0,  mWifiNetworkSuggestionsManager.get(TEST_PACKAGE_1, TEST_UID_1).size());
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         status = mWifiNetworkSuggestionsManager
                 .add(networkSuggestionList, TEST_UID_1, TEST_PACKAGE_1, TEST_FEATURE);
         assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_ADD_NOT_ALLOWED, status);
@@ -3911,17 +3945,17 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         // No matching will return false.
         assertFalse(mWifiNetworkSuggestionsManager
                 .allowNetworkSuggestionAutojoin(configuration, false));
-        verify(mWifiConfigManager, never()).saveToStore(true);
+        verify(mWifiConfigManager, never()).saveModuleDataToStore(true);
         assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS,
                 mWifiNetworkSuggestionsManager.add(networkSuggestionList, TEST_UID_1,
                         TEST_PACKAGE_1, TEST_FEATURE));
         mWifiNetworkSuggestionsManager.setHasUserApprovedForApp(true, TEST_UID_1, TEST_PACKAGE_1);
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         reset(mWifiConfigManager);
 
         assertTrue(mWifiNetworkSuggestionsManager
                 .allowNetworkSuggestionAutojoin(configuration, false));
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
         Set<ExtendedWifiNetworkSuggestion> matchedSuggestions = mWifiNetworkSuggestionsManager
                 .getNetworkSuggestionsForWifiConfiguration(configuration,
                         TEST_BSSID);
@@ -3952,7 +3986,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                 mWifiNetworkSuggestionsManager.add(networkSuggestionList, TEST_UID_1,
                         TEST_PACKAGE_1, TEST_FEATURE));
         mWifiNetworkSuggestionsManager.setHasUserApprovedForApp(true, TEST_UID_1, TEST_PACKAGE_1);
-        verify(mWifiConfigManager, times(2)).saveToStore(true);
+        verify(mWifiConfigManager, times(2)).saveModuleDataToStore(true);
         reset(mWifiConfigManager);
         // Create WifiConfiguration for Passpoint network.
         WifiConfiguration config = WifiConfigurationTestUtil.createPasspointNetwork();
@@ -3969,14 +4003,14 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                 .thenReturn(false);
         assertFalse(mWifiNetworkSuggestionsManager
                 .allowNetworkSuggestionAutojoin(config, false));
-        verify(mWifiConfigManager, never()).saveToStore(true);
+        verify(mWifiConfigManager, never()).saveModuleDataToStore(true);
 
         // When update PasspointManager is success, will return true and persist suggestion.
         when(mPasspointManager.enableAutojoin(anyString(), isNull(), anyBoolean()))
                 .thenReturn(true);
         assertTrue(mWifiNetworkSuggestionsManager
                 .allowNetworkSuggestionAutojoin(config, false));
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
         Set<ExtendedWifiNetworkSuggestion> matchedSuggestions = mWifiNetworkSuggestionsManager
                 .getNetworkSuggestionsForWifiConfiguration(config, TEST_BSSID);
         for (ExtendedWifiNetworkSuggestion ewns : matchedSuggestions) {
@@ -4226,7 +4260,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         for (ExtendedWifiNetworkSuggestion ewns : matchedSuggestions) {
             assertTrue(ewns.isAutojoinEnabled);
         }
-        verify(mWifiConfigManager, atLeastOnce()).saveToStore(true);
+        verify(mWifiConfigManager, atLeastOnce()).saveModuleDataToStore(true);
     }
 
     @Test
@@ -4409,6 +4443,32 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         assertEquals(ssid, configs.get(0).SSID);
     }
 
+    /**
+     * Verify that a change of the network connection order is reported as new data to
+     * serialize, even if the suggestions themselves did not change.
+     */
+    @Test
+    public void testNetworkConnectionOrderChangeHasNewDataToSerialize() {
+        WifiConfigManager.OnNetworkUpdateListener listener = mNetworkListenerCaptor.getValue();
+        // Nothing to write without any suggestion.
+        listener.onNetworkConnectionOrderChanged();
+        assertFalse(mDataSource.hasNewDataToSerialize());
+
+        WifiNetworkSuggestion networkSuggestion = createWifiNetworkSuggestion(
+                WifiConfigurationTestUtil.createOpenNetwork(), null, false, false, true, true,
+                DEFAULT_PRIORITY_GROUP);
+        assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS,
+                mWifiNetworkSuggestionsManager.add(Arrays.asList(networkSuggestion), TEST_UID_1,
+                        TEST_PACKAGE_1, TEST_FEATURE));
+        mDataSource.toSerialize();
+        assertFalse(mDataSource.hasNewDataToSerialize());
+
+        listener.onNetworkConnectionOrderChanged();
+        assertTrue(mDataSource.hasNewDataToSerialize());
+        mDataSource.toSerialize();
+        assertFalse(mDataSource.hasNewDataToSerialize());
+    }
+
     /**
      * Verify if a suggestion is mostRecently connected, flag will be persist.
      */
@@ -4990,7 +5050,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         for (ExtendedWifiNetworkSuggestion ewns : matchedSuggestions) {
             assertEquals(null, ewns.anonymousIdentity);
         }
-        verify(mWifiConfigManager, times(3)).saveToStore(true);
+        verify(mWifiConfigManager, times(3)).saveModuleDataToStore(true);
     }
 
     @Test
@@ -5036,12 +5096,12 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         }
 
         // Add suggestion and change user approval have 2, set and remove user choice have 2.
-        verify(mWifiConfigManager, times(4)).saveToStore(true);
+        verify(mWifiConfigManager, times(4)).saveModuleDataToStore(true);
 
         reset(mWifiConfigManager);
         listener.onConnectChoiceRemoved(USER_CONNECT_CHOICE);
         listener.onConnectChoiceRemoved(null);
-        verify(mWifiConfigManager, never()).saveToStore(anyBoolean());
+        verify(mWifiConfigManager, never()).saveModuleDataToStore(anyBoolean());
     }
 
     /**
@@ -79,6 +79,7 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
+import static org.mockito.AdditionalAnswers.returnsLastArg;
 import static org.mockito.AdditionalAnswers.returnsSecondArg;
 import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.anyList;
@@ -406,6 +407,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Mock WifiConfigManager mWifiConfigManager;
     @Mock WifiBlocklistMonitor mWifiBlocklistMonitor;
     @Mock WifiScoreCard mWifiScoreCard;
+    @Mock WifiConfigStore mWifiConfigStore;
     @Mock WifiHealthMonitor mWifiHealthMonitor;
     @Mock PasspointManager mPasspointManager;
     @Mock DeviceConfigFacade mDeviceConfigFacade;
@@ -556,6 +558,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
         when(mWifiInjector.getCoexManager()).thenReturn(mCoexManager);
         when(mWifiInjector.getWifiConfigManager()).thenReturn(mWifiConfigManager);
+        when(mWifiInjector.getWifiConfigStore()).thenReturn(mWifiConfigStore);
         when(mWifiInjector.getWifiBlocklistMonitor()).thenReturn(mWifiBlocklistMonitor);
         when(mWifiInjector.getPasspointManager()).thenReturn(mPasspointManager);
         when(mWifiInjector.getDeviceConfigFacade()).thenReturn(mDeviceConfigFacade);
@@ -736,6 +739,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         when(mockRunner.call(any(), any())).then(returnsSecondArg());
         when(mockRunner.call(any(), any(int.class))).then(returnsSecondArg());
         when(mockRunner.call(any(), any(boolean.class))).then(returnsSecondArg());
+        when(mockRunner.call(anyString(), any(), any())).then(returnsLastArg());
         when(mockRunner.post(any())).thenReturn(false);
 
         when(mWifiInjector.getWifiThreadRunner()).thenReturn(mockRunner);
@@ -2797,7 +2801,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Test
     public void testConnectedIdsAreHiddenFromAppWithoutPermission() throws Exception {
         WifiInfo wifiInfo = setupForGetConnectionInfo();
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         doThrow(new SecurityException()).when(mWifiPermissionsUtil).enforceCanAccessScanResults(
                 anyString(), nullable(String.class), anyInt(), nullable(String.class));
@@ -2827,7 +2831,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Test
     public void testConnectedIdsAreHiddenOnSecurityException() throws Exception {
         WifiInfo wifiInfo = setupForGetConnectionInfo();
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         doThrow(new SecurityException()).when(mWifiPermissionsUtil).enforceCanAccessScanResults(
                 anyString(), nullable(String.class), anyInt(), nullable(String.class));
@@ -2851,7 +2855,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Test
     public void testConnectedIdsAreVisibleFromPermittedApp() throws Exception {
         WifiInfo wifiInfo = setupForGetConnectionInfo();
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         mLooper.startAutoDispatch();
         WifiInfo connectionInfo = parcelingRoundTrip(
@@ -2876,7 +2880,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         ConcreteClientModeManager secondaryCmm = mock(ConcreteClientModeManager.class);
         when(secondaryCmm.getRequestorWs())
                 .thenReturn(new WorkSource(Binder.getCallingUid(), TEST_PACKAGE));
-        when(secondaryCmm.getConnectionInfo()).thenReturn(wifiInfo);
+        when(secondaryCmm.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
         when(mActiveModeWarden.getClientModeManagersInRoles(
                 ROLE_CLIENT_LOCAL_ONLY, ROLE_CLIENT_SECONDARY_LONG_LIVED))
                 .thenReturn(Arrays.asList(secondaryCmm));
@@ -2906,12 +2910,12 @@ public class WifiServiceImplTest extends WifiBaseTest {
         WorkSource ws = new WorkSource(Binder.getCallingUid(), TEST_PACKAGE);
         ws.add(SETTINGS_WORKSOURCE);
         when(secondaryCmm.getRequestorWs()).thenReturn(ws);
-        when(secondaryCmm.getConnectionInfo()).thenReturn(wifiInfo);
+        when(secondaryCmm.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
         when(mActiveModeWarden.getClientModeManagersInRoles(
                 ROLE_CLIENT_LOCAL_ONLY, ROLE_CLIENT_SECONDARY_LONG_LIVED))
                 .thenReturn(Arrays.asList(secondaryCmm));
         ConcreteClientModeManager primaryCmm = mock(ConcreteClientModeManager.class);
-        when(primaryCmm.getConnectionInfo()).thenReturn(new WifiInfo());
+        when(primaryCmm.getConnectionInfoSnapshot()).thenReturn(new WifiInfo());
         when(mActiveModeWarden.getPrimaryClientModeManager()).thenReturn(primaryCmm);
         when(mWifiPermissionsUtil.checkNetworkSettingsPermission(SETTINGS_WORKSOURCE.getUid(0)))
                 .thenReturn(true);
@@ -2935,7 +2939,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
 
         assertEquals(WifiManager.UNKNOWN_SSID, connectionInfo.getSSID());
         verify(mActiveModeWarden).getPrimaryClientModeManager();
-        verify(primaryCmm).getConnectionInfo();
+        verify(primaryCmm).getConnectionInfoSnapshot();
     }
 
     /**
@@ -2946,7 +2950,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     public void testConnectedIdsFromPrimaryCmmAreVisibleFromAppNotRequestingSecondaryCmm()
             throws Exception {
         WifiInfo wifiInfo = setupForGetConnectionInfo();
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
         ConcreteClientModeManager secondaryCmm = mock(ConcreteClientModeManager.class);
         when(secondaryCmm.getRequestorWs())
                 .thenReturn(new WorkSource(Binder.getCallingUid(), TEST_PACKAGE_NAME_OTHER));
@@ -2972,7 +2976,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
      */
     @Test
     public void testConfiguredNetworkListAreEmptyFromAppWithoutPermission() throws Exception {
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt()))
                 .thenReturn(TEST_WIFI_CONFIGURATION_LIST);
 
         // no permission = target SDK=Q && not a carrier app
@@ -2991,7 +2995,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
      */
     @Test
     public void testConfiguredNetworkListAreEmptyOnSecurityException() throws Exception {
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt()))
                 .thenReturn(TEST_WIFI_CONFIGURATION_LIST);
 
         doThrow(new SecurityException()).when(mWifiPermissionsUtil).enforceCanAccessScanResults(
@@ -3010,7 +3014,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
      */
     @Test
     public void testConfiguredNetworkListAreVisibleFromPermittedApp() throws Exception {
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt()))
                 .thenReturn(TEST_WIFI_CONFIGURATION_LIST);
 
         when(mContext.checkPermission(eq(android.Manifest.permission.NETWORK_SETTINGS),
@@ -3021,7 +3025,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 mWifiServiceImpl.getConfiguredNetworks(TEST_PACKAGE, TEST_FEATURE_ID, false);
         mLooper.stopAutoDispatchAndIgnoreExceptions();
 
-        verify(mWifiConfigManager).getSavedNetworks(eq(WIFI_UID));
+        verify(mWifiConfigManager).getSavedNetworksSnapshot(eq(WIFI_UID));
         WifiConfigurationTestUtil.assertConfigurationsEqualForBackup(
                 TEST_WIFI_CONFIGURATION_LIST, configs.getList());
     }
@@ -3047,7 +3051,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 2, 1200000, "\"blue\"", false, true, null, null, SECURITY_NONE);
         WifiConfiguration nonCallerNetwork1 = WifiConfigurationTestUtil.generateWifiConfig(
                 3, 1100000, "\"cyan\"", true, true, null, null, SECURITY_NONE);
-        when(mWifiConfigManager.getSavedNetworks(anyInt())).thenReturn(Arrays.asList(
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt())).thenReturn(Arrays.asList(
                 callerNetwork0, callerNetwork1, nonCallerNetwork0, nonCallerNetwork1));
 
         // Caller does NOT need to have location permission to be able to retrieve its own networks.
@@ -3080,7 +3084,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 2, 1200000, "\"blue\"", true, true, null, null, SECURITY_NONE);
         callerNetwork.setRandomizedMacAddress(TEST_FACTORY_MAC_ADDR);
 
-        when(mWifiConfigManager.getSavedNetworks(callerUid)).thenReturn(Arrays.asList(
+        when(mWifiConfigManager.getSavedNetworksSnapshot(callerUid)).thenReturn(Arrays.asList(
                 callerNetwork, nonCallerNetwork));
 
         when(mWifiPermissionsUtil.isProfileOwner(Binder.getCallingUid(), TEST_PACKAGE_NAME))
@@ -3180,25 +3184,24 @@ public class WifiServiceImplTest extends WifiBaseTest {
                         .getResults();
         List<ScanResult> scanResultList =
                 new ArrayList<>(Arrays.asList(scanResults));
-        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
+        when(mScanRequestProxy.getScanResultsSnapshot()).thenReturn(scanResultList);
 
         String packageName = "test.com";
         String featureId = "test.com.featureId";
-        mLooper.startAutoDispatch();
         List<ScanResult> retrievedScanResultList = mWifiServiceImpl.getScanResults(packageName,
                 featureId);
-        mLooper.stopAutoDispatchAndIgnoreExceptions();
-        verify(mScanRequestProxy).getScanResults();
+        verify(mScanRequestProxy).getScanResultsSnapshot();
 
         ScanTestUtil.assertScanResultsEquals(scanResults,
                 retrievedScanResultList.toArray(new ScanResult[retrievedScanResultList.size()]));
     }
 
     /**
-     * Ensure that we handle scan results failure when posting the runnable to handler fails.
+     * Ensure that scan results are returned even if the Wifi thread is not responsive, since they
+     * are read from the published snapshot.
      */
     @Test
-    public void testGetScanResultsFailureInRunWithScissors() {
+    public void testGetScanResultsDoesNotWaitForWifiThread() {
         mWifiServiceImpl = makeWifiServiceImplWithMockRunnerWhichTimesOut();
 
         ScanResult[] scanResults =
@@ -3206,17 +3209,16 @@ public class WifiServiceImplTest extends WifiBaseTest {
                         .getResults();
         List<ScanResult> scanResultList =
                 new ArrayList<>(Arrays.asList(scanResults));
-        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
+        when(mScanRequestProxy.getScanResultsSnapshot()).thenReturn(scanResultList);
 
         String packageName = "test.com";
         String featureId = "test.com.featureId";
-        mLooper.startAutoDispatch();
         List<ScanResult> retrievedScanResultList = mWifiServiceImpl.getScanResults(packageName,
                 featureId);
-        mLooper.stopAutoDispatchAndIgnoreExceptions();
         verify(mScanRequestProxy, never()).getScanResults();
 
-        assertTrue(retrievedScanResultList.isEmpty());
+        ScanTestUtil.assertScanResultsEquals(scanResults,
+                retrievedScanResultList.toArray(new ScanResult[retrievedScanResultList.size()]));
     }
 
     /**
@@ -3230,7 +3232,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                         .getResults();
         List<ScanResult> scanResultList =
                 new ArrayList<>(Arrays.asList(scanResults));
-        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
+        when(mScanRequestProxy.getScanResultsSnapshot()).thenReturn(scanResultList);
         WifiNetworkSuggestion mockSuggestion = mock(WifiNetworkSuggestion.class);
         List<WifiNetworkSuggestion> matchingSuggestions = List.of(mockSuggestion);
         Map<WifiNetworkSuggestion, List<ScanResult>> result = Map.of(
@@ -3294,11 +3296,17 @@ public class WifiServiceImplTest extends WifiBaseTest {
                         .getResults();
         List<ScanResult> scanResultList =
                 new ArrayList<>(Arrays.asList(scanResults));
-        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
-        WifiNetworkSuggestion mockSuggestion = mock(WifiNetworkSuggestion.class);
-        List<WifiNetworkSuggestion> matchingSuggestions = List.of(mockSuggestion);
+        when(mScanRequestProxy.getScanResultsSnapshot()).thenReturn(scanResultList);
+        // Only Passpoint suggestions are matched on the Wifi thread.
+        PasspointConfiguration passpointConfig = new PasspointConfiguration();
+        HomeSp homeSp = new HomeSp();
+        homeSp.setFqdn(TEST_FQDN);
+        passpointConfig.setHomeSp(homeSp);
+        WifiNetworkSuggestion suggestion = new WifiNetworkSuggestion(new WifiConfiguration(),
+                passpointConfig, false, false, true, true, 0);
+        List<WifiNetworkSuggestion> matchingSuggestions = List.of(suggestion);
         Map<WifiNetworkSuggestion, List<ScanResult>> result = Map.of(
-                mockSuggestion, scanResultList);
+                suggestion, scanResultList);
 
         when(mWifiNetworkSuggestionsManager.getMatchingScanResults(eq(matchingSuggestions),
                 eq(scanResultList))).thenReturn(result);
@@ -6049,6 +6057,24 @@ public class WifiServiceImplTest extends WifiBaseTest {
         }
     }
 
+    /**
+     * Verify that the config store writes are flushed on shutdown.
+     */
+    @Test
+    public void testShutdownBroadcastFlushesConfigStore() throws Exception {
+        mWifiServiceImpl.checkAndStartWifi();
+        mWifiServiceImpl.handleBootCompleted();
+        mLooper.dispatchAll();
+        verify(mContext).registerReceiver(mBroadcastReceiverCaptor.capture(),
+                argThat((IntentFilter filter) -> filter.hasAction(Intent.ACTION_SHUTDOWN)),
+                isNull(),
+                any(Handler.class));
+
+        mBroadcastReceiverCaptor.getValue().onReceive(mContext, new Intent(Intent.ACTION_SHUTDOWN));
+
+        verify(mWifiConfigStore).flush();
+    }
+
     @Test
     public void testUserRemovedBroadcastHandlingWithWrongIntentAction() {
         mWifiServiceImpl.checkAndStartWifi();
@@ -7189,25 +7215,25 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Test
     public void testGetNetworkSuggestions() {
         List<WifiNetworkSuggestion> testList = new ArrayList<>();
-        when(mWifiNetworkSuggestionsManager.get(anyString(), anyInt())).thenReturn(testList);
-        mLooper.startAutoDispatch();
+        when(mWifiNetworkSuggestionsManager.getSnapshot(anyString(), anyInt()))
+                .thenReturn(testList);
         assertEquals(testList, mWifiServiceImpl.getNetworkSuggestions(TEST_PACKAGE_NAME));
-        mLooper.stopAutoDispatchAndIgnoreExceptions();
 
-        verify(mWifiNetworkSuggestionsManager).get(eq(TEST_PACKAGE_NAME), anyInt());
+        verify(mWifiNetworkSuggestionsManager).getSnapshot(eq(TEST_PACKAGE_NAME), anyInt());
     }
 
     /**
-     * Ensure that we don't invoke {@link WifiNetworkSuggestionsManager} to get network
-     * suggestions when the looper sync call times out.
+     * Ensure that network suggestions are returned even if the Wifi thread is not responsive,
+     * since they are read from the published snapshot.
      */
     @Test
-    public void testGetNetworkSuggestionsFailureInRunWithScissors() {
+    public void testGetNetworkSuggestionsDoesNotWaitForWifiThread() {
         mWifiServiceImpl = makeWifiServiceImplWithMockRunnerWhichTimesOut();
+        List<WifiNetworkSuggestion> testList = List.of(mock(WifiNetworkSuggestion.class));
+        when(mWifiNetworkSuggestionsManager.getSnapshot(anyString(), anyInt()))
+                .thenReturn(testList);
 
-        mLooper.startAutoDispatch();
-        assertTrue(mWifiServiceImpl.getNetworkSuggestions(TEST_PACKAGE_NAME).isEmpty());
-        mLooper.stopAutoDispatchAndIgnoreExceptions();
+        assertEquals(testList, mWifiServiceImpl.getNetworkSuggestions(TEST_PACKAGE_NAME));
 
         verify(mWifiNetworkSuggestionsManager, never()).get(eq(TEST_PACKAGE_NAME), anyInt());
     }
@@ -9778,7 +9804,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         long featureFlags = WifiManager.WIFI_FEATURE_WPA3_SAE | WifiManager.WIFI_FEATURE_OWE;
         List<WifiConfiguration> testConfigs = setupMultiTypeConfigs(
                 featureFlags, true, true);
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt()))
                 .thenReturn(testConfigs);
         when(mWifiConfigManager.getConfiguredNetworksWithPasswords())
                 .thenReturn(testConfigs);
@@ -9810,7 +9836,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         long featureFlags = WifiManager.WIFI_FEATURE_WPA3_SAE | WifiManager.WIFI_FEATURE_OWE;
         List<WifiConfiguration> testConfigs = setupMultiTypeConfigs(
                 featureFlags, false, false);
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt()))
                 .thenReturn(testConfigs);
         when(mWifiConfigManager.getConfiguredNetworksWithPasswords())
                 .thenReturn(testConfigs);
@@ -9842,7 +9868,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         long featureFlags = 0L;
         List<WifiConfiguration> testConfigs = setupMultiTypeConfigs(
                 featureFlags, true, true);
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getSavedNetworksSnapshot(anyInt()))
                 .thenReturn(testConfigs);
         when(mWifiConfigManager.getConfiguredNetworksWithPasswords())
                 .thenReturn(testConfigs);
@@ -10769,7 +10795,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 anyInt(), anyInt())).thenReturn(PackageManager.PERMISSION_GRANTED);
         when(mActiveModeWarden.getClientModeManagers()).thenReturn(
                 Collections.singletonList(mClientModeManager));
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         mWifiServiceImpl.notifyWifiSsidPolicyChanged(WifiSsidPolicy.WIFI_SSID_POLICY_TYPE_ALLOWLIST,
                 Arrays.asList(WifiSsid.fromUtf8Text("SSID")));
@@ -10797,7 +10823,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 anyInt(), anyInt())).thenReturn(PackageManager.PERMISSION_GRANTED);
         when(mActiveModeWarden.getClientModeManagers()).thenReturn(
                 Collections.singletonList(mClientModeManager));
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         mWifiServiceImpl.notifyWifiSsidPolicyChanged(WifiSsidPolicy.WIFI_SSID_POLICY_TYPE_DENYLIST,
                 Arrays.asList(WifiSsid.fromUtf8Text(TEST_SSID)));
@@ -10822,7 +10848,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 anyInt(), anyInt())).thenReturn(PackageManager.PERMISSION_GRANTED);
         when(mActiveModeWarden.getClientModeManagers()).thenReturn(
                 Collections.singletonList(mClientModeManager));
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         mWifiServiceImpl.notifyWifiSsidPolicyChanged(WifiSsidPolicy.WIFI_SSID_POLICY_TYPE_ALLOWLIST,
                 Arrays.asList(WifiSsid.fromUtf8Text("SSID")));
@@ -10851,7 +10877,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 anyInt(), anyInt())).thenReturn(PackageManager.PERMISSION_GRANTED);
         when(mActiveModeWarden.getClientModeManagers()).thenReturn(
                 Collections.singletonList(mClientModeManager));
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         mWifiServiceImpl.notifyWifiSsidPolicyChanged(WifiSsidPolicy.WIFI_SSID_POLICY_TYPE_DENYLIST,
                 Arrays.asList(WifiSsid.fromUtf8Text(TEST_SSID)));
@@ -10876,7 +10902,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 anyInt(), anyInt())).thenReturn(PackageManager.PERMISSION_GRANTED);
         when(mActiveModeWarden.getClientModeManagers()).thenReturn(
                 Collections.singletonList(mClientModeManager));
-        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mClientModeManager.getConnectionInfoSnapshot()).thenReturn(wifiInfo);
 
         mWifiServiceImpl.notifyMinimumRequiredWifiSecurityLevelChanged(
                 DevicePolicyManager.WIFI_SECURITY_ENTERPRISE_EAP);
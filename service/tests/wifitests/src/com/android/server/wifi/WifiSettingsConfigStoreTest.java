@@ -97,7 +97,7 @@ public class WifiSettingsConfigStoreTest extends WifiBaseTest {
         mWifiSettingsConfigStore.put(WIFI_VERBOSE_LOGGING_ENABLED, true);
         mLooper.dispatchAll();
         assertTrue(mWifiSettingsConfigStore.get(WIFI_VERBOSE_LOGGING_ENABLED));
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
     }
 
     @Test
@@ -133,6 +133,24 @@ public class WifiSettingsConfigStoreTest extends WifiBaseTest {
         verifyNoMoreInteractions(mSettingsMigrationDataHolder);
     }
 
+    @Test
+    public void testNewDataToSerializeClearedOnSerialize() throws Exception {
+        ArgumentCaptor<WifiConfigStore.StoreData> storeDataCaptor = ArgumentCaptor.forClass(
+                WifiConfigStore.StoreData.class);
+        verify(mWifiConfigStore).registerStoreData(storeDataCaptor.capture());
+        WifiConfigStore.StoreData storeData = storeDataCaptor.getValue();
+        assertFalse(storeData.hasNewDataToSerialize());
+
+        mWifiSettingsConfigStore.put(WIFI_VERBOSE_LOGGING_ENABLED, true);
+        mLooper.dispatchAll();
+        assertTrue(storeData.hasNewDataToSerialize());
+
+        final XmlSerializer out = new FastXmlSerializer();
+        out.setOutput(new ByteArrayOutputStream(), StandardCharsets.UTF_8.name());
+        storeData.serializeData(out, null);
+        assertFalse(storeData.hasNewDataToSerialize());
+    }
+
     @Test
     public void testLoadFromMigration() throws Exception {
         ArgumentCaptor<WifiConfigStore.StoreData> storeDataCaptor = ArgumentCaptor.forClass(
@@ -152,7 +170,7 @@ public class WifiSettingsConfigStoreTest extends WifiBaseTest {
 
         assertTrue(mWifiSettingsConfigStore.get(WIFI_VERBOSE_LOGGING_ENABLED));
         // Trigger store file write after migration.
-        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager).saveModuleDataToStore(true);
     }
 
     private XmlPullParser createSettingsTestXmlForParsing(Key key, Object value)
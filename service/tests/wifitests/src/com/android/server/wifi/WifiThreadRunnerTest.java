@@ -18,6 +18,7 @@ package com.android.server.wifi;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
@@ -28,6 +29,7 @@ import static org.mockito.Mockito.verify;
 
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 
 import androidx.test.filters.SmallTest;
 
@@ -37,6 +39,13 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 
 @SmallTest
@@ -93,6 +102,85 @@ public class WifiThreadRunnerTest extends WifiBaseTest {
         verify(mSupplier, never()).get();
     }
 
+    @Test
+    public void callWithCallSiteSuccess_returnExpectedValueAndRecordStats() {
+        Integer result = mWifiThreadRunner.call("testCallSite", mSupplier, VALUE_ON_TIMEOUT);
+
+        assertThat(result).isEqualTo(RESULT);
+        verify(mSupplier).get();
+        StringWriter sw = new StringWriter();
+        mWifiThreadRunner.dump(new PrintWriter(sw));
+        assertThat(sw.toString()).contains("testCallSite: abandoned=0");
+    }
+
+    @Test
+    public void callWithCallSiteFailure_returnValueOnPostFailure() {
+        doReturn(false).when(mHandler).post(any());
+
+        Integer result = mWifiThreadRunner.call("testCallSite", mSupplier, VALUE_ON_TIMEOUT);
+
+        assertThat(result).isEqualTo(VALUE_ON_TIMEOUT);
+        verify(mSupplier, never()).get();
+    }
+
+    @Test
+    public void callWithCallSite_exceptionNotRethrownToCaller() {
+        mWifiThreadRunner.setTimeoutsAreErrors(true);
+
+        Integer result = mWifiThreadRunner.call("testCallSite", () -> {
+            throw new IllegalStateException();
+        }, VALUE_ON_TIMEOUT);
+
+        assertThat(result).isEqualTo(VALUE_ON_TIMEOUT);
+    }
+
+    @Test
+    public void callAsyncException_futureCompletedExceptionally() throws Exception {
+        CompletableFuture<Integer> future = mWifiThreadRunner.callAsync("testCallSite", () -> {
+            throw new IllegalStateException();
+        }, SystemClock.uptimeMillis() + 10000);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> future.get(1, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void callAsyncAfterDeadline_supplierSkipped() throws Exception {
+        CompletableFuture<Integer> future = mWifiThreadRunner.callAsync("testCallSite",
+                mSupplier, SystemClock.uptimeMillis() - 1);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> future.get(1, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+        verify(mSupplier, never()).get();
+    }
+
+    @Test
+    public void callAsyncAbandonedByCaller_supplierSkipped() throws Exception {
+        // Keep the wifi thread busy until the caller gives up.
+        CountDownLatch blocker = new CountDownLatch(1);
+        mHandler.post(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        CompletableFuture<Integer> future = mWifiThreadRunner.callAsync("testCallSite",
+                mSupplier, SystemClock.uptimeMillis() + 10000);
+        future.cancel(false);
+        blocker.countDown();
+
+        // Wait for the wifi thread to go through the abandoned call.
+        assertThat(mWifiThreadRunner.callAsync("sync", () -> 0, SystemClock.uptimeMillis() + 10000)
+                .get(1, TimeUnit.SECONDS)).isEqualTo(0);
+        verify(mSupplier, never()).get();
+        StringWriter sw = new StringWriter();
+        mWifiThreadRunner.dump(new PrintWriter(sw));
+        assertThat(sw.toString()).contains("testCallSite: abandoned=1");
+    }
+
     @Test
     public void runSuccess() {
         doAnswer(invocation -> {
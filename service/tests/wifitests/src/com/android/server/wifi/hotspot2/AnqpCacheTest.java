@@ -16,6 +16,7 @@
 
 package com.android.server.wifi.hotspot2;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -53,6 +54,9 @@ import java.util.Map;
 @SmallTest
 public class AnqpCacheTest extends WifiBaseTest {
     private static final ANQPNetworkKey ENTRY_KEY = new ANQPNetworkKey("test", 0L, 0L, 1);
+    private static final ANQPNetworkKey ENTRY_KEY2 = new ANQPNetworkKey("test2", 0L, 0L, 1);
+    private static final ANQPNetworkKey ENTRY_KEY3 = new ANQPNetworkKey("test3", 0L, 0L, 1);
+    private static final int TEST_MAX_CACHE_SIZE = 2;
     private static final String TEST_LANGUAGE = "en";
     private static final Locale TEST_LOCALE = Locale.forLanguageTag(TEST_LANGUAGE);
     private static final String TEST_VENUE_NAME1 = "Venue1";
@@ -72,7 +76,7 @@ public class AnqpCacheTest extends WifiBaseTest {
         initMocks(this);
         // Returning the initial timestamp.
         when(mClock.getElapsedSinceBootMillis()).thenReturn(0L);
-        mCache = new AnqpCache(mClock);
+        mCache = new AnqpCache(mClock, TEST_MAX_CACHE_SIZE);
     }
 
     /**
@@ -178,4 +182,67 @@ public class AnqpCacheTest extends WifiBaseTest {
         assertTrue(data.getElements().get(Constants.ANQPElementType.ANQPVenueUrl)
                 .equals(venueUrlElement));
     }
+
+    /**
+     * Verify that the least recently used entry is evicted once the cache is full.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void evictLeastRecentlyUsedEntryWhenFull() throws Exception {
+        mCache.addEntry(ENTRY_KEY, null);
+        mCache.addEntry(ENTRY_KEY2, null);
+        // Access the first entry so the second one becomes the least recently used.
+        assertNotNull(mCache.getEntry(ENTRY_KEY));
+
+        mCache.addEntry(ENTRY_KEY3, null);
+        assertNotNull(mCache.getEntry(ENTRY_KEY));
+        assertNull(mCache.getEntry(ENTRY_KEY2));
+        assertNotNull(mCache.getEntry(ENTRY_KEY3));
+        assertEquals(1, mCache.getCacheEvictionCount());
+    }
+
+    /**
+     * Verify that cache hits and misses are counted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void countCacheHitsAndMisses() throws Exception {
+        assertNull(mCache.getEntry(ENTRY_KEY));
+        mCache.addEntry(ENTRY_KEY, null);
+        assertNotNull(mCache.getEntry(ENTRY_KEY));
+        assertNotNull(mCache.getEntry(ENTRY_KEY));
+
+        assertEquals(2, mCache.getCacheHitCount());
+        assertEquals(1, mCache.getCacheMissCount());
+        assertEquals(0, mCache.getCacheEvictionCount());
+    }
+
+    /**
+     * Verify that the sweep only removes expired entries, and keeps the entries which were
+     * refreshed after they were added.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void sweepKeepsRefreshedEntry() throws Exception {
+        mCache.addEntry(ENTRY_KEY, null);
+        mCache.addEntry(ENTRY_KEY2, null);
+
+        // Refresh the second entry half way through its lifetime.
+        long refreshTime = ANQPData.DATA_LIFETIME_MILLISECONDS / 2;
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(refreshTime);
+        mCache.addOrUpdateEntry(ENTRY_KEY2, new HashMap<>());
+
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(ANQPData.DATA_LIFETIME_MILLISECONDS);
+        mCache.sweep();
+        assertNull(mCache.getEntry(ENTRY_KEY));
+        assertNotNull(mCache.getEntry(ENTRY_KEY2));
+
+        when(mClock.getElapsedSinceBootMillis())
+                .thenReturn(refreshTime + ANQPData.DATA_LIFETIME_MILLISECONDS);
+        mCache.sweep();
+        assertNull(mCache.getEntry(ENTRY_KEY2));
+    }
 }
@@ -16,9 +16,11 @@
 
 package com.android.server.wifi.hotspot2;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import android.net.wifi.MloLink;
@@ -26,10 +28,13 @@ import android.net.wifi.ScanResult.InformationElement;
 import android.text.TextUtils;
 
 import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.util.InformationElementUtil;
+import com.android.server.wifi.util.ParsedInformationElements;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 
 /**
@@ -197,5 +202,78 @@ public class NetworkDetailTest extends WifiBaseTest {
                     TextUtils.equals(bssidStr1, bssidStr2));
         }
     }
-}
 
+    /**
+     * Verify that the Passpoint elements decoded by NetworkDetail are shared through its parsed
+     * information elements.
+     */
+    @Test
+    public void verifyParsedInformationElementsShared() throws Exception {
+        InformationElement[] ies = new InformationElement[2];
+        ies[0] = new InformationElement();
+        ies[0].id = InformationElement.EID_SSID;
+        ies[0].bytes = "test".getBytes(StandardCharsets.UTF_8);
+        // Roaming Consortium: 0 ANQP OIs, a single 3 byte OI
+        ies[1] = new InformationElement();
+        ies[1].id = InformationElement.EID_ROAMING_CONSORTIUM;
+        ies[1].bytes = new byte[] {(byte) 0x00, (byte) 0x03,
+                (byte) 0x50, (byte) 0x6f, (byte) 0x9a};
+        NetworkDetail networkDetail = new NetworkDetail(TEST_BSSID, ies,
+                Collections.emptyList(), 2412);
+
+        ParsedInformationElements parsedIes = networkDetail.getParsedInformationElements();
+        assertSame(ies, parsedIes.getElements());
+        assertArrayEquals(networkDetail.getRoamingConsortiums(),
+                parsedIes.getRoamingConsortium().getRoamingConsortiums());
+        assertSame(parsedIes, new NetworkDetail(networkDetail).getParsedInformationElements());
+    }
+
+    /**
+     * Verify that NetworkDetail shares the view it was built from, so that the elements are
+     * only walked once for all the consumers of the scan result.
+     */
+    @Test
+    public void verifyProvidedParsedInformationElementsShared() throws Exception {
+        InformationElement[] ies = new InformationElement[2];
+        ies[0] = new InformationElement();
+        ies[0].id = InformationElement.EID_SSID;
+        ies[0].bytes = "test".getBytes(StandardCharsets.UTF_8);
+        // Roaming Consortium: 0 ANQP OIs, a single 3 byte OI
+        ies[1] = new InformationElement();
+        ies[1].id = InformationElement.EID_ROAMING_CONSORTIUM;
+        ies[1].bytes = new byte[] {(byte) 0x00, (byte) 0x03,
+                (byte) 0x50, (byte) 0x6f, (byte) 0x9a};
+        ParsedInformationElements parsedIes = new ParsedInformationElements(ies);
+        InformationElementUtil.Capabilities capabilities =
+                new InformationElementUtil.Capabilities();
+        capabilities.from(parsedIes, 0, false, 2412);
+        NetworkDetail networkDetail = new NetworkDetail(TEST_BSSID, parsedIes,
+                Collections.emptyList(), 2412);
+
+        assertSame(parsedIes, networkDetail.getParsedInformationElements());
+        assertArrayEquals(networkDetail.getRoamingConsortiums(),
+                parsedIes.getRoamingConsortium().getRoamingConsortiums());
+    }
+
+    /**
+     * Verify that a malformed Interworking element marks the IE string as malformed, so that an
+     * SSID which is not valid UTF-8 is rejected when the AP claims strict UTF-8 SSIDs.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyMalformedInterworkingWithStrictUtf8SsidThrows() throws Exception {
+        InformationElement[] ies = new InformationElement[3];
+        ies[0] = new InformationElement();
+        ies[0].id = InformationElement.EID_SSID;
+        ies[0].bytes = new byte[] {(byte) 0xff};
+        // Extended capabilities with the UTF-8 SSID bit (48) set.
+        ies[1] = new InformationElement();
+        ies[1].id = InformationElement.EID_EXTENDED_CAPS;
+        ies[1].bytes = new byte[] {0, 0, 0, 0, 0, 0, (byte) 0x01};
+        // Interworking elements can't be 2 bytes long.
+        ies[2] = new InformationElement();
+        ies[2].id = InformationElement.EID_INTERWORKING;
+        ies[2].bytes = new byte[] {(byte) 0x13, (byte) 0x00};
+
+        new NetworkDetail(TEST_BSSID, ies, Collections.emptyList(), 2412);
+    }
+}
@@ -86,6 +86,7 @@ import com.android.server.wifi.DeviceConfigFacade;
 import com.android.server.wifi.FakeKeys;
 import com.android.server.wifi.FrameworkFacade;
 import com.android.server.wifi.MacAddressUtil;
+import com.android.server.wifi.MockResources;
 import com.android.server.wifi.NetworkUpdateResult;
 import com.android.server.wifi.RunnerHandler;
 import com.android.server.wifi.WifiBaseTest;
@@ -112,6 +113,7 @@ import com.android.server.wifi.proto.nano.WifiMetricsProto.UserActionEvent;
 import com.android.server.wifi.util.InformationElementUtil;
 import com.android.server.wifi.util.InformationElementUtil.RoamingConsortium;
 import com.android.server.wifi.util.WifiPermissionsUtil;
+import com.android.wifi.resources.R;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -196,6 +198,7 @@ public class PasspointManagerTest extends WifiBaseTest {
     public static PKIXParameters TEST_PKIX_PARAMETERS;
 
     @Mock Context mContext;
+    MockResources mResources;
     @Mock WifiNative mWifiNative;
     @Mock WifiKeyStore mWifiKeyStore;
     @Mock Clock mClock;
@@ -251,7 +254,10 @@ public class PasspointManagerTest extends WifiBaseTest {
     public void setUp() throws Exception {
         initMocks(this);
         when(mWifiInjector.getDeviceConfigFacade()).thenReturn(mDeviceConfigFacade);
-        when(mObjectFactory.makeAnqpCache(mClock)).thenReturn(mAnqpCache);
+        mResources = new MockResources();
+        mResources.setInteger(R.integer.config_wifiPasspointAnqpCacheMaxSize, 1000);
+        when(mContext.getResources()).thenReturn(mResources);
+        when(mObjectFactory.makeAnqpCache(eq(mClock), anyInt())).thenReturn(mAnqpCache);
         when(mObjectFactory.makeANQPRequestManager(any(), eq(mClock)))
                 .thenReturn(mAnqpRequestManager);
         when(mObjectFactory.makeOsuNetworkConnection(any(Context.class)))
@@ -677,10 +683,12 @@ public class PasspointManagerTest extends WifiBaseTest {
         verify(mWifiConfigManager, times(3)).removePasspointConfiguredNetwork(
                 provider.getWifiConfig().getProfileKey());
         /**
-         * 1 from |removeProvider| + 2 from |setAutojoinEnabled| + 2 from
-         * |enableMacRandomization| + 2 from |setMeteredOverride| = 7 calls to |saveToStore|
+         * 1 from |removeProvider| to |saveToStore|, 2 from |setAutojoinEnabled| + 2 from
+         * |enableMacRandomization| + 2 from |setMeteredOverride| = 6 calls to
+         * |saveModuleDataToStore|
          */
-        verify(mWifiConfigManager, times(7)).saveToStore(true);
+        verify(mWifiConfigManager).saveToStore(true);
+        verify(mWifiConfigManager, times(6)).saveModuleDataToStore(true);
         verify(mWifiMetrics).incrementNumPasspointProviderUninstallation();
         verify(mWifiMetrics).incrementNumPasspointProviderUninstallSuccess();
         verify(mAppOpsManager).stopWatchingMode(any(AppOpsManager.OnOpChangedListener.class));
@@ -1209,7 +1217,7 @@ public class PasspointManagerTest extends WifiBaseTest {
             List<Pair<PasspointProvider, PasspointMatch>> matchedProviders =
                     mManager.getAllMatchedProviders(createTestScanResult());
 
-            verify(mWifiConfigManager).saveToStore(eq(true));
+            verify(mWifiConfigManager).saveModuleDataToStore(eq(true));
 
         } finally {
             session.finishMocking();
@@ -1671,6 +1679,32 @@ public class PasspointManagerTest extends WifiBaseTest {
         reset(mWifiConfigManager);
     }
 
+    /**
+     * Verify that the data sources only report new data to serialize after the provider list or
+     * the provider index changed since they were last serialized.
+     */
+    @Test
+    public void verifyDataSourcesHaveNewDataToSerializeAfterChange() throws Exception {
+        assertFalse(mUserDataSource.hasNewDataToSerialize());
+        assertFalse(mSharedDataSource.hasNewDataToSerialize());
+
+        PasspointProvider provider = addTestProvider(TEST_FQDN, TEST_FRIENDLY_NAME,
+                TEST_PACKAGE, false, null, false);
+        assertTrue(mUserDataSource.hasNewDataToSerialize());
+        assertTrue(mSharedDataSource.hasNewDataToSerialize());
+
+        mUserDataSource.getProviders();
+        mSharedDataSource.getProviderIndex();
+        assertFalse(mUserDataSource.hasNewDataToSerialize());
+        assertFalse(mSharedDataSource.hasNewDataToSerialize());
+
+        // A change of a provider only changes the provider list.
+        when(provider.setAutojoinEnabled(false)).thenReturn(true);
+        assertTrue(mManager.enableAutojoin(provider.getConfig().getUniqueId(), null, false));
+        assertTrue(mUserDataSource.hasNewDataToSerialize());
+        assertFalse(mSharedDataSource.hasNewDataToSerialize());
+    }
+
     /**
      * Verify that a PasspointProvider with expected PasspointConfiguration will be installed when
      * adding a legacy Passpoint configuration containing a valid user credential.
@@ -1964,6 +1998,28 @@ public class PasspointManagerTest extends WifiBaseTest {
                 eq(expectedInstalledProviders), eq(expectedConnectedProviders));
     }
 
+    /**
+     * Verify that only the ANQP cache activity since the previous
+     * {@link PasspointManager#updateMetrics} is reported.
+     */
+    @Test
+    public void updateMetricsReportsAnqpCacheStatsSinceLastUpdate() {
+        when(mAnqpCache.getCacheHitCount()).thenReturn(5L);
+        when(mAnqpCache.getCacheMissCount()).thenReturn(3L);
+        when(mAnqpCache.getCacheEvictionCount()).thenReturn(1L);
+        mManager.updateMetrics();
+        verify(mWifiMetrics).incrementPasspointAnqpCacheStats(5L, 3L, 1L);
+
+        when(mAnqpCache.getCacheHitCount()).thenReturn(7L);
+        when(mAnqpCache.getCacheMissCount()).thenReturn(3L);
+        when(mAnqpCache.getCacheEvictionCount()).thenReturn(4L);
+        mManager.updateMetrics();
+        verify(mWifiMetrics).incrementPasspointAnqpCacheStats(2L, 0L, 3L);
+
+        mManager.updateMetrics();
+        verify(mWifiMetrics).incrementPasspointAnqpCacheStats(0L, 0L, 0L);
+    }
+
     /**
      * Verify Passpoint Manager's provisioning APIs by invoking methods in PasspointProvisioner for
      * initiailization and provisioning a provider.
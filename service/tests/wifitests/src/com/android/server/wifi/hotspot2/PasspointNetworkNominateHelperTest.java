@@ -198,7 +198,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
     public void evaluateScansWithNoMatch() {
         List<ScanDetail> scanDetails = Arrays.asList(generateScanDetail(TEST_SSID1, TEST_BSSID1),
                 generateScanDetail(TEST_SSID2, TEST_BSSID2));
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(null);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(null);
         List<Pair<ScanDetail, WifiConfiguration>> candidates = mNominateHelper
                 .getPasspointNetworkCandidates(scanDetails, false);
         assertTrue(candidates.isEmpty());
@@ -222,7 +222,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
                 .getPasspointNetworkCandidates(scanDetails, false);
         assertTrue(candidates.isEmpty());
         // Verify that no provider matching is performed.
-        verify(mPasspointManager, never()).matchProvider(any(ScanResult.class));
+        verify(mPasspointManager, never()).matchProvider(any(ScanDetail.class));
     }
 
     /**
@@ -244,7 +244,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
 
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and a null (no match) for
         // for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider)
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider)
                 .thenReturn(null);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
@@ -272,7 +272,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
                 eq(TEST_NETWORK_ID), any(ScanDetail.class));
 
         // When Scan results time out, should be not candidate return.
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         candidates = mNominateHelper
                 .getPasspointNetworkCandidates(Collections.emptyList(), false);
         assertTrue(candidates.isEmpty());
@@ -299,7 +299,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
 
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and a null (no match) for
         // for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider)
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider)
                 .thenReturn(null);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
@@ -341,7 +341,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
 
         // Return roamingProvider for the first ScanDetail (TEST_SSID1) and a null (no match) for
         // for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(roamingProvider)
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(roamingProvider)
                 .thenReturn(null);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(), any(),
                 eq(false)))
@@ -388,7 +388,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
 
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and
         // roamingProvider for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class)))
+        when(mPasspointManager.matchProvider(any(ScanDetail.class)))
                 .thenReturn(homeProvider).thenReturn(roamingProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
@@ -421,7 +421,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         PasspointProvider testProvider = generateProvider(config);
         List<Pair<PasspointProvider, PasspointMatch>> homeProvider = new ArrayList<>();
         homeProvider.add(Pair.create(testProvider, PasspointMatch.HomeProvider));
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(testProvider.isSimCredential()).thenReturn(true);
         // SIM is present
         when(mSubscriptionManager.getCompleteActiveSubscriptionInfoList())
@@ -456,7 +456,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         String currentBssid = TEST_BSSID1;
 
         // Match the current connected network to a home provider.
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
         when(mWifiConfigManager.getConfiguredNetwork(TEST_NETWORK_ID)).thenReturn(currentNetwork);
@@ -505,7 +505,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
 
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and a null (no match) for
         // for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider)
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider)
                 .thenReturn(null);
         when(mWifiConfigManager.getConfiguredNetwork(anyString())).thenReturn(disableConfig);
 
@@ -529,7 +529,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         homeProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
 
         // Return homeProvider for the first ScanDetail (TEST_SSID1).
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
         when(mWifiConfigManager.getConfiguredNetwork(TEST_NETWORK_ID)).thenReturn(TEST_CONFIG1);
@@ -554,7 +554,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         List<Pair<PasspointProvider, PasspointMatch>> homeProvider = new ArrayList<>();
         homeProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
                 .thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID + 1));
@@ -563,7 +563,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         HSWanMetricsElement wm = mock(HSWanMetricsElement.class);
         Map<ANQPElementType, ANQPElement> anqpElements = new HashMap<>();
         anqpElements.put(ANQPElementType.HSWANMetrics, wm);
-        when(mPasspointManager.getANQPElements(scanDetails.get(0).getScanResult()))
+        when(mPasspointManager.getANQPElements(scanDetails.get(0)))
                 .thenReturn(anqpElements);
         when(wm.getStatus()).thenReturn(HSWanMetricsElement.LINK_STATUS_DOWN);
         when(wm.isElementInitialized()).thenReturn(true);
@@ -588,7 +588,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         List<Pair<PasspointProvider, PasspointMatch>> homeProvider = new ArrayList<>();
         homeProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
                 .thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID + 1));
@@ -597,7 +597,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         HSWanMetricsElement wm = mock(HSWanMetricsElement.class);
         Map<ANQPElementType, ANQPElement> anqpElements = new HashMap<>();
         anqpElements.put(ANQPElementType.HSWANMetrics, wm);
-        when(mPasspointManager.getANQPElements(scanDetails.get(0).getScanResult()))
+        when(mPasspointManager.getANQPElements(scanDetails.get(0)))
                 .thenReturn(anqpElements);
         when(wm.getStatus()).thenReturn(HSWanMetricsElement.LINK_STATUS_DOWN);
         when(wm.isElementInitialized()).thenReturn(true);
@@ -626,7 +626,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         List<Pair<PasspointProvider, PasspointMatch>> homeProvider = new ArrayList<>();
         homeProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
                 .thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID + 1));
@@ -635,7 +635,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         HSWanMetricsElement wm = mock(HSWanMetricsElement.class);
         Map<ANQPElementType, ANQPElement> anqpElements = new HashMap<>();
         anqpElements.put(ANQPElementType.HSWANMetrics, wm);
-        when(mPasspointManager.getANQPElements(scanDetails.get(0).getScanResult()))
+        when(mPasspointManager.getANQPElements(scanDetails.get(0)))
                 .thenReturn(anqpElements);
         when(wm.getStatus()).thenReturn(HSWanMetricsElement.LINK_STATUS_DOWN);
         when(wm.isElementInitialized()).thenReturn(true);
@@ -662,7 +662,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         roamingProvider.add(Pair.create(sTestProvider1, PasspointMatch.RoamingProvider));
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and
         // roamingProvider for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class)))
+        when(mPasspointManager.matchProvider(any(ScanDetail.class)))
                 .thenReturn(roamingProvider).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
@@ -694,7 +694,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         roamingProvider.add(Pair.create(sTestProvider2, PasspointMatch.RoamingProvider));
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and
         // roamingProvider for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class)))
+        when(mPasspointManager.matchProvider(any(ScanDetail.class)))
                 .thenReturn(homeProvider).thenReturn(roamingProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
@@ -731,7 +731,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         List<Pair<PasspointProvider, PasspointMatch>> homeProviders = new ArrayList<>();
         homeProviders.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
         homeProviders.add(Pair.create(suggestionProvider, PasspointMatch.HomeProvider));
-        when(mPasspointManager.matchProvider(any(ScanResult.class)))
+        when(mPasspointManager.matchProvider(any(ScanDetail.class)))
                 .thenReturn(homeProviders);
         when(mWifiConfigManager.addOrUpdateNetwork(eq(TEST_CONFIG1), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
@@ -774,7 +774,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
                 .getPasspointNetworkCandidates(scanDetails, false);
         assertTrue(candidates.isEmpty());
         // Verify that no provider matching is performed.
-        verify(mPasspointManager, never()).matchProvider(any(ScanResult.class));
+        verify(mPasspointManager, never()).matchProvider(any(ScanDetail.class));
     }
 
     /**
@@ -793,7 +793,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
 
         // Return homeProvider for the first ScanDetail (TEST_SSID1) and a null (no match) for
         // for the second (TEST_SSID2);
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider)
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider)
                 .thenReturn(null);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
@@ -816,7 +816,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         List<Pair<PasspointProvider, PasspointMatch>> homeProvider = new ArrayList<>();
         homeProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
         when(mWifiConfigManager.getConfiguredNetwork(TEST_NETWORK_ID)).thenReturn(TEST_CONFIG1);
@@ -828,7 +828,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         HSWanMetricsElement wanMetricsElement = HSWanMetricsElement.parse(buffer);
         Map<ANQPElementType, ANQPElement> anqpElements = new HashMap<>();
         anqpElements.put(ANQPElementType.HSWANMetrics, wanMetricsElement);
-        when(mPasspointManager.getANQPElements(any(ScanResult.class)))
+        when(mPasspointManager.getANQPElements(any(ScanDetail.class)))
                 .thenReturn(anqpElements);
 
         List<Pair<ScanDetail, WifiConfiguration>> candidates = mNominateHelper
@@ -847,17 +847,17 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         // No profiles have been added, so expect the first candidate matching to return nothing.
         assertEquals(mNominateHelper.getPasspointNetworkCandidates(
                 scanDetails, false).size(), 0);
-        verify(mPasspointManager, times(1)).matchProvider(any());
+        verify(mPasspointManager, times(1)).matchProvider(any(ScanDetail.class));
 
         // Add a homeProvider for the scan detail passed in earlier
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
         when(mWifiConfigManager.getConfiguredNetwork(TEST_NETWORK_ID)).thenReturn(TEST_CONFIG1);
 
         // Refreshing the network candidates with the cached scans should now result in a match
         mNominateHelper.refreshWifiConfigsForProviders();
-        verify(mPasspointManager, times(2)).matchProvider(any());
+        verify(mPasspointManager, times(2)).matchProvider(any(ScanDetail.class));
         // Verify the content of the WifiConfiguration that was added to WifiConfigManager.
         ArgumentCaptor<WifiConfiguration> addedConfig =
                 ArgumentCaptor.forClass(WifiConfiguration.class);
@@ -878,7 +878,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         // Timeout the scan detail and verify we don't try to match the scan detail again.
         advanceClockMs(PasspointNetworkNominateHelper.SCAN_DETAIL_EXPIRATION_MS);
         mNominateHelper.refreshWifiConfigsForProviders();
-        verify(mPasspointManager, times(2)).matchProvider(any());
+        verify(mPasspointManager, times(2)).matchProvider(any(ScanDetail.class));
         verify(mWifiConfigManager, times(1)).addOrUpdateNetwork(any(), anyInt(),
                 any(), eq(false));
     }
@@ -894,7 +894,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         List<Pair<PasspointProvider, PasspointMatch>> homeProvider = new ArrayList<>();
         homeProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(homeProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(homeProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID));
         when(mWifiConfigManager.getConfiguredNetwork(anyInt())).thenReturn(TEST_CONFIG1);
@@ -902,7 +902,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         HSWanMetricsElement wm = mock(HSWanMetricsElement.class);
         Map<ANQPElementType, ANQPElement> anqpElements = new HashMap<>();
         anqpElements.put(ANQPElementType.HSWANMetrics, wm);
-        when(mPasspointManager.getANQPElements(any(ScanResult.class)))
+        when(mPasspointManager.getANQPElements(any(ScanDetail.class)))
                 .thenReturn(anqpElements);
         when(wm.getStatus()).thenReturn(HSWanMetricsElement.LINK_STATUS_DOWN);
         when(wm.isElementInitialized()).thenReturn(true);
@@ -926,7 +926,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         matchedProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
         matchedProvider.add(Pair.create(sTestProvider2, PasspointMatch.RoamingProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(matchedProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(matchedProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
                 .thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID2));
@@ -961,7 +961,7 @@ public class PasspointNetworkNominateHelperTest extends WifiBaseTest {
         matchedProvider.add(Pair.create(sTestProvider1, PasspointMatch.HomeProvider));
         matchedProvider.add(Pair.create(sTestProvider2, PasspointMatch.RoamingProvider));
 
-        when(mPasspointManager.matchProvider(any(ScanResult.class))).thenReturn(matchedProvider);
+        when(mPasspointManager.matchProvider(any(ScanDetail.class))).thenReturn(matchedProvider);
         when(mWifiConfigManager.addOrUpdateNetwork(any(WifiConfiguration.class), anyInt(),
                 any(), eq(false))).thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID))
                 .thenReturn(new NetworkUpdateResult(TEST_NETWORK_ID2));
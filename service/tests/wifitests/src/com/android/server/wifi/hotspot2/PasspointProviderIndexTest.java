@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.hotspot2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.CellularNetwork;
+import com.android.server.wifi.hotspot2.anqp.Constants.ANQPElementType;
+import com.android.server.wifi.hotspot2.anqp.DomainNameElement;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmData;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmElement;
+import com.android.server.wifi.hotspot2.anqp.RoamingConsortiumElement;
+import com.android.server.wifi.hotspot2.anqp.ThreeGPPNetworkElement;
+import com.android.server.wifi.util.InformationElementUtil.RoamingConsortium;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.hotspot2.PasspointProviderIndex}.
+ */
+@SmallTest
+public class PasspointProviderIndexTest extends WifiBaseTest {
+    private static final String TEST_PROVIDER_1 = "provider1";
+    private static final String TEST_PROVIDER_2 = "provider2";
+    private static final String TEST_PROVIDER_3 = "provider3";
+    private static final String TEST_FQDN = "test.com";
+    private static final String TEST_REALM = "realm.com";
+    private static final long TEST_OI = 0x1234L;
+    private static final String TEST_PLMN = "123456";
+
+    @Mock RoamingConsortium mRoamingConsortium;
+    PasspointProviderIndex mIndex;
+    Map<ANQPElementType, ANQPElement> mAnqpElements;
+
+    /**
+     * Sets up test.
+     */
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        when(mRoamingConsortium.getRoamingConsortiums()).thenReturn(null);
+        mIndex = new PasspointProviderIndex();
+        mAnqpElements = new HashMap<>();
+        mIndex.addProvider(TEST_PROVIDER_1, createKeys(Arrays.asList(TEST_FQDN),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+        mIndex.addProvider(TEST_PROVIDER_2, createKeys(Collections.emptyList(),
+                Arrays.asList(TEST_REALM), Arrays.asList(TEST_OI), Collections.emptyList()));
+        mIndex.addProvider(TEST_PROVIDER_3, createKeys(Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Arrays.asList(TEST_PLMN)));
+    }
+
+    private static PasspointProviderIndex.Keys createKeys(List<String> domains,
+            List<String> realms, List<Long> ois, List<String> plmns) {
+        return new PasspointProviderIndex.Keys(domains, realms, ois, plmns);
+    }
+
+    private Set<String> getCandidates() {
+        return mIndex.getCandidateProviders(mAnqpElements, mRoamingConsortium);
+    }
+
+    /**
+     * Verify that no provider is a candidate for an AP without any matching ANQP element.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void noCandidateWithoutAnqpElements() throws Exception {
+        assertTrue(getCandidates().isEmpty());
+    }
+
+    /**
+     * Verify that a provider is a candidate for an AP advertising its FQDN or a sub-domain of it,
+     * ignoring case.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void matchDomainAndSubDomain() throws Exception {
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList("WLAN.Test.com")));
+        assertEquals(Set.of(TEST_PROVIDER_1), getCandidates());
+
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList("com", "othertest.com")));
+        assertTrue(getCandidates().isEmpty());
+    }
+
+    /**
+     * Verify that a provider is a candidate for an AP advertising its realm, or any of its OIs
+     * either in the ANQP element or in the Roaming Consortium IE.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void matchRealmAndOis() throws Exception {
+        mAnqpElements.put(ANQPElementType.ANQPNAIRealm, new NAIRealmElement(Arrays.asList(
+                new NAIRealmData(Arrays.asList("sub." + TEST_REALM), null))));
+        assertEquals(Set.of(TEST_PROVIDER_2), getCandidates());
+
+        mAnqpElements.clear();
+        mAnqpElements.put(ANQPElementType.ANQPRoamingConsortium,
+                new RoamingConsortiumElement(Arrays.asList(TEST_OI)));
+        assertEquals(Set.of(TEST_PROVIDER_2), getCandidates());
+
+        mAnqpElements.clear();
+        when(mRoamingConsortium.getRoamingConsortiums()).thenReturn(new long[] {TEST_OI});
+        assertEquals(Set.of(TEST_PROVIDER_2), getCandidates());
+    }
+
+    /**
+     * Verify that a provider is a candidate for an AP advertising its PLMN, either in the 3GPP
+     * Network ANQP element or as a 3GPP network domain.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void matchPlmn() throws Exception {
+        mAnqpElements.put(ANQPElementType.ANQP3GPPNetwork, new ThreeGPPNetworkElement(
+                Arrays.asList(new CellularNetwork(Arrays.asList(TEST_PLMN)))));
+        assertEquals(Set.of(TEST_PROVIDER_3), getCandidates());
+
+        mAnqpElements.clear();
+        mAnqpElements.put(ANQPElementType.ANQPDomName, new DomainNameElement(
+                Arrays.asList("wlan.mnc456.mcc123.3gppnetwork.org")));
+        assertEquals(Set.of(TEST_PROVIDER_3), getCandidates());
+    }
+
+    /**
+     * Verify that a provider without keys is a candidate for every AP, and that removed or
+     * updated providers are no longer indexed under their old keys.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void addUpdateAndRemoveProviders() throws Exception {
+        mIndex.addProvider("unindexed", null);
+        assertEquals(Set.of("unindexed"), getCandidates());
+
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList(TEST_FQDN)));
+        assertEquals(Set.of(TEST_PROVIDER_1, "unindexed"), getCandidates());
+
+        mIndex.addProvider(TEST_PROVIDER_1, createKeys(Arrays.asList("updated.com"),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+        mIndex.removeProvider("unindexed");
+        assertTrue(getCandidates().isEmpty());
+
+        mIndex.clear();
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList("updated.com")));
+        assertTrue(getCandidates().isEmpty());
+    }
+}
@@ -655,6 +655,27 @@ public class PasspointProviderTest extends WifiBaseTest {
         assertTrue(mProvider.getRemediationCaCertificateAlias() == null);
     }
 
+    /**
+     * Verify that the index keys of a provider cover its FQDN, other home partners, realm, OIs
+     * and the MCC-MNCs of its IMSI parameter.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void getIndexKeys() throws Exception {
+        PasspointConfiguration config = generateTestPasspointConfiguration(
+                CredentialType.SIM, false);
+        config.getHomeSp().setOtherHomePartners(new String[] {TEST_FQDN2});
+        config.getHomeSp().setMatchAnyOis(new long[] {0x5678L});
+        mProvider = createProvider(config);
+
+        PasspointProviderIndex.Keys keys = mProvider.getIndexKeys();
+        assertEquals(Arrays.asList(TEST_FQDN, TEST_FQDN2), keys.domains);
+        assertEquals(Arrays.asList(TEST_REALM), keys.realms);
+        assertEquals(Arrays.asList(0x5678L, 0x1234L, 0x2345L), keys.ois);
+        assertEquals(Arrays.asList("12345", "123456"), keys.plmns);
+    }
+
     /**
      * Verify that a provider is a home provider when its FQDN matches a domain name in the Domain
      * Name ANQP element and no NAI realm is provided.
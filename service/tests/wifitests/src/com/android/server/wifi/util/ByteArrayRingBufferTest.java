@@ -16,9 +16,9 @@
 
 package com.android.server.wifi.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import androidx.test.filters.SmallTest;
@@ -46,7 +46,7 @@ public class ByteArrayRingBufferTest extends WifiBaseTest {
         final byte[] data = {0};
         assertTrue(rb.appendBuffer(data));
         assertEquals(1, rb.getNumBuffers());
-        assertSame(data, rb.getBuffer(0));
+        assertArrayEquals(data, rb.getBuffer(0));
     }
 
     @Test
@@ -57,8 +57,8 @@ public class ByteArrayRingBufferTest extends WifiBaseTest {
         assertTrue(rb.appendBuffer(data1));
         assertTrue(rb.appendBuffer(data2));
         assertEquals(2, rb.getNumBuffers());
-        assertSame(data1, rb.getBuffer(0));
-        assertSame(data2, rb.getBuffer(1));
+        assertArrayEquals(data1, rb.getBuffer(0));
+        assertArrayEquals(data2, rb.getBuffer(1));
     }
 
     @Test
@@ -98,7 +98,7 @@ public class ByteArrayRingBufferTest extends WifiBaseTest {
         final byte[] data2 = {11};
         assertTrue(rb.appendBuffer(data2));
         assertEquals(1, rb.getNumBuffers());
-        assertSame(data2, rb.getBuffer(0));
+        assertArrayEquals(data2, rb.getBuffer(0));
     }
 
     @Test
@@ -112,7 +112,7 @@ public class ByteArrayRingBufferTest extends WifiBaseTest {
         final byte[] data3 = {11, 12, 13, 14, 15, 16};
         assertTrue(rb.appendBuffer(data3));
         assertEquals(1, rb.getNumBuffers());
-        assertSame(data3, rb.getBuffer(0));
+        assertArrayEquals(data3, rb.getBuffer(0));
     }
 
     @Test
@@ -137,8 +137,8 @@ public class ByteArrayRingBufferTest extends WifiBaseTest {
         final byte[] data3 = {11};
         assertTrue(rb.appendBuffer(data3));
         assertEquals(2, rb.getNumBuffers());
-        assertSame(data2, rb.getBuffer(0));
-        assertSame(data3, rb.getBuffer(1));
+        assertArrayEquals(data2, rb.getBuffer(0));
+        assertArrayEquals(data3, rb.getBuffer(1));
     }
 
     @Test
@@ -180,6 +180,81 @@ public class ByteArrayRingBufferTest extends WifiBaseTest {
         assertEquals(2, rb.getNumBuffers());
     }
 
+    @Test
+    public void appendCopiesData() {
+        final ByteArrayRingBuffer rb = new ByteArrayRingBuffer(MAX_BYTES);
+        final byte[] data = {1, 2, 3};
+        assertTrue(rb.appendBuffer(data));
+        data[0] = 4;
+        assertArrayEquals(new byte[] {1, 2, 3}, rb.getBuffer(0));
+    }
+
+    @Test
+    public void elementsWrappingAroundTheEndAreRetrievedInOrder() {
+        final ByteArrayRingBuffer rb = new ByteArrayRingBuffer(MAX_BYTES);
+        assertTrue(rb.appendBuffer(new byte[] {1, 2, 3, 4}));
+        assertTrue(rb.appendBuffer(new byte[] {5, 6, 7, 8}));
+        // Only 2 bytes are left at the end, so this element wraps around.
+        assertTrue(rb.appendBuffer(new byte[] {9, 10, 11, 12}));
+        assertEquals(2, rb.getNumBuffers());
+        assertArrayEquals(new byte[] {5, 6, 7, 8}, rb.getBuffer(0));
+        assertArrayEquals(new byte[] {9, 10, 11, 12}, rb.getBuffer(1));
+
+        // Resizing keeps the wrapped element intact.
+        rb.resize(MAX_BYTES * 2);
+        assertArrayEquals(new byte[] {5, 6, 7, 8}, rb.getBuffer(0));
+        assertArrayEquals(new byte[] {9, 10, 11, 12}, rb.getBuffer(1));
+    }
+
+    @Test
+    public void canHoldManySmallElements() {
+        final ByteArrayRingBuffer rb = new ByteArrayRingBuffer(MAX_BYTES * 10);
+        for (int i = 0; i < MAX_BYTES * 20; i++) {
+            assertTrue(rb.appendBuffer(new byte[] {(byte) i}));
+        }
+        assertEquals(MAX_BYTES * 10, rb.getNumBuffers());
+        for (int i = 0; i < rb.getNumBuffers(); i++) {
+            assertArrayEquals(new byte[] {(byte) (MAX_BYTES * 10 + i)}, rb.getBuffer(i));
+        }
+    }
+
+    @Test
+    public void backingArrayGrowsOnlyWithData() {
+        final int maxBytes = 1024 * 1024;
+        final ByteArrayRingBuffer rb = new ByteArrayRingBuffer(maxBytes);
+        assertEquals(0, rb.getCapacityBytes());
+
+        assertTrue(rb.appendBuffer(new byte[] {1, 2, 3}));
+        assertTrue(rb.getCapacityBytes() < maxBytes / 100);
+
+        byte[] largeBuffer = new byte[maxBytes / 4];
+        largeBuffer[0] = 4;
+        assertTrue(rb.appendBuffer(largeBuffer));
+        assertTrue(rb.getCapacityBytes() < maxBytes);
+        assertArrayEquals(new byte[] {1, 2, 3}, rb.getBuffer(0));
+        assertArrayEquals(largeBuffer, rb.getBuffer(1));
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(rb.appendBuffer(largeBuffer));
+        }
+        assertEquals(maxBytes, rb.getCapacityBytes());
+        assertEquals(4, rb.getNumBuffers());
+    }
+
+    @Test
+    public void resizeShrinksBackingArray() {
+        final ByteArrayRingBuffer rb = new ByteArrayRingBuffer(MAX_BYTES * 2);
+        for (int i = 0; i < MAX_BYTES * 2; i++) {
+            assertTrue(rb.appendBuffer(new byte[] {(byte) i}));
+        }
+        assertEquals(MAX_BYTES * 2, rb.getCapacityBytes());
+
+        rb.resize(MAX_BYTES);
+        assertEquals(MAX_BYTES, rb.getCapacityBytes());
+        assertEquals(MAX_BYTES, rb.getNumBuffers());
+        assertArrayEquals(new byte[] {(byte) MAX_BYTES}, rb.getBuffer(0));
+    }
+
     /** Verifies that we don't crash when shrinking an empty buffer. */
     @Test
     public void shrinkingEmptyBufferSucceeds() {
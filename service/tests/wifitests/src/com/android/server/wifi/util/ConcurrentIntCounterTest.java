@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static com.android.server.wifi.WifiMetricsTestUtil.assertKeyCountsEqual;
+import static com.android.server.wifi.WifiMetricsTestUtil.buildInt32Count;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.proto.nano.WifiMetricsProto.Int32Count;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for ConcurrentIntCounter.
+ */
+@SmallTest
+public class ConcurrentIntCounterTest extends WifiBaseTest {
+    private static final String TAG = "ConcurrentIntCounterTest";
+
+    private static final int[] TEST_KEYS = {
+            100, 20, 34, 5656, 3535, 6456, -1231, -4235, 20, 3535, -5, 100, 6456, 34, -4235, -4235
+    };
+
+    /**
+     * Tests when the counter is empty.
+     */
+    @Test
+    public void testEmpty() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter();
+        assertKeyCountsEqual(new Int32Count[0], counter.toProto());
+    }
+
+    /**
+     * Tests that the snapshot matches an IntCounter recorded with the same keys.
+     */
+    @Test
+    public void testSnapshotMatchesIntCounter() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter();
+        IntCounter expected = new IntCounter();
+        for (int k : TEST_KEYS) {
+            counter.increment(k);
+            expected.increment(k);
+        }
+        counter.add(0, 5);
+        expected.add(0, 5);
+
+        assertKeyCountsEqual(expected.toProto(), counter.toProto());
+        assertEquals(expected.toString(), counter.toString());
+    }
+
+    /**
+     * Tests that keys are clamped to the bounds.
+     */
+    @Test
+    public void testBounds() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter(-50, 50, 16);
+        for (int k : TEST_KEYS) {
+            counter.increment(k);
+        }
+
+        Int32Count[] expected = {
+                buildInt32Count(-50, 4),
+                buildInt32Count(-5, 1),
+                buildInt32Count(20, 2),
+                buildInt32Count(34, 2),
+                buildInt32Count(50, 7),
+        };
+        assertKeyCountsEqual(expected, counter.toProto());
+        assertEquals(-50, counter.toIntCounter().keyLowerBound);
+        assertEquals(50, counter.toIntCounter().keyUpperBound);
+    }
+
+    /**
+     * Tests that clear() resets the counts, and that keys can be recorded again afterwards.
+     */
+    @Test
+    public void testClear() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter();
+        counter.increment(1);
+        counter.increment(2);
+        counter.clear();
+        assertKeyCountsEqual(new Int32Count[0], counter.toProto());
+
+        counter.increment(2);
+        assertKeyCountsEqual(new Int32Count[] {buildInt32Count(2, 1)}, counter.toProto());
+    }
+
+    /**
+     * Tests that getAndReset() returns the counts and the dropped occurrences are reset, and that
+     * later occurrences are only part of the next call.
+     */
+    @Test
+    public void testGetAndReset() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter(Integer.MIN_VALUE,
+                Integer.MAX_VALUE, 2);
+        counter.increment(1);
+        counter.add(2, 4);
+        counter.increment(3);
+
+        IntCounter previous = counter.getAndReset();
+        counter.increment(2);
+
+        assertEquals(2, previous.size());
+        assertEquals(1, previous.get(1));
+        assertEquals(4, previous.get(2));
+        assertEquals(0, counter.getDroppedCount());
+        assertKeyCountsEqual(new Int32Count[] {buildInt32Count(2, 1)},
+                counter.getAndReset().toProto());
+        assertKeyCountsEqual(new Int32Count[0], counter.toProto());
+    }
+
+    /**
+     * Tests that occurrences of keys which do not fit in the table are counted as dropped, until
+     * the counter is cleared.
+     */
+    @Test
+    public void testFullTableCountsDroppedOccurrences() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter(Integer.MIN_VALUE,
+                Integer.MAX_VALUE, 4);
+        for (int k = 0; k < 4; k++) {
+            counter.increment(k);
+        }
+        counter.add(4, 3);
+        counter.increment(0);
+
+        assertEquals(4, counter.toIntCounter().size());
+        assertEquals(2, counter.toIntCounter().get(0));
+        assertEquals(3, counter.getDroppedCount());
+
+        counter.clear();
+        assertEquals(0, counter.getDroppedCount());
+
+        // Keys are forgotten on clear(), so new keys fit again.
+        for (int k = 4; k < 8; k++) {
+            counter.increment(k);
+        }
+        assertEquals(4, counter.toIntCounter().size());
+        assertEquals(1, counter.toIntCounter().get(4));
+        assertEquals(0, counter.getDroppedCount());
+    }
+
+    /**
+     * Records from several threads while another thread keeps taking snapshots, and checks that
+     * no occurrence is lost. Also logs the recording cost next to an IntCounter guarded by a lock
+     * which the snapshot thread holds, like WifiMetrics does when dumping.
+     */
+    @Test
+    public void testConcurrentRecordingWhileSnapshotting() throws Exception {
+        final int numThreads = 4;
+        final int numIncrements = 20000;
+        final int[] keys = {6, 12, 24, 54, 144, 286, 433, 866, 1201, 2401};
+
+        ConcurrentIntCounter concurrentCounter = new ConcurrentIntCounter();
+        long concurrentNanos = recordWhileSnapshotting(numThreads, numIncrements, keys,
+                concurrentCounter::increment, () -> concurrentCounter.toProto());
+
+        final Object lock = new Object();
+        IntCounter lockedCounter = new IntCounter();
+        long lockedNanos = recordWhileSnapshotting(numThreads, numIncrements, keys,
+                key -> {
+                    synchronized (lock) {
+                        lockedCounter.increment(key);
+                    }
+                },
+                () -> {
+                    synchronized (lock) {
+                        lockedCounter.toProto();
+                    }
+                });
+
+        Log.i(TAG, "Recording under concurrent snapshots: lock-free "
+                + concurrentNanos / (numThreads * numIncrements) + " ns/op, locked "
+                + lockedNanos / (numThreads * numIncrements) + " ns/op");
+
+        IntCounter snapshot = concurrentCounter.toIntCounter();
+        assertEquals(keys.length, snapshot.size());
+        for (int key : keys) {
+            assertEquals(numThreads * numIncrements / keys.length, snapshot.get(key));
+        }
+        assertEquals(0, concurrentCounter.getDroppedCount());
+    }
+
+    private interface Recorder {
+        void record(int key);
+    }
+
+    /** Returns the wall time spent by the recording threads. */
+    private static long recordWhileSnapshotting(int numThreads, int numIncrements, int[] keys,
+            Recorder recorder, Runnable snapshot) throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread snapshotThread = new Thread(() -> {
+            while (!done.get()) {
+                snapshot.run();
+            }
+        });
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < numIncrements; i++) {
+                    recorder.record(keys[i % keys.length]);
+                }
+            });
+        }
+        snapshotThread.start();
+        long startNanos = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        done.set(true);
+        snapshotThread.join();
+        return elapsedNanos;
+    }
+}
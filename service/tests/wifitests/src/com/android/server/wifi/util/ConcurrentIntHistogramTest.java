@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static com.android.server.wifi.WifiMetricsTestUtil.assertHistogramBucketsEqual;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.proto.nano.WifiMetricsProto.HistogramBucketInt32;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for ConcurrentIntHistogram.
+ */
+@SmallTest
+public class ConcurrentIntHistogramTest extends WifiBaseTest {
+    private static final int[] TEST_BUCKET_BOUNDARIES = {10, 30, 60, 100};
+    private static final int[] TEST_VALUES = {
+            Integer.MIN_VALUE, -5, 0, 9, 10, 20, 30, 59, 60, 99, 100, 1000, Integer.MAX_VALUE
+    };
+
+    /**
+     * Tests when the histogram is empty.
+     */
+    @Test
+    public void testEmpty() {
+        ConcurrentIntHistogram histogram = new ConcurrentIntHistogram(TEST_BUCKET_BOUNDARIES);
+        assertHistogramBucketsEqual(new HistogramBucketInt32[0], histogram.toProto());
+        assertEquals("{}", histogram.toString());
+    }
+
+    /**
+     * Tests that the snapshot matches an IntHistogram recorded with the same values.
+     */
+    @Test
+    public void testSnapshotMatchesIntHistogram() {
+        ConcurrentIntHistogram histogram = new ConcurrentIntHistogram(TEST_BUCKET_BOUNDARIES);
+        IntHistogram expected = new IntHistogram(TEST_BUCKET_BOUNDARIES);
+        for (int value : TEST_VALUES) {
+            histogram.increment(value);
+            expected.increment(value);
+        }
+        histogram.add(45, 7);
+        expected.add(45, 7);
+
+        assertHistogramBucketsEqual(expected.toProto(), histogram.toProto());
+        assertEquals(expected.toString(), histogram.toString());
+    }
+
+    /**
+     * Tests that clear() resets all buckets.
+     */
+    @Test
+    public void testClear() {
+        ConcurrentIntHistogram histogram = new ConcurrentIntHistogram(TEST_BUCKET_BOUNDARIES);
+        histogram.increment(5);
+        histogram.increment(500);
+        histogram.clear();
+        assertHistogramBucketsEqual(new HistogramBucketInt32[0], histogram.toProto());
+    }
+
+    /**
+     * Tests that getAndReset() returns the buckets and resets them.
+     */
+    @Test
+    public void testGetAndReset() {
+        ConcurrentIntHistogram histogram = new ConcurrentIntHistogram(TEST_BUCKET_BOUNDARIES);
+        IntHistogram expected = new IntHistogram(TEST_BUCKET_BOUNDARIES);
+        for (int value : TEST_VALUES) {
+            histogram.increment(value);
+            expected.increment(value);
+        }
+
+        assertHistogramBucketsEqual(expected.toProto(), histogram.getAndReset().toProto());
+        assertHistogramBucketsEqual(new HistogramBucketInt32[0], histogram.toProto());
+    }
+
+    /**
+     * Tests that invalid bucket boundaries are rejected like in IntHistogram.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonMonotonicBoundariesThrows() {
+        new ConcurrentIntHistogram(new int[] {10, 30, 30});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyBoundariesThrows() {
+        new ConcurrentIntHistogram(new int[0]);
+    }
+
+    /**
+     * Tests that concurrent recordings are all counted.
+     */
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final int numIncrements = 10000;
+        ConcurrentIntHistogram histogram = new ConcurrentIntHistogram(TEST_BUCKET_BOUNDARIES);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < numIncrements; i++) {
+                    histogram.increment(i % 200);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int total = 0;
+        for (IntHistogram.Bucket bucket : histogram.toIntHistogram()) {
+            total += bucket.count;
+        }
+        assertEquals(threads.length * numIncrements, total);
+    }
+
+    /**
+     * Tests that no value is lost when getAndReset() is called while values are being recorded.
+     */
+    @Test
+    public void testConcurrentRecordingWhileResetting() throws Exception {
+        final int numIncrements = 10000;
+        ConcurrentIntHistogram histogram = new ConcurrentIntHistogram(TEST_BUCKET_BOUNDARIES);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < numIncrements; i++) {
+                    histogram.increment(i % 200);
+                }
+            });
+            threads[t].start();
+        }
+        int total = 0;
+        boolean recording = true;
+        while (recording) {
+            recording = false;
+            for (Thread thread : threads) {
+                recording |= thread.isAlive();
+            }
+            for (IntHistogram.Bucket bucket : histogram.getAndReset()) {
+                total += bucket.count;
+            }
+        }
+        assertEquals(threads.length * numIncrements, total);
+    }
+}
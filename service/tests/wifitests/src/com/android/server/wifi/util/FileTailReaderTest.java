@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.FileTailReader}, using a local file in place
+ * of the kernel trace buffer. Like the kernel trace file, the file is overwritten with the current
+ * content of the ring buffer rather than appended to.
+ */
+@SmallTest
+public class FileTailReaderTest extends WifiBaseTest {
+    private static final int WINDOW_SIZE_BYTES = 16;
+
+    private File mTraceFile;
+    private FileTailReader mReader;
+
+    @Before
+    public void setUp() throws Exception {
+        mTraceFile = File.createTempFile("file-tail-reader-trace", null);
+        mTraceFile.deleteOnExit();
+        mReader = new FileTailReader(mTraceFile.getPath(), WINDOW_SIZE_BYTES);
+    }
+
+    private void write(String data) throws IOException {
+        FileUtils.stringToFile(mTraceFile.getPath(), data);
+    }
+
+    private String snapshot() {
+        return new String(mReader.snapshot(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Verify that each poll only adds the lines which follow the last line seen previously.
+     */
+    @Test
+    public void pollAddsNewLinesOnce() throws Exception {
+        mReader.poll();
+        assertEquals("", snapshot());
+
+        write("a\n");
+        mReader.poll();
+        assertEquals("a\n", snapshot());
+
+        mReader.poll();
+        assertEquals("a\n", snapshot());
+
+        write("a\nb\n");
+        mReader.poll();
+        assertEquals("a\nb\n", snapshot());
+    }
+
+    /**
+     * Verify that lines are not duplicated when older lines leave the file.
+     */
+    @Test
+    public void slidingFileOnlyAddsNewLines() throws Exception {
+        write("a\nb\n");
+        mReader.poll();
+        write("b\nc\n");
+        mReader.poll();
+        assertEquals("a\nb\nc\n", snapshot());
+    }
+
+    /**
+     * Verify that the whole file is added when the last line seen is no longer in it.
+     */
+    @Test
+    public void wrappedFileIsAddedWhole() throws Exception {
+        write("a\nb\n");
+        mReader.poll();
+        write("x\ny\n");
+        mReader.poll();
+        assertEquals("a\nb\nx\ny\n", snapshot());
+    }
+
+    /**
+     * Verify that the last line seen is only matched as a whole line.
+     */
+    @Test
+    public void lastLineIsMatchedAsWholeLine() throws Exception {
+        write("ab\n");
+        mReader.poll();
+        write("xab\nc\n");
+        mReader.poll();
+        assertEquals("ab\nxab\nc\n", snapshot());
+    }
+
+    /**
+     * Verify that only the most recent bytes are kept, in order, when the window wraps.
+     */
+    @Test
+    public void windowKeepsMostRecentBytes() throws Exception {
+        write("0123456789\n");
+        mReader.poll();
+        write("0123456789\nabcdefghij\n");
+        mReader.poll();
+        assertEquals("6789\nabcdefghij\n", snapshot());
+
+        write("0123456789abcdefXYZ\n");
+        mReader.poll();
+        assertEquals("456789abcdefXYZ\n", snapshot());
+    }
+
+    /**
+     * Verify that marks are inserted on their own line, in order with the file data.
+     */
+    @Test
+    public void marksAreInsertedOnTheirOwnLine() throws Exception {
+        write("a");
+        mReader.poll();
+        mReader.mark("M1");
+        write("a\nb\n");
+        mReader.poll();
+        mReader.mark("M2");
+        assertEquals("a\nM1\nb\nM2\n", snapshot());
+    }
+
+    /**
+     * Verify that a missing file throws, and is picked up once it exists.
+     */
+    @Test
+    public void missingFileIsReadOnLaterPoll() throws Exception {
+        mTraceFile.delete();
+        try {
+            mReader.poll();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        write("abc");
+        mReader.poll();
+        assertEquals("abc", snapshot());
+    }
+}
@@ -16,7 +16,9 @@
 
 package com.android.server.wifi.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import androidx.test.filters.SmallTest;
@@ -131,6 +133,108 @@ public class KalmanFilterTest extends WifiBaseTest {
         assertNotNull(kf.toString());
     }
 
+    /**
+     * Reference implementation of the filter steps, allocating a new matrix for every
+     * intermediate result.
+     */
+    private static void referencePredict(KalmanFilter kf) {
+        kf.mx = kf.mF.dot(kf.mx);
+        kf.mP = kf.mF.dot(kf.mP).dotTranspose(kf.mF).plus(kf.mQ);
+    }
+
+    private static void referenceUpdate(KalmanFilter kf, Matrix z) {
+        Matrix y = z.minus(kf.mH.dot(kf.mx));
+        Matrix tS = kf.mH.dot(kf.mP).dotTranspose(kf.mH).plus(kf.mR);
+        Matrix tK = kf.mP.dotTranspose(kf.mH).dot(tS.inverse());
+        kf.mx = kf.mx.plus(tK.dot(y));
+        kf.mP = kf.mP.minus(tK.dot(kf.mH).dot(kf.mP));
+    }
+
+    private static void assertMatrixEquals(Matrix expected, Matrix actual) {
+        assertEquals(expected.n, actual.n);
+        assertEquals(expected.m, actual.m);
+        for (int i = 0; i < expected.mem.length; i++) {
+            assertEquals(expected.mem[i], actual.mem[i], 1e-9 * Math.abs(expected.mem[i]));
+        }
+    }
+
+    /**
+     * Test that the 2-dimensional state path matches the reference implementation, and updates
+     * the state and covariance in place.
+     */
+    @Test
+    public void testTwoDimensionalMatchesReference() throws Exception {
+        Random random = new Random(mSeed);
+        KalmanFilter kf = initializePll(mStepSizeRadians, 0.5, mNoiseAmplitude);
+        KalmanFilter reference = initializePll(mStepSizeRadians, 0.5, mNoiseAmplitude);
+        Matrix x = kf.mx;
+        Matrix p = kf.mP;
+        Matrix z = new Matrix(1, 1);
+        for (int i = 0; i < mSteps; i++) {
+            z.put(0, 0, idealSignal(i) + random.nextGaussian() * mNoiseAmplitude);
+            kf.predict();
+            kf.update(z);
+            referencePredict(reference);
+            referenceUpdate(reference, z);
+            assertMatrixEquals(reference.mx, kf.mx);
+            assertMatrixEquals(reference.mP, kf.mP);
+        }
+        assertSame(x, kf.mx);
+        assertSame(p, kf.mP);
+    }
+
+    /**
+     * Sets up a filter tracking position, velocity and acceleration from 2 noisy observations.
+     */
+    private KalmanFilter initializeThreeDimensional() {
+        KalmanFilter kf = new KalmanFilter();
+        double dt = 0.5;
+        kf.mF = new Matrix(3, new double[]{
+                1.0, dt, 0.5 * dt * dt,
+                0.0, 1.0, dt,
+                0.0, 0.0, 1.0});
+        kf.mQ = new Matrix(3, new double[]{
+                0.01, 0.0, 0.0,
+                0.0, 0.01, 0.0,
+                0.0, 0.0, 0.01});
+        kf.mH = new Matrix(3, new double[]{
+                1.0, 0.0, 0.0,
+                0.0, 1.0, 0.0});
+        kf.mR = new Matrix(2, new double[]{
+                4.0, 0.5,
+                0.5, 1.0});
+        kf.mP = new Matrix(3, new double[]{
+                100.0, 0.0, 0.0,
+                0.0, 100.0, 0.0,
+                0.0, 0.0, 100.0});
+        kf.mx = new Matrix(3, 1);
+        return kf;
+    }
+
+    /**
+     * Test that the general path matches the reference implementation, and keeps the same
+     * covariance matrix across steps.
+     */
+    @Test
+    public void testGeneralMatchesReference() throws Exception {
+        Random random = new Random(mSeed);
+        KalmanFilter kf = initializeThreeDimensional();
+        KalmanFilter reference = initializeThreeDimensional();
+        Matrix p = kf.mP;
+        Matrix z = new Matrix(2, 1);
+        for (int i = 0; i < mSteps; i++) {
+            z.put(0, 0, 0.1 * i * i + random.nextGaussian() * 2.0);
+            z.put(1, 0, 0.2 * i + random.nextGaussian());
+            kf.predict();
+            kf.update(z);
+            referencePredict(reference);
+            referenceUpdate(reference, z);
+            assertMatrixEquals(reference.mx, kf.mx);
+            assertMatrixEquals(reference.mP, kf.mP);
+        }
+        assertSame(p, kf.mP);
+    }
+
     /**
      * Test that the toString method works even if the matrices have not been set.
      */
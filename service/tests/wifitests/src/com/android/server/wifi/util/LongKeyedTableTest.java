@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.*;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.LongKeyedTable}.
+ */
+@SmallTest
+public class LongKeyedTableTest extends WifiBaseTest {
+    private static final int TEST_NUM_ENTRIES = 100;
+
+    private LongKeyedTable<String> mTable;
+
+    @Before
+    public void setUp() {
+        mTable = new LongKeyedTable<>();
+    }
+
+    /**
+     * Verify put, get and clear, including growing past the initial capacity.
+     */
+    @Test
+    public void testPutGetClear() {
+        for (long i = 0; i < TEST_NUM_ENTRIES; i++) {
+            assertNull(mTable.put(i << 8, "v" + i));
+        }
+        assertEquals(TEST_NUM_ENTRIES, mTable.size());
+        for (long i = 0; i < TEST_NUM_ENTRIES; i++) {
+            assertEquals("v" + i, mTable.get(i << 8));
+        }
+        assertNull(mTable.get(1));
+
+        assertEquals("v1", mTable.put(1 << 8, "updated"));
+        assertEquals("updated", mTable.get(1 << 8));
+        assertEquals(TEST_NUM_ENTRIES, mTable.size());
+
+        mTable.clear();
+        assertEquals(0, mTable.size());
+        assertNull(mTable.get(0));
+        assertTrue(mTable.values().isEmpty());
+    }
+
+    /**
+     * Verify that removed entries are gone while colliding entries remain reachable.
+     */
+    @Test
+    public void testRemoveIf() {
+        for (long i = 0; i < TEST_NUM_ENTRIES; i++) {
+            mTable.put(i, i % 2 == 0 ? "even" + i : "odd" + i);
+        }
+        assertEquals(TEST_NUM_ENTRIES / 2, mTable.removeIf(value -> value.startsWith("odd")));
+        assertEquals(TEST_NUM_ENTRIES / 2, mTable.size());
+        for (long i = 0; i < TEST_NUM_ENTRIES; i++) {
+            assertEquals(i % 2 == 0 ? "even" + i : null, mTable.get(i));
+        }
+    }
+
+    /**
+     * Verify that eviction drops the entries not referenced since the previous round, and
+     * resets the referenced bits of the remaining ones.
+     */
+    @Test
+    public void testEvictUnreferenced() {
+        mTable.put(1, "a");
+        mTable.put(2, "b");
+        mTable.put(3, "c");
+        assertTrue(mTable.markReferenced(1));
+        assertFalse(mTable.markReferenced(1));
+        assertTrue(mTable.markReferenced(3));
+        assertFalse(mTable.markReferenced(4));
+        assertEquals(2, mTable.referencedCount());
+
+        // Replacing a value makes the entry unreferenced again.
+        mTable.put(3, "d");
+        assertEquals(1, mTable.referencedCount());
+
+        List<String> evicted = new ArrayList<>();
+        assertEquals(2, mTable.evictUnreferenced(evicted::add));
+        assertEquals(Set.of("b", "d"), new HashSet<>(evicted));
+        assertEquals(0, mTable.referencedCount());
+        assertEquals(List.of("a"), mTable.values());
+
+        // "a" was not referenced in this round, so it goes next.
+        assertEquals(1, mTable.evictUnreferenced(null));
+        assertEquals(0, mTable.size());
+    }
+}
@@ -61,6 +61,29 @@ public class NativeUtilTest extends WifiBaseTest {
                 NativeUtil.macAddressToByteArray(null));
     }
 
+    /**
+     * Test that parsing MAC address strings to longs matches android.net.MacAddress, and that
+     * malformed inputs return -1.
+     */
+    @Test
+    public void testMacAddressStringToLong() throws Exception {
+        assertEquals(0x615243342516L, NativeUtil.macAddressStringToLong("61:52:43:34:25:16"));
+        assertEquals(0xffffffffffffL, NativeUtil.macAddressStringToLong("FF:ff:FF:ff:FF:ff"));
+        assertEquals(0x020000000001L, NativeUtil.macAddressStringToLong("2:0:0:0:0:1"));
+        assertEquals((long) NativeUtil.macAddressToLong(
+                MacAddress.fromString("0a:08:5c:67:89:01").toByteArray()),
+                NativeUtil.macAddressStringToLong("0a:08:5c:67:89:01"));
+
+        assertEquals(-1, NativeUtil.macAddressStringToLong(null));
+        assertEquals(-1, NativeUtil.macAddressStringToLong(""));
+        assertEquals(-1, NativeUtil.macAddressStringToLong("61:52:43:34:25"));
+        assertEquals(-1, NativeUtil.macAddressStringToLong("61:52:43:34:25:16:07"));
+        assertEquals(-1, NativeUtil.macAddressStringToLong("61:52:43:34:25:"));
+        assertEquals(-1, NativeUtil.macAddressStringToLong("61:52:43:34::16"));
+        assertEquals(-1, NativeUtil.macAddressStringToLong("615:2:43:34:25:16"));
+        assertEquals(-1, NativeUtil.macAddressStringToLong("61:52:43:34:25:1g"));
+    }
+
     /**
      * Test that converting a colon delimited MAC address to android.net.MacAddress works. Also test
      * invalid input exception is handled by NativeUtil#getMacAddressOrNull() and returns 'null'.
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.net.wifi.ScanResult.InformationElement;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.hotspot2.NetworkDetail;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.ParsedInformationElements}.
+ */
+@SmallTest
+public class ParsedInformationElementsTest extends WifiBaseTest {
+    private static final byte[] TEST_IES = new byte[] {
+            // SSID "test"
+            (byte) 0x00, (byte) 0x04, (byte) 't', (byte) 'e', (byte) 's', (byte) 't',
+            // Interworking: Free public network with internet access
+            (byte) 0x6b, (byte) 0x01, (byte) 0x13,
+            // Roaming Consortium: 0 ANQP OIs, a single 3 byte OI
+            (byte) 0x6f, (byte) 0x05, (byte) 0x00, (byte) 0x03,
+            (byte) 0x50, (byte) 0x6f, (byte) 0x9a,
+            // HS2.0 indication vendor specific element, release 2
+            (byte) 0xdd, (byte) 0x05, (byte) 0x50, (byte) 0x6f, (byte) 0x9a, (byte) 0x10,
+            (byte) 0x10,
+            // HE Operation extension element
+            (byte) 0xff, (byte) 0x02, (byte) 0x24, (byte) 0x00};
+
+    /**
+     * Verify that the Passpoint elements are decoded once and memoized.
+     */
+    @Test
+    public void testDecodedElementsAreMemoized() {
+        ParsedInformationElements parsedIes = new ParsedInformationElements(
+                InformationElementUtil.parseInformationElements(TEST_IES));
+
+        InformationElementUtil.Interworking interworking = parsedIes.getInterworking();
+        assertEquals(NetworkDetail.Ant.FreePublic, interworking.ant);
+        assertTrue(interworking.internet);
+        assertSame(interworking, parsedIes.getInterworking());
+
+        InformationElementUtil.RoamingConsortium roamingConsortium =
+                parsedIes.getRoamingConsortium();
+        assertArrayEquals(new long[] {0x506f9aL}, roamingConsortium.getRoamingConsortiums());
+        assertSame(roamingConsortium, parsedIes.getRoamingConsortium());
+
+        InformationElementUtil.Vsa vsa = parsedIes.getVsa();
+        assertEquals(NetworkDetail.HSRelease.R2, vsa.hsRelease);
+        assertSame(vsa, parsedIes.getVsa());
+    }
+
+    /**
+     * Verify that a null element array results in an empty view with default decoded values.
+     */
+    @Test
+    public void testNullElements() {
+        ParsedInformationElements parsedIes = new ParsedInformationElements(null);
+
+        assertEquals(0, parsedIes.getElements().length);
+        assertNull(parsedIes.getInterworking().ant);
+        assertNull(parsedIes.getRoamingConsortium().getRoamingConsortiums());
+        assertNull(parsedIes.getVsa().hsRelease);
+    }
+
+    /**
+     * Verify that a malformed element is skipped without affecting the other elements.
+     */
+    @Test
+    public void testMalformedElementIsSkipped() {
+        InformationElement[] ies = InformationElementUtil.parseInformationElements(TEST_IES);
+        // Interworking elements can't be 2 bytes long.
+        ies[1].bytes = new byte[] {(byte) 0x13, (byte) 0x00};
+        ParsedInformationElements parsedIes = new ParsedInformationElements(ies);
+
+        assertNull(parsedIes.getInterworking().ant);
+        assertArrayEquals(new long[] {0x506f9aL},
+                parsedIes.getRoamingConsortium().getRoamingConsortiums());
+        assertEquals(NetworkDetail.HSRelease.R2, parsedIes.getVsa().hsRelease);
+    }
+
+    /**
+     * Verify that the element IDs and extension IDs present are indexed.
+     */
+    @Test
+    public void testElementIndex() {
+        ParsedInformationElements parsedIes = ParsedInformationElements.parse(TEST_IES);
+
+        assertEquals(5, parsedIes.getElements().length);
+        assertTrue(parsedIes.contains(InformationElement.EID_SSID));
+        assertTrue(parsedIes.contains(InformationElement.EID_INTERWORKING));
+        assertTrue(parsedIes.contains(InformationElement.EID_ROAMING_CONSORTIUM));
+        assertTrue(parsedIes.contains(InformationElement.EID_VSA));
+        assertTrue(parsedIes.contains(InformationElement.EID_EXTENSION_PRESENT));
+        assertFalse(parsedIes.contains(InformationElement.EID_ERP));
+        assertFalse(parsedIes.contains(-1));
+        assertFalse(parsedIes.contains(256));
+        assertTrue(parsedIes.containsExtension(InformationElement.EID_EXT_HE_OPERATION));
+        assertFalse(parsedIes.containsExtension(InformationElement.EID_EXT_EHT_OPERATION));
+        assertFalse(parsedIes.containsExtension(InformationElement.EID_EXT_MULTI_LINK));
+    }
+
+    /**
+     * Verify that provided Passpoint elements are returned without decoding.
+     */
+    @Test
+    public void testPreDecodedElements() {
+        InformationElementUtil.Interworking interworking =
+                new InformationElementUtil.Interworking();
+        InformationElementUtil.RoamingConsortium roamingConsortium =
+                new InformationElementUtil.RoamingConsortium();
+        InformationElementUtil.Vsa vsa = new InformationElementUtil.Vsa();
+        ParsedInformationElements parsedIes = ParsedInformationElements.parse(TEST_IES);
+        parsedIes.setPasspointElements(interworking, roamingConsortium, vsa);
+
+        assertSame(interworking, parsedIes.getInterworking());
+        assertSame(roamingConsortium, parsedIes.getRoamingConsortium());
+        assertSame(vsa, parsedIes.getVsa());
+    }
+}